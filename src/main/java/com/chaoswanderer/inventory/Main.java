@@ -1,24 +1,111 @@
 package com.chaoswanderer.inventory;
 
+import com.chaoswanderer.inventory.export.ExportFormat;
+import com.chaoswanderer.inventory.export.ExportResult;
+import com.chaoswanderer.inventory.history.HistoryRetention;
 import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.MemoryProductStore;
+import com.chaoswanderer.inventory.model.ProductStore;
+import com.chaoswanderer.inventory.net.InventoryServer;
+import com.chaoswanderer.inventory.service.BackgroundLoad;
+import com.chaoswanderer.inventory.service.BatchRunner;
+import com.chaoswanderer.inventory.service.ChangeJournal;
+import com.chaoswanderer.inventory.service.GroupCommitter;
+import com.chaoswanderer.inventory.service.InventoryFileWatcher;
 import com.chaoswanderer.inventory.service.InventoryService;
+import com.chaoswanderer.inventory.storage.PagedProductStore;
+import com.chaoswanderer.inventory.storage.StorageEngine;
+import com.chaoswanderer.inventory.sync.SyncNode;
+import com.chaoswanderer.inventory.sync.SyncServer;
 import com.chaoswanderer.inventory.ui.InventoryUI;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class Main {
+    private static final String DATA_FILE = InventoryService.DATA_FILE;
+    private static final String PAGED_DATA_FILE = "data/products.db";
+    private static final int DEFAULT_CACHE_PAGES = 1024; // 4 MB of 4 KB pages
+    private static final int DEFAULT_RESULT_CACHE_SIZE = 1_000_000; // list elements, about 4-8 MB of references
 
     @SuppressWarnings("checkstyle:OperatorWrap")
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        Inventory inventory = new Inventory();
+
+        // --batch=<file> (or --batch=- for stdin) runs commands headless; stdout then carries only the results
+        String batchFile = stringOption(args, "--batch=");
+        PrintStream results = System.out;
+        if (batchFile != null) {
+            System.setOut(System.err);
+        }
+
+        // --engine=memory|hash|sorted|paged picks the product store (see StorageEngine); --paged is short for
+        // --engine=paged, which keeps the catalog on disk (data/products.db) and only caches hot pages in memory
+        StorageEngine engine = selectEngine(args);
+        int cachePages = intOption(args, "--cache-pages=", DEFAULT_CACHE_PAGES);
+
+        ProductStore store = openStore(engine, cachePages);
+        PagedProductStore pagedStore = store instanceof PagedProductStore ? (PagedProductStore) store : null;
+        Inventory inventory = new Inventory(store);
         InventoryService inventoryService = new InventoryService(inventory);
 
         // shutdown safety net
-        Runtime.getRuntime().addShutdownHook(new Thread(inventoryService::saveProductsToFile));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            inventoryService.stopGroupCommit();
+            inventoryService.saveProductsToFile();
+            inventory.getStore().close();
+        }));
+
+        // --fast-start opens the menu right away and loads the data file in the background; everything
+        // that needs the complete catalog (history, ledger, locations, the watcher) is set up once it is in
+        boolean fastStart = hasFlag(args, "--fast-start") && batchFile == null;
+        if (fastStart && hasFlag(args, "--journal")) {
+            // the journal has to be replayed before the first edit, or the replay would overwrite it
+            System.out.println("Note: --fast-start is ignored with --journal - loading the catalog first.");
+            fastStart = false;
+        }
+
+        // an existing paged data file already holds the catalog - only a fresh one is seeded from the CSV
+        if (pagedStore == null || pagedStore.isNewlyCreated()) {
+            if (fastStart) {
+                fastStart = startBackgroundLoad(inventoryService, DATA_FILE, () -> enableFeatures(args, inventory, inventoryService));
+            } else {
+                loadFile(inventoryService, DATA_FILE);
+            }
+        } else {
+            System.out.println("Opened paged inventory '" + PAGED_DATA_FILE + "' (" + inventory.getTotalProducts() + " products)");
+            fastStart = false;
+        }
+
+        if (!fastStart) {
+            enableFeatures(args, inventory, inventoryService);
+        }
 
-        loadFile(inventoryService, "data/products.csv");
-        pause(scanner);
+        // --export=<file> writes the catalog and exits: the format comes from --export-format=csv|jsonl|col or
+        // the file's extension, and --gzip (or a .gz name) compresses it
+        String exportFile = stringOption(args, "--export=");
+        if (exportFile != null) {
+            System.exit(runExport(inventoryService, exportFile, stringOption(args, "--export-format="), hasFlag(args, "--gzip")));
+        }
+
+        if (batchFile != null) {
+            // the shutdown hook saves the data file as usual
+            System.exit(runBatch(inventory, inventoryService, batchFile, intOption(args, "--batch-size=", BatchRunner.DEFAULT_BATCH_SIZE), results));
+        }
+        if (!fastStart) {
+            pause(scanner);
+        }
 
         //TODO add InventoryController?
 
@@ -26,6 +113,183 @@ public class Main {
         ui.start();
     }
 
+    private static void enableFeatures(String[] args, Inventory inventory, InventoryService inventoryService) {
+        // --index keeps a search index (substring search, id/name/price sorts) saved as data/products.idx;
+        // it is read back at start-up when it matches the data file and rebuilt in parallel otherwise
+        if (hasFlag(args, "--index")) {
+            inventoryService.enableSearchIndex(InventoryService.INDEX_FILE);
+        }
+
+        // --result-cache keeps search and sort results until a change that affects them, up to
+        // --result-cache-size=N products across all results
+        if (hasFlag(args, "--result-cache")) {
+            inventory.enableResultCache(Math.max(1, intOption(args, "--result-cache-size=", DEFAULT_RESULT_CACHE_SIZE)));
+        }
+
+        // --journal makes every change durable as it happens (data/products.journal, replayed on the next start)
+        // without rewriting the data file; writes are synced in groups of up to --commit-batch=N, waiting up to
+        // --commit-delay-us=N for a group to fill. Early, so the features below start from the replayed state.
+        // Batch mode always journals: it reports a batch OK only once its changes are synced, and without a
+        // journal nothing would be on disk before the data file is saved at exit.
+        if (hasFlag(args, "--journal") || stringOption(args, "--batch=") != null) {
+            inventoryService.enableJournal(ChangeJournal.DEFAULT_FILE,
+                    Math.max(1, intOption(args, "--commit-batch=", GroupCommitter.DEFAULT_MAX_BATCH)),
+                    Math.max(0, intOption(args, "--commit-delay-us=", GroupCommitter.DEFAULT_MAX_DELAY_MICROS)));
+        }
+
+        // --sync-node=<name> makes this shop a sync node (replicated state in data/sync.state); see startSync
+        String syncNode = stringOption(args, "--sync-node=");
+        if (syncNode != null) {
+            startSync(args, inventoryService, syncNode);
+        }
+
+        // --history keeps per-product versions so past states can be queried (Inventory.getInventoryAsOf)
+        if (hasFlag(args, "--history")) {
+            inventory.enableHistory(HistoryRetention.defaults());
+        }
+
+        // --ledger records stock movements for sales velocity and days of cover
+        if (hasFlag(args, "--ledger")) {
+            inventory.enableStockLedger();
+        }
+
+        // --locations splits stock across warehouses/stores (saved to data/locations.csv)
+        if (hasFlag(args, "--locations")) {
+            inventory.enableLocations("main");
+            inventoryService.loadLocationStockFromFile(InventoryService.LOCATIONS_FILE);
+        }
+
+        // --stats keeps quantity and price columns for SIMD summary statistics
+        // (run with --add-modules jdk.incubator.vector to vectorize, otherwise a scalar loop is used)
+        // and sketches for percentiles, distinct names and top products
+        if (hasFlag(args, "--stats")) {
+            inventory.enableStatistics();
+            inventory.enableSketches();
+        }
+
+        // --watch picks up out-of-band edits of the data file; --watch-deletes also drops rows removed from it
+        if (hasFlag(args, "--watch") || hasFlag(args, "--watch-deletes")) {
+            startFileWatcher(inventoryService, hasFlag(args, "--watch-deletes"));
+        }
+
+        // --serve=<port> answers point-of-sale clients over the binary protocol (see WireProtocol), on loopback
+        // unless --serve-address=<host> names another interface - which also needs --serve-unauthenticated, as
+        // anyone who reaches the port can change stock; reservations are enabled for them. With --journal its
+        // changes go through the group committer and are answered once durable
+        int servePort = intOption(args, "--serve=", -1);
+        if (servePort >= 0) {
+            startServer(inventory, inventoryService.getGroupCommitter(), servePort, stringOption(args, "--serve-address="),
+                    hasFlag(args, "--serve-unauthenticated"));
+        }
+    }
+
+    private static void startServer(Inventory inventory, GroupCommitter committer, int port, String address,
+                                    boolean unauthenticated) {
+        try {
+            InetAddress bindAddress = address == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(address);
+            if (!bindAddress.isLoopbackAddress()) {
+                if (!unauthenticated) {
+                    System.out.println("Warning: Not serving on '" + address + "' - the protocol has no authentication, so anyone"
+                            + " who can reach it can change stock. Add --serve-unauthenticated to serve there anyway.");
+                    return;
+                }
+                System.out.println("Warning: Serving on '" + address + "' without authentication - anyone who can reach port "
+                        + port + " can change stock.");
+            }
+            InventoryServer server = new InventoryServer(inventory, bindAddress, port, committer == null ? null : committer::submit);
+            if (inventory.getReservations() == null) {
+                inventory.enableReservations();
+            }
+            server.start();
+            System.out.println("Serving inventory protocol on " + (address == null ? "loopback" : address) + " port " + server.getPort());
+        } catch (IOException e) {
+            System.out.println("Warning: Could not serve on port " + port + " (" + e.getMessage() + ")");
+        }
+    }
+
+    // --sync-import=<file> merges a delta another node wrote, --sync-export=<file> writes this node's changes
+    // after --sync-since=N (default all) on exit, --sync-peer=<host:port> runs one exchange with a listening
+    // node, and --sync-listen=<port> serves exchanges on the loopback interface while the application runs
+    private static void startSync(String[] args, InventoryService service, String nodeId) {
+        if (!service.enableSync(nodeId, InventoryService.SYNC_STATE_FILE)) {
+            return;
+        }
+        SyncNode node = service.getSyncNode();
+        System.out.println("Sync node '" + nodeId + "' at version " + node.getVersion());
+
+        String importFile = stringOption(args, "--sync-import=");
+        if (importFile != null) {
+            int changed = service.importSyncDelta(importFile);
+            if (changed >= 0) {
+                System.out.println("Merged '" + importFile + "': " + changed + " products changed");
+            }
+        }
+
+        String peer = stringOption(args, "--sync-peer=");
+        if (peer != null) {
+            int colon = peer.lastIndexOf(':');
+            try {
+                int changed = SyncServer.exchange(node, colon < 0 ? "localhost" : peer.substring(0, colon),
+                        Integer.parseInt(peer.substring(colon + 1)));
+                System.out.println("Synced with " + peer + ": " + changed + " products changed");
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("Warning: Could not sync with '" + peer + "' (" + e.getMessage() + ")");
+            }
+        }
+
+        // on exit, so the delta carries this session's changes
+        String exportFile = stringOption(args, "--sync-export=");
+        if (exportFile != null) {
+            int since = intOption(args, "--sync-since=", 0);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                int written = service.exportSyncDelta(exportFile, since);
+                if (written >= 0) {
+                    System.out.println("Wrote " + written + " products to '" + exportFile + "'");
+                }
+            }));
+        }
+
+        int listenPort = intOption(args, "--sync-listen=", -1);
+        if (listenPort >= 0) {
+            try {
+                SyncServer server = new SyncServer(node, listenPort);
+                server.start();
+                System.out.println("Serving sync on loopback port " + server.getPort());
+            } catch (IOException e) {
+                System.out.println("Warning: Could not listen for sync on port " + listenPort + " (" + e.getMessage() + ")");
+            }
+        }
+    }
+
+    private static int runExport(InventoryService service, String filename, String formatName, boolean gzip) {
+        Path path = Paths.get(filename);
+        ExportFormat format = formatName != null ? ExportFormat.fromName(formatName) : ExportFormat.fromPath(path);
+        if (format == null) {
+            System.out.println("Error: Unknown export format - use --export-format=csv, jsonl or col");
+            return 2;
+        }
+
+        ExportResult result = service.exportProducts(filename, format, gzip || ExportFormat.isGzipPath(path));
+        if (result == null) {
+            return 1;
+        }
+        System.out.println(result.describe());
+        return 0;
+    }
+
+    // returns false if there is nothing to load in the background (the caller then finishes start-up as usual)
+    private static boolean startBackgroundLoad(InventoryService service, String filename, Runnable onComplete) {
+        BackgroundLoad load = service.startBackgroundLoad(filename, onComplete);
+
+        if (load == null) {
+            System.out.println("Warning: Could not load products from '" + filename + "' – Starting with empty inventory.");
+            return false;
+        }
+
+        System.out.println("Loading products from '" + filename + "' in the background");
+        return true;
+    }
+
     private static void loadFile(InventoryService service, String filename) {
         boolean loaded = service.addProductsFromFile(filename);
 
@@ -36,6 +300,92 @@ public class Main {
         }
     }
 
+    private static void startFileWatcher(InventoryService service, boolean deleteMissing) {
+        try {
+            InventoryFileWatcher watcher = new InventoryFileWatcher(service, DATA_FILE, deleteMissing);
+            watcher.start();
+            System.out.println("Watching '" + DATA_FILE + "' for changes");
+        } catch (IOException e) {
+            System.out.println("Warning: Could not watch '" + DATA_FILE + "' (" + e.getMessage() + ")");
+        }
+    }
+
+    // exit code: 0 if every command succeeded, 1 if some failed, 2 if the input could not be read or the
+    // changes could not be journaled
+    private static int runBatch(Inventory inventory, InventoryService service, String batchFile, int batchSize, PrintStream results) {
+        BatchRunner runner = new BatchRunner(inventory, Math.max(1, batchSize), service::awaitDurable);
+        long start = System.nanoTime();
+
+        try (BufferedReader in = batchFile.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(batchFile), StandardCharsets.UTF_8)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(results, StandardCharsets.UTF_8), 1 << 16);
+            runner.run(in, out);
+        } catch (IOException e) {
+            System.out.println("Error running batch '" + batchFile + "': " + e.getMessage());
+            return 2;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Batch done: %d commands, %d failed, %.3f s (%.0f commands/s)%n",
+                runner.getCommandCount(), runner.getFailedCount(), seconds, runner.getCommandCount() / Math.max(seconds, 1e-9));
+        return runner.getFailedCount() == 0 ? 0 : 1;
+    }
+
+    private static StorageEngine selectEngine(String[] args) {
+        String name = stringOption(args, "--engine=");
+        if (name == null) {
+            return hasFlag(args, "--paged") ? StorageEngine.PAGED : StorageEngine.MEMORY;
+        }
+
+        StorageEngine engine = StorageEngine.fromName(name);
+        if (engine == null) {
+            System.out.println("Warning: Unknown storage engine '" + name + "' (" + StorageEngine.names() + ") – Using memory.");
+            return StorageEngine.MEMORY;
+        }
+        return engine;
+    }
+
+    private static ProductStore openStore(StorageEngine engine, int cachePages) {
+        try {
+            return engine.open(Paths.get(PAGED_DATA_FILE), cachePages);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Warning: Could not open '" + PAGED_DATA_FILE + "' (" + e.getMessage() + ") – Using in-memory inventory.");
+            return new MemoryProductStore();
+        }
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String stringOption(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+
     private static void pause(Scanner scanner) {
         System.out.print("Press Enter to continue...");
         scanner.nextLine();
@@ -0,0 +1,56 @@
+package com.chaoswanderer.inventory.cache;
+
+// approximate access counts for the cache's admission decision (TinyLFU): a count-min sketch of 4-bit
+// counters, sixteen to a long, four per key. After 10 x width increments every counter is halved, so
+// popularity from long ago fades.
+final class FrequencySketch {
+    private static final long[] SEEDS = {0x97cb3127L, 0xc2b2ae3dL, 0x27d4eb2fL, 0x165667b1L};
+    private static final long HALVE_MASK = 0x7777_7777_7777_7777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+        this.table = new long[width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    void increment(int hashCode) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(hashCode, i);
+            int index = (int) hash & mask;
+            int shift = (int) (hash >>> 60) << 2; // which of the sixteen counters
+            if (((table[index] >>> shift) & 0xF) < 0xF) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & HALVE_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+    int frequency(int hashCode) {
+        int frequency = 0xF;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(hashCode, i);
+            int shift = (int) (hash >>> 60) << 2;
+            frequency = Math.min(frequency, (int) ((table[(int) hash & mask] >>> shift) & 0xF));
+        }
+        return frequency;
+    }
+
+    private static long hash(int hashCode, int row) {
+        long hash = (hashCode + SEEDS[row]) * 0x9E37_79B9_7F4A_7C15L;
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -0,0 +1,238 @@
+package com.chaoswanderer.inventory.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+// bounded cache of computed results, capped by total weight, with W-TinyLFU eviction: new entries go
+// into a small LRU window (1% of the weight); what falls out of it competes for the main space against
+// the least recently used entry there, and only the one a FrequencySketch says is used more often stays.
+// The main space is a segmented LRU - probation, and protected (80%) for entries hit again - so a burst
+// of one-off queries cannot flush the results people keep coming back to.
+//
+// every entry carries the generation it was computed at; a lookup with a newer generation finds it
+// stale and drops it, so invalidation is one long comparison and nothing has to be scanned. Thread-safe.
+public class ResultCache<K, V> {
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        long weight;
+        long generation;
+        Segment<K, V> segment;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    // an LRU list: least recently used at the head
+    private static final class Segment<K, V> {
+        final Node<K, V> sentinel = new Node<>(null);
+        long weight;
+
+        Segment() {
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+        }
+
+        Node<K, V> head() {
+            return sentinel.next == sentinel ? null : sentinel.next;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.segment = this;
+            node.prev = sentinel.prev;
+            node.next = sentinel;
+            sentinel.prev.next = node;
+            sentinel.prev = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            node.segment = null;
+            weight -= node.weight;
+        }
+    }
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final Map<K, Node<K, V>> nodes = new HashMap<>();
+    private final Segment<K, V> window = new Segment<>();
+    private final Segment<K, V> probation = new Segment<>();
+    private final Segment<K, V> protectedSegment = new Segment<>();
+    private final FrequencySketch sketch;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+    private long rejections;
+
+    // expectedEntries sizes the frequency sketch
+    public ResultCache(long maxWeight, int expectedEntries) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("The maximum weight must be positive");
+        }
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max(1, (long) (maxWeight * WINDOW_SHARE));
+        this.protectedMaxWeight = (long) ((maxWeight - windowMaxWeight) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    // ------------------- Lookups -------------------
+    // the value if it is cached and was computed at this generation, otherwise null
+    public synchronized V get(K key, long generation) {
+        sketch.increment(key.hashCode());
+        Node<K, V> node = nodes.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (node.generation != generation) {
+            discard(node);
+            invalidations++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        touch(node);
+        return node.value;
+    }
+
+    // caches a value computed at the given generation; one heavier than the whole cache is not kept
+    public synchronized void put(K key, V value, long weight, long generation) {
+        if (weight > maxWeight) {
+            rejections++;
+            return;
+        }
+
+        Node<K, V> node = nodes.get(key);
+        if (node != null) {
+            Segment<K, V> segment = node.segment;
+            segment.remove(node);
+            node.value = value;
+            node.weight = weight;
+            node.generation = generation;
+            segment.addLast(node);
+        } else {
+            node = new Node<>(key);
+            node.value = value;
+            node.weight = weight;
+            node.generation = generation;
+            nodes.put(key, node);
+            window.addLast(node);
+        }
+        evict();
+    }
+
+    public synchronized void clear() {
+        for (Node<K, V> node : new ArrayList<>(nodes.values())) {
+            discard(node);
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Eviction -------------------
+    private void touch(Node<K, V> node) {
+        Segment<K, V> segment = node.segment;
+        segment.remove(node);
+        if (segment == probation) {
+            // hit again: worth protecting; the protected LRU makes room by going back on probation
+            protectedSegment.addLast(node);
+            Node<K, V> demoted;
+            while (protectedSegment.weight > protectedMaxWeight && (demoted = protectedSegment.head()) != node) {
+                protectedSegment.remove(demoted);
+                probation.addLast(demoted);
+            }
+        } else {
+            segment.addLast(node);
+        }
+    }
+
+    private void evict() {
+        // the window's overflow moves to probation as candidates...
+        Node<K, V> candidate = null;
+        while (window.weight > windowMaxWeight && window.head() != null) {
+            candidate = window.head();
+            window.remove(candidate);
+            probation.addLast(candidate);
+        }
+
+        // ...and the main space sheds its least recently used entry or the newest candidate, whichever
+        // is used less often
+        while (weight() > maxWeight) {
+            Node<K, V> victim = probation.head();
+            if (victim == null) {
+                victim = protectedSegment.head() != null ? protectedSegment.head() : window.head();
+            } else if (candidate != null && candidate != victim && candidate.segment == probation
+                    && sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+                victim = candidate; // not admitted
+                candidate = null;
+            }
+            discard(victim);
+            evictions++;
+        }
+    }
+
+    private void discard(Node<K, V> node) {
+        node.segment.remove(node);
+        nodes.remove(node.key);
+    }
+
+    private long weight() {
+        return window.weight + probation.weight + protectedSegment.weight;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Statistics -------------------
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    // entries found stale (computed before a change that affects them)
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // results too heavy to cache at all
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,75 @@
+package com.chaoswanderer.inventory.cache;
+
+import com.chaoswanderer.inventory.util.SortField;
+
+import java.util.Objects;
+
+// what a cached result answers: a substring search over ids or names (normalized text), or a sort
+public final class ResultKey {
+    public enum Kind {
+        ID_SEARCH,
+        NAME_SEARCH,
+        SORT
+    }
+
+    private final Kind kind;
+    private final String query;
+    private final SortField field;
+    private final boolean ascending;
+
+    private ResultKey(Kind kind, String query, SortField field, boolean ascending) {
+        this.kind = kind;
+        this.query = query;
+        this.field = field;
+        this.ascending = ascending;
+    }
+
+    public static ResultKey idSearch(String text) {
+        return new ResultKey(Kind.ID_SEARCH, text, null, true);
+    }
+
+    public static ResultKey nameSearch(String text) {
+        return new ResultKey(Kind.NAME_SEARCH, text, null, true);
+    }
+
+    public static ResultKey sort(SortField field, boolean ascending) {
+        return new ResultKey(Kind.SORT, "", field, ascending);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public SortField getField() {
+        return field;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResultKey other)) {
+            return false;
+        }
+        return kind == other.kind && ascending == other.ascending && field == other.field && query.equals(other.query);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, query, field, ascending);
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.SORT ? "sort " + field + (ascending ? " asc" : " desc") : kind + " '" + query + "'";
+    }
+}
@@ -0,0 +1,226 @@
+package com.chaoswanderer.inventory.export;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// an append-only byte sink over fixed-size direct buffers: one partition is encoded into it on an encoder
+// thread, and its chunks then go to the file as they are, in a single gathering write. Bytes are staged
+// in a small heap array and copied into the direct chunks in bulk - single-byte puts on a direct buffer
+// cost several times an array store. Multi-byte values are little-endian.
+final class ChunkedBuffer {
+    static final int CHUNK_SIZE = 256 * 1024;
+    private static final int STAGING_SIZE = 16 * 1024;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Pool pool;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final byte[] staging = new byte[STAGING_SIZE];
+    private int staged;
+    private ByteBuffer current;
+    private long size;
+
+    ChunkedBuffer(Pool pool) {
+        this.pool = pool;
+        this.current = pool.take();
+        chunks.add(current);
+    }
+
+    long size() {
+        return size + current.position() + staged;
+    }
+
+    // ------------------- Bytes -------------------
+    void put(byte value) {
+        if (staged == STAGING_SIZE) {
+            flush();
+        }
+        staging[staged++] = value;
+    }
+
+    // a string as UTF-8; the common all-ASCII case is copied straight into the staging array
+    void putUtf8(String value) {
+        int length = value.length();
+        int i = 0;
+        if (length <= STAGING_SIZE) {
+            if (staged + length > STAGING_SIZE) {
+                flush();
+            }
+            byte[] bytes = staging;
+            int at = staged;
+            for (; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                bytes[at++] = (byte) c;
+            }
+            staged = at;
+        }
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xc0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                put((byte) (0xf0 | (codePoint >> 18)));
+                put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                put((byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                put((byte) '?'); // unpaired surrogate, as String.getBytes would
+            } else {
+                put((byte) (0xe0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    // UTF-8 byte count of what putUtf8 writes
+    static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 2; // four bytes for two chars
+                i++;
+            } else if (c >= 0x800 && !Character.isSurrogate(c)) {
+                length += 2;
+            } else if (c < 0x800) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    // decimal digits, as Long.toString would print them
+    void putDecimal(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                putUtf8(Long.toString(value));
+                return;
+            }
+            put((byte) '-');
+            value = -value;
+        }
+        if (value < 10) {
+            put((byte) ('0' + value));
+            return;
+        }
+
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        if (staged + digits > STAGING_SIZE) {
+            flush();
+        }
+        for (int at = staged + digits - 1; at >= staged; at--) {
+            staging[at] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        staged += digits;
+    }
+
+    // an empty buffer drawing on the same pool, e.g. to encode a column whose length has to come first
+    ChunkedBuffer sibling() {
+        return new ChunkedBuffer(pool);
+    }
+
+    // appends everything written to a sibling, whose chunks then go back to the pool
+    void putAll(ChunkedBuffer sibling) {
+        flush();
+        List<ByteBuffer> source = sibling.finish();
+        for (ByteBuffer chunk : source) {
+            while (chunk.hasRemaining()) {
+                if (!current.hasRemaining()) {
+                    next();
+                }
+                int length = Math.min(chunk.remaining(), current.remaining());
+                ByteBuffer part = chunk.slice();
+                part.limit(length);
+                current.put(part);
+                chunk.position(chunk.position() + length);
+            }
+        }
+        pool.give(source);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Little-endian binary -------------------
+    void putInt(int value) {
+        if (staged + Integer.BYTES > STAGING_SIZE) {
+            flush();
+        }
+        INT.set(staging, staged, value);
+        staged += Integer.BYTES;
+    }
+
+    void putLong(long value) {
+        if (staged + Long.BYTES > STAGING_SIZE) {
+            flush();
+        }
+        LONG.set(staging, staged, value);
+        staged += Long.BYTES;
+    }
+    // ------------------------------------------------------
+
+    // the chunks, flipped for reading; the buffer must not be written to afterwards
+    List<ByteBuffer> finish() {
+        flush();
+        for (ByteBuffer chunk : chunks) {
+            chunk.flip();
+        }
+        return chunks;
+    }
+
+    private void flush() {
+        int from = 0;
+        while (from < staged) {
+            if (!current.hasRemaining()) {
+                next();
+            }
+            int length = Math.min(staged - from, current.remaining());
+            current.put(staging, from, length);
+            from += length;
+        }
+        staged = 0;
+    }
+
+    private void next() {
+        size += current.position();
+        current = pool.take();
+        chunks.add(current);
+    }
+
+    // recycles chunks between partitions, so a long export allocates only what is in flight
+    static final class Pool {
+        private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+        ByteBuffer take() {
+            ByteBuffer chunk = free.poll();
+            if (chunk == null) {
+                chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            }
+            chunk.clear();
+            return chunk.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void give(List<ByteBuffer> chunks) {
+            free.addAll(chunks);
+        }
+    }
+}
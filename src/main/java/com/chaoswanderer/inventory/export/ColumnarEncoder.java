@@ -0,0 +1,144 @@
+package com.chaoswanderer.inventory.export;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// a simple columnar binary layout, little-endian throughout:
+//
+//   header:     magic "INVCOL01", version (int32), column count (int32),
+//               per column: type (byte), name length (byte), name (ASCII)
+//   row groups: one per partition - row count (int32, > 0), then per column its byte length (int64)
+//               followed by the column's bytes:
+//                 STRING     row count lengths (int32), then the UTF-8 bytes back to back
+//                 INT32      row count values
+//                 DECIMAL64  scale (int32), then row count unscaled values (int64) at that scale
+//                 TIMESTAMP  row count microseconds since 1970-01-01T00:00 (int64), Long.MIN_VALUE for none
+//   footer:     0 (int32, where a row count would be), total rows (int64), row group count (int32),
+//               magic "INVCOL01"
+//
+// the per-column lengths let a reader skip the columns it does not need; attributes are stored in the
+// data file's k=v|v;k2=v form
+class ColumnarEncoder extends PartitionEncoder {
+    static final byte[] MAGIC = "INVCOL01".getBytes();
+    static final int VERSION = 1;
+
+    static final byte STRING = 1;
+    static final byte INT32 = 2;
+    static final byte DECIMAL64 = 3;
+    static final byte TIMESTAMP = 4;
+
+    static final String[] COLUMN_NAMES = {"id", "name", "quantity", "price", "attributes", "created_at", "updated_at"};
+    static final byte[] COLUMN_TYPES = {STRING, STRING, INT32, DECIMAL64, STRING, TIMESTAMP, TIMESTAMP};
+
+    @Override
+    void header(ChunkedBuffer out) {
+        putMagic(out);
+        out.putInt(VERSION);
+        out.putInt(COLUMN_NAMES.length);
+        for (int c = 0; c < COLUMN_NAMES.length; c++) {
+            out.put(COLUMN_TYPES[c]);
+            out.put((byte) COLUMN_NAMES[c].length());
+            out.putUtf8(COLUMN_NAMES[c]);
+        }
+    }
+
+    @Override
+    void encode(Product[] rows, int count, ChunkedBuffer out) {
+        String[] ids = new String[count];
+        String[] names = new String[count];
+        int scale = 0;
+        for (int i = 0; i < count; i++) {
+            Product product = rows[i];
+            ids[i] = product.getId();
+            names[i] = product.getName();
+            scale = Math.max(scale, product.getPrice().scale());
+        }
+
+        out.putInt(count);
+        putStrings(out, ids);
+
+        putStrings(out, names);
+
+        out.putLong(4L * count);
+        for (int i = 0; i < count; i++) {
+            out.putInt(rows[i].getQuantity());
+        }
+
+        out.putLong(4 + 8L * count);
+        out.putInt(scale);
+        for (int i = 0; i < count; i++) {
+            out.putLong(unscaled(rows[i].getPrice(), scale));
+        }
+
+        // attributes are walked once, into a side buffer, since their lengths have to come first
+        ChunkedBuffer attributes = out.sibling();
+        int[] attributeLengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            long before = attributes.size();
+            putAttributes(attributes, rows[i].getAttributes());
+            attributeLengths[i] = (int) (attributes.size() - before);
+        }
+        out.putLong(4L * count + attributes.size());
+        for (int length : attributeLengths) {
+            out.putInt(length);
+        }
+        out.putAll(attributes);
+
+        out.putLong(8L * count);
+        for (int i = 0; i < count; i++) {
+            out.putLong(micros(rows[i].getCreatedAt()));
+        }
+
+        out.putLong(8L * count);
+        for (int i = 0; i < count; i++) {
+            out.putLong(micros(rows[i].getUpdatedAt()));
+        }
+    }
+
+    @Override
+    void footer(ChunkedBuffer out, long rows, int partitions) {
+        out.putInt(0);
+        out.putLong(rows);
+        out.putInt(partitions);
+        putMagic(out);
+    }
+
+    private static void putStrings(ChunkedBuffer out, String[] values) {
+        int[] lengths = new int[values.length];
+        long bytes = 0;
+        for (int i = 0; i < values.length; i++) {
+            lengths[i] = ChunkedBuffer.utf8Length(values[i]);
+            bytes += lengths[i];
+        }
+
+        out.putLong(4L * values.length + bytes);
+        for (int length : lengths) {
+            out.putInt(length);
+        }
+        for (String value : values) {
+            out.putUtf8(value);
+        }
+    }
+
+    // rescaling up never rounds; a price too large for 64 bits at the group's scale fails the export
+    private static long unscaled(BigDecimal price, int scale) {
+        return price.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    private static long micros(LocalDateTime time) {
+        if (time == null) {
+            return Long.MIN_VALUE;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static void putMagic(ChunkedBuffer out) {
+        for (byte b : MAGIC) {
+            out.put(b);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chaoswanderer.inventory.export;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.Map;
+import java.util.Set;
+
+// the data file's own row format (id,name,quantity,price[,attributes]), so an export loads back as is
+class CsvEncoder extends PartitionEncoder {
+
+    @Override
+    void encode(Product[] rows, int count, ChunkedBuffer out) {
+        for (int i = 0; i < count; i++) {
+            Product product = rows[i];
+            out.putUtf8(product.getId());
+            out.put((byte) ',');
+            out.putUtf8(product.getName());
+            out.put((byte) ',');
+            out.putDecimal(product.getQuantity());
+            out.put((byte) ',');
+            putPlain(out, product.getPrice());
+            Map<String, Set<String>> attributes = product.getAttributes();
+            if (!attributes.isEmpty()) {
+                out.put((byte) ',');
+                putAttributes(out, attributes);
+            }
+            out.put((byte) '\n');
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.chaoswanderer.inventory.export;
+
+import java.nio.file.Path;
+
+public enum ExportFormat {
+    CSV("csv"),
+    JSON_LINES("jsonl"),
+    COLUMNAR("col");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // "csv", "jsonl"/"json", "col"/"columnar", or the enum name; null if unknown
+    public static ExportFormat fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        switch (name.trim().toLowerCase()) {
+            case "csv":
+                return CSV;
+            case "jsonl":
+            case "json":
+            case "json_lines":
+            case "ndjson":
+                return JSON_LINES;
+            case "col":
+            case "columnar":
+                return COLUMNAR;
+            default:
+                return null;
+        }
+    }
+
+    // from the file name, ignoring a trailing .gz; null if the extension is not one of ours
+    public static ExportFormat fromPath(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? null : fromName(name.substring(dot + 1));
+    }
+
+    public static boolean isGzipPath(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".gz");
+    }
+}
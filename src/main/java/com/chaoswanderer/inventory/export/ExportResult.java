@@ -0,0 +1,54 @@
+package com.chaoswanderer.inventory.export;
+
+import java.nio.file.Path;
+
+public class ExportResult {
+    private final Path path;
+    private final ExportFormat format;
+    private final boolean gzip;
+    private final long rows;
+    private final long bytes;
+    private final long nanos;
+
+    ExportResult(Path path, ExportFormat format, boolean gzip, long rows, long bytes, long nanos) {
+        this.path = path;
+        this.format = format;
+        this.gzip = gzip;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        return bytes / 1e6 / Math.max(nanos / 1e9, 1e-9);
+    }
+
+    public String describe() {
+        return String.format("Exported %,d products to '%s' (%s%s, %.1f MB in %.2f s, %.1f MB/s)", rows, path,
+                format.getExtension(), gzip ? ".gz" : "", bytes / 1e6, nanos / 1e9, getMegabytesPerSecond());
+    }
+}
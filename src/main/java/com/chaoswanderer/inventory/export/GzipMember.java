@@ -0,0 +1,68 @@
+package com.chaoswanderer.inventory.export;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// compresses one encoded partition into a complete gzip member (RFC 1952: header, raw deflate, CRC-32
+// and length trailer). A gzip file may be any number of members back to back, and gzip/GZIPInputStream
+// read them as one stream - so partitions compress on the encoder threads independently of each other.
+final class GzipMember {
+    // fastest deflate: the point of compressing here is fewer bytes to disk, not the smallest file
+    static final int LEVEL = Deflater.BEST_SPEED;
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private GzipMember() {
+    }
+
+    static List<ByteBuffer> compress(List<ByteBuffer> input, ChunkedBuffer.Pool pool) {
+        List<ByteBuffer> output = new ArrayList<>();
+        ByteBuffer current = pool.take();
+        output.add(current);
+        current.put(HEADER);
+
+        CRC32 crc = new CRC32();
+        long length = 0;
+        Deflater deflater = new Deflater(LEVEL, true);
+        try {
+            for (ByteBuffer chunk : input) {
+                length += chunk.remaining();
+                crc.update(chunk.duplicate());
+                deflater.setInput(chunk);
+                while (!deflater.needsInput()) {
+                    current = drain(deflater, current, output, pool);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                current = drain(deflater, current, output, pool);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        if (current.remaining() < 8) {
+            current = pool.take();
+            output.add(current);
+        }
+        current.putInt((int) crc.getValue()); // the pool's buffers are little-endian, as gzip wants
+        current.putInt((int) length);
+
+        for (ByteBuffer chunk : output) {
+            chunk.flip();
+        }
+        return output;
+    }
+
+    private static ByteBuffer drain(Deflater deflater, ByteBuffer current, List<ByteBuffer> output, ChunkedBuffer.Pool pool) {
+        if (!current.hasRemaining()) {
+            current = pool.take();
+            output.add(current);
+        }
+        deflater.deflate(current);
+        return current;
+    }
+}
@@ -0,0 +1,117 @@
+package com.chaoswanderer.inventory.export;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+
+// one JSON object per line:
+//   {"id":"..","name":"..","quantity":3,"price":12.50,"attributes":{"brand":["acme"]},
+//    "createdAt":"2026-01-02T03:04:05","updatedAt":"..."}
+// price is a plain JSON number with the product's scale; attributes and their values come sorted
+class JsonLinesEncoder extends PartitionEncoder {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    @Override
+    void encode(Product[] rows, int count, ChunkedBuffer out) {
+        for (int i = 0; i < count; i++) {
+            Product product = rows[i];
+            out.putUtf8("{\"id\":");
+            putString(out, product.getId());
+            out.putUtf8(",\"name\":");
+            putString(out, product.getName());
+            out.putUtf8(",\"quantity\":");
+            out.putDecimal(product.getQuantity());
+            out.putUtf8(",\"price\":");
+            putPlain(out, product.getPrice());
+            out.putUtf8(",\"attributes\":");
+            putAttributeObject(out, product.getAttributes());
+            out.putUtf8(",\"createdAt\":");
+            putTime(out, product.getCreatedAt());
+            out.putUtf8(",\"updatedAt\":");
+            putTime(out, product.getUpdatedAt());
+            out.putUtf8("}\n");
+        }
+    }
+
+    private static void putAttributeObject(ChunkedBuffer out, Map<String, Set<String>> attributes) {
+        if (attributes.isEmpty()) {
+            out.putUtf8("{}");
+            return;
+        }
+
+        out.put((byte) '{');
+        boolean first = true;
+        for (Map.Entry<String, Set<String>> entry : attributes.entrySet()) {
+            if (!first) {
+                out.put((byte) ',');
+            }
+            first = false;
+            putString(out, entry.getKey());
+            out.putUtf8(":[");
+            boolean firstValue = true;
+            for (String value : entry.getValue()) {
+                if (!firstValue) {
+                    out.put((byte) ',');
+                }
+                firstValue = false;
+                putString(out, value);
+            }
+            out.put((byte) ']');
+        }
+        out.put((byte) '}');
+    }
+
+    private static void putTime(ChunkedBuffer out, LocalDateTime time) {
+        if (time == null) {
+            out.putUtf8("null");
+            return;
+        }
+        out.put((byte) '"');
+        putTimestamp(out, time);
+        out.put((byte) '"');
+    }
+
+    // a JSON string literal: quotes, backslashes and control characters escaped, the rest as UTF-8
+    static void putString(ChunkedBuffer out, String value) {
+        out.put((byte) '"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            if (i > start) {
+                out.putUtf8(value.substring(start, i));
+            }
+            start = i + 1;
+            out.put((byte) '\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.put((byte) c);
+                    break;
+                case '\n':
+                    out.put((byte) 'n');
+                    break;
+                case '\r':
+                    out.put((byte) 'r');
+                    break;
+                case '\t':
+                    out.put((byte) 't');
+                    break;
+                default:
+                    out.putUtf8("u00");
+                    out.put(HEX[c >> 4]);
+                    out.put(HEX[c & 0xf]);
+            }
+        }
+        if (start == 0) {
+            out.putUtf8(value);
+        } else if (start < value.length()) {
+            out.putUtf8(value.substring(start));
+        }
+        out.put((byte) '"');
+    }
+}
@@ -0,0 +1,133 @@
+package com.chaoswanderer.inventory.export;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+
+// turns one partition of rows into bytes; partitions are encoded concurrently, so an encoder keeps no
+// state between calls. Header and footer frame the whole file and are written once each.
+abstract class PartitionEncoder {
+
+    static PartitionEncoder of(ExportFormat format) {
+        switch (format) {
+            case CSV:
+                return new CsvEncoder();
+            case JSON_LINES:
+                return new JsonLinesEncoder();
+            case COLUMNAR:
+                return new ColumnarEncoder();
+            default:
+                throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+    }
+
+    void header(ChunkedBuffer out) {
+    }
+
+    abstract void encode(Product[] rows, int count, ChunkedBuffer out);
+
+    void footer(ChunkedBuffer out, long rows, int partitions) {
+    }
+
+    // ------------------- Shared text helpers -------------------
+    // the price as BigDecimal.toPlainString prints it, without building the string for ordinary prices
+    static void putPlain(ChunkedBuffer out, BigDecimal price) {
+        int scale = price.scale();
+        if (price.precision() > 18 || scale > 18 || scale < -18) {
+            out.putUtf8(price.toPlainString());
+            return;
+        }
+
+        long unscaled = price.unscaledValue().longValue();
+        if (scale <= 0) {
+            out.putDecimal(unscaled);
+            for (int i = scale; i < 0 && unscaled != 0; i++) {
+                out.put((byte) '0');
+            }
+            return;
+        }
+
+        if (unscaled < 0) {
+            out.put((byte) '-');
+            unscaled = -unscaled;
+        }
+        long divisor = POWERS_OF_TEN[scale];
+        out.putDecimal(unscaled / divisor);
+        out.put((byte) '.');
+        putPadded(out, unscaled % divisor, scale);
+    }
+
+    // attributes in the data file's k=v|v;k2=v form, as InventoryUtils.formatAttributes writes them.
+    // Product keeps them in sorted maps and sets, so plain iteration already gives that order - no copies.
+    static void putAttributes(ChunkedBuffer out, Map<String, Set<String>> attributes) {
+        boolean first = true;
+        for (Map.Entry<String, Set<String>> entry : attributes.entrySet()) {
+            if (!first) {
+                out.put((byte) ';');
+            }
+            first = false;
+            out.putUtf8(entry.getKey());
+            out.put((byte) '=');
+            boolean firstValue = true;
+            for (String value : entry.getValue()) {
+                if (!firstValue) {
+                    out.put((byte) '|');
+                }
+                firstValue = false;
+                out.putUtf8(value);
+            }
+        }
+    }
+
+    // ISO-8601 local date-time, always with seconds; the fraction in 3, 6 or 9 digits as needed
+    static void putTimestamp(ChunkedBuffer out, LocalDateTime time) {
+        int year = time.getYear();
+        if (year < 0 || year > 9999) {
+            out.putUtf8(time.toString());
+            return;
+        }
+        putPadded(out, year, 4);
+        out.put((byte) '-');
+        putPadded(out, time.getMonthValue(), 2);
+        out.put((byte) '-');
+        putPadded(out, time.getDayOfMonth(), 2);
+        out.put((byte) 'T');
+        putPadded(out, time.getHour(), 2);
+        out.put((byte) ':');
+        putPadded(out, time.getMinute(), 2);
+        out.put((byte) ':');
+        putPadded(out, time.getSecond(), 2);
+
+        int nano = time.getNano();
+        if (nano != 0) {
+            out.put((byte) '.');
+            if (nano % 1_000_000 == 0) {
+                putPadded(out, nano / 1_000_000, 3);
+            } else if (nano % 1_000 == 0) {
+                putPadded(out, nano / 1_000, 6);
+            } else {
+                putPadded(out, nano, 9);
+            }
+        }
+    }
+
+    // a non-negative value in exactly width digits, zero-padded on the left
+    static void putPadded(ChunkedBuffer out, long value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            out.put((byte) ('0' + (value / POWERS_OF_TEN[i]) % 10));
+        }
+    }
+
+    static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+    // ------------------------------------------------------
+}
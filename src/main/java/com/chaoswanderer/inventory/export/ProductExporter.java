@@ -0,0 +1,209 @@
+package com.chaoswanderer.inventory.export;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// streams the inventory to a file in parallel: rows are cut into partitions, encoder threads turn each
+// partition into direct buffers (and gzip members, if asked), and the calling thread writes finished
+// partitions in order with one gathering write each. At most two partitions per thread are in flight,
+// so memory stays bounded however large the inventory is, and the caller only ever waits on the disk
+// or on the oldest partition.
+//
+// the export runs under the inventory's read lock, like a save: the file is one consistent snapshot,
+// and changes wait until it is written. It goes to a temporary file first and is moved into place once
+// complete, so a failed export never leaves a partial file behind.
+public class ProductExporter {
+    public static final int DEFAULT_PARTITION_ROWS = 65_536;
+
+    private final Inventory inventory;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int partitionRows = DEFAULT_PARTITION_ROWS;
+
+    public ProductExporter(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    public ProductExporter withThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    public ProductExporter withPartitionRows(int partitionRows) {
+        this.partitionRows = Math.max(1, partitionRows);
+        return this;
+    }
+
+    public ExportResult export(Path path, ExportFormat format, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        PartitionEncoder encoder = PartitionEncoder.of(format);
+        ChunkedBuffer.Pool pool = new ChunkedBuffer.Pool();
+        ExecutorService encoders = Executors.newFixedThreadPool(threads, daemonThreads());
+        long rows;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(channel, pool, encoders, 2 * threads, gzip);
+
+            try {
+                ChunkedBuffer header = new ChunkedBuffer(pool);
+                encoder.header(header);
+                writer.submitEncoded(header);
+
+                inventory.runReadBatch(() -> {
+                    Product[][] partition = {new Product[partitionRows]};
+                    int[] filled = {0};
+                    inventory.forEachProduct(product -> {
+                        partition[0][filled[0]++] = product;
+                        if (filled[0] == partitionRows) {
+                            writer.submitRows(encoder, partition[0], filled[0]);
+                            partition[0] = new Product[partitionRows];
+                            filled[0] = 0;
+                        }
+                    });
+                    if (filled[0] > 0) {
+                        writer.submitRows(encoder, partition[0], filled[0]);
+                    }
+                    writer.drain(0);
+                });
+
+                ChunkedBuffer footer = new ChunkedBuffer(pool);
+                encoder.footer(footer, writer.rows, writer.partitions);
+                writer.submitEncoded(footer);
+                writer.drain(0);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            channel.force(false);
+            rows = writer.rows;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            encoders.shutdownNow();
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ExportResult(path, format, gzip, rows, Files.size(path), System.nanoTime() - start);
+    }
+
+    // ------------------- Ordered writer -------------------
+    // keeps the in-flight partitions in submission order and writes the oldest once it is encoded
+    private static class Writer {
+        private final FileChannel channel;
+        private final ChunkedBuffer.Pool pool;
+        private final ExecutorService encoders;
+        private final int maxInFlight;
+        private final boolean gzip;
+        private final ArrayDeque<Future<List<ByteBuffer>>> inFlight = new ArrayDeque<>();
+
+        private long rows;
+        private int partitions;
+
+        Writer(FileChannel channel, ChunkedBuffer.Pool pool, ExecutorService encoders, int maxInFlight, boolean gzip) {
+            this.channel = channel;
+            this.pool = pool;
+            this.encoders = encoders;
+            this.maxInFlight = maxInFlight;
+            this.gzip = gzip;
+        }
+
+        void submitRows(PartitionEncoder encoder, Product[] partition, int count) {
+            rows += count;
+            partitions++;
+            submit(() -> {
+                ChunkedBuffer out = new ChunkedBuffer(pool);
+                encoder.encode(partition, count, out);
+                return finish(out);
+            });
+        }
+
+        // a header or footer, already encoded on this thread
+        void submitEncoded(ChunkedBuffer out) {
+            submit(() -> finish(out));
+        }
+
+        private void submit(Callable<List<ByteBuffer>> task) {
+            drain(maxInFlight - 1);
+            inFlight.add(encoders.submit(task));
+        }
+
+        private List<ByteBuffer> finish(ChunkedBuffer out) {
+            List<ByteBuffer> chunks = out.finish();
+            if (!gzip) {
+                return chunks;
+            }
+            List<ByteBuffer> compressed = GzipMember.compress(chunks, pool);
+            pool.give(chunks);
+            return compressed;
+        }
+
+        // writes finished partitions, oldest first, until at most keep are still in flight
+        void drain(int keep) {
+            while (inFlight.size() > keep) {
+                List<ByteBuffer> chunks = await(inFlight.poll());
+                try {
+                    write(chunks);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                pool.give(chunks);
+            }
+        }
+
+        private void write(List<ByteBuffer> chunks) throws IOException {
+            ByteBuffer[] buffers = chunks.toArray(new ByteBuffer[0]);
+            int first = 0;
+            while (first < buffers.length) {
+                channel.write(buffers, first, buffers.length - first);
+                while (first < buffers.length && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        }
+
+        private static List<ByteBuffer> await(Future<List<ByteBuffer>> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Export interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+    // ------------------------------------------------------
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "export-encoder-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
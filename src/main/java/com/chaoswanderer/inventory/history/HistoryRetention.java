@@ -0,0 +1,36 @@
+package com.chaoswanderer.inventory.history;
+
+import java.time.Duration;
+
+// bounds how much version history is kept
+//  maxAge               - versions older than this are folded away; as-of queries cannot reach further back
+//  maxVersionsPerProduct - a hot product keeps at most this many versions; the oldest one kept
+//                          then stands in for everything before it
+public class HistoryRetention {
+    private final Duration maxAge;
+    private final int maxVersionsPerProduct;
+
+    public HistoryRetention(Duration maxAge, int maxVersionsPerProduct) {
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("History max age must be positive");
+        }
+        if (maxVersionsPerProduct < 2) {
+            throw new IllegalArgumentException("At least 2 versions per product must be kept");
+        }
+
+        this.maxAge = maxAge;
+        this.maxVersionsPerProduct = maxVersionsPerProduct;
+    }
+
+    public static HistoryRetention defaults() {
+        return new HistoryRetention(Duration.ofDays(30), 256);
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public int getMaxVersionsPerProduct() {
+        return maxVersionsPerProduct;
+    }
+}
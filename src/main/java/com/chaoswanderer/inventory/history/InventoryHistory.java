@@ -0,0 +1,199 @@
+package com.chaoswanderer.inventory.history;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// records every change to an inventory as per-product version chains
+//
+// a product only gets a chain once it changes; until then its live record *is* its history.
+// changes are also indexed by time bucket, so "the whole inventory as of T" is the live inventory
+// with just the products changed since T swapped for their decoded state at T
+//
+// not thread-safe on its own: Inventory calls it under its lock
+public class InventoryHistory implements InventoryListener {
+    private static final long DEFAULT_BUCKET_MILLIS = 60_000;
+    private static final int RETENTION_CHECK_INTERVAL = 4096;
+
+    private final HistoryRetention retention;
+    private final long bucketMillis;
+    private final long startTime;
+
+    private final Map<String, ProductHistory> chains = new HashMap<>();
+    private final TreeMap<Long, Set<String>> changedByBucket = new TreeMap<>();
+    private long horizon;
+    private int changesSinceRetentionCheck;
+
+    public InventoryHistory(HistoryRetention retention) {
+        this(retention, DEFAULT_BUCKET_MILLIS);
+    }
+
+    public InventoryHistory(HistoryRetention retention, long bucketMillis) {
+        this.retention = retention;
+        this.bucketMillis = bucketMillis;
+        this.startTime = System.currentTimeMillis();
+        this.horizon = startTime;
+    }
+
+    // ------------------- Recording -------------------
+    @Override
+    public void productAdded(Product product) {
+        long now = System.currentTimeMillis();
+        ProductHistory chain = chains.get(product.getId());
+
+        if (chain == null) {
+            chain = new ProductHistory(product.getId(), product.getCreatedAt());
+            chains.put(product.getId(), chain);
+        }
+
+        chain.record(product, now);
+        changed(product.getId(), now);
+    }
+
+    @Override
+    public void productUpdated(Product before, Product after) {
+        long now = System.currentTimeMillis();
+        chainFor(before).record(after, now);
+        changed(after.getId(), now);
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        long now = System.currentTimeMillis();
+        chainFor(product).recordRemoval(now);
+        changed(product.getId(), now);
+    }
+
+    // the first change to a product that predates the history seeds its chain with the old state
+    private ProductHistory chainFor(Product before) {
+        ProductHistory chain = chains.get(before.getId());
+
+        if (chain == null) {
+            chain = new ProductHistory(before.getId(), before.getCreatedAt());
+            chain.record(before, startTime);
+            chains.put(before.getId(), chain);
+        }
+
+        return chain;
+    }
+
+    private void changed(String id, long time) {
+        changedByBucket.computeIfAbsent(bucketOf(time), bucket -> new HashSet<>()).add(id);
+
+        ProductHistory chain = chains.get(id);
+        if (chain.getVersionCount() > retention.getMaxVersionsPerProduct() * 3 / 2) {
+            chain.compact(horizon, retention.getMaxVersionsPerProduct());
+        }
+
+        if (++changesSinceRetentionCheck >= RETENTION_CHECK_INTERVAL) {
+            changesSinceRetentionCheck = 0;
+            applyRetention(time);
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Queries -------------------
+    public LocalDateTime getOldestQueryableTime() {
+        return toLocalDateTime(horizon);
+    }
+
+    // the product's state at the given time, or null if it did not exist then
+    // current is the product's live record (null if it no longer exists)
+    public Product getProductAsOf(String id, LocalDateTime time, Product current) {
+        long millis = toMillis(time);
+        checkQueryable(millis);
+
+        ProductHistory chain = chains.get(id);
+        if (chain == null) {
+            return current;
+        }
+
+        return chain.stateAt(millis);
+    }
+
+    // IDs whose state may differ between the given time and now - every other product
+    // looks the same as it does in the live inventory
+    public Set<String> getChangedSince(LocalDateTime time) {
+        long millis = toMillis(time);
+        checkQueryable(millis);
+
+        Set<String> changed = new HashSet<>();
+        for (Set<String> ids : changedByBucket.tailMap(bucketOf(millis), true).values()) {
+            changed.addAll(ids);
+        }
+        return changed;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Statistics -------------------
+    public int getTrackedProductCount() {
+        return chains.size();
+    }
+
+    public long getVersionCount() {
+        long total = 0;
+        for (ProductHistory chain : chains.values()) {
+            total += chain.getVersionCount();
+        }
+        return total;
+    }
+
+    public long getSizeInBytes() {
+        long total = 0;
+        for (ProductHistory chain : chains.values()) {
+            total += chain.getSizeInBytes();
+        }
+        return total;
+    }
+    // ------------------------------------------------------
+
+    // moves the horizon forward and compacts only the chains that changed in the expired buckets
+    private void applyRetention(long now) {
+        long newHorizon = Math.max(startTime, now - retention.getMaxAge().toMillis());
+        if (newHorizon <= horizon) {
+            return;
+        }
+        horizon = newHorizon;
+
+        Set<String> expired = new HashSet<>();
+        Iterator<Map.Entry<Long, Set<String>>> buckets = changedByBucket.headMap(bucketOf(horizon), false).entrySet().iterator();
+        while (buckets.hasNext()) {
+            expired.addAll(buckets.next().getValue());
+            buckets.remove();
+        }
+
+        for (String id : expired) {
+            ProductHistory chain = chains.get(id);
+            if (chain != null && !chain.compact(horizon, retention.getMaxVersionsPerProduct())) {
+                chains.remove(id);
+            }
+        }
+    }
+
+    private void checkQueryable(long millis) {
+        if (millis < horizon) {
+            throw new IllegalArgumentException("History only goes back to " + toLocalDateTime(horizon));
+        }
+    }
+
+    private long bucketOf(long millis) {
+        return millis - Math.floorMod(millis, bucketMillis);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
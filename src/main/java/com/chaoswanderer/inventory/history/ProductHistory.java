@@ -0,0 +1,362 @@
+package com.chaoswanderer.inventory.history;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// version chain of one product, delta-encoded into a byte array
+//
+// entry = [flags:1][time:varint][fields...]
+//  keyframe entries hold the absolute time and every field, so decoding can start at any of them;
+//  other entries hold the time since the previous entry and only the fields that changed
+//  (name as length + UTF-8, quantity and price as zig-zag deltas)
+// a keyframe is written every KEYFRAME_INTERVAL entries and its position remembered,
+// so an as-of lookup decodes at most that many entries
+class ProductHistory {
+    private static final int FLAG_NAME = 1;
+    private static final int FLAG_QUANTITY = 2;
+    private static final int FLAG_PRICE = 4;
+    private static final int FLAG_SCALE = 8;
+    private static final int FLAG_REMOVED = 16;
+    private static final int FLAG_KEYFRAME = 32;
+
+    private static final int KEYFRAME_INTERVAL = 16;
+
+    private final String id;
+    private final LocalDateTime createdAt;
+
+    private byte[] data = new byte[32];
+    private int length;
+    private int versions;
+    private int sinceKeyframe;
+
+    private long[] keyframeTimes = new long[2];
+    private int[] keyframeOffsets = new int[2];
+    private int keyframeCount;
+
+    // the last state written, which deltas are taken against
+    private final State last = new State();
+
+    // a product state while decoding or encoding
+    static class State {
+        long time;
+        String name;
+        int quantity;
+        long unscaledPrice;
+        int scale;
+        boolean exists;
+
+        void set(Product product, long time) {
+            this.time = time;
+            this.name = product.getName();
+            this.quantity = product.getQuantity();
+            this.unscaledPrice = product.getPrice().unscaledValue().longValue();
+            this.scale = product.getPrice().scale();
+            this.exists = true;
+        }
+
+        State copy() {
+            State copy = new State();
+            copy.time = time;
+            copy.name = name;
+            copy.quantity = quantity;
+            copy.unscaledPrice = unscaledPrice;
+            copy.scale = scale;
+            copy.exists = exists;
+            return copy;
+        }
+    }
+
+    ProductHistory(String id, LocalDateTime createdAt) {
+        this.id = id;
+        this.createdAt = createdAt;
+    }
+
+    int getVersionCount() {
+        return versions;
+    }
+
+    int getSizeInBytes() {
+        return length + keyframeCount * 12;
+    }
+
+    long getFirstTime() {
+        return keyframeCount == 0 ? Long.MAX_VALUE : keyframeTimes[0];
+    }
+
+    boolean isRemoved() {
+        return versions > 0 && !last.exists;
+    }
+
+    void record(Product product, long time) {
+        State next = new State();
+        next.set(product, Math.max(time, last.time));
+        append(next);
+    }
+
+    void recordRemoval(long time) {
+        State next = last.copy();
+        next.time = Math.max(time, last.time);
+        next.exists = false;
+        append(next);
+    }
+
+    // the product as it was at the given time, or null if it did not exist (or is older than the chain)
+    Product stateAt(long time) {
+        State state = decodeAt(time);
+        if (state == null || !state.exists) {
+            return null;
+        }
+
+        return toProduct(state);
+    }
+
+    // drops versions older than the horizon (keeping the state in force at the horizon)
+    // and versions beyond the per-product cap; returns false if the chain can be dropped entirely
+    boolean compact(long horizon, int maxVersions) {
+        List<State> states = decodeAll();
+        List<State> kept = new ArrayList<>();
+
+        for (State state : states) {
+            if (state.time <= horizon && !kept.isEmpty()) {
+                kept.set(0, state);
+            } else {
+                kept.add(state);
+            }
+        }
+
+        if (kept.size() > maxVersions) {
+            long start = kept.get(0).time;
+            kept = new ArrayList<>(kept.subList(kept.size() - maxVersions, kept.size()));
+            kept.get(0).time = start;
+        }
+
+        // a single state older than the horizon says nothing the live inventory doesn't:
+        // the product is either unchanged since then or long gone
+        if (kept.size() == 1 && kept.get(0).time <= horizon) {
+            return false;
+        }
+
+        reset();
+        for (State state : kept) {
+            append(state);
+        }
+        return true;
+    }
+
+    // ------------------- Encoding -------------------
+    private void append(State next) {
+        boolean keyframe = versions == 0 || sinceKeyframe >= KEYFRAME_INTERVAL || (next.exists && !last.exists);
+        int entryStart = length;
+
+        if (keyframe) {
+            int flags = FLAG_KEYFRAME | (next.exists ? 0 : FLAG_REMOVED);
+            writeByte(flags);
+            writeVarLong(next.time);
+            writeString(next.name);
+            writeVarLong(zigZag(next.quantity));
+            writeVarLong(zigZag(next.unscaledPrice));
+            writeByte(next.scale);
+            addKeyframe(next.time, entryStart);
+            sinceKeyframe = 0;
+        } else {
+            int flags = 0;
+            if (!next.exists) flags |= FLAG_REMOVED;
+            if (!next.name.equals(last.name)) flags |= FLAG_NAME;
+            if (next.quantity != last.quantity) flags |= FLAG_QUANTITY;
+            if (next.unscaledPrice != last.unscaledPrice) flags |= FLAG_PRICE;
+            if (next.scale != last.scale) flags |= FLAG_SCALE;
+
+            writeByte(flags);
+            writeVarLong(next.time - last.time);
+            if ((flags & FLAG_NAME) != 0) writeString(next.name);
+            if ((flags & FLAG_QUANTITY) != 0) writeVarLong(zigZag((long) next.quantity - last.quantity));
+            if ((flags & FLAG_PRICE) != 0) writeVarLong(zigZag(next.unscaledPrice - last.unscaledPrice));
+            if ((flags & FLAG_SCALE) != 0) writeByte(next.scale);
+            sinceKeyframe++;
+        }
+
+        last.time = next.time;
+        last.name = next.name;
+        last.quantity = next.quantity;
+        last.unscaledPrice = next.unscaledPrice;
+        last.scale = next.scale;
+        last.exists = next.exists;
+        versions++;
+    }
+
+    private void reset() {
+        length = 0;
+        versions = 0;
+        sinceKeyframe = 0;
+        keyframeCount = 0;
+        last.time = Long.MIN_VALUE;
+        last.exists = false;
+    }
+
+    private void addKeyframe(long time, int offset) {
+        if (keyframeCount == keyframeTimes.length) {
+            keyframeTimes = Arrays.copyOf(keyframeTimes, keyframeCount * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+        }
+        keyframeTimes[keyframeCount] = time;
+        keyframeOffsets[keyframeCount] = offset;
+        keyframeCount++;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+        }
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        data[length++] = (byte) value;
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, data, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Decoding -------------------
+    private State decodeAt(long time) {
+        // last keyframe at or before the requested time
+        int low = 0;
+        int high = keyframeCount - 1;
+        int keyframe = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keyframeTimes[mid] <= time) {
+                keyframe = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (keyframe < 0) {
+            return null;
+        }
+
+        Decoder decoder = new Decoder(keyframeOffsets[keyframe]);
+        State state = new State();
+        decoder.next(state);
+
+        while (decoder.hasNext() && decoder.peekTime(state) <= time) {
+            decoder.next(state);
+        }
+
+        return state;
+    }
+
+    private List<State> decodeAll() {
+        List<State> states = new ArrayList<>(versions);
+        Decoder decoder = new Decoder(0);
+        State state = new State();
+
+        while (decoder.hasNext()) {
+            decoder.next(state);
+            states.add(state.copy());
+        }
+
+        return states;
+    }
+
+    private Product toProduct(State state) {
+        LocalDateTime updatedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(state.time), ZoneId.systemDefault());
+        BigDecimal price = new BigDecimal(BigInteger.valueOf(state.unscaledPrice), state.scale);
+        return new Product(id, state.name, state.quantity, price, createdAt, updatedAt);
+    }
+
+    private class Decoder {
+        private int position;
+
+        Decoder(int position) {
+            this.position = position;
+        }
+
+        boolean hasNext() {
+            return position < length;
+        }
+
+        // time of the next entry without consuming it
+        long peekTime(State current) {
+            int saved = position;
+            int flags = data[position++] & 0xFF;
+            long value = readVarLong();
+            position = saved;
+            return (flags & FLAG_KEYFRAME) != 0 ? value : current.time + value;
+        }
+
+        void next(State state) {
+            int flags = data[position++] & 0xFF;
+            state.exists = (flags & FLAG_REMOVED) == 0;
+
+            if ((flags & FLAG_KEYFRAME) != 0) {
+                state.time = readVarLong();
+                state.name = readString();
+                state.quantity = (int) unZigZag(readVarLong());
+                state.unscaledPrice = unZigZag(readVarLong());
+                state.scale = data[position++];
+                return;
+            }
+
+            state.time += readVarLong();
+            if ((flags & FLAG_NAME) != 0) state.name = readString();
+            if ((flags & FLAG_QUANTITY) != 0) state.quantity += (int) unZigZag(readVarLong());
+            if ((flags & FLAG_PRICE) != 0) state.unscaledPrice += unZigZag(readVarLong());
+            if ((flags & FLAG_SCALE) != 0) state.scale = data[position++];
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private String readString() {
+            int size = (int) readVarLong();
+            String value = new String(data, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+    }
+    // ------------------------------------------------------
+}
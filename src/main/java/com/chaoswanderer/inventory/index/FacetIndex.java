@@ -0,0 +1,183 @@
+package com.chaoswanderer.inventory.index;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// inverted index from attribute values to the products carrying them, one compressed bitmap per
+// (attribute, value) over dense product ordinals; facet queries are bitmap AND/OR/ANDNOT and
+// facet counts are intersection sizes, so neither touches the products themselves
+//
+// ordinals of removed products are reused, which keeps the bitmaps dense (and mostly in bitmap
+// containers) on a large catalog
+public class FacetIndex implements InventoryListener {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Map<String, RoaringBitmap>> postings = new TreeMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<Integer> freeOrdinals = new ArrayList<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private int ordinalLimit;
+
+    // ------------------- Inventory events -------------------
+    @Override
+    public synchronized void productAdded(Product product) {
+        int ordinal = assignOrdinal(product.getId());
+        all.add(ordinal);
+        index(ordinal, product.getAttributes(), true);
+    }
+
+    @Override
+    public synchronized void productUpdated(Product before, Product after) {
+        Integer ordinal = ordinals.get(after.getId());
+        if (ordinal == null) {
+            productAdded(after);
+            return;
+        }
+
+        Map<String, Set<String>> oldAttributes = before == null ? Collections.emptyMap() : before.getAttributes();
+        Map<String, Set<String>> newAttributes = after.getAttributes();
+        if (oldAttributes.equals(newAttributes)) {
+            return;
+        }
+
+        index(ordinal, oldAttributes, false);
+        index(ordinal, newAttributes, true);
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        Integer ordinal = ordinals.remove(product.getId());
+        if (ordinal == null) {
+            return;
+        }
+
+        index(ordinal, product.getAttributes(), false);
+        all.remove(ordinal);
+        ids[ordinal] = null;
+        freeOrdinals.add(ordinal);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Queries -------------------
+    public synchronized RoaringBitmap evaluate(FacetQuery query) {
+        return query.evaluateDetached(this);
+    }
+
+    // product IDs of the matching ordinals, in ordinal order
+    public synchronized List<String> getIds(RoaringBitmap matches) {
+        List<String> result = new ArrayList<>((int) matches.cardinality());
+        matches.forEach(ordinal -> result.add(ids[ordinal]));
+        return result;
+    }
+
+    // value -> number of matches carrying it, most common first; values with no matches are left out
+    public synchronized Map<String, Long> getFacetCounts(RoaringBitmap matches, String attribute) {
+        Map<String, RoaringBitmap> values = postings.getOrDefault(attribute, Collections.emptyMap());
+        List<Map.Entry<String, Long>> counts = new ArrayList<>(values.size());
+
+        for (Map.Entry<String, RoaringBitmap> entry : values.entrySet()) {
+            long count = RoaringBitmap.andCardinality(matches, entry.getValue());
+            if (count > 0) {
+                counts.add(Map.entry(entry.getKey(), count));
+            }
+        }
+
+        counts.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : counts) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    public synchronized List<String> getAttributeNames() {
+        return new ArrayList<>(postings.keySet());
+    }
+
+    public synchronized long getProductCount() {
+        return all.cardinality();
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Used by FacetQuery (caller holds the lock) -------------------
+    RoaringBitmap getAll() {
+        return all;
+    }
+
+    RoaringBitmap getPostings(String attribute, String value) {
+        RoaringBitmap bitmap = postings.getOrDefault(attribute, Collections.emptyMap()).get(value);
+        return bitmap == null ? new RoaringBitmap() : bitmap;
+    }
+
+    // a bare value matches it under any attribute (e.g. "dairy" as a category or a tag)
+    RoaringBitmap getPostingsAnyAttribute(String value) {
+        RoaringBitmap result = null;
+        for (Map<String, RoaringBitmap> values : postings.values()) {
+            RoaringBitmap bitmap = values.get(value);
+            if (bitmap != null) {
+                // usually only one attribute has the value - no need to copy its bitmap then
+                result = result == null ? bitmap : RoaringBitmap.or(result, bitmap);
+            }
+        }
+        return result == null ? new RoaringBitmap() : result;
+    }
+    // ------------------------------------------------------
+
+    private void index(int ordinal, Map<String, Set<String>> attributes, boolean add) {
+        for (Map.Entry<String, Set<String>> entry : attributes.entrySet()) {
+            Map<String, RoaringBitmap> values = postings.computeIfAbsent(entry.getKey(), key -> new TreeMap<>());
+
+            for (String value : entry.getValue()) {
+                if (add) {
+                    values.computeIfAbsent(value, key -> new RoaringBitmap()).add(ordinal);
+                    continue;
+                }
+
+                RoaringBitmap bitmap = values.get(value);
+                if (bitmap != null) {
+                    bitmap.remove(ordinal);
+                    if (bitmap.isEmpty()) {
+                        values.remove(value);
+                    }
+                }
+            }
+
+            if (values.isEmpty()) {
+                postings.remove(entry.getKey());
+            }
+        }
+    }
+
+    private int assignOrdinal(String id) {
+        Integer existing = ordinals.get(id);
+        if (existing != null) {
+            return existing;
+        }
+
+        int ordinal;
+        if (!freeOrdinals.isEmpty()) {
+            ordinal = freeOrdinals.remove(freeOrdinals.size() - 1);
+        } else {
+            ordinal = ordinalLimit++;
+            if (ordinal == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+        }
+
+        ordinals.put(id, ordinal);
+        ids[ordinal] = id;
+        return ordinal;
+    }
+}
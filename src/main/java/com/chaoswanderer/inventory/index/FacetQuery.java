@@ -0,0 +1,304 @@
+package com.chaoswanderer.inventory.index;
+
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// a boolean filter over attribute values, e.g.  dairy AND brand=acme AND NOT tag=discontinued
+//
+//   query := and ( OR and )*          (AND binds tighter than OR)
+//   and   := unary ( AND unary )*
+//   unary := NOT unary | ( query ) | name=value | value
+//
+// a bare value matches under any attribute; values with spaces can be quoted ("whole milk")
+public abstract class FacetQuery {
+
+    // may return one of the index's own bitmaps - see evaluateDetached
+    abstract RoaringBitmap evaluate(FacetIndex index);
+
+    // a result the caller may keep after the index changes
+    final RoaringBitmap evaluateDetached(FacetIndex index) {
+        RoaringBitmap result = evaluate(index);
+        return this instanceof Term || this instanceof All ? result.copy() : result;
+    }
+
+    // ------------------- Building -------------------
+    public static FacetQuery all() {
+        return new All();
+    }
+
+    public static FacetQuery term(String attribute, String value) {
+        return new Term(InventoryUtils.sanitizeString(attribute), InventoryUtils.sanitizeString(value));
+    }
+
+    public static FacetQuery anyAttribute(String value) {
+        return new Term(null, InventoryUtils.sanitizeString(value));
+    }
+
+    public static FacetQuery and(FacetQuery... operands) {
+        return new And(Arrays.asList(operands));
+    }
+
+    public static FacetQuery or(FacetQuery... operands) {
+        return new Or(Arrays.asList(operands));
+    }
+
+    public static FacetQuery not(FacetQuery operand) {
+        return new Not(operand);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Parsing -------------------
+    public static FacetQuery parse(String text) {
+        Parser parser = new Parser(tokenize(text));
+        FacetQuery query = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "' in facet query");
+        }
+        return query;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+
+        while (i < text.length()) {
+            char c = text.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == '=') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated quote in facet query");
+                }
+                // marked so a quoted "and" stays a value
+                tokens.add("\"" + text.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                        && "()=\"".indexOf(text.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(text.substring(start, i));
+            }
+        }
+
+        return tokens;
+    }
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        FacetQuery parseOr() {
+            List<FacetQuery> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (accept("or")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        FacetQuery parseAnd() {
+            List<FacetQuery> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (accept("and")) {
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        FacetQuery parseUnary() {
+            if (accept("not")) {
+                return new Not(parseUnary());
+            }
+
+            if (accept("(")) {
+                FacetQuery query = parseOr();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("Missing ')' in facet query");
+                }
+                return query;
+            }
+
+            String value = nextValue();
+            if (accept("=")) {
+                return term(value, nextValue());
+            }
+            return anyAttribute(value);
+        }
+
+        private String nextValue() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Facet query ends too early");
+            }
+
+            String token = tokens.get(position++);
+            if (token.startsWith("\"")) {
+                return token.substring(1);
+            }
+            if (token.equals("(") || token.equals(")") || token.equals("=")) {
+                throw new IllegalArgumentException("Unexpected '" + token + "' in facet query");
+            }
+            return token;
+        }
+
+        private boolean accept(String keyword) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Nodes -------------------
+    private static final class All extends FacetQuery {
+        @Override
+        RoaringBitmap evaluate(FacetIndex index) {
+            return index.getAll();
+        }
+
+        @Override
+        public String toString() {
+            return "ALL";
+        }
+    }
+
+    private static final class Term extends FacetQuery {
+        private final String attribute; // null for any attribute
+        private final String value;
+
+        Term(String attribute, String value) {
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        @Override
+        RoaringBitmap evaluate(FacetIndex index) {
+            return attribute == null ? index.getPostingsAnyAttribute(value) : index.getPostings(attribute, value);
+        }
+
+        @Override
+        public String toString() {
+            return attribute == null ? quote(value) : attribute + "=" + quote(value);
+        }
+    }
+
+    private static final class And extends FacetQuery {
+        private final List<FacetQuery> operands;
+
+        And(List<FacetQuery> operands) {
+            this.operands = operands;
+        }
+
+        // intersects the positive operands smallest first, then subtracts the negated ones -
+        // NOT only needs the full product set when nothing positive narrows the result
+        @Override
+        RoaringBitmap evaluate(FacetIndex index) {
+            List<RoaringBitmap> positives = new ArrayList<>();
+            List<RoaringBitmap> negatives = new ArrayList<>();
+
+            for (FacetQuery operand : operands) {
+                if (operand instanceof Not not) {
+                    negatives.add(not.operand.evaluate(index));
+                } else {
+                    positives.add(operand.evaluate(index));
+                }
+            }
+
+            positives.sort(Comparator.comparingLong(RoaringBitmap::cardinality));
+
+            RoaringBitmap result = positives.isEmpty() ? index.getAll() : positives.get(0);
+            for (int i = 1; i < positives.size() && !result.isEmpty(); i++) {
+                result = RoaringBitmap.and(result, positives.get(i));
+            }
+            for (RoaringBitmap negative : negatives) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                result = RoaringBitmap.andNot(result, negative);
+            }
+
+            // never hand out the index's own bitmaps
+            if (result.isEmpty()) {
+                return new RoaringBitmap();
+            }
+            return positives.size() == 1 && negatives.isEmpty() ? result.copy() : result;
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " AND ");
+        }
+    }
+
+    private static final class Or extends FacetQuery {
+        private final List<FacetQuery> operands;
+
+        Or(List<FacetQuery> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        RoaringBitmap evaluate(FacetIndex index) {
+            RoaringBitmap result = new RoaringBitmap();
+            for (FacetQuery operand : operands) {
+                result = RoaringBitmap.or(result, operand.evaluate(index));
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " OR ");
+        }
+    }
+
+    private static final class Not extends FacetQuery {
+        private final FacetQuery operand;
+
+        Not(FacetQuery operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        RoaringBitmap evaluate(FacetIndex index) {
+            return RoaringBitmap.andNot(index.getAll(), operand.evaluate(index));
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+    // ------------------------------------------------------
+
+    private static String join(List<FacetQuery> operands, String separator) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) {
+                text.append(separator);
+            }
+            text.append(operands.get(i));
+        }
+        return text.append(")").toString();
+    }
+
+    private static String quote(String value) {
+        return value.indexOf(' ') >= 0 ? "\"" + value + "\"" : value;
+    }
+}
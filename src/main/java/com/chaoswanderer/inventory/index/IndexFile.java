@@ -0,0 +1,229 @@
+package com.chaoswanderer.inventory.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+// a SearchIndex saved next to the data file, so start-up can read it back instead of rebuilding it: the file
+// is mapped and decoded in one sequential pass into the usual heap arrays, with no tokenizing or sorting
+//
+//   header (64 bytes): magic, version, product count, body length, CRC-32C of the body,
+//                      data file generation (size, modified time)
+//   body:              per product (by ordinal): id, name, price as length-prefixed UTF-8
+//                      the id, name and price orderings: product count ordinals each
+//                      the id and name trigrams: key count, then per key the trigram, posting count, ordinals
+//
+// the index is only used if the header matches the data file being loaded and the body checksum holds;
+// anything else (an edited or restored data file, a torn write) falls back to a rebuild
+public final class IndexFile {
+    private static final long MAGIC = 0x494e56494458L; // "INVIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    private IndexFile() {
+    }
+
+    // identifies one version of the data file the index was built from
+    public static final class Generation {
+        private final long size;
+        private final long modifiedMillis;
+
+        private Generation(long size, long modifiedMillis) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        public static Generation of(Path dataFile) throws IOException {
+            return new Generation(Files.size(dataFile), Files.getLastModifiedTime(dataFile).toMillis());
+        }
+
+        boolean matches(long size, long modifiedMillis) {
+            return this.size == size && this.modifiedMillis == modifiedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return size + " bytes, modified " + modifiedMillis;
+        }
+    }
+
+    // ------------------- Writing -------------------
+    // writes the index to a temporary file next to path, header left blank; call it while the inventory's
+    // read lock is held, so the index matches the data file saved alongside. Compacts the index first.
+    public static Path writeBody(Path path, SearchIndex index) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+
+        synchronized (index) {
+            index.compact();
+            int count = index.getProductCount();
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.position(HEADER_BYTES);
+                OutputStream body = new CheckedOutputStream(Channels.newOutputStream(channel), crc);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(body, 1 << 16));
+
+                out.writeInt(count);
+                for (int o = 0; o < count; o++) {
+                    writeString(out, index.idAt(o));
+                    writeString(out, index.nameAt(o));
+                    writeString(out, index.priceAt(o).toPlainString());
+                }
+                for (int f = 0; f < SearchIndex.ORDERED_FIELDS.length; f++) {
+                    for (int ordinal : index.orderOf(f)) {
+                        out.writeInt(ordinal);
+                    }
+                }
+                writeGrams(out, index.idGrams());
+                writeGrams(out, index.nameGrams());
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putLong(MAGIC).putInt(VERSION).putInt(count)
+                        .putLong(channel.position() - HEADER_BYTES).putLong(crc.getValue());
+                header.clear();
+                channel.write(header, 0);
+            }
+        }
+        return temp;
+    }
+
+    // stamps the generation of the data file that was just saved and moves the index into place
+    public static void commit(Path temp, Path path, Generation dataFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer generation = ByteBuffer.allocate(16);
+            generation.putLong(dataFile.size).putLong(dataFile.modifiedMillis).flip();
+            channel.write(generation, 32);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeGrams(DataOutputStream out, Map<Long, SearchIndex.Postings> grams) throws IOException {
+        out.writeInt(grams.size());
+        for (Map.Entry<Long, SearchIndex.Postings> entry : grams.entrySet()) {
+            SearchIndex.Postings postings = entry.getValue();
+            out.writeLong(entry.getKey());
+            out.writeInt(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                out.writeInt(postings.values[i]);
+            }
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Reading -------------------
+    // reads the saved index; null (with the reason printed) if it is missing, damaged or was saved with a
+    // different version of the data file
+    public static SearchIndex load(Path path, Generation dataFile) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                return reject(path, "unexpected size");
+            }
+
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (map.getLong(0) != MAGIC || map.getInt(8) != VERSION) {
+                return reject(path, "not an index file of this version");
+            }
+            if (!dataFile.matches(map.getLong(32), map.getLong(40))) {
+                return reject(path, "saved with a different version of the data file");
+            }
+            long bodyLength = map.getLong(16);
+            if (bodyLength != size - HEADER_BYTES) {
+                return reject(path, "truncated");
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(map.slice(HEADER_BYTES, (int) bodyLength));
+            if (crc.getValue() != map.getLong(24)) {
+                return reject(path, "checksum mismatch");
+            }
+
+            ByteBuffer body = map.slice(HEADER_BYTES, (int) bodyLength);
+            return decode(body, map.getInt(12));
+        } catch (IOException | RuntimeException e) {
+            return reject(path, e.getMessage());
+        }
+    }
+
+    private static SearchIndex decode(ByteBuffer body, int expectedCount) {
+        int count = body.getInt();
+        if (count != expectedCount) {
+            throw new IllegalStateException("product count mismatch");
+        }
+
+        String[] ids = new String[count];
+        String[] names = new String[count];
+        BigDecimal[] prices = new BigDecimal[count];
+        for (int o = 0; o < count; o++) {
+            ids[o] = readString(body);
+            names[o] = readString(body);
+            prices[o] = new BigDecimal(readString(body));
+        }
+
+        int[][] orders = new int[SearchIndex.ORDERED_FIELDS.length][];
+        for (int f = 0; f < orders.length; f++) {
+            orders[f] = readInts(body, count);
+        }
+
+        Map<Long, SearchIndex.Postings> idGrams = readGrams(body);
+        Map<Long, SearchIndex.Postings> nameGrams = readGrams(body);
+        return new SearchIndex(ids, names, prices, orders, idGrams, nameGrams);
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readInts(ByteBuffer body, int count) {
+        int[] values = new int[count];
+        body.asIntBuffer().get(values);
+        body.position(body.position() + 4 * count);
+        return values;
+    }
+
+    private static Map<Long, SearchIndex.Postings> readGrams(ByteBuffer body) {
+        int keys = body.getInt();
+        Map<Long, SearchIndex.Postings> grams = new HashMap<>(Math.max(16, keys * 4 / 3));
+        for (int i = 0; i < keys; i++) {
+            long key = body.getLong();
+            grams.put(key, new SearchIndex.Postings(readInts(body, body.getInt())));
+        }
+        return grams;
+    }
+
+    private static SearchIndex reject(Path path, String reason) {
+        System.out.println("Not using index '" + path + "' (" + reason + ") - rebuilding");
+        return null;
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,564 @@
+package com.chaoswanderer.inventory.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// compressed bitmap of non-negative ints in the style of Roaring:
+// values are split by their high 16 bits into chunks, and each chunk is stored either as a
+// sorted char array (sparse, up to 4096 values) or as a 65536-bit bitmap (dense)
+public class RoaringBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public RoaringBitmap() {
+    }
+
+    // [0, end)
+    public static RoaringBitmap range(int end) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value = 0; value < end; value++) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public void add(int value) {
+        char high = (char) (value >>> 16);
+        int index = search(high);
+
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, high, new ArrayContainer());
+        }
+
+        containers[index] = containers[index].add((char) value);
+    }
+
+    public void remove(int value) {
+        int index = search((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+
+        Container container = containers[index].remove((char) value);
+        if (container.cardinality() == 0) {
+            delete(index);
+        } else {
+            containers[index] = container;
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = search((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public long cardinality() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[(int) cardinality()];
+        int[] position = {0};
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, keys.length);
+        copy.containers = new Container[containers.length];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    // ------------------- Set operations -------------------
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+
+        while (i < a.size || j < b.size) {
+            if (j >= b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.append(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i >= a.size || a.keys[i] > b.keys[j]) {
+                result.append(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.append(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+
+            Container container = j < b.size && b.keys[j] == a.keys[i]
+                    ? a.containers[i].andNot(b.containers[j])
+                    : a.containers[i].copy();
+
+            if (container.cardinality() > 0) {
+                result.append(a.keys[i], container);
+            }
+        }
+
+        return result;
+    }
+
+    // |a AND b| without building the intersection - used for facet counts
+    public static long andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        long total = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                total += a.containers[i].andCardinality(b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+
+        return total;
+    }
+    // ------------------------------------------------------
+
+    private int search(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void append(char key, Container container) {
+        insert(size, key, container);
+    }
+
+    private void delete(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    // ------------------- Containers -------------------
+    private abstract static class Container {
+        // add/remove may return a different container when the representation switches
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract Container copy();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract int andCardinality(Container other);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+
+            if (cardinality >= ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                long[] words = ((BitmapContainer) other).words;
+                for (int i = 0; i < cardinality; i++) {
+                    char value = values[i];
+                    if ((words[value >>> 6] & (1L << value)) != 0) {
+                        result[count++] = value;
+                    }
+                }
+            }
+
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+
+            while (i < cardinality || j < array.cardinality) {
+                if (j >= array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i >= cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+
+            ArrayContainer merged = new ArrayContainer(result, count);
+            return count > ARRAY_LIMIT ? merged.toBitmap() : merged;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            if (other instanceof ArrayContainer array) {
+                char[] result = new char[cardinality];
+                int count = 0;
+                int j = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    while (j < array.cardinality && array.values[j] < values[i]) {
+                        j++;
+                    }
+                    if (j >= array.cardinality || array.values[j] != values[i]) {
+                        result[count++] = values[i];
+                    }
+                }
+                return new ArrayContainer(result, count);
+            }
+
+            long[] words = ((BitmapContainer) other).words;
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                char value = values[i];
+                if ((words[value >>> 6] & (1L << value)) == 0) {
+                    result[count++] = value;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return and(other).cardinality();
+            }
+
+            long[] words = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                char value = values[i];
+                count += (int) (words[value >>> 6] >>> value) & 1;
+            }
+            return count;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            words[value >>> 6] = after;
+            if (before != after) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            words[value >>> 6] = after;
+            if (before != after) {
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] & otherWords[w];
+                count += Long.bitCount(result[w]);
+            }
+            return shrink(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+
+            if (other instanceof BitmapContainer bitmap) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] |= bitmap.words[w];
+                }
+            } else {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    result[value >>> 6] |= 1L << value;
+                }
+            }
+
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+
+            if (other instanceof BitmapContainer bitmap) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] &= ~bitmap.words[w];
+                }
+            } else {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    result[value >>> 6] &= ~(1L << value);
+                }
+            }
+
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            return shrink(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(words[w] & otherWords[w]);
+            }
+            return count;
+        }
+
+        private Container toArray() {
+            char[] values = new char[cardinality];
+            int[] count = {0};
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+
+        private static Container shrink(long[] words, int cardinality) {
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality <= ARRAY_LIMIT ? bitmap.toArray() : bitmap;
+        }
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,497 @@
+package com.chaoswanderer.inventory.index;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.util.SortField;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// secondary indexes for search and sort, over dense product ordinals:
+//   - the catalog ordered by id, by name and by price (ordinal arrays)
+//   - trigram indexes over the lower-cased ids and names for substring search: the posting lists of a
+//     query's trigrams are intersected, and each remaining candidate is checked against the text
+//
+// ordinals are not reused while the index is live: a product whose name or price changes moves to a fresh
+// ordinal at the end, so posting lists stay sorted by appending and an ordering only has to sort the new
+// ordinals and merge them in. Retired ordinals are dropped by compact(), before saving (IndexFile) or once
+// they outnumber the live ones.
+public class SearchIndex implements InventoryListener {
+    public static final int GRAM_LENGTH = 3;
+    static final SortField[] ORDERED_FIELDS = {SortField.ID, SortField.NAME, SortField.PRICE};
+    private static final int CHUNK_SIZE = 16_384;
+    private static final int MIN_COMPACT = 1024;
+
+    // by ordinal; ids[o] is null once the ordinal is retired
+    private String[] ids;
+    private String[] names;
+    private BigDecimal[] prices;
+    private int count;
+    private int retired;
+
+    private final Map<String, Integer> ordinals;
+    private Map<Long, Postings> idGrams;
+    private Map<Long, Postings> nameGrams;
+
+    // per ordered field: ordinals below orderedLimit[f] are in orders[f]; those above are merged in on use
+    private final int[][] orders = new int[ORDERED_FIELDS.length][];
+    private final int[] orderedLimit = new int[ORDERED_FIELDS.length];
+
+    private SearchIndex(int capacity) {
+        this.ids = new String[Math.max(16, capacity)];
+        this.names = new String[ids.length];
+        this.prices = new BigDecimal[ids.length];
+        this.ordinals = new HashMap<>(Math.max(16, capacity * 4 / 3));
+        this.idGrams = new HashMap<>();
+        this.nameGrams = new HashMap<>();
+    }
+
+    // as read back by IndexFile: every ordinal live, orderings complete
+    SearchIndex(String[] ids, String[] names, BigDecimal[] prices, int[][] orders,
+                Map<Long, Postings> idGrams, Map<Long, Postings> nameGrams) {
+        this(ids.length);
+        this.count = ids.length;
+        System.arraycopy(ids, 0, this.ids, 0, count);
+        System.arraycopy(names, 0, this.names, 0, count);
+        System.arraycopy(prices, 0, this.prices, 0, count);
+        for (int o = 0; o < count; o++) {
+            ordinals.put(ids[o], o);
+        }
+        for (int f = 0; f < ORDERED_FIELDS.length; f++) {
+            this.orders[f] = orders[f];
+            this.orderedLimit[f] = count;
+        }
+        this.idGrams = idGrams;
+        this.nameGrams = nameGrams;
+    }
+
+    // ------------------- Parallel build -------------------
+    // indexes the products from scratch: the columns, the three sorts and the trigram postings are each
+    // spread over the common fork-join pool
+    public static SearchIndex build(List<Product> products) {
+        int n = products.size();
+        SearchIndex index = new SearchIndex(n);
+
+        IntStream.range(0, n).parallel().forEach(o -> {
+            Product product = products.get(o);
+            index.ids[o] = product.getId();
+            index.names[o] = product.getName();
+            index.prices[o] = product.getPrice();
+        });
+        index.count = n;
+        for (int o = 0; o < n; o++) {
+            index.ordinals.put(index.ids[o], o);
+        }
+
+        List<CompletableFuture<Void>> sorts = new ArrayList<>();
+        for (int f = 0; f < ORDERED_FIELDS.length; f++) {
+            int field = f;
+            sorts.add(CompletableFuture.runAsync(() -> {
+                index.orders[field] = index.sortOrdinals(IntStream.range(0, n).toArray(), field);
+                index.orderedLimit[field] = n;
+            }));
+        }
+        CompletableFuture<Map<Long, Postings>> idGrams = CompletableFuture.supplyAsync(() -> buildGrams(index.ids, n));
+        index.nameGrams = buildGrams(index.names, n);
+        index.idGrams = idGrams.join();
+        sorts.forEach(CompletableFuture::join);
+        return index;
+    }
+
+    // chunks are indexed in parallel and merged in ordinal order, so every posting list comes out ascending
+    private static Map<Long, Postings> buildGrams(String[] values, int n) {
+        int chunks = Math.max(1, Math.min((n + CHUNK_SIZE - 1) / CHUNK_SIZE, ForkJoinPool.getCommonPoolParallelism() * 4));
+        int perChunk = (n + chunks - 1) / chunks;
+
+        List<Map<Long, Postings>> parts = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            Map<Long, Postings> part = new HashMap<>();
+            for (int o = c * perChunk; o < Math.min(n, (c + 1) * perChunk); o++) {
+                addGrams(part, values[o].toLowerCase(), o);
+            }
+            return part;
+        }).toList();
+
+        Map<Long, Postings> grams = parts.get(0);
+        for (int c = 1; c < parts.size(); c++) {
+            for (Map.Entry<Long, Postings> entry : parts.get(c).entrySet()) {
+                grams.computeIfAbsent(entry.getKey(), key -> new Postings()).addAll(entry.getValue());
+            }
+        }
+        return grams;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Inventory events -------------------
+    @Override
+    public synchronized void productAdded(Product product) {
+        add(product);
+    }
+
+    @Override
+    public synchronized void productUpdated(Product before, Product after) {
+        Integer ordinal = ordinals.get(after.getId());
+        if (ordinal == null) {
+            add(after);
+        } else if (!names[ordinal].equals(after.getName()) || prices[ordinal].compareTo(after.getPrice()) != 0) {
+            retire(ordinal);
+            add(after);
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        Integer ordinal = ordinals.get(product.getId());
+        if (ordinal != null) {
+            retire(ordinal);
+            ordinals.remove(product.getId());
+        }
+    }
+    // ------------------------------------------------------
+
+    private void add(Product product) {
+        if (count == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+        }
+
+        int ordinal = count++;
+        ids[ordinal] = product.getId();
+        names[ordinal] = product.getName();
+        prices[ordinal] = product.getPrice();
+        ordinals.put(product.getId(), ordinal);
+        addGrams(idGrams, product.getId().toLowerCase(), ordinal);
+        addGrams(nameGrams, product.getName().toLowerCase(), ordinal);
+    }
+
+    private void retire(int ordinal) {
+        ids[ordinal] = null;
+        names[ordinal] = null;
+        prices[ordinal] = null;
+        retired++;
+        if (retired > MIN_COMPACT && retired > count / 2) {
+            compact();
+        }
+    }
+
+    // ------------------- Substring search -------------------
+    // ids of the products whose lower-cased id contains the (lower-case) text, in ordinal order
+    public synchronized List<String> searchIds(String text) {
+        return search(idGrams, true, text);
+    }
+
+    // ids of the products whose lower-cased name contains the (lower-case) text, in ordinal order
+    public synchronized List<String> searchNames(String text) {
+        return search(nameGrams, false, text);
+    }
+
+    // lower-casing per check is cheap next to the lookup (toLowerCase returns the string itself when it
+    // has no upper case) and saves keeping a lower-cased copy of every name
+    private List<String> search(Map<Long, Postings> grams, boolean isId, String text) {
+        String[] values = isId ? ids : names;
+        List<String> matches = new ArrayList<>();
+
+        // too short for a trigram: check every live product, still cheaper than going through the store
+        if (text.length() < GRAM_LENGTH) {
+            for (int o = 0; o < count; o++) {
+                if (ids[o] != null && values[o].toLowerCase().contains(text)) {
+                    matches.add(ids[o]);
+                }
+            }
+            return matches;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            Postings postings = grams.get(gram(text, i));
+            if (postings == null) {
+                return matches;
+            }
+            if (!lists.contains(postings)) {
+                lists.add(postings);
+            }
+        }
+        lists.sort(Comparator.comparingInt(postings -> postings.size));
+
+        // the shortest list drives; the others are probed with a binary search that only moves forward
+        Postings driver = lists.get(0);
+        int[] positions = new int[lists.size()];
+        candidates:
+        for (int i = 0; i < driver.size; i++) {
+            int o = driver.values[i];
+            for (int l = 1; l < lists.size(); l++) {
+                Postings other = lists.get(l);
+                int found = Arrays.binarySearch(other.values, positions[l], other.size, o);
+                if (found < 0) {
+                    positions[l] = -found - 1;
+                    if (positions[l] == other.size) {
+                        break candidates;
+                    }
+                    continue candidates;
+                }
+                positions[l] = found;
+            }
+            // retired ordinals stay in the postings, and trigrams do not prove the whole text is there
+            if (ids[o] != null && values[o].toLowerCase().contains(text)) {
+                matches.add(ids[o]);
+            }
+        }
+        return matches;
+    }
+
+    private static void addGrams(Map<Long, Postings> grams, String value, int ordinal) {
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            Postings postings = grams.computeIfAbsent(gram(value, i), key -> new Postings());
+            // a trigram that occurs twice in the value is posted once
+            if (postings.size == 0 || postings.values[postings.size - 1] != ordinal) {
+                postings.add(ordinal);
+            }
+        }
+    }
+
+    private static long gram(String value, int start) {
+        return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Orderings -------------------
+    public static boolean isOrdered(SortField field) {
+        return fieldIndex(field) >= 0;
+    }
+
+    // ids of every product in field order (ties by id), or null if the field is not indexed
+    public synchronized List<String> sortedIds(SortField field, boolean ascending) {
+        int f = fieldIndex(field);
+        if (f < 0) {
+            return null;
+        }
+
+        int[] order = order(f);
+        List<String> sorted = new ArrayList<>(count - retired);
+        for (int i = 0; i < order.length; i++) {
+            int o = order[ascending ? i : order.length - 1 - i];
+            if (ids[o] != null) {
+                sorted.add(ids[o]);
+            }
+        }
+        return sorted;
+    }
+
+    // the ordering with ordinals added since it was last brought up to date sorted and merged in:
+    // O(n + k log k) for k new ordinals, instead of sorting everything again
+    private int[] order(int f) {
+        if (orderedLimit[f] == count) {
+            return orders[f];
+        }
+
+        int[] fresh = IntStream.range(orderedLimit[f], count).filter(o -> ids[o] != null).toArray();
+        fresh = sortOrdinals(fresh, f);
+        int[] old = orders[f];
+        int[] merged = new int[old.length + fresh.length];
+        Comparator<Integer> comparator = comparator(f);
+
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < old.length || j < fresh.length) {
+            if (i < old.length && ids[old[i]] == null) {
+                i++;
+            } else if (j == fresh.length || (i < old.length && comparator.compare(old[i], fresh[j]) <= 0)) {
+                merged[k++] = old[i++];
+            } else {
+                merged[k++] = fresh[j++];
+            }
+        }
+
+        orders[f] = Arrays.copyOf(merged, k);
+        orderedLimit[f] = count;
+        return orders[f];
+    }
+
+    private int[] sortOrdinals(int[] ordinalsToSort, int f) {
+        Integer[] boxed = new Integer[ordinalsToSort.length];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = ordinalsToSort[i];
+        }
+        Arrays.parallelSort(boxed, comparator(f));
+
+        int[] sorted = new int[boxed.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = boxed[i];
+        }
+        return sorted;
+    }
+
+    private Comparator<Integer> comparator(int f) {
+        Comparator<Integer> byId = (a, b) -> ids[a].compareTo(ids[b]);
+        return switch (ORDERED_FIELDS[f]) {
+            case NAME -> ((Comparator<Integer>) (a, b) -> names[a].compareTo(names[b])).thenComparing(byId);
+            case PRICE -> ((Comparator<Integer>) (a, b) -> prices[a].compareTo(prices[b])).thenComparing(byId);
+            default -> byId;
+        };
+    }
+
+    private static int fieldIndex(SortField field) {
+        for (int f = 0; f < ORDERED_FIELDS.length; f++) {
+            if (ORDERED_FIELDS[f] == field) {
+                return f;
+            }
+        }
+        return -1;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Compaction -------------------
+    // renumbers the live ordinals densely, keeping their relative order - postings and orderings are
+    // filtered and remapped in one pass each, nothing is sorted or tokenized again
+    public synchronized void compact() {
+        for (int f = 0; f < ORDERED_FIELDS.length; f++) {
+            order(f);
+        }
+        if (retired == 0) {
+            return;
+        }
+
+        int[] remap = new int[count];
+        int live = 0;
+        for (int o = 0; o < count; o++) {
+            if (ids[o] != null) {
+                ids[live] = ids[o];
+                names[live] = names[o];
+                prices[live] = prices[o];
+                remap[o] = live++;
+            } else {
+                remap[o] = -1;
+            }
+        }
+        Arrays.fill(ids, live, count, null);
+        Arrays.fill(names, live, count, null);
+        Arrays.fill(prices, live, count, null);
+
+        for (int o = 0; o < live; o++) {
+            ordinals.put(ids[o], o);
+        }
+        for (int f = 0; f < ORDERED_FIELDS.length; f++) {
+            orders[f] = remapAll(orders[f], orders[f].length, remap);
+            orderedLimit[f] = live;
+        }
+        remapGrams(idGrams, remap);
+        remapGrams(nameGrams, remap);
+
+        count = live;
+        retired = 0;
+    }
+
+    private static void remapGrams(Map<Long, Postings> grams, int[] remap) {
+        grams.values().removeIf(postings -> {
+            int[] values = remapAll(postings.values, postings.size, remap);
+            postings.values = values;
+            postings.size = values.length;
+            return values.length == 0;
+        });
+    }
+
+    private static int[] remapAll(int[] values, int size, int[] remap) {
+        int[] result = new int[size];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int mapped = remap[values[i]];
+            if (mapped >= 0) {
+                result[kept++] = mapped;
+            }
+        }
+        return Arrays.copyOf(result, kept);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Access for IndexFile -------------------
+    // callers compact() first, so every ordinal below getProductCount() is live
+
+    String idAt(int ordinal) {
+        return ids[ordinal];
+    }
+
+    String nameAt(int ordinal) {
+        return names[ordinal];
+    }
+
+    BigDecimal priceAt(int ordinal) {
+        return prices[ordinal];
+    }
+
+    int[] orderOf(int f) {
+        return order(f);
+    }
+
+    Map<Long, Postings> idGrams() {
+        return idGrams;
+    }
+
+    Map<Long, Postings> nameGrams() {
+        return nameGrams;
+    }
+    // ------------------------------------------------------
+
+    public synchronized int getProductCount() {
+        return count - retired;
+    }
+
+    // true if the index holds the product under the same name and price - to check a saved index against
+    // the products actually loaded
+    public synchronized boolean matches(Product product) {
+        Integer ordinal = ordinals.get(product.getId());
+        return ordinal != null && names[ordinal].equals(product.getName())
+                && prices[ordinal].compareTo(product.getPrice()) == 0;
+    }
+
+    // bytes held by the columns, orderings and postings (the strings themselves are shared with the products)
+    public synchronized long getMemoryBytes() {
+        long bytes = 3L * 8 * ids.length + 4L * count * ORDERED_FIELDS.length + 48L * ordinals.size();
+        for (Postings postings : idGrams.values()) {
+            bytes += 48 + 4L * postings.values.length;
+        }
+        for (Postings postings : nameGrams.values()) {
+            bytes += 48 + 4L * postings.values.length;
+        }
+        return bytes;
+    }
+
+    // ascending product ordinals carrying one trigram
+    static final class Postings {
+        int[] values;
+        int size;
+
+        Postings() {
+            this.values = new int[4];
+        }
+
+        Postings(int[] values) {
+            this.values = values;
+            this.size = values.length;
+        }
+
+        void add(int ordinal) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = ordinal;
+        }
+
+        void addAll(Postings other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
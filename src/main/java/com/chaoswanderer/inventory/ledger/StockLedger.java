@@ -0,0 +1,264 @@
+package com.chaoswanderer.inventory.ledger;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// append-only ledger of stock movements with per-SKU aggregates kept up to date as movements arrive
+//
+// every quantity change is appended as two packed longs: [time millis] [sku ordinal:32 | delta:32],
+// in fixed-size chunks so the ledger grows without ever copying old entries
+//
+// the hour/day/week window sums use one expiry cursor per window that trails the head of the ledger:
+// each movement is added to its SKU's sums when it arrives and subtracted once when it falls out of
+// the window, so no aggregate ever re-scans history
+public class StockLedger implements InventoryListener {
+    public static final long HOUR = 3_600_000L;
+    public static final long DAY = 24 * HOUR;
+    public static final long WEEK = 7 * DAY;
+
+    private static final long[] WINDOWS = {HOUR, DAY, WEEK};
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final long DEFAULT_EWMA_TIME_CONSTANT = 3 * DAY;
+
+    public enum Window {
+        HOUR, DAY, WEEK
+    }
+
+    private final LongSupplier clock;
+    private final double timeConstantMillis;
+
+    // ledger
+    private long[][] chunks = new long[4][];
+    private long size;
+    private long lastTime = Long.MIN_VALUE;
+    private final long[] expiryCursors = new long[WINDOWS.length];
+
+    // per-SKU state, indexed by dense ordinal
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] ids = new String[1024];
+    private int[] quantities = new int[1024];
+    private long[][] outboundByWindow = new long[WINDOWS.length][1024];
+    private long[][] inboundByWindow = new long[WINDOWS.length][1024];
+    private double[] ewmaRates = new double[1024]; // outbound units per millisecond
+    private long[] ewmaTimes = new long[1024];
+
+    public StockLedger() {
+        this(System::currentTimeMillis, DEFAULT_EWMA_TIME_CONSTANT);
+    }
+
+    public StockLedger(LongSupplier clock, long ewmaTimeConstantMillis) {
+        this.clock = clock;
+        this.timeConstantMillis = ewmaTimeConstantMillis;
+    }
+
+    // ------------------- Recording -------------------
+    @Override
+    public synchronized void productAdded(Product product) {
+        quantities[ordinalOf(product.getId())] = product.getQuantity();
+    }
+
+    @Override
+    public synchronized void productUpdated(Product before, Product after) {
+        int ordinal = ordinalOf(after.getId());
+        quantities[ordinal] = after.getQuantity();
+
+        int delta = after.getQuantity() - before.getQuantity();
+        if (delta != 0) {
+            append(ordinal, delta, clock.getAsLong());
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        Integer ordinal = ordinals.get(product.getId());
+        if (ordinal != null) {
+            quantities[ordinal] = 0;
+        }
+    }
+
+    // stock known before the ledger was attached, so days of cover is right from the start
+    public synchronized void seed(Product product) {
+        productAdded(product);
+    }
+
+    private void append(int ordinal, int delta, long time) {
+        // keep the ledger in time order even if the wall clock steps back
+        time = Math.max(time, lastTime);
+        lastTime = time;
+
+        int chunk = (int) (size >>> CHUNK_BITS);
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new long[CHUNK_SIZE * 2];
+        }
+
+        int offset = (int) (size & (CHUNK_SIZE - 1)) * 2;
+        chunks[chunk][offset] = time;
+        chunks[chunk][offset + 1] = ((long) ordinal << 32) | (delta & 0xFFFFFFFFL);
+        size++;
+
+        long[][] sums = delta < 0 ? outboundByWindow : inboundByWindow;
+        for (int w = 0; w < WINDOWS.length; w++) {
+            sums[w][ordinal] += Math.abs((long) delta);
+        }
+
+        if (delta < 0) {
+            ewmaRates[ordinal] = decayedRate(ordinal, time) + (-delta) / timeConstantMillis;
+            ewmaTimes[ordinal] = time;
+        }
+
+        expire(time);
+    }
+
+    // walks each window's cursor past the movements that have left the window
+    private void expire(long now) {
+        for (int w = 0; w < WINDOWS.length; w++) {
+            long cutoff = now - WINDOWS[w];
+            long cursor = expiryCursors[w];
+
+            while (cursor < size && timeAt(cursor) <= cutoff) {
+                long packed = packedAt(cursor);
+                int ordinal = (int) (packed >>> 32);
+                int delta = (int) packed;
+                long[][] sums = delta < 0 ? outboundByWindow : inboundByWindow;
+                sums[w][ordinal] -= Math.abs((long) delta);
+                cursor++;
+            }
+
+            expiryCursors[w] = cursor;
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Queries -------------------
+    public synchronized long getMovementCount() {
+        return size;
+    }
+
+    public synchronized long getUnitsSold(String id, Window window) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            return 0;
+        }
+
+        expire(clock.getAsLong());
+        return outboundByWindow[window.ordinal()][ordinal];
+    }
+
+    public synchronized long getUnitsReceived(String id, Window window) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            return 0;
+        }
+
+        expire(clock.getAsLong());
+        return inboundByWindow[window.ordinal()][ordinal];
+    }
+
+    // exponentially weighted outbound units per day
+    public synchronized double getVelocityPerDay(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            return 0.0;
+        }
+
+        return decayedRate(ordinal, clock.getAsLong()) * DAY;
+    }
+
+    // how many days the current stock lasts at the current velocity (infinite if nothing is selling)
+    public synchronized double getDaysOfCover(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double velocity = decayedRate(ordinal, clock.getAsLong()) * DAY;
+        if (velocity <= 0.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return Math.max(quantities[ordinal], 0) / velocity;
+    }
+
+    @FunctionalInterface
+    public interface MovementVisitor {
+        void visit(String id, int delta, long timeMillis);
+    }
+
+    // replays the movements recorded in [fromMillis, toMillis)
+    public synchronized void forEachMovement(long fromMillis, long toMillis, MovementVisitor visitor) {
+        // the ledger is in time order, so the start can be found by binary search
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timeAt(mid) < fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (long i = low; i < size; i++) {
+            long time = timeAt(i);
+            if (time >= toMillis) {
+                break;
+            }
+
+            long packed = packedAt(i);
+            visitor.visit(ids[(int) (packed >>> 32)], (int) packed, time);
+        }
+    }
+    // ------------------------------------------------------
+
+    private double decayedRate(int ordinal, long now) {
+        long elapsed = now - ewmaTimes[ordinal];
+        if (elapsed <= 0) {
+            return ewmaRates[ordinal];
+        }
+        return ewmaRates[ordinal] * Math.exp(-elapsed / timeConstantMillis);
+    }
+
+    private long timeAt(long index) {
+        return chunks[(int) (index >>> CHUNK_BITS)][(int) (index & (CHUNK_SIZE - 1)) * 2];
+    }
+
+    private long packedAt(long index) {
+        return chunks[(int) (index >>> CHUNK_BITS)][(int) (index & (CHUNK_SIZE - 1)) * 2 + 1];
+    }
+
+    private int ordinalOf(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal != null) {
+            return ordinal;
+        }
+
+        int next = ordinals.size();
+        if (next == ids.length) {
+            grow(next * 2);
+        }
+
+        ordinals.put(id, next);
+        ids[next] = id;
+        return next;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        ewmaRates = Arrays.copyOf(ewmaRates, capacity);
+        ewmaTimes = Arrays.copyOf(ewmaTimes, capacity);
+        for (int w = 0; w < WINDOWS.length; w++) {
+            outboundByWindow[w] = Arrays.copyOf(outboundByWindow[w], capacity);
+            inboundByWindow[w] = Arrays.copyOf(inboundByWindow[w], capacity);
+        }
+    }
+}
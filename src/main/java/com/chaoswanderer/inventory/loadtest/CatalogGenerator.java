@@ -0,0 +1,52 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+// synthetic but plausible catalog: numeric IDs from FIRST_ID, names built from a small vocabulary
+// (so name searches hit a realistic share of products), and category/brand/tag attributes
+public class CatalogGenerator {
+    public static final long FIRST_ID = 100_000;
+
+    static final String[] CATEGORIES = {"dairy", "bakery", "produce", "meat", "frozen", "pantry", "drinks", "household"};
+    static final String[] WORDS = {"milk", "bread", "butter", "cheese", "apple", "rice", "coffee", "tea", "juice",
+            "soap", "pasta", "beans", "yogurt", "honey", "flour", "sugar", "salt", "oil", "eggs", "chicken"};
+    private static final String[] ADJECTIVES = {"Organic", "Fresh", "Classic", "Premium", "Light", "Family", "Mini", "Large"};
+    private static final String[] TAGS = {"organic", "local", "vegan", "seasonal", "discontinued"};
+    private static final int BRANDS = 50;
+
+    private CatalogGenerator() {
+    }
+
+    public static void populate(Inventory inventory, int products, long seed) {
+        Random random = new Random(seed);
+
+        inventory.runBatch(() -> {
+            for (int i = 0; i < products; i++) {
+                inventory.addProduct(generate(random, FIRST_ID + i));
+            }
+        });
+    }
+
+    static String randomId(Random random, int products) {
+        return String.valueOf(FIRST_ID + random.nextInt(products));
+    }
+
+    private static Product generate(Random random, long id) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                + Character.toUpperCase(word.charAt(0)) + word.substring(1) + " " + (1 + random.nextInt(999)) + "g";
+        BigDecimal price = BigDecimal.valueOf(50 + random.nextInt(50_000), 2);
+
+        Product product = new Product(String.valueOf(id), name, random.nextInt(500), price);
+        product.addAttribute(Product.CATEGORY, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        product.addAttribute(Product.BRAND, "brand" + random.nextInt(BRANDS));
+        if (random.nextInt(4) == 0) {
+            product.addAttribute(Product.TAG, TAGS[random.nextInt(TAGS.length)]);
+        }
+        return product;
+    }
+}
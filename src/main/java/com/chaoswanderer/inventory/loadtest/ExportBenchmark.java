@@ -0,0 +1,164 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.export.ExportFormat;
+import com.chaoswanderer.inventory.export.ExportResult;
+import com.chaoswanderer.inventory.export.ProductExporter;
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// export throughput of every format against the line-by-line writer the data file is saved with, and
+// against the disk itself (the same number of bytes written from memory) - an export that runs close to
+// the disk line is I/O bound
+//
+//   java -cp target/classes com.chaoswanderer.inventory.loadtest.ExportBenchmark --products=10000000
+//
+// options: --products=N (default 1,000,000)  --threads=N (encoder threads, default all cores)
+//          --rounds=N (best of, default 3)  --dir=PATH (default a temp dir)  --seed=N
+public class ExportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int products = Math.max(1, intOption(args, "--products=", 1_000_000));
+        int threads = Math.max(1, intOption(args, "--threads=", Runtime.getRuntime().availableProcessors()));
+        int rounds = Math.max(1, intOption(args, "--rounds=", 3));
+        long seed = intOption(args, "--seed=", 42);
+        String dirOption = stringOption(args, "--dir=");
+        Path dir = dirOption != null ? Files.createDirectories(Paths.get(dirOption)) : Files.createTempDirectory("export");
+
+        Inventory inventory = new Inventory();
+        CatalogGenerator.populate(inventory, products, seed);
+
+        System.out.printf("Export benchmark: %,d products, %d encoder threads, best of %d, files in %s%n",
+                products, threads, rounds, dir);
+        System.out.println("-".repeat(72));
+        System.out.printf("%-24s %10s %12s %12s %10s%n", "path", "MB", "MB/s", "rows/s", "of disk");
+
+        Path baselineFile = dir.resolve("baseline.csv");
+        long baseline = best(rounds, () -> writeLines(inventory, baselineFile));
+        long csvBytes = Files.size(baselineFile);
+        Files.delete(baselineFile);
+
+        Path rawFile = dir.resolve("raw.bin");
+        long disk = best(rounds, () -> writeRaw(rawFile, csvBytes));
+        Files.delete(rawFile);
+        double diskRate = csvBytes / (disk / 1e9);
+
+        print("disk (raw write)", csvBytes, disk, products, diskRate);
+        print("line writer (save)", csvBytes, baseline, products, diskRate);
+
+        ProductExporter exporter = new ProductExporter(inventory).withThreads(threads);
+        long csv = 0;
+        for (ExportFormat format : ExportFormat.values()) {
+            for (boolean gzip : new boolean[]{false, true}) {
+                Path file = dir.resolve("export." + format.getExtension() + (gzip ? ".gz" : ""));
+                ExportResult[] result = new ExportResult[1];
+                long nanos = best(rounds, () -> {
+                    try {
+                        result[0] = exporter.export(file, format, gzip);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                print(format.getExtension() + (gzip ? ".gz" : ""), result[0].getBytes(), nanos, products, diskRate);
+                if (format == ExportFormat.CSV && !gzip) {
+                    csv = nanos;
+                }
+                Files.delete(file);
+            }
+        }
+
+        System.out.println("-".repeat(72));
+        System.out.printf("csv export: %.1fx the line writer, %.0f%% of raw disk speed%n", (double) baseline / csv,
+                100.0 * disk / csv);
+        if (dirOption == null) {
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // what saving the data file does: one string per row through a BufferedWriter, then an fsync
+    private static void writeLines(Inventory inventory, Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                     Channels.newOutputStream(channel), StandardCharsets.UTF_8), 1 << 16)) {
+            inventory.runReadBatch(() -> inventory.forEachProduct(product -> {
+                String attributes = InventoryUtils.formatAttributes(product.getAttributes());
+                try {
+                    writer.write(product.getId() + "," + product.getName() + "," + product.getQuantity() + ","
+                            + product.getPrice().toPlainString() + (attributes.isEmpty() ? "" : "," + attributes));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            writer.flush();
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeRaw(Path file, long bytes) {
+        ByteBuffer block = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long written = 0; written < bytes; ) {
+                block.clear().limit((int) Math.min(block.capacity(), bytes - written));
+                written += channel.write(block);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long best(int rounds, Runnable run) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void print(String path, long bytes, long nanos, int rows, double diskRate) {
+        double rate = bytes / (nanos / 1e9);
+        System.out.printf("%-24s %10.1f %12.1f %12.0f %9.0f%%%n", path, bytes / 1e6, rate / 1e6, rows / (nanos / 1e9),
+                100 * rate / diskRate);
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String stringOption(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+}
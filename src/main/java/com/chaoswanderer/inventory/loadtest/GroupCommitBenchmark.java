@@ -0,0 +1,181 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.service.ChangeJournal;
+import com.chaoswanderer.inventory.service.GroupCommitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+// durable write throughput: every write fsyncing the journal on its own, against group commit
+//
+//   java -cp target/classes com.chaoswanderer.inventory.loadtest.GroupCommitBenchmark --threads=16
+//
+// options: --threads=N (concurrent writers, default 16)  --writes=N (per run, default 20,000)
+//          --products=N  --max-batch=N  --max-delay-us=N  --dir=PATH (journal location, default a temp dir
+//          - use a directory on the disk you care about, fsync cost is the whole point)  --seed=N
+public class GroupCommitBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int threads = Math.max(1, intOption(args, "--threads=", 16));
+        int writes = Math.max(threads, intOption(args, "--writes=", 20_000));
+        int products = Math.max(1, intOption(args, "--products=", 10_000));
+        int maxBatch = Math.max(1, intOption(args, "--max-batch=", GroupCommitter.DEFAULT_MAX_BATCH));
+        int maxDelayMicros = Math.max(0, intOption(args, "--max-delay-us=", GroupCommitter.DEFAULT_MAX_DELAY_MICROS));
+        long seed = intOption(args, "--seed=", 42);
+        String dirOption = stringOption(args, "--dir=");
+        Path dir = dirOption != null ? Files.createDirectories(Paths.get(dirOption)) : Files.createTempDirectory("group-commit");
+
+        System.out.printf("Group commit benchmark: %,d writes from %d threads, %,d products, journal in %s%n",
+                writes, threads, products, dir);
+        System.out.println("-".repeat(88));
+        System.out.printf("%-30s %12s %8s %10s %10s %10s %10s%n", "path", "writes/s", "fsyncs", "avg batch", "p50", "p99", "max");
+
+        Result perWrite = run(dir.resolve("per-write.journal"), products, seed, threads, writes, 1, 0, true);
+        print("per-write fsync", perWrite);
+        Result grouped = run(dir.resolve("grouped.journal"), products, seed, threads, writes, maxBatch, maxDelayMicros, false);
+        print("group commit (batch " + maxBatch + ", " + maxDelayMicros + "us)", grouped);
+
+        System.out.println("-".repeat(88));
+        System.out.printf("group commit: %.1fx the per-write throughput%n", grouped.writesPerSecond() / perWrite.writesPerSecond());
+        if (dirOption == null) {
+            Files.deleteIfExists(dir.resolve("per-write.journal"));
+            Files.deleteIfExists(dir.resolve("grouped.journal"));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static Result run(Path journalPath, int products, long seed, int threads, int writes,
+                              int maxBatch, int maxDelayMicros, boolean perWrite) throws IOException {
+        Files.deleteIfExists(journalPath);
+        Inventory inventory = new Inventory();
+        CatalogGenerator.populate(inventory, products, seed);
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        ChangeJournal journal = ChangeJournal.open(journalPath);
+        inventory.addListener(journal);
+        GroupCommitter committer = new GroupCommitter(inventory, journal, maxBatch, maxDelayMicros);
+        if (!perWrite) {
+            committer.start();
+        }
+
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int count = writes / threads + (t < writes % threads ? 1 : 0);
+            Random random = new Random(seed + t);
+            Thread writer = new Thread(() -> {
+                try {
+                    ready.await();
+                    for (int i = 0; i < count; i++) {
+                        String id = CatalogGenerator.randomId(random, products);
+                        int quantity = random.nextInt(500);
+                        long start = System.nanoTime();
+                        if (perWrite) {
+                            committer.applyAndCommit(inv -> setQuantity(inv, id, quantity));
+                        } else {
+                            CompletableFuture<Boolean> done = committer.submit(inv -> setQuantity(inv, id, quantity));
+                            done.get();
+                        }
+                        latencies.record(System.nanoTime() - start);
+                    }
+                } catch (IOException | ExecutionException | InterruptedException e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            }, "writer-" + t);
+            writer.start();
+            writers.add(writer);
+        }
+
+        long start = System.nanoTime();
+        ready.countDown();
+        for (Thread writer : writers) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        committer.close();
+        journal.close();
+        if (!errors.isEmpty()) {
+            System.out.println("ERROR: " + errors.size() + " writers failed, first: " + errors.get(0));
+            System.exit(1);
+        }
+        return new Result(committer.getWriteCount(), elapsed, journal.getSyncCount(), committer.getAverageBatchSize(),
+                latencies.snapshot());
+    }
+
+    private static boolean setQuantity(Inventory inventory, String id, int quantity) {
+        Product product = inventory.searchProductById(id);
+        if (product == null) {
+            return false;
+        }
+        inventory.updateProductQuantity(product, quantity);
+        return true;
+    }
+
+    private static void print(String path, Result result) {
+        System.out.printf("%-30s %12.0f %8d %10.1f %10s %10s %10s%n", path, result.writesPerSecond(), result.syncs,
+                result.averageBatch, LatencyHistogram.format(LatencyHistogram.percentile(result.latencies, 50)),
+                LatencyHistogram.format(LatencyHistogram.percentile(result.latencies, 99)),
+                LatencyHistogram.format(LatencyHistogram.max(result.latencies)));
+    }
+
+    private static class Result {
+        private final long writes;
+        private final long nanos;
+        private final long syncs;
+        private final double averageBatch;
+        private final long[] latencies;
+
+        Result(long writes, long nanos, long syncs, double averageBatch, long[] latencies) {
+            this.writes = writes;
+            this.nanos = nanos;
+            this.syncs = syncs;
+            this.averageBatch = averageBatch;
+            this.latencies = latencies;
+        }
+
+        double writesPerSecond() {
+            return writes / Math.max(nanos / 1e9, 1e-9);
+        }
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String stringOption(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// lock-free latency histogram with log-linear buckets: 16 sub-buckets per power of two,
+// so any recorded value is reported within ~6% of its true value
+//
+// recording only increments a counter; reports take a snapshot and subtract the previous one
+// to get the latencies of just the last interval
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+    }
+
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    // counts recorded between two snapshots
+    public static long[] difference(long[] current, long[] previous) {
+        long[] difference = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            difference[i] = current[i] - (previous == null ? 0 : previous[i]);
+        }
+        return difference;
+    }
+
+    public static long count(long[] buckets) {
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        return total;
+    }
+
+    // upper bound of the bucket holding the given percentile (0-100), or 0 if nothing was recorded
+    public static long percentile(long[] buckets, double percentile) {
+        long total = count(buckets);
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    public static long max(long[] buckets) {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (buckets[i] > 0) {
+                return upperBoundOf(i);
+            }
+        }
+        return 0;
+    }
+
+    // values below 16 get a bucket each; above, the top 5 bits pick power of two and sub-bucket
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public static String format(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,331 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.history.HistoryRetention;
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.storage.PagedProductStore;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// load generator / soak test for the inventory engine
+//
+//   java -cp target/classes com.chaoswanderer.inventory.loadtest.LoadTest --products=1000000 --threads=16 --duration=3600
+//
+// options: --products=N  --threads=N  --virtual (one virtual thread per simulated client)  --duration=SECONDS
+//          --report=SECONDS  --mix=read=70,update=20,search=5,query=4,sort=1  --seed=N  --csv=FILE
+//          --paged [--cache-pages=N]  --facets  --history  --ledger  --locations
+//
+// every report interval prints throughput, latency percentiles per operation, GC time, allocation rate
+// and heap use for that interval alone, and flags intervals that fall behind the baseline
+// (the second interval - the first one includes JIT warm-up)
+public class LoadTest {
+    private static final double THROUGHPUT_DROP = 0.8; // flag below 80% of the baseline throughput
+    private static final double LATENCY_GROWTH = 2.0;  // flag a p99 above twice the baseline p99
+
+    private final Map<Workload.Operation, LatencyHistogram> histograms = new EnumMap<>(Workload.Operation.class);
+    private volatile boolean running = true;
+    private volatile int sink; // keeps operation results alive so the JIT cannot drop the work
+    private final AtomicLong errors = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run(args);
+    }
+
+    private void run(String[] args) throws Exception {
+        int products = intOption(args, "--products=", 100_000);
+        int threads = intOption(args, "--threads=", Runtime.getRuntime().availableProcessors());
+        int durationSeconds = intOption(args, "--duration=", 60);
+        int reportSeconds = Math.max(1, intOption(args, "--report=", 10));
+        long seed = intOption(args, "--seed=", 42);
+        String mix = stringOption(args, "--mix=", Workload.DEFAULT_MIX);
+        String csvFile = stringOption(args, "--csv=", null);
+        boolean virtual = hasFlag(args, "--virtual");
+
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+
+        Path pagedFile = hasFlag(args, "--paged") ? Files.createTempFile("inventory-load", ".db") : null;
+        Inventory inventory = createInventory(args, pagedFile);
+
+        System.out.printf("Generating %d products...%n", products);
+        long start = System.nanoTime();
+        CatalogGenerator.populate(inventory, products, seed);
+        enableSubsystems(args, inventory);
+        System.out.printf("Catalog ready in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        Workload workload = new Workload(inventory, products, mix);
+        System.out.printf("Running %d %s thread(s) for %d s, mix %s%n", threads, virtual ? "virtual" : "platform",
+                durationSeconds, mix);
+
+        ExecutorService executor = virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(threads);
+        AtomicInteger workerSeeds = new AtomicInteger((int) seed);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> work(workload, workerSeeds.incrementAndGet()));
+        }
+
+        try (PrintWriter csv = csvFile == null ? null : new PrintWriter(Files.newBufferedWriter(Paths.get(csvFile)))) {
+            report(durationSeconds, reportSeconds, csv);
+        } finally {
+            running = false;
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            inventory.getStore().close();
+            if (pagedFile != null) {
+                Files.deleteIfExists(pagedFile);
+            }
+        }
+    }
+
+    private void work(Workload workload, int seed) {
+        Random random = new Random(new SplittableRandom(seed).nextLong());
+        LatencyHistogram[] byOperation = histograms.values().toArray(new LatencyHistogram[0]);
+        int results = 0;
+
+        while (running) {
+            Workload.Operation operation = workload.next(random);
+            long begin = System.nanoTime();
+            try {
+                results += workload.run(operation, random);
+            } catch (RuntimeException e) {
+                // counted and reported - a soak test keeps going
+                if (errors.getAndIncrement() == 0) {
+                    e.printStackTrace();
+                }
+            }
+            byOperation[operation.ordinal()].record(System.nanoTime() - begin);
+        }
+
+        sink = results;
+    }
+
+    // ------------------- Reporting -------------------
+    private void report(int durationSeconds, int reportSeconds, PrintWriter csv) throws InterruptedException {
+        if (csv != null) {
+            csv.println("elapsed_s,operation,ops_per_s,p50_ns,p90_ns,p99_ns,p999_ns,max_ns,gc_ms,alloc_mb_per_s,heap_mb");
+        }
+
+        Map<Workload.Operation, long[]> first = snapshots();
+        Map<Workload.Operation, long[]> previous = first;
+        long previousGcMillis = gcMillis();
+        long previousGcCount = gcCount();
+        long previousAllocated = allocatedBytes();
+        long startNanos = System.nanoTime();
+        long previousNanos = startNanos;
+
+        double baselineThroughput = 0;
+        Map<Workload.Operation, Long> baselineP99 = new EnumMap<>(Workload.Operation.class);
+        int interval = 0;
+
+        while (true) {
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            long remainingMillis = durationSeconds * 1000L - elapsedMillis;
+            if (remainingMillis <= 0) {
+                break;
+            }
+            Thread.sleep(Math.min(remainingMillis, reportSeconds * 1000L));
+            interval++;
+
+            long now = System.nanoTime();
+            double seconds = (now - previousNanos) / 1e9;
+            Map<Workload.Operation, long[]> current = snapshots();
+            long gcMillis = gcMillis();
+            long gcCount = gcCount();
+            long allocated = allocatedBytes();
+            long heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20;
+            double allocMbPerSecond = allocated < 0 ? -1 : (allocated - previousAllocated) / seconds / (1 << 20);
+
+            long totalOps = 0;
+            for (Workload.Operation operation : current.keySet()) {
+                totalOps += LatencyHistogram.count(LatencyHistogram.difference(current.get(operation), previous.get(operation)));
+            }
+            double throughput = totalOps / seconds;
+            long elapsedSeconds = Math.round((now - startNanos) / 1e9);
+
+            System.out.printf("--- %5ds | %,.0f ops/s | errors %d | GC %d (%d ms) | alloc %s | heap %d MB%s%n",
+                    elapsedSeconds, throughput, errors.get(), gcCount - previousGcCount, gcMillis - previousGcMillis,
+                    allocMbPerSecond < 0 ? "n/a" : String.format("%.1f MB/s", allocMbPerSecond), heapMb,
+                    baselineThroughput > 0 && throughput < baselineThroughput * THROUGHPUT_DROP
+                            ? String.format("  (!) throughput %.0f%% of baseline", 100 * throughput / baselineThroughput) : "");
+
+            for (Workload.Operation operation : current.keySet()) {
+                long[] buckets = LatencyHistogram.difference(current.get(operation), previous.get(operation));
+                long count = LatencyHistogram.count(buckets);
+                if (count == 0) {
+                    continue;
+                }
+
+                long p99 = LatencyHistogram.percentile(buckets, 99);
+                Long baseline = baselineP99.get(operation);
+                System.out.printf("    %-7s %,12.0f ops/s | p50 %-8s p90 %-8s p99 %-8s p99.9 %-8s max %-8s%s%n",
+                        operation.name().toLowerCase(), count / seconds,
+                        LatencyHistogram.format(LatencyHistogram.percentile(buckets, 50)),
+                        LatencyHistogram.format(LatencyHistogram.percentile(buckets, 90)),
+                        LatencyHistogram.format(p99),
+                        LatencyHistogram.format(LatencyHistogram.percentile(buckets, 99.9)),
+                        LatencyHistogram.format(LatencyHistogram.max(buckets)),
+                        baseline != null && p99 > baseline * LATENCY_GROWTH
+                                ? String.format("  (!) p99 %.1fx baseline", (double) p99 / baseline) : "");
+
+                if (csv != null) {
+                    csv.printf("%d,%s,%.1f,%d,%d,%d,%d,%d,%d,%.1f,%d%n", elapsedSeconds, operation.name().toLowerCase(),
+                            count / seconds, LatencyHistogram.percentile(buckets, 50),
+                            LatencyHistogram.percentile(buckets, 90), p99, LatencyHistogram.percentile(buckets, 99.9),
+                            LatencyHistogram.max(buckets), gcMillis - previousGcMillis, allocMbPerSecond, heapMb);
+                }
+
+                if (interval == 2) {
+                    baselineP99.put(operation, Math.max(1, p99));
+                }
+            }
+
+            if (interval == 2) {
+                baselineThroughput = throughput;
+            }
+            if (csv != null) {
+                csv.flush();
+            }
+
+            previous = current;
+            previousGcMillis = gcMillis;
+            previousGcCount = gcCount;
+            previousAllocated = allocated;
+            previousNanos = now;
+        }
+
+        printSummary(first, snapshots(), (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private void printSummary(Map<Workload.Operation, long[]> first, Map<Workload.Operation, long[]> last, double seconds) {
+        System.out.println("=== Summary over " + Math.round(seconds) + " s ===");
+        long total = 0;
+
+        for (Workload.Operation operation : last.keySet()) {
+            long[] buckets = LatencyHistogram.difference(last.get(operation), first.get(operation));
+            long count = LatencyHistogram.count(buckets);
+            total += count;
+            if (count == 0) {
+                continue;
+            }
+
+            System.out.printf("    %-7s %,12d ops | p50 %-8s p99 %-8s p99.9 %-8s max %s%n",
+                    operation.name().toLowerCase(), count,
+                    LatencyHistogram.format(LatencyHistogram.percentile(buckets, 50)),
+                    LatencyHistogram.format(LatencyHistogram.percentile(buckets, 99)),
+                    LatencyHistogram.format(LatencyHistogram.percentile(buckets, 99.9)),
+                    LatencyHistogram.format(LatencyHistogram.max(buckets)));
+        }
+
+        System.out.printf("    total   %,12d ops | %,.0f ops/s | %d errors | GC %d ms total%n",
+                total, total / seconds, errors.get(), gcMillis());
+    }
+
+    private Map<Workload.Operation, long[]> snapshots() {
+        Map<Workload.Operation, long[]> snapshots = new EnumMap<>(Workload.Operation.class);
+        for (Map.Entry<Workload.Operation, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    // bytes allocated by all threads since the JVM started (carrier threads included, so virtual
+    // threads are counted too); -1 where the JVM cannot tell
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getTotalThreadAllocatedBytes();
+        }
+        return -1;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Setup -------------------
+    private static Inventory createInventory(String[] args, Path pagedFile) throws IOException {
+        if (pagedFile == null) {
+            return new Inventory();
+        }
+
+        Files.delete(pagedFile); // the store creates its own file
+        return new Inventory(PagedProductStore.open(pagedFile, intOption(args, "--cache-pages=", 1024)));
+    }
+
+    private static void enableSubsystems(String[] args, Inventory inventory) {
+        if (hasFlag(args, "--facets")) {
+            inventory.enableFacets();
+        }
+        if (hasFlag(args, "--history")) {
+            inventory.enableHistory(HistoryRetention.defaults());
+        }
+        if (hasFlag(args, "--ledger")) {
+            inventory.enableStockLedger();
+        }
+        if (hasFlag(args, "--locations")) {
+            inventory.enableLocations("main");
+        }
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        String value = stringOption(args, prefix, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid option '" + prefix + value + "'");
+            return defaultValue;
+        }
+    }
+
+    private static String stringOption(String[] args, String prefix, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+    // ------------------------------------------------------
+}
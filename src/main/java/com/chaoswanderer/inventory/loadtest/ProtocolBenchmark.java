@@ -0,0 +1,147 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.net.InventoryClient;
+import com.chaoswanderer.inventory.net.InventoryServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// point-of-sale traffic against an InventoryServer on loopback: --clients connections each keep --pipeline
+// requests in flight (1 = one round trip at a time) with a mix of lookups, stock decrements, 16-id batch
+// gets and short reservations. Reports ops/s and round-trip latency percentiles per pipeline depth.
+//
+//   java -cp target/classes com.chaoswanderer.inventory.loadtest.ProtocolBenchmark --clients=4 --pipeline=32
+//
+// options: --products=N (default 100,000)  --clients=N (default 4)  --pipeline=N (default 32, also run at 1)
+//          --duration=N seconds per run (default 10)  --seed=N
+public class ProtocolBenchmark {
+    private static final int BATCH_IDS = 16;
+    private static final int HOLD_MILLIS = 500;
+
+    public static void main(String[] args) throws Exception {
+        int products = Math.max(1, intOption(args, "--products=", 100_000));
+        int clients = Math.max(1, intOption(args, "--clients=", 4));
+        int pipeline = Math.min(1024, Math.max(1, intOption(args, "--pipeline=", 32)));
+        int duration = Math.max(1, intOption(args, "--duration=", 10));
+        long seed = intOption(args, "--seed=", 42);
+
+        System.out.printf("Protocol benchmark: %,d products, %d clients, %d s per run (60%% lookup, 25%% sale, 10%% batch get, 5%% reserve)%n",
+                products, clients, duration);
+        System.out.println("-".repeat(80));
+
+        Inventory inventory = new Inventory();
+        CatalogGenerator.populate(inventory, products, seed);
+        for (Product product : inventory.getAllProducts()) {
+            product.setQuantity(Integer.MAX_VALUE / 2); // sales never run out
+        }
+        inventory.enableReservations();
+
+        try (InventoryServer server = new InventoryServer(inventory, 0)) {
+            server.start();
+            run(server.getPort(), products, clients, 1, Math.max(1, duration / 5), seed, false); // warm-up
+            System.out.printf("%-10s %14s %10s %10s %10s %10s%n", "pipeline", "ops/s", "p50", "p99", "p99.9", "max");
+            run(server.getPort(), products, clients, 1, duration, seed, true);
+            if (pipeline > 1) {
+                run(server.getPort(), products, clients, pipeline, duration, seed, true);
+            }
+            System.out.println("-".repeat(80));
+            System.out.printf("%,d requests served, %,d direct buffers allocated, %,d reused%n", server.getRequestCount(),
+                    server.getBufferPool().getAllocatedCount(), server.getBufferPool().getReusedCount());
+        }
+    }
+
+    private static void run(int port, int products, int clients, int depth, int seconds, long seed, boolean report)
+            throws InterruptedException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong operations = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(seed + c);
+            Thread thread = new Thread(() -> {
+                try (InventoryClient client = InventoryClient.connect("localhost", port)) {
+                    operations.addAndGet(drive(client, random, products, depth, deadline, latencies));
+                } catch (IOException e) {
+                    System.out.println("Client failed: " + e.getMessage());
+                }
+            }, "protocol-client-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (report) {
+            long[] buckets = latencies.snapshot();
+            System.out.printf("%-10d %,14.0f %10s %10s %10s %10s%n", depth, operations.get() / (double) seconds,
+                    LatencyHistogram.format(LatencyHistogram.percentile(buckets, 50)),
+                    LatencyHistogram.format(LatencyHistogram.percentile(buckets, 99)),
+                    LatencyHistogram.format(LatencyHistogram.percentile(buckets, 99.9)),
+                    LatencyHistogram.format(LatencyHistogram.max(buckets)));
+        }
+    }
+
+    // keeps depth requests in flight until the deadline; returns the responses received
+    private static long drive(InventoryClient client, Random random, int products, int depth, long deadline,
+                              LatencyHistogram latencies) throws IOException {
+        long[] sentAt = new long[Integer.highestOneBit(depth) << 1]; // by request id, at least depth slots
+        int mask = sentAt.length - 1;
+        long received = 0;
+
+        while (true) {
+            boolean running = System.nanoTime() < deadline;
+            if (running) {
+                while (client.getInFlight() < depth) {
+                    int requestId = send(client, random, products);
+                    sentAt[requestId & mask] = System.nanoTime();
+                }
+                client.flush();
+            } else if (client.getInFlight() == 0) {
+                return received;
+            }
+
+            InventoryClient.Response response = client.receive();
+            latencies.record(System.nanoTime() - sentAt[response.getRequestId() & mask]);
+            received++;
+        }
+    }
+
+    private static int send(InventoryClient client, Random random, int products) throws IOException {
+        int kind = random.nextInt(100);
+        String id = CatalogGenerator.randomId(random, products);
+        if (kind < 60) {
+            return client.sendLookup(id);
+        }
+        if (kind < 85) {
+            return client.sendAdjust(id, -1);
+        }
+        if (kind < 95) {
+            List<String> ids = new ArrayList<>(BATCH_IDS);
+            for (int i = 0; i < BATCH_IDS; i++) {
+                ids.add(CatalogGenerator.randomId(random, products));
+            }
+            return client.sendBatchGet(ids);
+        }
+        return client.sendReserve(id, 1, HOLD_MILLIS);
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,139 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.reservation.Reservation;
+import com.chaoswanderer.inventory.reservation.ReservationBook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// millions of outstanding stock holds: places --holds reservations with hold times spread over
+// --hold-minutes, confirms or releases a share of them, then lets simulated time run until the rest have
+// expired. Measures holds/s, ends/s and expiries/s on the timing wheel, and the same schedule/expire
+// workload on a PriorityQueue (O(log n) per hold) for comparison.
+//
+//   java -cp target/classes com.chaoswanderer.inventory.loadtest.ReservationBenchmark --holds=2000000
+//
+// options: --holds=N (default 2,000,000)  --products=N (default 100,000)  --hold-minutes=N (default 15)
+//          --end-percent=N (confirmed or released before expiry, default 30)  --tick-ms=N (default 100)  --seed=N
+public class ReservationBenchmark {
+
+    public static void main(String[] args) {
+        int holds = Math.max(1, intOption(args, "--holds=", 2_000_000));
+        int products = Math.max(1, intOption(args, "--products=", 100_000));
+        long holdMillis = Math.max(1, intOption(args, "--hold-minutes=", 15)) * 60_000L;
+        int endPercent = Math.min(100, Math.max(0, intOption(args, "--end-percent=", 30)));
+        long tickMillis = Math.max(1, intOption(args, "--tick-ms=", (int) ReservationBook.DEFAULT_TICK_MILLIS));
+        long seed = intOption(args, "--seed=", 42);
+
+        System.out.printf("Reservation benchmark: %,d holds over %,d products, up to %d min each, %d%% ended early, %d ms tick%n",
+                holds, products, holdMillis / 60_000, endPercent, tickMillis);
+        System.out.println("-".repeat(80));
+
+        Inventory inventory = new Inventory();
+        CatalogGenerator.populate(inventory, products, seed);
+        List<Product> catalog = inventory.getAllProducts();
+        for (Product product : catalog) {
+            product.setQuantity(Integer.MAX_VALUE / 2); // every hold fits
+        }
+
+        // warm-up round, then the measured one
+        runWheel(catalog, Math.max(1, holds / 10), holdMillis, endPercent, tickMillis, seed, false);
+        runWheel(catalog, holds, holdMillis, endPercent, tickMillis, seed, true);
+
+        runQueue(Math.max(1, holds / 10), holdMillis, tickMillis, seed, false);
+        runQueue(holds, holdMillis, tickMillis, seed, true);
+    }
+
+    private static void runWheel(List<Product> catalog, int holds, long holdMillis, int endPercent, long tickMillis,
+                                 long seed, boolean report) {
+        long[] now = {0};
+        ReservationBook book = new ReservationBook(() -> now[0], tickMillis);
+        Random random = new Random(seed);
+        long[] ids = new long[holds];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < holds; i++) {
+            Product product = catalog.get(random.nextInt(catalog.size()));
+            Reservation reservation = book.hold(product, 1 + random.nextInt(3), 1 + (long) (random.nextDouble() * holdMillis));
+            ids[i] = reservation.getId();
+        }
+        double holdRate = rate(holds, start);
+        int outstanding = book.getOutstandingCount();
+
+        int toEnd = (int) ((long) holds * endPercent / 100);
+        start = System.nanoTime();
+        for (int i = 0; i < toEnd; i++) {
+            book.end(ids[random.nextInt(holds)], random.nextBoolean()
+                    ? Reservation.State.CONFIRMED : Reservation.State.RELEASED);
+        }
+        double endRate = rate(toEnd, start);
+        long ended = book.getConfirmedCount() + book.getReleasedCount();
+
+        // time runs tick by tick, as the expiry thread would drive it
+        start = System.nanoTime();
+        long expired = 0;
+        while (book.getOutstandingCount() > 0) {
+            now[0] += tickMillis;
+            expired += book.expire();
+        }
+        double expireRate = rate(expired, start);
+
+        if (report) {
+            System.out.printf("timing wheel    %12.0f holds/s   (%,d outstanding at peak)%n", holdRate, outstanding);
+            System.out.printf("                %12.0f ends/s    (%,d confirmed or released)%n", endRate, ended);
+            System.out.printf("                %12.0f expiries/s (%,d expired over %,d ticks)%n", expireRate, expired,
+                    now[0] / tickMillis);
+        }
+    }
+
+    // the textbook alternative: a heap ordered by expiry, polled every tick
+    private static void runQueue(int holds, long holdMillis, long tickMillis, long seed, boolean report) {
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        Random random = new Random(seed);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < holds; i++) {
+            queue.add(new long[] {1 + (long) (random.nextDouble() * holdMillis), i});
+        }
+        double holdRate = rate(holds, start);
+
+        start = System.nanoTime();
+        long now = 0;
+        long expired = 0;
+        while (!queue.isEmpty()) {
+            now += tickMillis;
+            while (!queue.isEmpty() && queue.peek()[0] <= now) {
+                queue.poll();
+                expired++;
+            }
+        }
+        double expireRate = rate(expired, start);
+
+        if (report) {
+            System.out.println("-".repeat(80));
+            System.out.printf("priority queue  %12.0f holds/s   (schedule only, no stock bookkeeping)%n", holdRate);
+            System.out.printf("                %12.0f expiries/s%n", expireRate);
+        }
+    }
+
+    private static double rate(long count, long startNanos) {
+        return count / Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,123 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.cache.ResultCache;
+import com.chaoswanderer.inventory.cache.ResultKey;
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.util.SortField;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+
+// repeated searches and sorts with and without the result cache: a read-mostly mix of name and id
+// searches (a skewed set of popular queries plus one-off ones) and sorts, with a share of stock changes
+// (leave every cached result but the last-updated sort valid) and of renames and price changes (stale
+// name or price results). Reports operations/s for both runs and the cache's hit ratio.
+//
+//   java -cp target/classes com.chaoswanderer.inventory.loadtest.ResultCacheBenchmark --products=100000
+//
+// options: --products=N (default 100,000)  --ops=N (default 20,000)  --stock-percent=N (default 10)
+//          --rename-percent=N (renames and price changes, default 1)  --cache-size=N (products, default 2,000,000)
+//          --seed=N
+public class ResultCacheBenchmark {
+
+    public static void main(String[] args) {
+        int products = Math.max(1, intOption(args, "--products=", 100_000));
+        int ops = Math.max(1, intOption(args, "--ops=", 20_000));
+        int stockPercent = Math.min(100, Math.max(0, intOption(args, "--stock-percent=", 10)));
+        int renamePercent = Math.min(100 - stockPercent, Math.max(0, intOption(args, "--rename-percent=", 1)));
+        int cacheSize = Math.max(1, intOption(args, "--cache-size=", 2_000_000));
+        long seed = intOption(args, "--seed=", 42);
+
+        System.out.printf("Result cache benchmark: %,d products, %,d operations, %d%% stock changes, %d%% renames/price changes%n",
+                products, ops, stockPercent, renamePercent);
+        System.out.println("-".repeat(80));
+
+        Inventory plain = new Inventory();
+        CatalogGenerator.populate(plain, products, seed);
+        Inventory cached = new Inventory();
+        CatalogGenerator.populate(cached, products, seed);
+        ResultCache<ResultKey, List<Product>> cache = cached.enableResultCache(cacheSize);
+
+        // warm-up round, then the measured one
+        run(plain, products, Math.max(1, ops / 10), stockPercent, renamePercent, seed + 1);
+        run(cached, products, Math.max(1, ops / 10), stockPercent, renamePercent, seed + 1);
+
+        double plainRate = run(plain, products, ops, stockPercent, renamePercent, seed);
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long invalidations = cache.getInvalidations();
+        double cachedRate = run(cached, products, ops, stockPercent, renamePercent, seed);
+
+        hits = cache.getHits() - hits;
+        misses = cache.getMisses() - misses;
+        System.out.printf("%-14s %,14.0f ops/s%n", "no cache", plainRate);
+        System.out.printf("%-14s %,14.0f ops/s  (%.1fx)%n", "result cache", cachedRate, cachedRate / plainRate);
+        System.out.printf("hit ratio %.1f%% (%,d hits / %,d misses), %,d invalidated, %,d evicted, %,d cached products in %,d results%n",
+                100.0 * hits / Math.max(1, hits + misses), hits, misses, cache.getInvalidations() - invalidations,
+                cache.getEvictions(), cache.getWeight() - cache.size(), cache.size());
+    }
+
+    private static double run(Inventory inventory, int products, int ops, int stockPercent, int renamePercent, long seed) {
+        Random random = new Random(seed);
+        SortField[] fields = SortField.values();
+        long checksum = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            int roll = random.nextInt(100);
+            if (roll < stockPercent) {
+                Product product = inventory.searchProductById(CatalogGenerator.randomId(random, products));
+                inventory.updateProductQuantity(product, random.nextInt(1000));
+            } else if (roll < stockPercent + renamePercent) {
+                Product product = inventory.searchProductById(CatalogGenerator.randomId(random, products));
+                if (random.nextBoolean()) {
+                    inventory.updateProductName(product, product.getName() + "*");
+                } else {
+                    inventory.updateProductPrice(product, product.getPrice().add(BigDecimal.ONE));
+                }
+            } else {
+                checksum += query(inventory, random, fields).size();
+            }
+        }
+        double rate = ops / Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+        if (checksum == 42) {
+            System.out.println(); // keeps the results alive
+        }
+        return rate;
+    }
+
+    // most lookups repeat a few popular queries; one in five is a one-off id prefix
+    private static List<Product> query(Inventory inventory, Random random, SortField[] fields) {
+        int kind = random.nextInt(10);
+        if (kind < 4) {
+            return inventory.searchProductsbyName(CatalogGenerator.WORDS[skewed(random, CatalogGenerator.WORDS.length)]);
+        }
+        if (kind < 6) {
+            return inventory.searchProductsById(String.valueOf(CatalogGenerator.FIRST_ID / 100 + skewed(random, 50)));
+        }
+        if (kind < 8) {
+            return inventory.searchProductsById(String.valueOf(CatalogGenerator.FIRST_ID + random.nextInt(1_000_000)));
+        }
+        return inventory.sortBy(fields[skewed(random, fields.length)], random.nextBoolean());
+    }
+
+    // roughly Zipf: small values far more often
+    private static int skewed(Random random, int bound) {
+        return (int) (bound * Math.pow(random.nextDouble(), 3));
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
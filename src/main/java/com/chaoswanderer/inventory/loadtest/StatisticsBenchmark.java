@@ -0,0 +1,112 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.stats.StatisticsKernel;
+import com.chaoswanderer.inventory.stats.StockStatistics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+// compares the statistics code paths: the SIMD and scalar kernels over primitive columns, and the
+// per-product scan the summary used before (on fewer rows - boxed products are far bigger)
+//
+//   java --add-modules jdk.incubator.vector -cp target/classes com.chaoswanderer.inventory.loadtest.StatisticsBenchmark
+//
+// options: --rows=N (column rows, default 10,000,000)  --objects=N (products for the scan, default 1,000,000)
+//          --iterations=N  --seed=N
+public class StatisticsBenchmark {
+    private static final int WARMUP_ITERATIONS = 10;
+
+    private volatile long sink; // keeps results alive so the JIT cannot drop the work
+
+    public static void main(String[] args) {
+        new StatisticsBenchmark().run(args);
+    }
+
+    private void run(String[] args) {
+        int rows = intOption(args, "--rows=", 10_000_000);
+        int objects = intOption(args, "--objects=", 1_000_000);
+        int iterations = Math.max(1, intOption(args, "--iterations=", 20));
+        SplittableRandom random = new SplittableRandom(intOption(args, "--seed=", 42));
+
+        int[] quantities = new int[rows];
+        long[] prices = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            quantities[i] = random.nextInt(1000);
+            prices[i] = 1 + random.nextInt(100_000); // $0.01 - $1,000.00
+        }
+
+        List<Product> products = new ArrayList<>(objects);
+        for (int i = 0; i < objects; i++) {
+            products.add(new Product("P" + i, "Product " + i, quantities[i % rows], BigDecimal.valueOf(prices[i % rows], 2)));
+        }
+
+        StatisticsKernel scalar = StatisticsKernel.scalar();
+        StatisticsKernel best = StatisticsKernel.best();
+        int threshold = StockStatistics.DEFAULT_LOW_STOCK_THRESHOLD;
+
+        System.out.printf("Statistics benchmark: %,d column rows, %,d products, %d iterations, %s%n",
+                rows, objects, iterations, Runtime.version());
+        if (best == scalar) {
+            System.out.println("Vector API not available - run with --add-modules jdk.incubator.vector to include the SIMD kernel");
+        } else if (!best.aggregate(quantities, prices, rows, threshold).sameAs(scalar.aggregate(quantities, prices, rows, threshold))) {
+            System.out.println("ERROR: SIMD and scalar kernels disagree");
+            System.exit(1);
+        }
+
+        double scanNanos = measure(iterations, () -> {
+            StockStatistics.Builder builder = new StockStatistics.Builder(threshold);
+            products.forEach(builder::add);
+            return builder.build().getLowStockCount();
+        }) / objects;
+        double scalarNanos = measure(iterations, () -> scalar.aggregate(quantities, prices, rows, threshold).getValue()) / rows;
+
+        System.out.println("-".repeat(72));
+        System.out.printf("%-28s %12s %14s %12s%n", "path", "ns/row", "rows/s", "speedup");
+        print("product scan (BigDecimal)", scanNanos, scalarNanos);
+        print(scalar.describe(), scalarNanos, scalarNanos);
+        if (best != scalar) {
+            double vectorNanos = measure(iterations, () -> best.aggregate(quantities, prices, rows, threshold).getValue()) / rows;
+            print(best.describe(), vectorNanos, scalarNanos);
+        }
+        System.out.println("-".repeat(72));
+        System.out.println("speedup is relative to the scalar kernel; the median of the timed iterations is reported");
+    }
+
+    private static void print(String path, double nanosPerRow, double scalarNanosPerRow) {
+        System.out.printf("%-28s %12.3f %14.0f %11.2fx%n", path, nanosPerRow, 1e9 / nanosPerRow, scalarNanosPerRow / nanosPerRow);
+    }
+
+    // median nanoseconds of one call, after warm-up
+    private double measure(int iterations, LongSupplier work) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += work.getAsLong();
+        }
+
+        long[] times = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink += work.getAsLong();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[iterations / 2];
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,192 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.model.ProductStore;
+import com.chaoswanderer.inventory.query.Query;
+import com.chaoswanderer.inventory.storage.StorageEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// the same workload against every storage engine, through Inventory as the application uses it:
+// bulk load, point reads, updates, full scans, ID range queries, remove/re-add churn, and the heap the
+// loaded catalog takes
+//
+//   java -cp target/classes com.chaoswanderer.inventory.loadtest.StorageBenchmark --products=500000
+//
+// options: --products=N (default 200,000)  --ops=N (reads, updates and churn each, default 200,000)
+//          --engines=memory,sorted,...  (default all)  --cache-pages=N (paged engine)  --seed=N
+public class StorageBenchmark {
+    private static final int RANGE_WIDTH = 1_000;
+    private static final int SCANS = 5;
+    private static final int RANGE_QUERIES = 500;
+
+    public static void main(String[] args) throws IOException {
+        int products = Math.max(RANGE_WIDTH, intOption(args, "--products=", 200_000));
+        int ops = Math.max(1, intOption(args, "--ops=", 200_000));
+        int cachePages = Math.max(16, intOption(args, "--cache-pages=", 1024));
+        long seed = intOption(args, "--seed=", 42);
+        List<StorageEngine> engines = parseEngines(stringOption(args, "--engines="));
+
+        System.out.printf("Storage benchmark: %,d products, %,d operations per phase, seed %d%n", products, ops, seed);
+        System.out.println("-".repeat(106));
+        System.out.printf("%-8s %12s %12s %12s %14s %12s %12s %10s%n", "engine", "load/s", "reads/s", "updates/s",
+                "scanned/s", "ranges/s", "churn/s", "heap MB");
+
+        // a short untimed round per engine first, so the first engine measured does not pay for JIT warm-up
+        for (StorageEngine engine : engines) {
+            runIn(engine, Math.max(RANGE_WIDTH, products / 10), Math.max(1, ops / 10), cachePages, seed);
+        }
+
+        for (StorageEngine engine : engines) {
+            Result result = runIn(engine, products, ops, cachePages, seed);
+            System.out.printf("%-8s %12.0f %12.0f %12.0f %14.0f %12.0f %12.0f %10s%n", engine.getName(),
+                    result.load, result.reads, result.updates, result.scanned, result.ranges, result.churn,
+                    engine.isPersistent() ? "-" : String.format("%.1f", result.heapBytes / 1e6));
+        }
+
+        System.out.println("-".repeat(106));
+        System.out.println("heap: retained after load (a paged store keeps its records on disk, only its page cache is on the heap)");
+    }
+
+    private static Result runIn(StorageEngine engine, int products, int ops, int cachePages, long seed) throws IOException {
+        Path dir = Files.createTempDirectory("storage-" + engine.getName());
+        Path dataFile = dir.resolve("products.db");
+        try {
+            return run(engine.open(dataFile, cachePages), products, ops, seed);
+        } finally {
+            Files.deleteIfExists(dataFile);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static Result run(ProductStore store, int products, int ops, long seed) {
+        Result result = new Result();
+        long heapBefore = usedHeap();
+        Inventory inventory = new Inventory(store);
+
+        try {
+            long start = System.nanoTime();
+            CatalogGenerator.populate(inventory, products, seed);
+            result.load = rate(products, start);
+            result.heapBytes = usedHeap() - heapBefore;
+
+            Random random = new Random(seed);
+            long checksum = 0;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                Product product = inventory.searchProductById(CatalogGenerator.randomId(random, products));
+                checksum += product == null ? 0 : product.getQuantity();
+            }
+            result.reads = rate(ops, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                Product product = inventory.searchProductById(CatalogGenerator.randomId(random, products));
+                if (product != null) {
+                    inventory.updateProductQuantity(product, random.nextInt(500));
+                }
+            }
+            result.updates = rate(ops, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < SCANS; i++) {
+                checksum += inventory.getTotalStockQuantity();
+            }
+            result.scanned = rate((long) SCANS * products, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < RANGE_QUERIES; i++) {
+                long from = CatalogGenerator.FIRST_ID + random.nextInt(products - RANGE_WIDTH);
+                checksum += inventory.query(Query.parse("id >= \"" + from + "\" AND id < \"" + (from + RANGE_WIDTH)
+                        + "\" AND quantity < 100")).size();
+            }
+            result.ranges = rate(RANGE_QUERIES, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                String id = CatalogGenerator.randomId(random, products);
+                Product product = inventory.searchProductById(id);
+                if (product != null && inventory.removeProduct(id)) {
+                    inventory.addProduct(product);
+                }
+            }
+            result.churn = rate(ops, start);
+
+            if (checksum == 42) {
+                System.out.print(""); // keeps the reads from being optimized away
+            }
+        } finally {
+            store.close();
+        }
+        return result;
+    }
+
+    private static double rate(long count, long startNanos) {
+        return count / Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<StorageEngine> parseEngines(String names) {
+        List<StorageEngine> engines = new ArrayList<>();
+        if (names == null) {
+            engines.addAll(List.of(StorageEngine.values()));
+            return engines;
+        }
+
+        for (String name : names.split(",")) {
+            StorageEngine engine = StorageEngine.fromName(name);
+            if (engine == null) {
+                System.out.println("Ignoring unknown engine '" + name + "' (" + StorageEngine.names() + ")");
+            } else {
+                engines.add(engine);
+            }
+        }
+        return engines;
+    }
+
+    private static class Result {
+        private double load;
+        private double reads;
+        private double updates;
+        private double scanned;
+        private double ranges;
+        private double churn;
+        private long heapBytes;
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String stringOption(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,171 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.tenant.TenantLease;
+import com.chaoswanderer.inventory.tenant.TenantRegistry;
+import com.chaoswanderer.inventory.tenant.TenantStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// many small tenants behind one memory budget: seeds --tenants data files, then opens tenants with a
+// skewed (Zipf) popularity, reading a product from each and updating every --write-every'th one, and
+// reports the hit ratio, loads and evictions, the resident footprint against the budget, and the heap
+//
+//   java -Xmx256m -cp target/classes com.chaoswanderer.inventory.loadtest.TenantBenchmark --tenants=1000
+//
+// options: --tenants=N (default 1,000)  --products=N (per tenant, default 500)  --budget-mb=N (default 64)
+//          --ops=N (opens, default 200,000)  --skew=N (Zipf exponent x100, default 110)  --write-every=N
+//          (default 10)  --seed=N  --dir=<directory> (default a temporary one, deleted afterwards)
+public class TenantBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int tenants = Math.max(1, intOption(args, "--tenants=", 1_000));
+        int products = Math.max(1, intOption(args, "--products=", 500));
+        long budget = Math.max(1, intOption(args, "--budget-mb=", 64)) * 1024L * 1024;
+        int ops = Math.max(1, intOption(args, "--ops=", 200_000));
+        double skew = intOption(args, "--skew=", 110) / 100.0;
+        int writeEvery = Math.max(1, intOption(args, "--write-every=", 10));
+        long seed = intOption(args, "--seed=", 42);
+        String dirOption = stringOption(args, "--dir=");
+        Path dir = dirOption != null ? Path.of(dirOption) : Files.createTempDirectory("tenants");
+
+        System.out.printf("Tenant benchmark: %,d tenants x %,d products, %,d MB budget, %,d opens, skew %.2f%n",
+                tenants, products, budget / (1024 * 1024), ops, skew);
+        System.out.println("-".repeat(80));
+
+        try {
+            long start = System.nanoTime();
+            try (TenantRegistry registry = new TenantRegistry(dir, budget)) {
+                for (int i = 0; i < tenants; i++) {
+                    try (TenantLease lease = registry.open(name(i))) {
+                        if (lease.getInventory().getTotalProducts() == 0) {
+                            CatalogGenerator.populate(lease.getInventory(), products, seed + i);
+                        }
+                    }
+                }
+            }
+            System.out.printf("seeded          %10.0f tenants/s%n", rate(tenants, start));
+
+            long heapBefore = usedHeap();
+            try (TenantRegistry registry = new TenantRegistry(dir, budget)) {
+                run(registry, tenants, products, ops, skew, writeEvery, seed);
+
+                System.out.printf("resident        %,10d tenants, %,.1f MB estimated (budget %,.1f MB)%n",
+                        registry.getResidentCount(), registry.getResidentBytes() / 1e6, budget / 1e6);
+                System.out.printf("heap            %,10.1f MB retained%n", (usedHeap() - heapBefore) / 1e6);
+
+                System.out.println("-".repeat(80));
+                System.out.println("most opened:");
+                List<TenantStats> stats = registry.getStats();
+                stats.sort(Comparator.comparingLong((TenantStats s) -> s.getHits() + s.getLoads()).reversed());
+                stats.stream().limit(5).forEach(s -> System.out.println("  " + s));
+            }
+        } finally {
+            if (dirOption == null) {
+                deleteDirectory(dir);
+            }
+        }
+    }
+
+    private static void run(TenantRegistry registry, int tenants, int products, int ops, double skew,
+                            int writeEvery, long seed) {
+        double[] popularity = zipf(tenants, skew);
+        Random random = new Random(seed);
+        long checksum = 0;
+
+        long start = System.nanoTime();
+        for (int op = 0; op < ops; op++) {
+            try (TenantLease lease = registry.open(name(pick(popularity, random)))) {
+                Inventory inventory = lease.getInventory();
+                Product product = inventory.searchProductById(CatalogGenerator.randomId(random, products));
+                if (product != null) {
+                    checksum += product.getQuantity();
+                    if (op % writeEvery == 0) {
+                        inventory.updateProductQuantity(product, random.nextInt(500));
+                    }
+                }
+            }
+        }
+        double opens = rate(ops, start);
+
+        System.out.printf("opens           %10.0f /s (checksum %d)%n", opens, checksum);
+        System.out.printf("hit ratio       %10.1f %%%n", registry.getHitRatio() * 100);
+        System.out.printf("loads           %,10d%n", registry.getLoadCount());
+        System.out.printf("evictions       %,10d (%d could not be spilled)%n", registry.getEvictionCount(),
+                registry.getFailedSpillCount());
+    }
+
+    private static String name(int tenant) {
+        return String.format("store-%04d", tenant);
+    }
+
+    // cumulative Zipf distribution over the tenants; tenant 0 is the most popular
+    private static double[] zipf(int tenants, double skew) {
+        double[] cumulative = new double[tenants];
+        double sum = 0;
+        for (int i = 0; i < tenants; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < tenants; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(double[] cumulative, Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    private static double rate(long count, long startNanos) {
+        return count / Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static int intOption(String[] args, String prefix, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(arg.substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Ignoring invalid option '" + arg + "'");
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String stringOption(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+}
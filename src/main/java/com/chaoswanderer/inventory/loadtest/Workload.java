@@ -0,0 +1,128 @@
+package com.chaoswanderer.inventory.loadtest;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.query.Query;
+import com.chaoswanderer.inventory.util.SortField;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+// the operation mix replayed by the load test, weighted e.g. "read=70,update=20,search=5,query=4,sort=1"
+public class Workload {
+
+    public enum Operation {
+        READ,    // lookup by ID
+        SEARCH,  // name substring search (full scan)
+        QUERY,   // query language with filters, ORDER BY and LIMIT
+        SORT,    // whole-catalog sort
+        UPDATE   // stock adjustment or price change
+    }
+
+    public static final String DEFAULT_MIX = "read=70,update=20,search=5,query=4,sort=1";
+
+    private final Inventory inventory;
+    private final int products;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final Query[] queries;
+
+    public Workload(Inventory inventory, int products, String mix) {
+        this.inventory = inventory;
+        this.products = products;
+
+        Map<Operation, Integer> weights = parseMix(mix);
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+
+        this.queries = new Query[CatalogGenerator.CATEGORIES.length * 2];
+        for (int i = 0; i < CatalogGenerator.CATEGORIES.length; i++) {
+            String category = CatalogGenerator.CATEGORIES[i];
+            queries[2 * i] = Query.parse("category = " + category + " AND quantity < 50 ORDER BY price DESC LIMIT 20");
+            queries[2 * i + 1] = Query.parse("name ~ " + CatalogGenerator.WORDS[i] + " AND price < 100 LIMIT 50");
+        }
+    }
+
+    public Operation next(Random random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    // returns something derived from the result so the JIT cannot drop the work
+    public int run(Operation operation, Random random) {
+        return switch (operation) {
+            case READ -> {
+                Product product = inventory.searchProductById(CatalogGenerator.randomId(random, products));
+                yield product == null ? 0 : product.getQuantity();
+            }
+            case SEARCH -> inventory.searchProductsbyName(CatalogGenerator.WORDS[random.nextInt(CatalogGenerator.WORDS.length)]).size();
+            case QUERY -> inventory.query(queries[random.nextInt(queries.length)]).size();
+            case SORT -> {
+                SortField field = SortField.values()[random.nextInt(SortField.values().length)];
+                yield inventory.sortBy(field, random.nextBoolean()).size();
+            }
+            case UPDATE -> update(random);
+        };
+    }
+
+    private int update(Random random) {
+        Product product = inventory.searchProductById(CatalogGenerator.randomId(random, products));
+        if (product == null) {
+            return 0;
+        }
+
+        int roll = random.nextInt(10);
+        if (roll < 5) {
+            // sale, kept from going below zero
+            inventory.updateProductQuantity(product, Math.max(0, product.getQuantity() - 1 - random.nextInt(5)));
+        } else if (roll < 8) {
+            inventory.increaseProductQuantity(product, 10 + random.nextInt(100));
+        } else {
+            inventory.updateProductPrice(product, BigDecimal.valueOf(50 + random.nextInt(50_000), 2));
+        }
+        return product.getQuantity();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry '" + entry + "' (expected e.g. read=70)");
+            }
+
+            Operation operation;
+            try {
+                operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown operation '" + parts[0].trim() + "'");
+            }
+
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights must not be negative");
+            }
+            if (weight > 0) {
+                weights.put(operation, weight);
+            }
+        }
+
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix needs at least one operation with a positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,291 @@
+package com.chaoswanderer.inventory.location;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// per-location stock kept in a product x location matrix (one int column per location, indexed by
+// dense product ordinals), with unit and value totals per location maintained on every change
+// so the global rollups only add up one number per location
+//
+// a product's quantity stays the sum over its locations: quantity changes made without naming a
+// location are reconciled into the default location (and, when stock goes down, the others after it)
+public class LocationStock implements InventoryListener {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final List<String> locations = new ArrayList<>();
+    private final Map<String, Integer> locationIndex = new HashMap<>();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<Integer> freeOrdinals = new ArrayList<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private int ordinalLimit;
+
+    private int[][] stock = new int[0][];   // [location][product ordinal]
+    private long[] rowTotals = new long[INITIAL_CAPACITY];
+    private long[] priceCents = new long[INITIAL_CAPACITY];
+
+    private long[] locationUnits = new long[0];
+    private long[] locationValueCents = new long[0];
+
+    public LocationStock(String defaultLocation) {
+        insertLocation(defaultLocation);
+    }
+
+    // ------------------- Locations -------------------
+    public synchronized int addLocation(String name) {
+        return insertLocation(name);
+    }
+
+    // private so the constructor can use it without calling an overridable method
+    private int insertLocation(String name) {
+        Integer existing = locationIndex.get(name);
+        if (existing != null) {
+            return existing;
+        }
+
+        int index = locations.size();
+        locations.add(name);
+        locationIndex.put(name, index);
+
+        stock = Arrays.copyOf(stock, index + 1);
+        stock[index] = new int[ids.length];
+        locationUnits = Arrays.copyOf(locationUnits, index + 1);
+        locationValueCents = Arrays.copyOf(locationValueCents, index + 1);
+        return index;
+    }
+
+    public synchronized List<String> getLocations() {
+        return Collections.unmodifiableList(new ArrayList<>(locations));
+    }
+
+    public synchronized String getDefaultLocation() {
+        return locations.get(0);
+    }
+
+    public synchronized boolean hasLocation(String name) {
+        return locationIndex.containsKey(name);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Inventory events -------------------
+    @Override
+    public synchronized void productAdded(Product product) {
+        int ordinal = ordinalOf(product.getId());
+        reprice(ordinal, toCents(product.getPrice()));
+        reconcile(ordinal, product.getQuantity());
+    }
+
+    @Override
+    public synchronized void productUpdated(Product before, Product after) {
+        int ordinal = ordinalOf(after.getId());
+        reprice(ordinal, toCents(after.getPrice()));
+        reconcile(ordinal, after.getQuantity());
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        Integer ordinal = ordinals.remove(product.getId());
+        if (ordinal == null) {
+            return;
+        }
+
+        for (int location = 0; location < locations.size(); location++) {
+            change(location, ordinal, -stock[location][ordinal]);
+        }
+        priceCents[ordinal] = 0;
+        ids[ordinal] = null;
+        freeOrdinals.add(ordinal);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Stock changes -------------------
+    // puts back a saved per-location quantity; call reconcile(product) once all rows are restored
+    public synchronized void restore(String id, String location, int quantity) {
+        int ordinal = ordinalOf(id);
+        int index = addLocation(location);
+        change(index, ordinal, quantity - stock[index][ordinal]);
+    }
+
+    public synchronized void reconcile(Product product) {
+        productUpdated(product, product);
+    }
+
+    // changes one location's stock; fails rather than letting it go negative
+    // the caller (Inventory) brings the product's total quantity in line afterwards
+    public synchronized boolean adjust(String id, String location, int delta) {
+        Integer ordinal = ordinals.get(id);
+        Integer index = locationIndex.get(location);
+        if (ordinal == null || index == null || stock[index][ordinal] + (long) delta < 0) {
+            return false;
+        }
+
+        change(index, ordinal, delta);
+        return true;
+    }
+
+    // moves stock between two locations in one step - the product's total does not change
+    public synchronized boolean transfer(String id, String from, String to, int quantity) {
+        Integer ordinal = ordinals.get(id);
+        Integer source = locationIndex.get(from);
+        Integer target = locationIndex.get(to);
+
+        if (ordinal == null || source == null || target == null || quantity <= 0
+                || source.equals(target) || stock[source][ordinal] < quantity) {
+            return false;
+        }
+
+        change(source, ordinal, -quantity);
+        change(target, ordinal, quantity);
+        return true;
+    }
+
+    // makes the product's locations add up to its quantity
+    private void reconcile(int ordinal, int quantity) {
+        long difference = quantity - rowTotals[ordinal];
+
+        if (difference > 0) {
+            change(0, ordinal, (int) difference);
+            return;
+        }
+
+        // take stock away from the default location first, then the others in order
+        for (int location = 0; location < locations.size() && difference < 0; location++) {
+            int taken = (int) Math.min(stock[location][ordinal], -difference);
+            if (taken > 0) {
+                change(location, ordinal, -taken);
+                difference += taken;
+            }
+        }
+
+        if (difference < 0) {
+            // the product itself went negative; the default location carries it
+            change(0, ordinal, (int) difference);
+        }
+    }
+
+    private void change(int location, int ordinal, int delta) {
+        stock[location][ordinal] += delta;
+        rowTotals[ordinal] += delta;
+        locationUnits[location] += delta;
+        locationValueCents[location] += delta * priceCents[ordinal];
+    }
+
+    private void reprice(int ordinal, long newPriceCents) {
+        long priceDelta = newPriceCents - priceCents[ordinal];
+        if (priceDelta == 0) {
+            return;
+        }
+
+        for (int location = 0; location < locations.size(); location++) {
+            locationValueCents[location] += priceDelta * stock[location][ordinal];
+        }
+        priceCents[ordinal] = newPriceCents;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Queries -------------------
+    public synchronized int getStock(String id, String location) {
+        Integer ordinal = ordinals.get(id);
+        Integer index = locationIndex.get(location);
+        return ordinal == null || index == null ? 0 : stock[index][ordinal];
+    }
+
+    public synchronized Map<String, Integer> getStockByLocation(String id) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        Integer ordinal = ordinals.get(id);
+
+        for (int location = 0; location < locations.size(); location++) {
+            result.put(locations.get(location), ordinal == null ? 0 : stock[location][ordinal]);
+        }
+        return result;
+    }
+
+    public synchronized long getLocationUnits(String location) {
+        Integer index = locationIndex.get(location);
+        return index == null ? 0 : locationUnits[index];
+    }
+
+    public synchronized BigDecimal getLocationValue(String location) {
+        Integer index = locationIndex.get(location);
+        return index == null ? BigDecimal.ZERO.setScale(2) : BigDecimal.valueOf(locationValueCents[index], 2);
+    }
+
+    // global rollups add up the per-location totals, never the matrix
+    public synchronized long getTotalUnits() {
+        long total = 0;
+        for (long units : locationUnits) {
+            total += units;
+        }
+        return total;
+    }
+
+    public synchronized BigDecimal getTotalValue() {
+        long total = 0;
+        for (long cents : locationValueCents) {
+            total += cents;
+        }
+        return BigDecimal.valueOf(total, 2);
+    }
+
+    // product IDs with stock at the location (scans one column)
+    public synchronized List<String> getProductsAt(String location) {
+        List<String> result = new ArrayList<>();
+        Integer index = locationIndex.get(location);
+        if (index == null) {
+            return result;
+        }
+
+        int[] column = stock[index];
+        for (int ordinal = 0; ordinal < ordinalLimit; ordinal++) {
+            if (ids[ordinal] != null && column[ordinal] != 0) {
+                result.add(ids[ordinal]);
+            }
+        }
+        return result;
+    }
+    // ------------------------------------------------------
+
+    private int ordinalOf(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal != null) {
+            return ordinal;
+        }
+
+        int next;
+        if (!freeOrdinals.isEmpty()) {
+            next = freeOrdinals.remove(freeOrdinals.size() - 1);
+        } else {
+            next = ordinalLimit++;
+            if (next == ids.length) {
+                grow(ids.length * 2);
+            }
+        }
+
+        ordinals.put(id, next);
+        ids[next] = id;
+        return next;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        rowTotals = Arrays.copyOf(rowTotals, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        for (int location = 0; location < stock.length; location++) {
+            stock[location] = Arrays.copyOf(stock[location], capacity);
+        }
+    }
+
+    private static long toCents(BigDecimal price) {
+        return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+}
@@ -0,0 +1,46 @@
+package com.chaoswanderer.inventory.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// products in a plain HashMap keyed by ID string - what MemoryProductStore falls back to once a
+// non-numeric ID shows up, kept as its own engine as the baseline the other stores are measured against
+public class HashProductStore implements ProductStore {
+    private final Map<String, Product> products = new HashMap<>();
+
+    @Override
+    public Product get(String id) {
+        return products.get(id);
+    }
+
+    @Override
+    public void put(Product product) {
+        products.put(product.getId(), product);
+    }
+
+    @Override
+    public Product remove(String id) {
+        return products.remove(id);
+    }
+
+    @Override
+    public void forEach(Consumer<Product> action) {
+        products.values().forEach(action);
+    }
+
+    @Override
+    public void forEachWhile(Predicate<Product> visitor) {
+        for (Product product : products.values()) {
+            if (!visitor.test(product)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return products.size();
+    }
+}
@@ -1,40 +1,149 @@
 package com.chaoswanderer.inventory.model;
 
+import com.chaoswanderer.inventory.cache.ResultCache;
+import com.chaoswanderer.inventory.cache.ResultKey;
+import com.chaoswanderer.inventory.history.HistoryRetention;
+import com.chaoswanderer.inventory.history.InventoryHistory;
+import com.chaoswanderer.inventory.index.FacetIndex;
+import com.chaoswanderer.inventory.index.FacetQuery;
+import com.chaoswanderer.inventory.index.RoaringBitmap;
+import com.chaoswanderer.inventory.index.SearchIndex;
+import com.chaoswanderer.inventory.ledger.StockLedger;
+import com.chaoswanderer.inventory.location.LocationStock;
+import com.chaoswanderer.inventory.query.Condition;
+import com.chaoswanderer.inventory.query.Query;
+import com.chaoswanderer.inventory.query.QueryPlan;
+import com.chaoswanderer.inventory.query.QueryPlanner;
+import com.chaoswanderer.inventory.reservation.Reservation;
+import com.chaoswanderer.inventory.reservation.ReservationBook;
+import com.chaoswanderer.inventory.reservation.ReservationExpirer;
+import com.chaoswanderer.inventory.stats.DistributionSummary;
+import com.chaoswanderer.inventory.stats.InventorySketches;
+import com.chaoswanderer.inventory.stats.StockColumns;
+import com.chaoswanderer.inventory.stats.StockStatistics;
+import com.chaoswanderer.inventory.stream.ProductPublisher;
 import com.chaoswanderer.inventory.util.SortField;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public class Inventory {
-    private final Map<String, Product> inventory;
+    private static final int BULK_CHUNK_SIZE = 4096;
+
+    private final ProductStore inventory;
+    // many readers or one writer - lets background jobs (e.g. hot reload) change the inventory under the UI
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+    // volatile: with --fast-start these are enabled by the loading thread while the UI already runs
+    private volatile InventoryHistory history;
+    private volatile StockLedger stockLedger;
+    private volatile LocationStock locationStock;
+    private volatile FacetIndex facetIndex;
+    private volatile StockColumns stockColumns;
+    private volatile InventorySketches sketches;
+    private volatile SearchIndex searchIndex;
+    private volatile ReservationBook reservations;
+    private ReservationExpirer reservationExpirer;
+    private volatile ResultCache<ResultKey, List<Product>> resultCache;
+    // one counter per sort field, bumped by every change that can alter results ordered or matched by it
+    private final long[] generations = new long[SortField.values().length];
 
     public Inventory() {
-        this.inventory = new HashMap<>();
+        this(new MemoryProductStore());
+    }
+
+    public Inventory(ProductStore store) {
+        this.inventory = store;
+    }
+
+    public ProductStore getStore() {
+        return inventory;
+    }
+
+    public void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
     }
 
     // all functions related to inventory (add, remove, search) are associated with its ID instead of name
 
     public boolean addProduct(Product product) {
-        if (this.inventory.containsKey(product.getId())) {
-            return false;
-        }
+        lock.writeLock().lock();
+        try {
+            if (productExists(product.getId())) {
+                return false;
+            }
 
-        this.inventory.put(product.getId(), product);
-        return true;
+            this.inventory.put(product);
+            invalidateAll();
+            for (InventoryListener listener : listeners) {
+                listener.productAdded(product);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public boolean removeProduct(String id) {
-        if (!(this.inventory.containsKey(id))) {
-            System.out.println("A product with id " + id + " does not exists in the inventory.");
-            return false;
-        }
+        lock.writeLock().lock();
+        try {
+            if (!productExists(id)) {
+                System.out.println("A product with id " + id + " does not exists in the inventory.");
+                return false;
+            }
 
-        this.inventory.remove(id);
-        return true;
+            Product removed = this.inventory.remove(id);
+            invalidateAll();
+            for (InventoryListener listener : listeners) {
+                listener.productRemoved(removed);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public Product searchProductById(String id) {
-        return this.inventory.getOrDefault(id, null);
+        lock.readLock().lock();
+        try {
+            return this.inventory.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // runs several changes as one step - other threads see all of them or none
+    public void runBatch(Runnable changes) {
+        lock.writeLock().lock();
+        try {
+            changes.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // runs several reads as one step - no change lands in between
+    public void runReadBatch(Runnable reads) {
+        lock.readLock().lock();
+        try {
+            reads.run();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public boolean productExists(Product product) {
@@ -45,36 +154,396 @@ public class Inventory {
         return searchProductById(id) != null;
     }
 
+    // ------------------- Updates -------------------
+    // products handed out by a paged store are detached copies,
+    // so every change goes through here to be written back. Each returns false, changing nothing, if the
+    // product has left the inventory since the caller looked it up (e.g. removed by a reload). With
+    // reservations enabled, setting or decreasing the quantity below what is reserved throws
+    // IllegalArgumentException - held stock only leaves through confirmReservation. updateProduct replaces
+    // the product as a feed or another shop reports it and is not checked.
+    public boolean updateProductName(Product product, String name) {
+        return saveChanges(product, p -> p.setName(name));
+    }
+
+    public boolean updateProductPrice(Product product, BigDecimal price) {
+        return saveChanges(product, p -> p.setPrice(price));
+    }
+
+    public boolean updateProductQuantity(Product product, int quantity) {
+        return saveQuantityChange(product, p -> p.setQuantity(quantity));
+    }
+
+    public boolean increaseProductQuantity(Product product, int amount) {
+        return saveChanges(product, p -> p.increaseQuantity(amount));
+    }
+
+    public boolean decreaseProductQuantity(Product product, int amount) {
+        return saveQuantityChange(product, p -> p.decreaseQuantity(amount));
+    }
+
+    // replaces all editable fields at once, touching updatedAt a single time
+    public boolean updateProduct(Product product, String name, int quantity, BigDecimal price) {
+        return saveChanges(product, p -> {
+            p.setName(name);
+            p.setQuantity(quantity);
+            p.setPrice(price);
+        });
+    }
+
+    // replaces the attributes too - used when a feed row carries the whole product
+    public boolean updateProduct(Product product, String name, int quantity, BigDecimal price,
+                                 Map<String, Set<String>> attributes) {
+        return saveChanges(product, p -> {
+            p.setName(name);
+            p.setQuantity(quantity);
+            p.setPrice(price);
+            p.setAttributes(attributes);
+        });
+    }
+
+    public boolean addProductAttribute(Product product, String name, String value) {
+        return saveChanges(product, p -> p.addAttribute(name, value));
+    }
+
+    public boolean removeProductAttribute(Product product, String name, String value) {
+        return saveChanges(product, p -> p.removeAttribute(name, value));
+    }
+
+    private boolean saveQuantityChange(Product product, Consumer<Product> change) {
+        lock.writeLock().lock();
+        try {
+            requireUnreserved(product, change);
+            return saveChanges(product, change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock. Throws if the change would leave less stock than its reservations hold
+    private void requireUnreserved(Product product, Consumer<Product> change) {
+        ReservationBook book = reservations;
+        int reserved = book == null ? 0 : book.getReserved(product.getId());
+        Product stored = reserved == 0 ? null : this.inventory.get(product.getId());
+        if (stored == null) {
+            return;
+        }
+
+        Product changed = stored.copy();
+        change.accept(changed);
+        if (changed.getQuantity() < stored.getQuantity() && changed.getQuantity() < reserved) {
+            throw new IllegalArgumentException("Only " + book.getAvailable(stored) + " of " + stored.getId()
+                    + " available (" + reserved + " reserved)");
+        }
+    }
+
+    // caller holds the lock. With a sharing store a stale instance (removed, perhaps re-added since) must
+    // not be written back
+    private boolean isCurrent(Product product) {
+        Product stored = this.inventory.get(product.getId());
+        return stored != null && (!this.inventory.sharesProducts() || stored == product);
+    }
+
+    private boolean saveChanges(Product product, Consumer<Product> change) {
+        lock.writeLock().lock();
+        try {
+            if (!isCurrent(product)) {
+                return false;
+            }
+
+            Product before = listeners.isEmpty() ? null : product.copy();
+            String name = product.getName();
+            BigDecimal price = product.getPrice();
+            change.accept(product);
+            product.updateUpdatedAt();
+            this.inventory.put(product);
+            invalidateChanged(name, price, product);
+            for (InventoryListener listener : listeners) {
+                listener.productUpdated(before, product);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Bulk operations -------------------
+    // each changes every product the filter accepts and returns how many that was. The whole operation runs
+    // under the write lock, so readers see all of it or none of it; matching is spread over partitions of
+    // the catalog on the common fork-join pool, so the filter must not call back into the inventory. Nothing
+    // changes until every partition has matched, so a filter that throws leaves the catalog as it was. Each
+    // product's updatedAt is touched once, and listeners get the changes between bulkStarted and
+    // bulkFinished - the journal keeps them as one record group, replayed whole or not at all.
+
+    // percent > 0 marks prices up, < 0 down (e.g. 5 for +5%, -10 for 10% off), rounded to cents
+    public int bulkAdjustPrice(Predicate<Product> filter, BigDecimal percent) {
+        if (percent.compareTo(BigDecimal.valueOf(-100)) <= 0) {
+            throw new IllegalArgumentException("A markdown must be less than 100%");
+        }
+        BigDecimal factor = BigDecimal.ONE.add(percent.movePointLeft(2));
+        return bulkUpdate(filter, p -> p.setPrice(p.getPrice().multiply(factor).setScale(2, RoundingMode.HALF_UP)), true);
+    }
+
+    // with reservations enabled, quantity changes stop at what the product's reservations hold
+    public int bulkSetQuantity(Predicate<Product> filter, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        return bulkUpdate(filter, p -> p.setQuantity(Math.max(quantity, Math.min(p.getQuantity(), reservedOf(p)))), false);
+    }
+
+    // delta < 0 takes stock out, down to 0 (or the reserved quantity) at most
+    public int bulkAdjustQuantity(Predicate<Product> filter, int delta) {
+        return bulkUpdate(filter, p -> {
+            long quantity = Math.min(Integer.MAX_VALUE, (long) p.getQuantity() + delta);
+            p.setQuantity((int) Math.max(quantity, delta < 0 ? Math.min(p.getQuantity(), reservedOf(p)) : 0));
+        }, false);
+    }
+
+    // caller holds the write lock
+    private int reservedOf(Product product) {
+        ReservationBook book = reservations;
+        return book == null ? 0 : book.getReserved(product.getId());
+    }
+
+    public int bulkRemove(Predicate<Product> filter) {
+        lock.writeLock().lock();
+        try {
+            List<Product> matches = matching(filter);
+            if (matches.isEmpty()) {
+                return 0;
+            }
+
+            for (InventoryListener listener : listeners) {
+                listener.bulkStarted(matches.size());
+            }
+            for (Product product : matches) {
+                Product removed = this.inventory.remove(product.getId());
+                for (InventoryListener listener : listeners) {
+                    listener.productRemoved(removed);
+                }
+            }
+            invalidateAll();
+            for (InventoryListener listener : listeners) {
+                listener.bulkFinished();
+            }
+            this.inventory.flush();
+            return matches.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int bulkUpdate(Predicate<Product> filter, Consumer<Product> change, boolean priceChanged) {
+        lock.writeLock().lock();
+        try {
+            List<Product> matches = matching(filter);
+            if (matches.isEmpty()) {
+                return 0;
+            }
+
+            for (InventoryListener listener : listeners) {
+                listener.bulkStarted(matches.size());
+            }
+            for (Product product : matches) {
+                Product before = listeners.isEmpty() ? null : product.copy();
+                change.accept(product);
+                product.updateUpdatedAt();
+                this.inventory.put(product);
+                for (InventoryListener listener : listeners) {
+                    listener.productUpdated(before, product);
+                }
+            }
+            invalidateUpdated(false, priceChanged);
+            for (InventoryListener listener : listeners) {
+                listener.bulkFinished();
+            }
+            this.inventory.flush();
+            return matches.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock. Runs the filter over the catalog in parallel partitions, reading the store
+    // a window of partitions at a time, so only the window and the matches are held in memory - a paged store
+    // is never copied whole. Matches come in store order.
+    private List<Product> matching(Predicate<Product> filter) {
+        int window = BULK_CHUNK_SIZE * Math.max(1, ForkJoinPool.getCommonPoolParallelism()) * 4;
+        List<Product> matches = new ArrayList<>();
+        List<Product> products = new ArrayList<>(Math.min(window, inventory.size()));
+        inventory.forEach(product -> {
+            products.add(product);
+            if (products.size() == window) {
+                matchWindow(products, filter, matches);
+                products.clear();
+            }
+        });
+        matchWindow(products, filter, matches);
+        return matches;
+    }
+
+    private static void matchWindow(List<Product> products, Predicate<Product> filter, List<Product> matches) {
+        int n = products.size();
+        int chunks = (n + BULK_CHUNK_SIZE - 1) / BULK_CHUNK_SIZE;
+        List<List<Product>> parts = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            List<Product> part = new ArrayList<>();
+            for (int i = c * BULK_CHUNK_SIZE; i < Math.min(n, (c + 1) * BULK_CHUNK_SIZE); i++) {
+                Product product = products.get(i);
+                if (filter.test(product)) {
+                    part.add(product);
+                }
+            }
+            return part;
+        }).toList();
+        for (List<Product> part : parts) {
+            matches.addAll(part);
+        }
+    }
+    // ------------------------------------------------------
+
+    // case-insensitive, like the UI's lowercase input
     public List<Product> searchProductsById(String id) {
+        String text = id.toLowerCase();
+        return cached(ResultKey.idSearch(text), SortField.ID, () -> findById(text));
+    }
+
+    public List<Product> searchProductsbyName(String name) {
+        String text = name.toLowerCase();
+        return cached(ResultKey.nameSearch(text), SortField.NAME, () -> findByName(text));
+    }
+
+    private List<Product> findById(String id) {
+        if (searchIndex != null) {
+            return searchIndexed(id, false);
+        }
+
         List<Product> matches = new ArrayList<>();
 
-        for (Product product : inventory.values()) {
+        forEachProduct(product -> {
             if (product.getId().toLowerCase().contains(id)) {
                 matches.add(product);
             }
-        }
+        });
 
         return matches;
     }
 
-    public List<Product> searchProductsbyName(String name) {
+    private List<Product> findByName(String name) {
+        if (searchIndex != null) {
+            return searchIndexed(name, true);
+        }
+
         List<Product> matches = new ArrayList<>();
 
-        for (Product product : inventory.values()) {
+        forEachProduct(product -> {
             if (product.getName().toLowerCase().contains(name)) {
                 matches.add(product);
             }
-        }
+        });
 
         return matches;
     }
 
+    // matches come in index order; an ID-ordered store's own order is kept
+    private List<Product> searchIndexed(String text, boolean byName) {
+        lock.readLock().lock();
+        try {
+            List<Product> matches = productsOf(byName ? searchIndex.searchNames(text) : searchIndex.searchIds(text));
+            if (inventory.isOrderedById()) {
+                matches.sort(Comparator.comparing(Product::getId));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the read lock
+    private List<Product> productsOf(List<String> ids) {
+        List<Product> products = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Product product = inventory.get(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
     public List<Product> getAllProducts() {
-        return new ArrayList<>(inventory.values());
+        lock.readLock().lock();
+        try {
+            List<Product> products = new ArrayList<>(inventory.size());
+            forEachProduct(products::add);
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // visits every product without materializing the whole catalog
+    // the action runs under the read lock, so it must not modify the inventory
+    public void forEachProduct(Consumer<Product> action) {
+        lock.readLock().lock();
+        try {
+            inventory.forEach(action);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
+    // ------------------- Queries -------------------
+    // e.g. query(Query.parse("name ~ \"milk\" AND quantity < 10 ORDER BY price DESC LIMIT 20"))
+    public List<Product> query(Query query) {
+        lock.readLock().lock();
+        try {
+            return planQuery(query).execute();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the plan the query would run with, without running it
+    public String explain(Query query) {
+        lock.readLock().lock();
+        try {
+            return planQuery(query).explain();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private QueryPlan planQuery(Query query) {
+        return new QueryPlanner(inventory, facetIndex, searchIndex).plan(query);
+    }
+    // ------------------------------------------------------
+
     // ------------------- Sort options -------------------
     public List<Product> sortBy(SortField field, boolean ascending) {
+        return cached(ResultKey.sort(field, ascending), field, () -> sort(field, ascending));
+    }
+
+    private List<Product> sort(SortField field, boolean ascending) {
+        Comparator<Product> comparator = comparator(field, ascending);
+
+        // sorted under the read lock: a concurrent update could otherwise change a product mid-sort
+        lock.readLock().lock();
+        try {
+            SearchIndex index = searchIndex;
+            if (index != null && SearchIndex.isOrdered(field)) {
+                return productsOf(index.sortedIds(field, ascending));
+            }
+
+            return getAllProducts().stream()
+                    .sorted(comparator)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Comparator<Product> comparator(SortField field, boolean ascending) {
         Comparator<Product> comparator = switch (field) {
             case ID -> Comparator.comparing(Product::getId);
             case NAME -> Comparator.comparing(Product::getName);
@@ -83,33 +552,645 @@ public class Inventory {
             case UPDATED_AT -> Comparator.comparing(Product::getUpdatedAt);
         };
 
-        if (!ascending) {
-            comparator = comparator.reversed();
+        return ascending ? comparator : comparator.reversed();
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Streaming -------------------
+    // Flow.Publisher variants of the list methods above: products are read a chunk at a time as the
+    // subscriber requests them, and cancelling stops the read. No lock is held between chunks, so a
+    // slow consumer never blocks writers - the stream is weakly consistent, each chunk being read as of
+    // that moment (removed products are skipped, updated ones show their new state).
+    public ProductPublisher streamAllProducts() {
+        return streamMatching(null);
+    }
+
+    // case-insensitive, like searchProductsById
+    public ProductPublisher streamSearchById(String id) {
+        String text = id.toLowerCase();
+        Predicate<Product> filter = product -> product.getId().toLowerCase().contains(text);
+        SearchIndex index = searchIndex;
+        if (index != null) {
+            return new ProductPublisher(() -> new SnapshotCursor(inventory, lock.readLock(),
+                    () -> index.searchIds(text).toArray(new String[0]), filter));
+        }
+        return streamMatching(filter);
+    }
+
+    public ProductPublisher streamSearchByName(String name) {
+        String text = name.toLowerCase();
+        Predicate<Product> filter = product -> product.getName().toLowerCase().contains(text);
+        SearchIndex index = searchIndex;
+        if (index != null) {
+            return new ProductPublisher(() -> new SnapshotCursor(inventory, lock.readLock(),
+                    () -> index.searchNames(text).toArray(new String[0]), filter));
+        }
+        return streamMatching(filter);
+    }
+
+    // a sort has to see every product once before the first result; only the sorted IDs are kept
+    public ProductPublisher streamSortedBy(SortField field, boolean ascending) {
+        if (field == SortField.ID && ascending && inventory.isOrderedById()) {
+            return streamMatching(null);
+        }
+
+        SearchIndex index = searchIndex;
+        if (index != null && SearchIndex.isOrdered(field)) {
+            return new ProductPublisher(() -> new SnapshotCursor(inventory, lock.readLock(),
+                    () -> index.sortedIds(field, ascending).toArray(new String[0]), null));
+        }
+
+        Comparator<Product> comparator = comparator(field, ascending);
+        return new ProductPublisher(() -> new SnapshotCursor(inventory, lock.readLock(), () -> {
+            List<Product> products = new ArrayList<>(inventory.size());
+            inventory.forEach(products::add);
+            products.sort(comparator);
+            return idsOf(products);
+        }, null));
+    }
+
+    // an unordered query without a usable index streams straight off an ID-ordered store; otherwise
+    // the plan runs once for the matching IDs (bounded by LIMIT or the index) and those are streamed
+    public ProductPublisher streamQuery(Query query) {
+        Condition condition = query.getCondition();
+        Predicate<Product> filter = condition == null ? null : condition::test;
+
+        return new ProductPublisher(() -> {
+            lock.readLock().lock();
+            try {
+                QueryPlan plan = planQuery(query);
+                if (plan.isFullScan() && query.getOrder().isEmpty() && inventory.isOrderedById()) {
+                    return new ScanCursor(inventory, lock.readLock(), filter, query.getLimit());
+                }
+
+                String[] ids = idsOf(plan.execute());
+                return new SnapshotCursor(inventory, lock.readLock(), () -> ids, filter);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private ProductPublisher streamMatching(Predicate<Product> filter) {
+        if (inventory.isOrderedById()) {
+            return new ProductPublisher(() -> new ScanCursor(inventory, lock.readLock(), filter, Query.NO_LIMIT));
         }
 
-        return inventory.values().stream()
-                .sorted(comparator)
-                .toList();
+        return new ProductPublisher(() -> new SnapshotCursor(inventory, lock.readLock(), () -> {
+            List<String> ids = new ArrayList<>();
+            inventory.forEach(product -> {
+                if (filter == null || filter.test(product)) {
+                    ids.add(product.getId());
+                }
+            });
+            return ids.toArray(new String[0]);
+        }, filter));
+    }
+
+    private static String[] idsOf(List<Product> products) {
+        String[] ids = new String[products.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = products.get(i).getId();
+        }
+        return ids;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- History -------------------
+    // starts recording versions; as-of queries can reach back to this moment (within the retention)
+    public InventoryHistory enableHistory(HistoryRetention retention) {
+        lock.writeLock().lock();
+        try {
+            if (history == null) {
+                history = new InventoryHistory(retention);
+                addListener(history);
+            }
+            return history;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public InventoryHistory getHistory() {
+        return history;
+    }
+
+    // the product as it was at the given time, or null if it did not exist then
+    public Product getProductAsOf(String id, LocalDateTime time) {
+        lock.readLock().lock();
+        try {
+            return requireHistory().getProductAsOf(id, time, inventory.get(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the whole inventory as it was at the given time: the live products that have not changed since,
+    // plus the decoded past state of those that have
+    public List<Product> getInventoryAsOf(LocalDateTime time) {
+        lock.readLock().lock();
+        try {
+            InventoryHistory history = requireHistory();
+            Set<String> changed = history.getChangedSince(time);
+            List<Product> products = new ArrayList<>(inventory.size());
+
+            forEachProduct(product -> {
+                if (!changed.contains(product.getId())) {
+                    products.add(product);
+                }
+            });
+
+            for (String id : changed) {
+                Product past = history.getProductAsOf(id, time, inventory.get(id));
+                if (past != null) {
+                    products.add(past);
+                }
+            }
+
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private InventoryHistory requireHistory() {
+        if (history == null) {
+            throw new IllegalStateException("Version history is not enabled for this inventory");
+        }
+        return history;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Stock ledger -------------------
+    // starts recording stock movements; current quantities are seeded so days of cover works immediately
+    public StockLedger enableStockLedger() {
+        lock.writeLock().lock();
+        try {
+            if (stockLedger == null) {
+                stockLedger = new StockLedger();
+                forEachProduct(stockLedger::seed);
+                addListener(stockLedger);
+            }
+            return stockLedger;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public StockLedger getStockLedger() {
+        return stockLedger;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Locations -------------------
+    // splits each product's quantity across locations; existing stock starts out at the default location
+    public LocationStock enableLocations(String defaultLocation) {
+        lock.writeLock().lock();
+        try {
+            if (locationStock == null) {
+                locationStock = new LocationStock(defaultLocation);
+                forEachProduct(locationStock::productAdded);
+                addListener(locationStock);
+            }
+            return locationStock;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public LocationStock getLocationStock() {
+        return locationStock;
+    }
+
+    // moves stock between locations atomically; the product's total quantity is unchanged
+    public boolean transferStock(String id, String from, String to, int quantity) {
+        lock.writeLock().lock();
+        try {
+            return requireLocations().transfer(id, from, to, quantity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // receives (positive) or takes away (negative) stock at one location, updating the product's total;
+    // false, changing nothing, if the location lacks the stock or the product has left the inventory
+    public boolean adjustStockAt(Product product, String location, int delta) {
+        lock.writeLock().lock();
+        try {
+            LocationStock locations = requireLocations();
+            if (!isCurrent(product)) {
+                return false;
+            }
+            requireUnreserved(product, p -> p.setQuantity(p.getQuantity() + delta));
+            if (!locations.adjust(product.getId(), location, delta)) {
+                return false;
+            }
+
+            return saveChanges(product, p -> p.setQuantity(p.getQuantity() + delta));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private LocationStock requireLocations() {
+        if (locationStock == null) {
+            throw new IllegalStateException("Multi-location stock is not enabled for this inventory");
+        }
+        return locationStock;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Reservations -------------------
+    // holds stock for a while (e.g. during checkout) without taking it out: held stock is not available to
+    // other reservations until it is confirmed, released or runs out. A background thread expires holds,
+    // checking once every tickMillis.
+    public ReservationBook enableReservations(long tickMillis) {
+        lock.writeLock().lock();
+        try {
+            if (reservations == null) {
+                ReservationBook book = new ReservationBook(System::currentTimeMillis, tickMillis);
+                addListener(book);
+                reservations = book;
+                reservationExpirer = new ReservationExpirer(this, book);
+                reservationExpirer.start();
+            }
+            return reservations;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ReservationBook enableReservations() {
+        return enableReservations(ReservationBook.DEFAULT_TICK_MILLIS);
+    }
+
+    public ReservationBook getReservations() {
+        return reservations;
+    }
+
+    // null if the product does not exist or less than quantity of it is available
+    public Reservation reserve(String id, int quantity, Duration hold) {
+        lock.writeLock().lock();
+        try {
+            ReservationBook book = requireReservations();
+            Product product = inventory.get(id);
+            return product == null ? null : book.hold(product, quantity, hold.toMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // takes the reserved quantity out of stock for good; false if the reservation is no longer held, or if its
+    // product has been removed or has less stock left than was reserved (the hold is then released)
+    public boolean confirmReservation(long reservationId) {
+        lock.writeLock().lock();
+        try {
+            ReservationBook book = requireReservations();
+            book.expire(); // one that has just run out must not be confirmed
+            Reservation reservation = book.get(reservationId);
+            if (reservation == null) {
+                return false;
+            }
+
+            Product product = inventory.get(reservation.getProductId());
+            if (product == null || book.isOrphaned(reservation) || product.getQuantity() < reservation.getQuantity()) {
+                book.end(reservationId, Reservation.State.RELEASED);
+                return false;
+            }
+
+            book.end(reservationId, Reservation.State.CONFIRMED);
+            saveChanges(product, p -> p.decreaseQuantity(reservation.getQuantity()));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // false if the reservation is no longer held
+    public boolean releaseReservation(long reservationId) {
+        lock.writeLock().lock();
+        try {
+            return requireReservations().end(reservationId, Reservation.State.RELEASED) != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the quantity not held by reservations (all of it without reservations enabled); 0 if the product does not exist
+    public int getAvailableQuantity(String id) {
+        lock.readLock().lock();
+        try {
+            Product product = inventory.get(id);
+            if (product == null) {
+                return 0;
+            }
+            ReservationBook book = reservations;
+            return book == null ? product.getQuantity() : book.getAvailable(product);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ends the holds that have run out; returns how many (normally left to the background thread)
+    public int expireReservations() {
+        ReservationBook book = reservations;
+        if (book == null) {
+            return 0;
+        }
+
+        lock.writeLock().lock();
+        try {
+            return book.expire();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ReservationBook requireReservations() {
+        if (reservations == null) {
+            throw new IllegalStateException("Reservations are not enabled for this inventory");
+        }
+        return reservations;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Facets -------------------
+    // builds the attribute index on first use; from then on it is kept current by the change events
+    public FacetIndex enableFacets() {
+        lock.writeLock().lock();
+        try {
+            if (facetIndex == null) {
+                facetIndex = new FacetIndex();
+                forEachProduct(facetIndex::productAdded);
+                addListener(facetIndex);
+            }
+            return facetIndex;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public FacetIndex getFacetIndex() {
+        return facetIndex;
+    }
+
+    public List<Product> facetSearch(FacetQuery query) {
+        lock.readLock().lock();
+        try {
+            FacetIndex index = requireFacets();
+            List<Product> matches = new ArrayList<>();
+            for (String id : index.getIds(index.evaluate(query))) {
+                matches.add(inventory.get(id));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // attribute value -> number of products matching the query that carry it
+    public Map<String, Long> getFacetCounts(FacetQuery query, String attribute) {
+        lock.readLock().lock();
+        try {
+            FacetIndex index = requireFacets();
+            RoaringBitmap matches = index.evaluate(query);
+            return index.getFacetCounts(matches, attribute);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private FacetIndex requireFacets() {
+        if (facetIndex == null) {
+            throw new IllegalStateException("The attribute index is not enabled for this inventory");
+        }
+        return facetIndex;
     }
     // ------------------------------------------------------
 
     public int getTotalProducts() {
-        return inventory.size();
+        lock.readLock().lock();
+        try {
+            return inventory.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public int getTotalStockQuantity() {
-        return inventory.values().stream()
-                .mapToInt(Product::getQuantity)
-                .sum();
+        if (hasExactColumns()) {
+            return (int) getStatistics(StockStatistics.DEFAULT_LOW_STOCK_THRESHOLD).getTotalQuantity();
+        }
+
+        int[] total = new int[1];
+        forEachProduct(product -> total[0] += product.getQuantity());
+        return total[0];
     }
 
     public BigDecimal getTotalInventoryValue() {
-        return inventory.values().stream()
-                .map(Product::totalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (hasExactColumns()) {
+            return getStatistics(StockStatistics.DEFAULT_LOW_STOCK_THRESHOLD).getTotalValue();
+        }
+
+        BigDecimal[] total = {BigDecimal.ZERO};
+        forEachProduct(product -> total[0] = total[0].add(product.totalPrice()));
+        return total[0];
     }
 
+    // ------------------- Statistics -------------------
+    // keeps quantity and price as primitive columns so statistics are a SIMD pass (see StockColumns)
+    public StockColumns enableStatistics() {
+        lock.writeLock().lock();
+        try {
+            if (stockColumns == null) {
+                StockColumns columns = new StockColumns();
+                inventory.forEach(columns::productAdded);
+                addListener(columns);
+                stockColumns = columns;
+            }
+            return stockColumns;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public StockColumns getStockColumns() {
+        return stockColumns;
+    }
+
+    // count, quantity and price range and averages, total value and low-stock count; from the columns
+    // when they are kept (and every price fits them), otherwise from a scan of the products
+    public StockStatistics getStatistics(int lowStockThreshold) {
+        lock.readLock().lock();
+        try {
+            StockColumns columns = stockColumns;
+            if (columns != null && columns.isExact()) {
+                return columns.computeStatistics(lowStockThreshold);
+            }
+
+            StockStatistics.Builder builder = new StockStatistics.Builder(lowStockThreshold);
+            inventory.forEach(builder::add);
+            return builder.build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // percentiles, distinct names and top products from bounded-memory sketches (see InventorySketches)
+    public InventorySketches enableSketches() {
+        lock.writeLock().lock();
+        try {
+            if (sketches == null) {
+                InventorySketches newSketches = new InventorySketches();
+                newSketches.rebuild(inventory::forEach);
+                addListener(newSketches);
+                sketches = newSketches;
+            }
+            return sketches;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public InventorySketches getSketches() {
+        return sketches;
+    }
+
+    // null if the sketches are not enabled
+    public DistributionSummary getDistributionSummary() {
+        InventorySketches current = sketches;
+        if (current == null) {
+            return null;
+        }
+
+        // read lock: a rebuild scans the catalog
+        lock.readLock().lock();
+        try {
+            return current.summarize(inventory::forEach);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean hasExactColumns() {
+        StockColumns columns = stockColumns;
+        return columns != null && columns.isExact();
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Search index -------------------
+    // substring search and the id, name and price sorts through a SearchIndex, kept current from here on.
+    // A saved index (see IndexFile) is taken as is if it holds exactly the products in the store;
+    // otherwise, or without one, the index is built from the store in parallel.
+    public SearchIndex enableSearchIndex(SearchIndex saved) {
+        lock.writeLock().lock();
+        try {
+            if (searchIndex == null) {
+                SearchIndex index = saved != null && covers(saved) ? saved : null;
+                if (index == null) {
+                    List<Product> products = new ArrayList<>(inventory.size());
+                    inventory.forEach(products::add);
+                    index = SearchIndex.build(products);
+                }
+                searchIndex = index;
+                addListener(index);
+                invalidateAll(); // results now come in the index's order
+            }
+            return searchIndex;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    // one lookup per product - far cheaper than the sorts and tokenizing a rebuild does
+    private boolean covers(SearchIndex index) {
+        if (index.getProductCount() != inventory.size()) {
+            return false;
+        }
+        boolean[] covered = {true};
+        inventory.forEachWhile(product -> covered[0] = index.matches(product));
+        return covered[0];
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Result cache -------------------
+    // keeps search and sort results, up to maxWeight list elements in total (one per product, one per
+    // result). A result is reused until a change that can alter it: adding or removing a product
+    // invalidates everything, renaming only searches by name and sorts by name (and last update), and so
+    // on - a stock change leaves every result but the last-updated sort valid. Cached lists are read-only.
+    public ResultCache<ResultKey, List<Product>> enableResultCache(long maxWeight) {
+        lock.writeLock().lock();
+        try {
+            if (resultCache == null) {
+                resultCache = new ResultCache<>(maxWeight, (int) Math.min(maxWeight, 1 << 16));
+            }
+            return resultCache;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ResultCache<ResultKey, List<Product>> getResultCache() {
+        return resultCache;
+    }
+
+    private List<Product> cached(ResultKey key, SortField dependency, Supplier<List<Product>> compute) {
+        ResultCache<ResultKey, List<Product>> cache = resultCache;
+        if (cache == null) {
+            return compute.get();
+        }
+
+        // the generation and the result are read under the same lock, so no change can land in between
+        lock.readLock().lock();
+        try {
+            long generation = generations[dependency.ordinal()];
+            List<Product> result = cache.get(key, generation);
+            if (result == null) {
+                result = Collections.unmodifiableList(compute.get());
+                cache.put(key, result, 1 + result.size(), generation);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void invalidateAll() {
+        for (int i = 0; i < generations.length; i++) {
+            generations[i]++;
+        }
+    }
+
+    // caller holds the write lock. Cached lists hold the products themselves, so only changes to what a
+    // result was matched or ordered by make it stale - unless the store hands out copies.
+    private void invalidateChanged(String name, BigDecimal price, Product after) {
+        invalidateUpdated(!name.equals(after.getName()), price.compareTo(after.getPrice()) != 0);
+    }
+
+    private void invalidateUpdated(boolean nameChanged, boolean priceChanged) {
+        if (!inventory.sharesProducts()) {
+            invalidateAll();
+            return;
+        }
+        generations[SortField.UPDATED_AT.ordinal()]++;
+        if (nameChanged) {
+            generations[SortField.NAME.ordinal()]++;
+        }
+        if (priceChanged) {
+            generations[SortField.PRICE.ordinal()]++;
+        }
+    }
+    // ------------------------------------------------------
+
+    // snapshot keyed by ID - the live storage may not be string-keyed
     public Map<String, Product> getInventory() {
-        return inventory;
+        Map<String, Product> snapshot = new HashMap<>();
+        forEachProduct(product -> snapshot.put(product.getId(), product));
+        return snapshot;
     }
 }
@@ -0,0 +1,23 @@
+package com.chaoswanderer.inventory.model;
+
+// notified of every change to an Inventory, while its write lock is held
+// listeners must be quick and must not call back into the inventory to modify it
+public interface InventoryListener {
+
+    default void productAdded(Product product) {
+    }
+
+    // before is a detached copy of the product as it was prior to the change
+    default void productUpdated(Product before, Product after) {
+    }
+
+    default void productRemoved(Product product) {
+    }
+
+    // the changes reported from here to bulkFinished are one logical operation (see Inventory.bulkAdjustPrice)
+    default void bulkStarted(int changes) {
+    }
+
+    default void bulkFinished() {
+    }
+}
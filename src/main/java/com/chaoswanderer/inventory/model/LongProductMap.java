@@ -0,0 +1,192 @@
+package com.chaoswanderer.inventory.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// open-addressing hash table keyed by primitive long IDs (linear probing, no boxing)
+// an empty slot is marked by a null value, so every long is a valid key
+public class LongProductMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Product[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongProductMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongProductMap(int expectedSize) {
+        int capacity = tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR));
+        allocate(capacity);
+    }
+
+    public Product get(long key) {
+        int slot = hash(key) & mask;
+
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    // returns the previous product stored under the key, or null
+    public Product put(long key, Product product) {
+        if (product == null) {
+            throw new IllegalArgumentException("Null products cannot be stored");
+        }
+
+        int slot = hash(key) & mask;
+
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                Product previous = values[slot];
+                values[slot] = product;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = product;
+
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+
+        return null;
+    }
+
+    public Product remove(long key) {
+        int slot = hash(key) & mask;
+
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                Product removed = values[slot];
+                shiftBackFrom(slot);
+                size--;
+                return removed;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public void forEach(Consumer<Product> action) {
+        for (Product value : values) {
+            if (value != null) {
+                action.accept(value);
+            }
+        }
+    }
+
+    public void forEachWhile(Predicate<Product> visitor) {
+        for (Product value : values) {
+            if (value != null && !visitor.test(value)) {
+                return;
+            }
+        }
+    }
+
+    public List<Product> values() {
+        List<Product> list = new ArrayList<>(size);
+        forEach(list::add);
+        return list;
+    }
+
+    // backward-shift deletion keeps probe chains intact without tombstones
+    private void shiftBackFrom(int hole) {
+        int slot = hole;
+
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                break;
+            }
+
+            int home = hash(keys[slot]) & mask;
+
+            // move the entry into the hole unless its home lies cyclically in (hole, slot]
+            boolean between = hole <= slot
+                    ? (home > hole && home <= slot)
+                    : (home > hole || home <= slot);
+
+            if (!between) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+
+        values[hole] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Product[] oldValues = values;
+        allocate(newCapacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+
+            int slot = hash(oldKeys[i]) & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Product[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // murmur3 finalizer - sequential IDs would otherwise cluster in neighbouring slots
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        return Math.max(n, DEFAULT_CAPACITY);
+    }
+}
@@ -0,0 +1,94 @@
+package com.chaoswanderer.inventory.model;
+
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class MemoryProductStore implements ProductStore {
+    // while every ID is numeric, products live in a primitive long-keyed table
+    // the first non-numeric ID moves everything over to string keys for good
+    private final LongProductMap numericProducts;
+    private Map<String, Product> products;
+
+    public MemoryProductStore() {
+        this.numericProducts = new LongProductMap();
+        this.products = null;
+    }
+
+    public boolean isNumericIdMode() {
+        return products == null;
+    }
+
+    @Override
+    public Product get(String id) {
+        if (!isNumericIdMode()) {
+            return products.get(id);
+        }
+
+        long key = InventoryUtils.parseNumericId(id);
+        return key < 0 ? null : numericProducts.get(key);
+    }
+
+    @Override
+    public void put(Product product) {
+        if (isNumericIdMode()) {
+            long key = InventoryUtils.parseNumericId(product.getId());
+            if (key >= 0) {
+                numericProducts.put(key, product);
+                return;
+            }
+
+            fallbackToStringKeys();
+        }
+
+        products.put(product.getId(), product);
+    }
+
+    @Override
+    public Product remove(String id) {
+        if (!isNumericIdMode()) {
+            return products.remove(id);
+        }
+
+        long key = InventoryUtils.parseNumericId(id);
+        return key < 0 ? null : numericProducts.remove(key);
+    }
+
+    @Override
+    public void forEach(Consumer<Product> action) {
+        if (isNumericIdMode()) {
+            numericProducts.forEach(action);
+        } else {
+            products.values().forEach(action);
+        }
+    }
+
+    @Override
+    public void forEachWhile(Predicate<Product> visitor) {
+        if (isNumericIdMode()) {
+            numericProducts.forEachWhile(visitor);
+            return;
+        }
+
+        for (Product product : products.values()) {
+            if (!visitor.test(product)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return isNumericIdMode() ? numericProducts.size() : products.size();
+    }
+
+    private void fallbackToStringKeys() {
+        Map<String, Product> stringKeyed = new HashMap<>(Math.max(16, numericProducts.size() * 2));
+        numericProducts.forEach(product -> stringKeyed.put(product.getId(), product));
+        numericProducts.clear();
+        this.products = stringKeyed;
+    }
+}
@@ -1,17 +1,32 @@
 package com.chaoswanderer.inventory.model;
 
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class Product {
+    // well-known attribute names - any other name works the same way
+    public static final String CATEGORY = "category";
+    public static final String BRAND = "brand";
+    public static final String TAG = "tag";
+
     private String id;
     private String name;
     private int quantity;
     private BigDecimal price;
     private final LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    // multi-valued attributes (e.g. tag -> {organic, local}); null until the first one is set,
+    // since most products in a big catalog never get any
+    private Map<String, Set<String>> attributes;
 
     public Product(String id, String name, int quantity, BigDecimal price) {
         this.id = id;
@@ -22,6 +37,16 @@ public class Product {
         this.updatedAt = this.createdAt;
     }
 
+    // restores a product with its original timestamps (e.g. when read back from storage)
+    public Product(String id, String name, int quantity, BigDecimal price, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.quantity = quantity;
+        this.price = price;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     // Getters & Setters
 
     public String getId() {
@@ -96,12 +121,66 @@ public class Product {
         return updatedAt.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
+    // Attributes
+    public Map<String, Set<String>> getAttributes() {
+        return attributes == null ? Collections.emptyMap() : Collections.unmodifiableMap(attributes);
+    }
+
+    public Set<String> getAttributeValues(String name) {
+        Set<String> values = attributes == null ? null : attributes.get(name);
+        return values == null ? Collections.emptySet() : Collections.unmodifiableSet(values);
+    }
+
+    public boolean hasAttribute(String name, String value) {
+        return getAttributeValues(name).contains(value);
+    }
+
+    public void addAttribute(String name, String value) {
+        if (attributes == null) {
+            attributes = new TreeMap<>();
+        }
+        attributes.computeIfAbsent(name, key -> new TreeSet<>()).add(value);
+    }
+
+    public void removeAttribute(String name, String value) {
+        Set<String> values = attributes == null ? null : attributes.get(name);
+        if (values == null) {
+            return;
+        }
+
+        values.remove(value);
+        if (values.isEmpty()) {
+            attributes.remove(name);
+        }
+    }
+
+    public void setAttributes(Map<String, Set<String>> newAttributes) {
+        attributes = null;
+        for (Map.Entry<String, Set<String>> entry : newAttributes.entrySet()) {
+            for (String value : entry.getValue()) {
+                addAttribute(entry.getKey(), value);
+            }
+        }
+    }
+
     // Business methods
     public BigDecimal totalPrice() {
         return price.multiply(BigDecimal.valueOf(quantity))
                 .setScale(2, RoundingMode.HALF_UP);
     }
 
+    public Product copy() {
+        Product copy = new Product(id, name, quantity, price, createdAt, updatedAt);
+        if (attributes != null) {
+            copy.setAttributes(attributes);
+        }
+        return copy;
+    }
+
+    public long contentHash() {
+        return InventoryUtils.contentHash(name, quantity, price, InventoryUtils.formatAttributes(getAttributes()));
+    }
+
     // Overrides
     @Override
     public String toString() {
@@ -127,7 +206,7 @@ public class Product {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
+        result = prime * result + ((id == null) ? 0 : id.hashCode()); // must agree with equals()
         return result;
     }
 
@@ -0,0 +1,51 @@
+package com.chaoswanderer.inventory.model;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// where Inventory keeps its products - in memory or paged from disk
+public interface ProductStore {
+
+    Product get(String id);
+
+    // inserts the product, or writes it back over the stored copy with the same ID
+    void put(Product product);
+
+    Product remove(String id);
+
+    void forEach(Consumer<Product> action);
+
+    // visits products until the visitor returns false - stores override this to stop reading early
+    default void forEachWhile(Predicate<Product> visitor) {
+        boolean[] stopped = {false};
+        forEach(product -> {
+            if (!stopped[0] && !visitor.test(product)) {
+                stopped[0] = true;
+            }
+        });
+    }
+
+    // true if forEach visits products in ascending ID order and scanFrom is supported
+    default boolean isOrderedById() {
+        return false;
+    }
+
+    // visits products with an ID >= fromId in ascending ID order, until the visitor returns false
+    default void scanFrom(String fromId, Predicate<Product> visitor) {
+        throw new UnsupportedOperationException("This store is not ordered by ID");
+    }
+
+    int size();
+
+    // true if get and forEach hand out the stored products themselves, so a change made through Inventory
+    // shows in every list holding them; false for stores that hand out copies
+    default boolean sharesProducts() {
+        return true;
+    }
+
+    default void flush() {
+    }
+
+    default void close() {
+    }
+}
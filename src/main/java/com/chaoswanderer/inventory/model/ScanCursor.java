@@ -0,0 +1,71 @@
+package com.chaoswanderer.inventory.model;
+
+import com.chaoswanderer.inventory.stream.ProductCursor;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+
+// streams an ID-ordered store: each chunk is one scan under the read lock that resumes after the
+// last ID seen, so memory stays at one chunk and writers are only held off while a chunk is read
+final class ScanCursor implements ProductCursor {
+    // bounds how long one chunk holds the lock when the filter matches little
+    private static final int MAX_EXAMINED_PER_CHUNK = 16384;
+
+    private final ProductStore store;
+    private final Lock readLock;
+    private final Predicate<Product> filter;
+    private long remaining;
+    private String lastId;
+
+    // filter may be null; limit < 0 means no limit
+    ScanCursor(ProductStore store, Lock readLock, Predicate<Product> filter, long limit) {
+        this.store = store;
+        this.readLock = readLock;
+        this.filter = filter;
+        this.remaining = limit < 0 ? Long.MAX_VALUE : limit;
+    }
+
+    @Override
+    public boolean next(int max, List<Product> out) {
+        if (remaining == 0) {
+            return false;
+        }
+
+        int wanted = (int) Math.min(max, remaining);
+        int start = out.size();
+        int[] examined = {0};
+        boolean[] stopped = {false};
+
+        Predicate<Product> visitor = product -> {
+            String id = product.getId();
+            if (id.equals(lastId)) {
+                return true; // scanFrom starts at the last ID itself
+            }
+            lastId = id;
+
+            if (filter == null || filter.test(product)) {
+                out.add(product);
+            }
+            if (out.size() - start >= wanted || ++examined[0] >= MAX_EXAMINED_PER_CHUNK) {
+                stopped[0] = true;
+                return false;
+            }
+            return true;
+        };
+
+        readLock.lock();
+        try {
+            if (lastId == null) {
+                store.forEachWhile(visitor);
+            } else {
+                store.scanFrom(lastId, visitor);
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        remaining -= out.size() - start;
+        return stopped[0] && remaining > 0;
+    }
+}
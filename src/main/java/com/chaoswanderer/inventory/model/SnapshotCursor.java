@@ -0,0 +1,57 @@
+package com.chaoswanderer.inventory.model;
+
+import com.chaoswanderer.inventory.stream.ProductCursor;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// streams results that have no resumable order in the store (a hash-keyed store, a sort, an index
+// lookup): the matching IDs are taken once, then products are fetched a chunk at a time and checked
+// again, so anything removed - or changed so it no longer matches - in the meantime is skipped.
+// Only the IDs are held, and each is dropped once delivered.
+final class SnapshotCursor implements ProductCursor {
+    private final ProductStore store;
+    private final Lock readLock;
+    private final Supplier<String[]> snapshot;
+    private final Predicate<Product> filter;
+    private String[] ids;
+    private int position;
+
+    // snapshot runs under the read lock on the first call; filter may be null
+    SnapshotCursor(ProductStore store, Lock readLock, Supplier<String[]> snapshot, Predicate<Product> filter) {
+        this.store = store;
+        this.readLock = readLock;
+        this.snapshot = snapshot;
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean next(int max, List<Product> out) {
+        readLock.lock();
+        try {
+            if (ids == null) {
+                ids = snapshot.get();
+            }
+
+            int added = 0;
+            while (position < ids.length && added < max) {
+                Product product = store.get(ids[position]);
+                ids[position++] = null;
+                if (product != null && (filter == null || filter.test(product))) {
+                    out.add(product);
+                    added++;
+                }
+            }
+            return position < ids.length;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        ids = null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.chaoswanderer.inventory.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// in-memory products in a red-black tree on ID: slower point lookups than the hash stores, but ordered,
+// so ID sorts, ID range queries and streaming resume from the store itself, as with the paged store
+public class SortedProductStore implements ProductStore {
+    private final TreeMap<String, Product> products = new TreeMap<>();
+
+    @Override
+    public Product get(String id) {
+        return products.get(id);
+    }
+
+    @Override
+    public void put(Product product) {
+        products.put(product.getId(), product);
+    }
+
+    @Override
+    public Product remove(String id) {
+        return products.remove(id);
+    }
+
+    @Override
+    public void forEach(Consumer<Product> action) {
+        products.values().forEach(action);
+    }
+
+    @Override
+    public void forEachWhile(Predicate<Product> visitor) {
+        visitWhile(products, visitor);
+    }
+
+    @Override
+    public boolean isOrderedById() {
+        return true;
+    }
+
+    @Override
+    public void scanFrom(String fromId, Predicate<Product> visitor) {
+        visitWhile(products.tailMap(fromId, true), visitor);
+    }
+
+    @Override
+    public int size() {
+        return products.size();
+    }
+
+    private static void visitWhile(Map<String, Product> products, Predicate<Product> visitor) {
+        for (Product product : products.values()) {
+            if (!visitor.test(product)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.chaoswanderer.inventory.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// direct buffers of one size, handed out and taken back instead of allocated per connection - direct
+// memory is slow to allocate and only freed by the GC. Up to maxIdle returned buffers are kept for reuse,
+// the rest are left to the GC. Thread-safe.
+public class BufferPool {
+    private final int bufferSize;
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    public BufferPool(int bufferSize, int maxIdle) {
+        if (bufferSize < 1 || maxIdle < 0) {
+            throw new IllegalArgumentException("Buffer size must be positive and the idle limit not negative");
+        }
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+    }
+
+    // a cleared buffer
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer != null) {
+            idleCount.decrementAndGet();
+            reused.incrementAndGet();
+            return buffer.clear();
+        }
+        allocated.incrementAndGet();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    // the caller must not touch the buffer afterwards
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || !buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer does not belong to this pool");
+        }
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(buffer);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+}
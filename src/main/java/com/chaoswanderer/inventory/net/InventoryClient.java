@@ -0,0 +1,362 @@
+package com.chaoswanderer.inventory.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.chaoswanderer.inventory.net.WireProtocol.*;
+
+// a connection to an InventoryServer. The round-trip methods (lookup, adjust, ...) send one request and
+// wait for its answer. To pipeline, queue requests with the send methods - each returns its request id -
+// and collect the answers, in the same order, with receive(), which sends whatever is still queued first.
+// Keep the number in flight bounded (hundreds, not millions): the server stops reading from a client whose
+// answers pile up unread. Not thread-safe - one client per thread.
+public class InventoryClient implements AutoCloseable {
+
+    // one product as the server reported it
+    public static final class ProductInfo {
+        private final String id;
+        private final String name;
+        private final int quantity;
+        private final int available;
+        private final long priceCents;
+
+        ProductInfo(String id, String name, int quantity, int available, long priceCents) {
+            this.id = id;
+            this.name = name;
+            this.quantity = quantity;
+            this.available = available;
+            this.priceCents = priceCents;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        // the quantity not held by reservations
+        public int getAvailable() {
+            return available;
+        }
+
+        public BigDecimal getPrice() {
+            return BigDecimal.valueOf(priceCents, 2);
+        }
+
+        @Override
+        public String toString() {
+            return id + " | " + name + " | Qty: " + quantity + " (" + available + " available) | $" + getPrice();
+        }
+    }
+
+    public static final class Response {
+        private final int requestId;
+        private final byte op;
+        private final byte status;
+        private final int quantity;
+        private final long reservationId;
+        private final List<ProductInfo> products;
+
+        Response(int requestId, byte op, byte status, int quantity, long reservationId, List<ProductInfo> products) {
+            this.requestId = requestId;
+            this.op = op;
+            this.status = status;
+            this.quantity = quantity;
+            this.reservationId = reservationId;
+            this.products = products;
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public byte getOp() {
+            return op;
+        }
+
+        // one of the WireProtocol.STATUS_ constants
+        public byte getStatus() {
+            return status;
+        }
+
+        public boolean isOk() {
+            return status == STATUS_OK;
+        }
+
+        // adjust: the quantity afterwards
+        public int getQuantity() {
+            return quantity;
+        }
+
+        // reserve: the new reservation
+        public long getReservationId() {
+            return reservationId;
+        }
+
+        // lookup: the product (null if not found)
+        public ProductInfo getProduct() {
+            return products.isEmpty() ? null : products.get(0);
+        }
+
+        // batch get: one entry per requested id, null where there is no such product
+        public List<ProductInfo> getProducts() {
+            return products;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + requestId + " " + opName(op) + " " + statusName(status);
+        }
+    }
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE); // write mode
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip(); // read mode
+    private int nextRequestId;
+    private int inFlight;
+
+    private InventoryClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static InventoryClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.connect(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new InventoryClient(channel);
+    }
+
+    // ------------------- Round trips -------------------
+    // null if there is no such product
+    public ProductInfo lookup(String id) throws IOException {
+        requireIdle();
+        sendLookup(id);
+        return receive().getProduct();
+    }
+
+    // adds delta (negative for a sale) to the stock
+    public Response adjust(String id, int delta) throws IOException {
+        requireIdle();
+        sendAdjust(id, delta);
+        return receive();
+    }
+
+    public Response reserve(String id, int quantity, int holdMillis) throws IOException {
+        requireIdle();
+        sendReserve(id, quantity, holdMillis);
+        return receive();
+    }
+
+    public boolean confirm(long reservationId) throws IOException {
+        requireIdle();
+        sendConfirm(reservationId);
+        return receive().isOk();
+    }
+
+    public boolean release(long reservationId) throws IOException {
+        requireIdle();
+        sendRelease(reservationId);
+        return receive().isOk();
+    }
+
+    public List<ProductInfo> batchGet(List<String> ids) throws IOException {
+        requireIdle();
+        sendBatchGet(ids);
+        return receive().getProducts();
+    }
+
+    private void requireIdle() {
+        if (inFlight > 0) {
+            throw new IllegalStateException(inFlight + " pipelined responses have not been received");
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Pipelining -------------------
+    public int sendLookup(String id) throws IOException {
+        byte[] idBytes = encode(id);
+        int requestId = begin(OP_LOOKUP, 2 + idBytes.length);
+        putBytes(idBytes);
+        return requestId;
+    }
+
+    public int sendAdjust(String id, int delta) throws IOException {
+        byte[] idBytes = encode(id);
+        int requestId = begin(OP_ADJUST, 2 + idBytes.length + 4);
+        putBytes(idBytes);
+        out.putInt(delta);
+        return requestId;
+    }
+
+    public int sendReserve(String id, int quantity, int holdMillis) throws IOException {
+        byte[] idBytes = encode(id);
+        int requestId = begin(OP_RESERVE, 2 + idBytes.length + 8);
+        putBytes(idBytes);
+        out.putInt(quantity).putInt(holdMillis);
+        return requestId;
+    }
+
+    public int sendConfirm(long reservationId) throws IOException {
+        int requestId = begin(OP_CONFIRM, 8);
+        out.putLong(reservationId);
+        return requestId;
+    }
+
+    public int sendRelease(long reservationId) throws IOException {
+        int requestId = begin(OP_RELEASE, 8);
+        out.putLong(reservationId);
+        return requestId;
+    }
+
+    public int sendBatchGet(List<String> ids) throws IOException {
+        if (ids.size() > MAX_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH + " ids per batch");
+        }
+        List<byte[]> encoded = new ArrayList<>(ids.size());
+        int length = 2;
+        for (String id : ids) {
+            byte[] bytes = encode(id);
+            encoded.add(bytes);
+            length += 2 + bytes.length;
+        }
+
+        int requestId = begin(OP_BATCH_GET, length);
+        out.putShort((short) ids.size());
+        for (byte[] bytes : encoded) {
+            putBytes(bytes);
+        }
+        return requestId;
+    }
+
+    // sends the queued requests
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    // the answer to the oldest request still in flight
+    public Response receive() throws IOException {
+        if (inFlight == 0) {
+            throw new IllegalStateException("No request in flight");
+        }
+        if (out.position() > 0) {
+            flush();
+        }
+
+        fill(4);
+        int length = in.getInt();
+        if (length < 6 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Bad frame length " + length);
+        }
+        fill(length);
+        int end = in.position() + length;
+
+        int requestId = in.getInt();
+        byte op = in.get();
+        byte status = in.get();
+        int quantity = 0;
+        long reservationId = 0;
+        List<ProductInfo> products = Collections.emptyList();
+        if (status == STATUS_OK) {
+            switch (op) {
+                case OP_LOOKUP -> products = Collections.singletonList(getProduct());
+                case OP_ADJUST -> quantity = in.getInt();
+                case OP_RESERVE -> reservationId = in.getLong();
+                case OP_BATCH_GET -> {
+                    int count = in.getShort() & 0xFFFF;
+                    products = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        products.add(in.get() == 0 ? null : getProduct());
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        in.position(end);
+        inFlight--;
+        return new Response(requestId, op, status, quantity, reservationId, products);
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    private int begin(byte op, int payloadLength) throws IOException {
+        int frameLength = REQUEST_HEADER_LENGTH + payloadLength;
+        if (frameLength > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Request too large");
+        }
+        if (out.remaining() < 4 + frameLength) {
+            flush();
+        }
+
+        int requestId = nextRequestId++;
+        out.putInt(frameLength).putInt(requestId).put(op);
+        inFlight++;
+        return requestId;
+    }
+
+    private void putBytes(byte[] bytes) {
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for the protocol");
+        }
+        return bytes;
+    }
+
+    private ProductInfo getProduct() {
+        return new ProductInfo(getString(in), getString(in), in.getInt(), in.getInt(), in.getLong());
+    }
+
+    // reads until at least count bytes are buffered
+    private void fill(int count) throws IOException {
+        if (in.remaining() >= count) {
+            return;
+        }
+        in.compact();
+        try {
+            while (in.position() < count) {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Server closed the connection");
+                }
+            }
+        } finally {
+            in.flip();
+        }
+    }
+    // ------------------------------------------------------
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,566 @@
+package com.chaoswanderer.inventory.net;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.reservation.Reservation;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static com.chaoswanderer.inventory.net.WireProtocol.*;
+
+// serves the binary protocol (see WireProtocol) for point-of-sale terminals and other clients that need
+// quick stock lookups and changes. One selector thread handles every connection without blocking: all the
+// complete requests a read brings in are answered into one outgoing buffer and written with one call, so
+// a pipelining client gets its responses in batches. Each connection borrows a direct buffer from a pool
+// for a partly received frame and one for unsent responses, and gives them back when they run empty, so
+// idle connections hold no buffers.
+//
+// a connection whose responses the socket will not take stops being read until they are out, so a client
+// that never reads cannot make the server queue without bound. Changes (adjust, reserve, confirm,
+// release) are handed to a ChangeRunner - the server's own writer thread, or a GroupCommitter with
+// --journal - so the selector thread never waits for the write lock or a journal sync; a connection
+// handles its next request once its change is answered, which keeps responses in request order, and the
+// answer is sent once the change is applied and, through a GroupCommitter, durable. Lookups still take the
+// read lock on the selector thread: they wait while a bulk update holds the write lock, or while a change
+// is queued for it behind a long reader such as a save or an export.
+//
+// loopback only unless an address is given. There is no authentication: anyone who can reach the port can
+// change stock.
+public class InventoryServer implements AutoCloseable {
+
+    // runs a change off the selector thread; the future completes with the response once the change is
+    // applied (e.g. GroupCommitter::submit, which also waits for the journal sync)
+    public interface ChangeRunner {
+        CompletableFuture<byte[]> submit(Function<Inventory, byte[]> change);
+    }
+
+    private static final int MAX_SMALL_RESPONSE = 32; // every response but lookups and batch gets
+    private static final int MAX_IDLE_BUFFERS = 256;
+
+    private final Inventory inventory;
+    private final BufferPool pool;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private final ChangeRunner changes;
+    private final ExecutorService writer; // null when the changes go to a given runner
+    private final Queue<Connection> answered = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed;
+    private volatile long connections;
+    private volatile long requests;
+    private volatile long protocolErrors;
+
+    public InventoryServer(Inventory inventory, int port) throws IOException {
+        this(inventory, InetAddress.getLoopbackAddress(), port);
+    }
+
+    public InventoryServer(Inventory inventory, InetAddress address, int port) throws IOException {
+        this(inventory, address, port, null);
+    }
+
+    // changes null: applied on a writer thread of the server's own
+    public InventoryServer(Inventory inventory, InetAddress address, int port, ChangeRunner changes) throws IOException {
+        this.inventory = inventory;
+        this.pool = new BufferPool(BUFFER_SIZE, MAX_IDLE_BUFFERS);
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(address, port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        this.thread = new Thread(this::selectLoop, "inventory-server");
+        this.thread.setDaemon(true);
+
+        if (changes == null) {
+            this.writer = Executors.newSingleThreadExecutor(task -> {
+                Thread writerThread = new Thread(task, "inventory-server-writer");
+                writerThread.setDaemon(true);
+                return writerThread;
+            });
+            this.changes = change -> CompletableFuture.supplyAsync(() -> change.apply(inventory), writer);
+        } else {
+            this.writer = null;
+            this.changes = changes;
+        }
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // the bound port (useful with port 0)
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        if (thread.getState() == Thread.State.NEW) {
+            closeAll(); // never started; otherwise the selector thread closes everything on its way out
+        } else if (Thread.currentThread() != thread) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in;  // write mode: received bytes not yet handled; null when there are none
+        ByteBuffer out; // write mode: responses not yet sent; null when there are none
+        CompletableFuture<byte[]> change; // the change being applied for it; no request is handled meanwhile
+        int changeRequestId;
+        byte changeOp;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    // ------------------- Event loop -------------------
+    private void selectLoop() {
+        try {
+            while (!closed) {
+                selector.select();
+                sendAnswers();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable() && !read(connection)) {
+                            disconnect(connection);
+                            continue;
+                        }
+                        serve(connection);
+                    } catch (IOException | RuntimeException e) {
+                        protocolErrors++;
+                        disconnect(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("Error: Inventory server stopped (" + e.getMessage() + ")");
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    // queues the answers of the changes applied since the last pass and goes on with those connections
+    private void sendAnswers() {
+        Connection connection;
+        while ((connection = answered.poll()) != null) {
+            if (!connection.key.isValid()) {
+                continue; // disconnected while its change ran
+            }
+
+            byte[] response;
+            try {
+                response = connection.change.join();
+            } catch (CompletionException | CancellationException e) {
+                // not applied, or not durable: the client must not count on it
+                response = errorResponse(connection.changeRequestId, connection.changeOp, STATUS_FAILED);
+            }
+            connection.change = null;
+            try {
+                if (connection.out == null) {
+                    connection.out = pool.acquire();
+                }
+                connection.out.put(response); // room was checked before the change was submitted
+                serve(connection);
+            } catch (IOException | RuntimeException e) {
+                protocolErrors++;
+                disconnect(connection);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections++;
+        }
+    }
+
+    // false once the client has closed its side
+    private boolean read(Connection connection) throws IOException {
+        if (connection.in == null) {
+            connection.in = pool.acquire();
+        }
+        return connection.channel.read(connection.in) >= 0;
+    }
+
+    // answers what has arrived and sends it; reading pauses while responses are stuck in the socket or a
+    // change is being applied (sendAnswers picks the connection up again)
+    private void serve(Connection connection) throws IOException {
+        while (true) {
+            boolean blocked = handleFrames(connection);
+            if (!flush(connection)) {
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (!blocked) {
+                connection.key.interestOps(connection.change == null ? SelectionKey.OP_READ : 0);
+                return;
+            }
+        }
+    }
+
+    // true if out is empty afterwards
+    private boolean flush(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        if (out == null) {
+            return true;
+        }
+        out.flip();
+        connection.channel.write(out);
+        if (out.hasRemaining()) {
+            out.compact();
+            return false;
+        }
+        pool.release(out);
+        connection.out = null;
+        return true;
+    }
+
+    private void disconnect(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            // nothing left to do with it
+        }
+        releaseBuffers(connection);
+    }
+
+    private void releaseBuffers(Connection connection) {
+        if (connection.in != null) {
+            pool.release(connection.in);
+            connection.in = null;
+        }
+        if (connection.out != null) {
+            pool.release(connection.out);
+            connection.out = null;
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection) {
+                try {
+                    connection.channel.close();
+                } catch (IOException ignored) {
+                    // closing anyway
+                }
+            }
+        }
+        if (writer != null) {
+            writer.shutdown(); // a change already running finishes; its answer is not sent
+        }
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Requests -------------------
+    // handles complete frames until the input runs out, a change is submitted or the output is full; true
+    // in the last case
+    private boolean handleFrames(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        if (in == null) {
+            return false;
+        }
+
+        boolean blocked = false;
+        in.flip();
+        while (connection.change == null && in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < REQUEST_HEADER_LENGTH || length > MAX_FRAME_LENGTH) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            if (connection.out == null) {
+                connection.out = pool.acquire();
+            }
+            if (!handle(connection, in.slice(in.position() + 4, length))) {
+                blocked = true;
+                break;
+            }
+            in.position(in.position() + 4 + length);
+            requests++;
+        }
+        in.compact();
+
+        if (in.position() == 0) {
+            pool.release(in);
+            connection.in = null;
+        }
+        return blocked;
+    }
+
+    // writes the response to out, or submits a change whose response sendAnswers writes; false (with
+    // nothing done) if the response does not fit behind what out already holds
+    private boolean handle(Connection connection, ByteBuffer frame) {
+        ByteBuffer out = connection.out;
+        int requestId = frame.getInt();
+        byte op = frame.get();
+        boolean read = op == OP_LOOKUP || op == OP_BATCH_GET;
+        if (!read && out.remaining() < MAX_SMALL_RESPONSE) {
+            return false; // changes only run once their answer is sure to fit
+        }
+
+        int start = out.position();
+        try {
+            Function<Inventory, byte[]> change = switch (op) {
+                case OP_ADJUST -> adjust(requestId, getString(frame), frame.getInt());
+                case OP_RESERVE -> reserve(requestId, getString(frame), frame.getInt(), frame.getInt());
+                case OP_CONFIRM -> confirm(requestId, frame.getLong());
+                case OP_RELEASE -> release(requestId, frame.getLong());
+                default -> null;
+            };
+            if (change != null) {
+                connection.changeRequestId = requestId;
+                connection.changeOp = op;
+                connection.change = changes.submit(change);
+                connection.change.whenComplete((response, error) -> {
+                    answered.add(connection);
+                    selector.wakeup();
+                });
+                return true;
+            }
+
+            out.putInt(0).putInt(requestId).put(op).put(STATUS_OK);
+            byte status = switch (op) {
+                case OP_LOOKUP -> lookup(frame, out);
+                case OP_BATCH_GET -> batchGet(frame, out);
+                default -> STATUS_BAD_REQUEST;
+            };
+            if (status != STATUS_OK) {
+                out.position(start + 10); // errors carry no payload
+                out.put(start + 9, status);
+            }
+        } catch (BufferOverflowException e) {
+            // only lookups get here, and they can simply run again once out has been sent
+            out.position(start);
+            if (start > 0) {
+                return false;
+            }
+            out.putInt(0).putInt(requestId).put(op).put(STATUS_TOO_LARGE);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            out.position(start);
+            out.putInt(0).putInt(requestId).put(op).put(STATUS_BAD_REQUEST);
+        }
+        out.putInt(start, out.position() - start - 4);
+        return true;
+    }
+
+    private byte lookup(ByteBuffer frame, ByteBuffer out) {
+        String id = getString(frame);
+        byte[] status = {STATUS_NOT_FOUND};
+        inventory.runReadBatch(() -> {
+            Product product = inventory.searchProductById(id);
+            if (product != null) {
+                putProduct(out, product);
+                status[0] = STATUS_OK;
+            }
+        });
+        return status[0];
+    }
+
+    private byte batchGet(ByteBuffer frame, ByteBuffer out) {
+        int count = frame.getShort() & 0xFFFF;
+        if (count > MAX_BATCH) {
+            return STATUS_BAD_REQUEST;
+        }
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = getString(frame);
+        }
+
+        out.putShort((short) count);
+        inventory.runReadBatch(() -> {
+            for (String id : ids) {
+                Product product = inventory.searchProductById(id);
+                out.put((byte) (product == null ? 0 : 1));
+                if (product != null) {
+                    putProduct(out, product);
+                }
+            }
+        });
+        return STATUS_OK;
+    }
+
+    // caller holds the read lock
+    private void putProduct(ByteBuffer out, Product product) {
+        putString(out, product.getId());
+        putString(out, product.getName());
+        out.putInt(product.getQuantity());
+        out.putInt(inventory.getAvailableQuantity(product.getId()));
+        out.putLong(product.getPrice().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue());
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Changes -------------------
+    // each is parsed on the selector thread and returns the change to run on the ChangeRunner, which
+    // produces the whole response frame
+
+    // a sale takes only stock that is not held by reservations
+    private Function<Inventory, byte[]> adjust(int requestId, String id, int delta) {
+        return target -> respond(requestId, OP_ADJUST, out -> {
+            byte[] status = {STATUS_NOT_FOUND};
+            target.runBatch(() -> {
+                Product product = target.searchProductById(id);
+                if (product == null) {
+                    return;
+                }
+                long quantity = (long) product.getQuantity() + delta;
+                if (quantity > Integer.MAX_VALUE) {
+                    status[0] = STATUS_BAD_REQUEST;
+                } else if (quantity < 0) {
+                    status[0] = STATUS_INSUFFICIENT;
+                } else {
+                    try {
+                        if (delta != 0) {
+                            target.updateProductQuantity(product, (int) quantity);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        status[0] = STATUS_INSUFFICIENT; // Inventory keeps reserved stock out of sales
+                        return;
+                    }
+                    out.putInt(product.getQuantity());
+                    status[0] = STATUS_OK;
+                }
+            });
+            return status[0];
+        });
+    }
+
+    private Function<Inventory, byte[]> reserve(int requestId, String id, int quantity, int holdMillis) {
+        return target -> respond(requestId, OP_RESERVE, out -> {
+            if (target.getReservations() == null) {
+                return STATUS_UNAVAILABLE;
+            }
+            if (quantity <= 0 || holdMillis <= 0) {
+                return STATUS_BAD_REQUEST;
+            }
+
+            byte[] status = {STATUS_NOT_FOUND};
+            target.runBatch(() -> {
+                if (!target.productExists(id)) {
+                    return;
+                }
+                Reservation reservation = target.reserve(id, quantity, Duration.ofMillis(holdMillis));
+                if (reservation == null) {
+                    status[0] = STATUS_INSUFFICIENT;
+                } else {
+                    out.putLong(reservation.getId());
+                    status[0] = STATUS_OK;
+                }
+            });
+            return status[0];
+        });
+    }
+
+    private Function<Inventory, byte[]> confirm(int requestId, long reservationId) {
+        return target -> respond(requestId, OP_CONFIRM, out -> target.getReservations() == null ? STATUS_UNAVAILABLE
+                : target.confirmReservation(reservationId) ? STATUS_OK : STATUS_NOT_FOUND);
+    }
+
+    private Function<Inventory, byte[]> release(int requestId, long reservationId) {
+        return target -> respond(requestId, OP_RELEASE, out -> target.getReservations() == null ? STATUS_UNAVAILABLE
+                : target.releaseReservation(reservationId) ? STATUS_OK : STATUS_NOT_FOUND);
+    }
+
+    // body writes the payload and returns the status; error responses carry no payload
+    private static byte[] respond(int requestId, byte op, ToIntFunction<ByteBuffer> body) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_SMALL_RESPONSE);
+        out.putInt(0).putInt(requestId).put(op).put(STATUS_OK);
+        byte status = (byte) body.applyAsInt(out);
+        if (status != STATUS_OK) {
+            return errorResponse(requestId, op, status);
+        }
+        out.putInt(0, out.position() - 4);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static byte[] errorResponse(int requestId, byte op, byte status) {
+        ByteBuffer out = ByteBuffer.allocate(10);
+        out.putInt(6).putInt(requestId).put(op).put(status);
+        return out.array();
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Statistics -------------------
+    public long getConnectionCount() {
+        return connections;
+    }
+
+    public long getRequestCount() {
+        return requests;
+    }
+
+    // connections dropped for malformed frames or I/O errors
+    public long getProtocolErrorCount() {
+        return protocolErrors;
+    }
+
+    public BufferPool getBufferPool() {
+        return pool;
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,87 @@
+package com.chaoswanderer.inventory.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// the binary protocol spoken by InventoryServer and InventoryClient. Every message is a frame:
+//
+//   request:   int length, int requestId, byte op, payload
+//   response:  int length, int requestId, byte op, byte status, payload (only with STATUS_OK)
+//
+// length counts the bytes after itself; integers are big-endian, strings a u16 byte count and UTF-8.
+// A connection may send any number of requests without waiting (pipelining); responses come back in
+// request order, each carrying its request's id and op.
+//
+//   OP_LOOKUP     id                               -> product
+//   OP_ADJUST     id, int delta                    -> int quantity afterwards
+//   OP_RESERVE    id, int quantity, int holdMillis -> long reservationId
+//   OP_CONFIRM    long reservationId               -> (nothing)
+//   OP_RELEASE    long reservationId               -> (nothing)
+//   OP_BATCH_GET  u16 count, count x id            -> u16 count, count x (byte found, product if found)
+//
+// a product is: id, name, int quantity, int available (not held by reservations), long price in cents
+public final class WireProtocol {
+    public static final byte OP_LOOKUP = 1;
+    public static final byte OP_ADJUST = 2;
+    public static final byte OP_RESERVE = 3;
+    public static final byte OP_CONFIRM = 4;
+    public static final byte OP_RELEASE = 5;
+    public static final byte OP_BATCH_GET = 6;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_NOT_FOUND = 1;      // no such product, or the reservation is no longer held
+    public static final byte STATUS_INSUFFICIENT = 2;   // not enough available stock
+    public static final byte STATUS_BAD_REQUEST = 3;
+    public static final byte STATUS_UNAVAILABLE = 4;    // reservations are not enabled on the server
+    public static final byte STATUS_TOO_LARGE = 5;      // the response would not fit in a frame
+    public static final byte STATUS_FAILED = 6;         // the change failed on the server, e.g. the journal could not be synced
+
+    // frames (length field included) never exceed one pooled buffer
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final int MAX_FRAME_LENGTH = BUFFER_SIZE - 4;
+    public static final int REQUEST_HEADER_LENGTH = 5;  // requestId, op
+    public static final int MAX_BATCH = 1024;
+
+    private WireProtocol() {
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for the protocol");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static String opName(byte op) {
+        return switch (op) {
+            case OP_LOOKUP -> "lookup";
+            case OP_ADJUST -> "adjust";
+            case OP_RESERVE -> "reserve";
+            case OP_CONFIRM -> "confirm";
+            case OP_RELEASE -> "release";
+            case OP_BATCH_GET -> "batch-get";
+            default -> "op " + op;
+        };
+    }
+
+    public static String statusName(byte status) {
+        return switch (status) {
+            case STATUS_OK -> "OK";
+            case STATUS_NOT_FOUND -> "NOT_FOUND";
+            case STATUS_INSUFFICIENT -> "INSUFFICIENT";
+            case STATUS_BAD_REQUEST -> "BAD_REQUEST";
+            case STATUS_UNAVAILABLE -> "UNAVAILABLE";
+            case STATUS_TOO_LARGE -> "TOO_LARGE";
+            case STATUS_FAILED -> "FAILED";
+            default -> "status " + status;
+        };
+    }
+}
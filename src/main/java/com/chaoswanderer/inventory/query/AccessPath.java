@@ -0,0 +1,221 @@
+package com.chaoswanderer.inventory.query;
+
+import com.chaoswanderer.inventory.index.FacetIndex;
+import com.chaoswanderer.inventory.index.FacetQuery;
+import com.chaoswanderer.inventory.index.RoaringBitmap;
+import com.chaoswanderer.inventory.index.SearchIndex;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.model.ProductStore;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+// how a plan reads its candidate products; the visitor returns false to stop reading
+abstract class AccessPath {
+    // estimated number of products the path produces when read to the end
+    abstract long estimatedRows();
+
+    // true if products come out in ascending ID order
+    abstract boolean isOrderedById();
+
+    abstract void scan(Predicate<Product> visitor);
+
+    abstract String describe();
+
+    // ------------------- Full scan -------------------
+    static final class FullScan extends AccessPath {
+        private final ProductStore store;
+
+        FullScan(ProductStore store) {
+            this.store = store;
+        }
+
+        @Override
+        long estimatedRows() {
+            return store.size();
+        }
+
+        @Override
+        boolean isOrderedById() {
+            return store.isOrderedById();
+        }
+
+        @Override
+        void scan(Predicate<Product> visitor) {
+            store.forEachWhile(visitor);
+        }
+
+        @Override
+        String describe() {
+            return (store.isOrderedById() ? "Ordered full scan (by id)" : "Full scan") + " of " + store.size() + " products";
+        }
+    }
+
+    // ------------------- Primary key -------------------
+    static final class IdLookup extends AccessPath {
+        private final ProductStore store;
+        private final List<String> ids; // sorted and distinct
+
+        IdLookup(ProductStore store, List<String> ids) {
+            this.store = store;
+            this.ids = ids;
+        }
+
+        @Override
+        long estimatedRows() {
+            return ids.size();
+        }
+
+        @Override
+        boolean isOrderedById() {
+            return true;
+        }
+
+        @Override
+        void scan(Predicate<Product> visitor) {
+            for (String id : ids) {
+                Product product = store.get(id);
+                if (product != null && !visitor.test(product)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        String describe() {
+            return "Primary key lookup of " + ids.size() + " id(s) " + ids;
+        }
+    }
+
+    // ------------------- ID range over an ordered store -------------------
+    static final class IdRangeScan extends AccessPath {
+        private final ProductStore store;
+        private final String from; // inclusive, null for the start
+        private final String to;   // null for the end
+        private final boolean toInclusive;
+        private final long estimatedRows;
+
+        IdRangeScan(ProductStore store, String from, String to, boolean toInclusive, long estimatedRows) {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.estimatedRows = estimatedRows;
+        }
+
+        @Override
+        long estimatedRows() {
+            return estimatedRows;
+        }
+
+        @Override
+        boolean isOrderedById() {
+            return true;
+        }
+
+        @Override
+        void scan(Predicate<Product> visitor) {
+            Predicate<Product> bounded = to == null ? visitor : product -> {
+                int cmp = product.getId().compareTo(to);
+                if (cmp > 0 || (cmp == 0 && !toInclusive)) {
+                    return false;
+                }
+                return visitor.test(product);
+            };
+
+            if (from == null) {
+                store.forEachWhile(bounded);
+            } else {
+                store.scanFrom(from, bounded);
+            }
+        }
+
+        @Override
+        String describe() {
+            return "Id range scan [" + (from == null ? "start" : "\"" + from + "\"") + " .. "
+                    + (to == null ? "end" : "\"" + to + "\"" + (toInclusive ? "]" : ")"));
+        }
+    }
+
+    // ------------------- Attribute bitmaps -------------------
+    static final class FacetScan extends AccessPath {
+        private final ProductStore store;
+        private final FacetIndex index;
+        private final FacetQuery query;
+        private final RoaringBitmap matches;
+
+        // the bitmap is evaluated while planning - it is cheap and gives the exact row count
+        FacetScan(ProductStore store, FacetIndex index, FacetQuery query) {
+            this.store = store;
+            this.index = index;
+            this.query = query;
+            this.matches = index.evaluate(query);
+        }
+
+        @Override
+        long estimatedRows() {
+            return matches.cardinality();
+        }
+
+        @Override
+        boolean isOrderedById() {
+            return false;
+        }
+
+        @Override
+        void scan(Predicate<Product> visitor) {
+            for (String id : index.getIds(matches)) {
+                Product product = store.get(id);
+                if (product != null && !visitor.test(product)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        String describe() {
+            return "Attribute bitmap index " + query + " (" + matches.cardinality() + " matches)";
+        }
+    }
+
+    // ------------------- Trigram index -------------------
+    static final class SubstringScan extends AccessPath {
+        private final ProductStore store;
+        private final QueryField field;
+        private final String text;
+        private final List<String> matches;
+
+        // like the bitmaps, evaluated while planning - the index gives the exact matches
+        SubstringScan(ProductStore store, SearchIndex index, QueryField field, String text) {
+            this.store = store;
+            this.field = field;
+            this.text = text;
+            this.matches = field == QueryField.ID ? index.searchIds(text) : index.searchNames(text);
+        }
+
+        @Override
+        long estimatedRows() {
+            return matches.size();
+        }
+
+        @Override
+        boolean isOrderedById() {
+            return false;
+        }
+
+        @Override
+        void scan(Predicate<Product> visitor) {
+            for (String id : matches) {
+                Product product = store.get(id);
+                if (product != null && !visitor.test(product)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        String describe() {
+            return "Trigram index " + field.getLabel() + " ~ \"" + text + "\" (" + matches.size() + " matches)";
+        }
+    }
+}
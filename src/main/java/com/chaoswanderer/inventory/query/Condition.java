@@ -0,0 +1,242 @@
+package com.chaoswanderer.inventory.query;
+
+import com.chaoswanderer.inventory.index.FacetQuery;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// the WHERE part of a query; the node types are visible to the planner, which looks inside them
+// to find conditions an index can answer
+public abstract class Condition {
+
+    public enum Operator {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), CONTAINS("~");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        static Operator fromSymbol(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+    }
+
+    public abstract boolean test(Product product);
+
+    // the same condition as a facet query, or null if it needs more than attribute values
+    FacetQuery toFacetQuery() {
+        return null;
+    }
+
+    // ------------------- Building -------------------
+    public static Condition compare(QueryField field, Operator operator, String value) {
+        if (operator == Operator.CONTAINS && !field.isText()) {
+            throw new IllegalArgumentException("'~' only applies to id and name");
+        }
+        return new Comparison(field, operator, field.parseLiteral(value));
+    }
+
+    public static Condition attribute(String name, boolean equal, String value) {
+        return new AttributeMatch(InventoryUtils.sanitizeString(name), InventoryUtils.sanitizeString(value), equal);
+    }
+
+    public static Condition and(Condition... operands) {
+        return new And(new ArrayList<>(Arrays.asList(operands)));
+    }
+
+    public static Condition or(Condition... operands) {
+        return new Or(new ArrayList<>(Arrays.asList(operands)));
+    }
+
+    public static Condition not(Condition operand) {
+        return new Not(operand);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Nodes -------------------
+    static final class Comparison extends Condition {
+        final QueryField field;
+        final Operator operator;
+        final Comparable<?> value;
+        private final String lowerCaseValue; // for '~'
+
+        Comparison(QueryField field, Operator operator, Comparable<?> value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+            this.lowerCaseValue = value.toString().toLowerCase();
+        }
+
+        @Override
+        public boolean test(Product product) {
+            if (operator == Operator.CONTAINS) {
+                return field.valueOf(product).toString().toLowerCase().contains(lowerCaseValue);
+            }
+
+            int cmp = field.compare(product, value);
+            return switch (operator) {
+                case EQ -> cmp == 0;
+                case NE -> cmp != 0;
+                case LT -> cmp < 0;
+                case LE -> cmp <= 0;
+                case GT -> cmp > 0;
+                case GE -> cmp >= 0;
+                case CONTAINS -> false;
+            };
+        }
+
+        @Override
+        public String toString() {
+            String text = value instanceof String ? "\"" + value + "\"" : value.toString();
+            return field.getLabel() + " " + operator.getSymbol() + " " + text;
+        }
+    }
+
+    static final class AttributeMatch extends Condition {
+        final String name;
+        final String value;
+        final boolean equal;
+
+        AttributeMatch(String name, String value, boolean equal) {
+            this.name = name;
+            this.value = value;
+            this.equal = equal;
+        }
+
+        @Override
+        public boolean test(Product product) {
+            return product.hasAttribute(name, value) == equal;
+        }
+
+        @Override
+        FacetQuery toFacetQuery() {
+            FacetQuery term = FacetQuery.term(name, value);
+            return equal ? term : FacetQuery.not(term);
+        }
+
+        @Override
+        public String toString() {
+            return name + (equal ? " = " : " != ") + "\"" + value + "\"";
+        }
+    }
+
+    static final class And extends Condition {
+        final List<Condition> operands;
+
+        And(List<Condition> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean test(Product product) {
+            for (Condition operand : operands) {
+                if (!operand.test(product)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        FacetQuery toFacetQuery() {
+            FacetQuery[] facets = new FacetQuery[operands.size()];
+            for (int i = 0; i < facets.length; i++) {
+                facets[i] = operands.get(i).toFacetQuery();
+                if (facets[i] == null) {
+                    return null;
+                }
+            }
+            return FacetQuery.and(facets);
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " AND ");
+        }
+    }
+
+    static final class Or extends Condition {
+        final List<Condition> operands;
+
+        Or(List<Condition> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean test(Product product) {
+            for (Condition operand : operands) {
+                if (operand.test(product)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        FacetQuery toFacetQuery() {
+            FacetQuery[] facets = new FacetQuery[operands.size()];
+            for (int i = 0; i < facets.length; i++) {
+                facets[i] = operands.get(i).toFacetQuery();
+                if (facets[i] == null) {
+                    return null;
+                }
+            }
+            return FacetQuery.or(facets);
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " OR ");
+        }
+    }
+
+    static final class Not extends Condition {
+        final Condition operand;
+
+        Not(Condition operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(Product product) {
+            return !operand.test(product);
+        }
+
+        @Override
+        FacetQuery toFacetQuery() {
+            FacetQuery facet = operand.toFacetQuery();
+            return facet == null ? null : FacetQuery.not(facet);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+    // ------------------------------------------------------
+
+    private static String join(List<Condition> operands, String separator) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) {
+                text.append(separator);
+            }
+            text.append(operands.get(i));
+        }
+        return text.append(")").toString();
+    }
+}
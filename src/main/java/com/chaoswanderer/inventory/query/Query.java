@@ -0,0 +1,102 @@
+package com.chaoswanderer.inventory.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// an immutable query: optional condition, sort keys and limit
+// e.g. Query.parse("name ~ \"milk\" AND quantity < 10 ORDER BY price DESC LIMIT 20")
+//   or Query.all().where(...).orderBy(QueryField.PRICE, true).limit(20)
+public class Query {
+    public static final int NO_LIMIT = -1;
+
+    public static class SortKey {
+        private final QueryField field;
+        private final boolean descending;
+
+        public SortKey(QueryField field, boolean descending) {
+            this.field = field;
+            this.descending = descending;
+        }
+
+        public QueryField getField() {
+            return field;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+
+        @Override
+        public String toString() {
+            return field.getLabel() + (descending ? " DESC" : " ASC");
+        }
+    }
+
+    private final Condition condition;
+    private final List<SortKey> order;
+    private final int limit;
+
+    private Query(Condition condition, List<SortKey> order, int limit) {
+        this.condition = condition;
+        this.order = Collections.unmodifiableList(order);
+        this.limit = limit;
+    }
+
+    public static Query all() {
+        return new Query(null, new ArrayList<>(), NO_LIMIT);
+    }
+
+    public static Query parse(String text) {
+        return new QueryParser(text).parseQuery();
+    }
+
+    public Query where(Condition newCondition) {
+        return new Query(newCondition, new ArrayList<>(order), limit);
+    }
+
+    // adds a sort key after the existing ones
+    public Query orderBy(QueryField field, boolean descending) {
+        List<SortKey> newOrder = new ArrayList<>(order);
+        newOrder.add(new SortKey(field, descending));
+        return new Query(condition, newOrder, limit);
+    }
+
+    public Query limit(int newLimit) {
+        if (newLimit < 0) {
+            throw new IllegalArgumentException("LIMIT must not be negative");
+        }
+        return new Query(condition, new ArrayList<>(order), newLimit);
+    }
+
+    public Condition getCondition() {
+        return condition;
+    }
+
+    public List<SortKey> getOrder() {
+        return order;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasLimit() {
+        return limit != NO_LIMIT;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(condition == null ? "ALL" : condition.toString());
+        if (!order.isEmpty()) {
+            text.append(" ORDER BY ");
+            for (int i = 0; i < order.size(); i++) {
+                text.append(i > 0 ? ", " : "").append(order.get(i));
+            }
+        }
+        if (hasLimit()) {
+            text.append(" LIMIT ").append(limit);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.chaoswanderer.inventory.query;
+
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+
+// the product fields a query can filter and sort on; any other name in a query is an attribute
+public enum QueryField {
+    ID("id"),
+    NAME("name"),
+    QUANTITY("quantity"),
+    PRICE("price"),
+    CREATED_AT("created"),
+    UPDATED_AT("updated");
+
+    private final String label;
+
+    QueryField(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // null if the name is not a product field
+    public static QueryField fromName(String name) {
+        return switch (name.toLowerCase().replace("_", "")) {
+            case "id" -> ID;
+            case "name" -> NAME;
+            case "quantity", "qty" -> QUANTITY;
+            case "price" -> PRICE;
+            case "created", "createdat" -> CREATED_AT;
+            case "updated", "updatedat" -> UPDATED_AT;
+            default -> null;
+        };
+    }
+
+    public boolean isText() {
+        return this == ID || this == NAME;
+    }
+
+    Comparable<?> valueOf(Product product) {
+        return switch (this) {
+            case ID -> product.getId();
+            case NAME -> product.getName();
+            case QUANTITY -> product.getQuantity();
+            case PRICE -> product.getPrice();
+            case CREATED_AT -> product.getCreatedAt();
+            case UPDATED_AT -> product.getUpdatedAt();
+        };
+    }
+
+    Comparable<?> parseLiteral(String text) {
+        try {
+            return switch (this) {
+                case ID -> InventoryUtils.sanitizeString(text);
+                case NAME -> text;
+                case QUANTITY -> Integer.parseInt(text);
+                case PRICE -> new BigDecimal(text);
+                case CREATED_AT, UPDATED_AT -> text.length() == 10
+                        ? LocalDate.parse(text).atStartOfDay()
+                        : LocalDateTime.parse(text);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + label + " value '" + text + "'");
+        }
+    }
+
+    // names compare case-insensitively, everything else by its natural order (42.2 equals 42.20)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    int compare(Product product, Comparable<?> literal) {
+        Comparable value = valueOf(product);
+        if (this == NAME) {
+            return String.CASE_INSENSITIVE_ORDER.compare((String) value, (String) literal);
+        }
+        return value.compareTo(literal);
+    }
+
+    Comparator<Product> comparator() {
+        return switch (this) {
+            case ID -> Comparator.comparing(Product::getId);
+            case NAME -> Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER);
+            case QUANTITY -> Comparator.comparingInt(Product::getQuantity);
+            case PRICE -> Comparator.comparing(Product::getPrice);
+            case CREATED_AT -> Comparator.comparing(Product::getCreatedAt);
+            case UPDATED_AT -> Comparator.comparing(Product::getUpdatedAt);
+        };
+    }
+}
@@ -0,0 +1,206 @@
+package com.chaoswanderer.inventory.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//   query      := [condition] [ORDER BY key (, key)*] [LIMIT n]
+//   condition  := and ( OR and )*                  (AND binds tighter than OR)
+//   and        := unary ( AND unary )*
+//   unary      := NOT unary | ( condition ) | name op value
+//   op         := = | != | < | <= | > | >= | ~     (~ is a case-insensitive "contains")
+//   key        := field [ASC | DESC]
+//
+// keywords are case-insensitive; values with spaces or keywords in them are quoted ("whole milk")
+final class QueryParser {
+    private static final String SYMBOLS = "()=!<>~,\"";
+
+    private final List<String> tokens;
+    private int position;
+
+    QueryParser(String text) {
+        this.tokens = tokenize(text);
+    }
+
+    Query parseQuery() {
+        Query query = Query.all();
+
+        if (!atEnd() && !peekKeyword("order") && !peekKeyword("limit")) {
+            query = query.where(parseOr());
+        }
+
+        if (acceptKeyword("order")) {
+            expectKeyword("by");
+            do {
+                QueryField field = QueryField.fromName(nextWord());
+                if (field == null) {
+                    throw new IllegalArgumentException("Can only ORDER BY id, name, quantity, price, created or updated");
+                }
+                boolean descending = acceptKeyword("desc");
+                if (!descending) {
+                    acceptKeyword("asc");
+                }
+                query = query.orderBy(field, descending);
+            } while (accept(","));
+        }
+
+        if (acceptKeyword("limit")) {
+            try {
+                query = query.limit(Integer.parseInt(nextWord()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("LIMIT needs a number");
+            }
+        }
+
+        if (!atEnd()) {
+            throw new IllegalArgumentException("Unexpected '" + tokens.get(position) + "' in query");
+        }
+        return query;
+    }
+
+    private Condition parseOr() {
+        Condition condition = parseAnd();
+        if (!peekKeyword("or")) {
+            return condition;
+        }
+
+        List<Condition> operands = new ArrayList<>();
+        operands.add(condition);
+        while (acceptKeyword("or")) {
+            operands.add(parseAnd());
+        }
+        return new Condition.Or(operands);
+    }
+
+    private Condition parseAnd() {
+        Condition condition = parseUnary();
+        if (!peekKeyword("and")) {
+            return condition;
+        }
+
+        List<Condition> operands = new ArrayList<>();
+        operands.add(condition);
+        while (acceptKeyword("and")) {
+            operands.add(parseUnary());
+        }
+        return new Condition.And(operands);
+    }
+
+    private Condition parseUnary() {
+        if (acceptKeyword("not")) {
+            return Condition.not(parseUnary());
+        }
+
+        if (accept("(")) {
+            Condition condition = parseOr();
+            if (!accept(")")) {
+                throw new IllegalArgumentException("Missing ')' in query");
+            }
+            return condition;
+        }
+
+        String name = nextWord();
+        String symbol = atEnd() ? "" : tokens.get(position++);
+        Condition.Operator operator = Condition.Operator.fromSymbol(symbol);
+        if (operator == null) {
+            throw new IllegalArgumentException("Expected an operator after '" + name + "'");
+        }
+        String value = nextValue();
+
+        QueryField field = QueryField.fromName(name);
+        if (field != null) {
+            return Condition.compare(field, operator, value);
+        }
+
+        // not a product field - an attribute such as category or brand
+        if (operator != Condition.Operator.EQ && operator != Condition.Operator.NE) {
+            throw new IllegalArgumentException("Attributes like '" + name + "' only support = and !=");
+        }
+        return Condition.attribute(name, operator == Condition.Operator.EQ, value);
+    }
+
+    // ------------------- Tokens -------------------
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+
+        while (i < text.length()) {
+            char c = text.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated quote in query");
+                }
+                // marked so a quoted "and" stays a value
+                tokens.add("\"" + text.substring(i + 1, end));
+                i = end + 1;
+            } else if ((c == '!' || c == '<' || c == '>') && i + 1 < text.length() && text.charAt(i + 1) == '=') {
+                tokens.add(text.substring(i, i + 2));
+                i += 2;
+            } else if (SYMBOLS.indexOf(c) >= 0) {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && SYMBOLS.indexOf(text.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(text.substring(start, i));
+            }
+        }
+
+        return tokens;
+    }
+
+    private boolean atEnd() {
+        return position >= tokens.size();
+    }
+
+    private String nextWord() {
+        if (atEnd()) {
+            throw new IllegalArgumentException("Query ends too early");
+        }
+
+        String token = tokens.get(position++);
+        if (token.startsWith("\"") || (token.length() == 1 && SYMBOLS.indexOf(token.charAt(0)) >= 0)) {
+            throw new IllegalArgumentException("Unexpected '" + token + "' in query");
+        }
+        return token;
+    }
+
+    private String nextValue() {
+        if (!atEnd() && tokens.get(position).startsWith("\"")) {
+            return tokens.get(position++).substring(1);
+        }
+        return nextWord();
+    }
+
+    private boolean peekKeyword(String keyword) {
+        return !atEnd() && tokens.get(position).equalsIgnoreCase(keyword);
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (peekKeyword(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectKeyword(String keyword) {
+        if (!acceptKeyword(keyword)) {
+            throw new IllegalArgumentException("Expected '" + keyword.toUpperCase() + "' in query");
+        }
+    }
+
+    private boolean accept(String symbol) {
+        if (!atEnd() && tokens.get(position).equals(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+    // ------------------------------------------------------
+}
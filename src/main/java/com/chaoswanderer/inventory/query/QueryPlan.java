@@ -0,0 +1,145 @@
+package com.chaoswanderer.inventory.query;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// a chosen way to run a query: an access path, a residual filter, and how results are ordered
+// and cut to the limit; execute() must run under the inventory's read lock
+public class QueryPlan {
+    public enum SortStrategy {
+        NONE,       // unordered, or the access path already yields the requested order
+        TOP_N,      // bounded heap of LIMIT products
+        FULL_SORT
+    }
+
+    private final Query query;
+    private final AccessPath access;
+    private final Condition residual;
+    private final SortStrategy sortStrategy;
+    private final double cost;
+    private final long estimatedResults;
+    private final List<String> alternatives;
+
+    QueryPlan(Query query, AccessPath access, Condition residual, SortStrategy sortStrategy,
+              double cost, long estimatedResults, List<String> alternatives) {
+        this.query = query;
+        this.access = access;
+        this.residual = residual;
+        this.sortStrategy = sortStrategy;
+        this.cost = cost;
+        this.estimatedResults = estimatedResults;
+        this.alternatives = alternatives;
+    }
+
+    public SortStrategy getSortStrategy() {
+        return sortStrategy;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    // true if the plan reads the whole store rather than an index or an ID range
+    public boolean isFullScan() {
+        return access instanceof AccessPath.FullScan;
+    }
+
+    public String getAccessDescription() {
+        return access.describe();
+    }
+
+    public List<Product> execute() {
+        int limit = query.getLimit();
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+
+        Comparator<Product> order = comparator(query.getOrder());
+        List<Product> results = new ArrayList<>();
+
+        if (sortStrategy == SortStrategy.TOP_N) {
+            // the heap's head is the worst product kept so far
+            PriorityQueue<Product> heap = new PriorityQueue<>(limit + 1, order.reversed());
+            access.scan(product -> {
+                if (residual == null || residual.test(product)) {
+                    if (heap.size() < limit) {
+                        heap.add(product);
+                    } else if (order.compare(product, heap.peek()) < 0) {
+                        heap.poll();
+                        heap.add(product);
+                    }
+                }
+                return true;
+            });
+            results.addAll(heap);
+            results.sort(order);
+            return results;
+        }
+
+        // without a sort step the limit is pushed down: reading stops at the LIMIT-th match
+        boolean stopAtLimit = sortStrategy == SortStrategy.NONE && query.hasLimit();
+        access.scan(product -> {
+            if (residual == null || residual.test(product)) {
+                results.add(product);
+            }
+            return !stopAtLimit || results.size() < limit;
+        });
+
+        if (sortStrategy == SortStrategy.FULL_SORT) {
+            results.sort(order);
+        }
+        return query.hasLimit() && results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    public String explain() {
+        StringBuilder text = new StringBuilder();
+        text.append("Query:    ").append(query).append(System.lineSeparator());
+        text.append("Access:   ").append(access.describe()).append(System.lineSeparator());
+        text.append("Filter:   ").append(residual == null ? "none" : residual.toString()).append(System.lineSeparator());
+
+        String sort = switch (sortStrategy) {
+            case NONE -> query.getOrder().isEmpty() ? "none" : "none (access path is already in id order)";
+            case TOP_N -> "top-" + query.getLimit() + " heap on " + describeOrder();
+            case FULL_SORT -> "full sort on " + describeOrder();
+        };
+        text.append("Sort:     ").append(sort).append(System.lineSeparator());
+
+        if (query.hasLimit()) {
+            text.append("Limit:    ").append(query.getLimit())
+                    .append(sortStrategy == SortStrategy.NONE ? " (pushed into the scan - stops early)" : "")
+                    .append(System.lineSeparator());
+        }
+
+        text.append(String.format("Estimate: ~%d result(s), cost %.0f%n", estimatedResults, cost));
+        for (String alternative : alternatives) {
+            text.append("Rejected: ").append(alternative).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    private String describeOrder() {
+        StringBuilder text = new StringBuilder();
+        for (Query.SortKey key : query.getOrder()) {
+            text.append(text.length() == 0 ? "" : ", ").append(key);
+        }
+        return text.toString();
+    }
+
+    // the sort keys, then the ID so that equal keys still come out in a stable order
+    static Comparator<Product> comparator(List<Query.SortKey> keys) {
+        Comparator<Product> order = null;
+        for (Query.SortKey key : keys) {
+            Comparator<Product> next = key.getField().comparator();
+            if (key.isDescending()) {
+                next = next.reversed();
+            }
+            order = order == null ? next : order.thenComparing(next);
+        }
+        Comparator<Product> byId = QueryField.ID.comparator();
+        return order == null ? byId : order.thenComparing(byId);
+    }
+}
@@ -0,0 +1,313 @@
+package com.chaoswanderer.inventory.query;
+
+import com.chaoswanderer.inventory.index.FacetIndex;
+import com.chaoswanderer.inventory.index.FacetQuery;
+import com.chaoswanderer.inventory.index.SearchIndex;
+import com.chaoswanderer.inventory.model.ProductStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+// picks the cheapest way to run a query from the access paths the inventory currently has:
+//  - primary key lookups for id = ... (or an OR of them)
+//  - an id range scan when the store keeps products in id order (paged storage)
+//  - the attribute bitmap index, once it is enabled
+//  - the trigram index for id ~ "..." and name ~ "...", once the search index is enabled
+//  - a full scan
+// the cost is the estimated number of products read; selectivities of the remaining filter are
+// exact for attribute conditions (from the bitmaps) and rough textbook guesses otherwise
+public class QueryPlanner {
+    private static final double EQUALITY_SELECTIVITY = 0.05;
+    private static final double RANGE_SELECTIVITY = 0.33;
+    private static final double CONTAINS_SELECTIVITY = 0.1;
+    private static final double ATTRIBUTE_SELECTIVITY = 0.1;
+
+    private final ProductStore store;
+    private final FacetIndex facetIndex; // null while the attribute index is not enabled
+    private final SearchIndex searchIndex; // null while the search index is not enabled
+
+    public QueryPlanner(ProductStore store, FacetIndex facetIndex, SearchIndex searchIndex) {
+        this.store = store;
+        this.facetIndex = facetIndex;
+        this.searchIndex = searchIndex;
+    }
+
+    public QueryPlan plan(Query query) {
+        List<Condition> conjuncts = conjuncts(query.getCondition());
+        List<Candidate> candidates = new ArrayList<>();
+
+        candidates.add(new Candidate(new AccessPath.FullScan(store), conjuncts));
+        addIdLookup(candidates, conjuncts);
+        addIdRangeScan(candidates, conjuncts);
+        addFacetScan(candidates, conjuncts);
+        addSubstringScan(candidates, conjuncts);
+
+        Candidate best = null;
+        for (Candidate candidate : candidates) {
+            cost(candidate, query);
+            if (best == null || candidate.cost < best.cost) {
+                best = candidate;
+            }
+        }
+
+        List<String> alternatives = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (candidate != best) {
+                alternatives.add(String.format("%s (cost %.0f)", candidate.access.describe(), candidate.cost));
+            }
+        }
+
+        return new QueryPlan(query, best.access, combine(best.residual), best.sortStrategy,
+                best.cost, best.estimatedResults, alternatives);
+    }
+
+    // ------------------- Access paths -------------------
+    private void addIdLookup(List<Candidate> candidates, List<Condition> conjuncts) {
+        for (Condition conjunct : conjuncts) {
+            List<String> ids = idEqualities(conjunct);
+            if (ids != null) {
+                candidates.add(new Candidate(new AccessPath.IdLookup(store, new ArrayList<>(new TreeSet<>(ids))),
+                        without(conjuncts, conjunct)));
+                return;
+            }
+        }
+    }
+
+    // id = x, or an OR of such; null for anything else
+    private static List<String> idEqualities(Condition condition) {
+        if (condition instanceof Condition.Comparison comparison) {
+            if (comparison.field == QueryField.ID && comparison.operator == Condition.Operator.EQ) {
+                List<String> ids = new ArrayList<>();
+                ids.add((String) comparison.value);
+                return ids;
+            }
+            return null;
+        }
+
+        if (condition instanceof Condition.Or or) {
+            List<String> ids = new ArrayList<>();
+            for (Condition operand : or.operands) {
+                List<String> operandIds = idEqualities(operand);
+                if (operandIds == null) {
+                    return null;
+                }
+                ids.addAll(operandIds);
+            }
+            return ids;
+        }
+
+        return null;
+    }
+
+    // the bounds stay in the residual filter - the scan only uses them to start late and stop early
+    private void addIdRangeScan(List<Candidate> candidates, List<Condition> conjuncts) {
+        if (!store.isOrderedById()) {
+            return;
+        }
+
+        String from = null;
+        String to = null;
+        boolean toInclusive = true;
+        double fraction = 1.0;
+
+        for (Condition conjunct : conjuncts) {
+            if (!(conjunct instanceof Condition.Comparison comparison) || comparison.field != QueryField.ID) {
+                continue;
+            }
+
+            String value = (String) comparison.value;
+            switch (comparison.operator) {
+                case GT, GE -> {
+                    if (from == null || value.compareTo(from) > 0) {
+                        from = value;
+                    }
+                    fraction *= RANGE_SELECTIVITY;
+                }
+                case LT, LE -> {
+                    boolean inclusive = comparison.operator == Condition.Operator.LE;
+                    if (to == null || value.compareTo(to) < 0 || (value.equals(to) && !inclusive)) {
+                        to = value;
+                        toInclusive = inclusive;
+                    }
+                    fraction *= RANGE_SELECTIVITY;
+                }
+                default -> {
+                }
+            }
+        }
+
+        if (from != null || to != null) {
+            candidates.add(new Candidate(new AccessPath.IdRangeScan(store, from, to, toInclusive,
+                    Math.round(store.size() * fraction)), conjuncts));
+        }
+    }
+
+    // every conjunct that only looks at attribute values is answered by the bitmaps together
+    private void addFacetScan(List<Candidate> candidates, List<Condition> conjuncts) {
+        if (facetIndex == null) {
+            return;
+        }
+
+        List<FacetQuery> facets = new ArrayList<>();
+        List<Condition> residual = new ArrayList<>();
+        for (Condition conjunct : conjuncts) {
+            FacetQuery facet = conjunct.toFacetQuery();
+            if (facet != null) {
+                facets.add(facet);
+            } else {
+                residual.add(conjunct);
+            }
+        }
+
+        if (facets.isEmpty()) {
+            return;
+        }
+
+        FacetQuery query = facets.size() == 1 ? facets.get(0) : FacetQuery.and(facets.toArray(new FacetQuery[0]));
+        candidates.add(new Candidate(new AccessPath.FacetScan(store, facetIndex, query), residual));
+    }
+
+    // the index checks every candidate against the text, so the conjunct it answers leaves the filter;
+    // the longest text is the most selective
+    private void addSubstringScan(List<Candidate> candidates, List<Condition> conjuncts) {
+        if (searchIndex == null) {
+            return;
+        }
+
+        Condition.Comparison best = null;
+        for (Condition conjunct : conjuncts) {
+            if (conjunct instanceof Condition.Comparison comparison && comparison.operator == Condition.Operator.CONTAINS
+                    && comparison.value.toString().length() >= SearchIndex.GRAM_LENGTH
+                    && (best == null || comparison.value.toString().length() > best.value.toString().length())) {
+                best = comparison;
+            }
+        }
+
+        if (best != null) {
+            candidates.add(new Candidate(new AccessPath.SubstringScan(store, searchIndex, best.field,
+                    best.value.toString().toLowerCase()), without(conjuncts, best)));
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Costing -------------------
+    private void cost(Candidate candidate, Query query) {
+        long rows = candidate.access.estimatedRows();
+        double selectivity = 1.0;
+        for (Condition condition : candidate.residual) {
+            // a range scan's row estimate already accounts for its own id bounds
+            if (!(candidate.access instanceof AccessPath.IdRangeScan && isIdRange(condition))) {
+                selectivity *= selectivity(condition);
+            }
+        }
+        long matches = Math.round(rows * selectivity);
+        candidate.estimatedResults = query.hasLimit() ? Math.min(matches, query.getLimit()) : matches;
+
+        boolean ordered = query.getOrder().isEmpty() || (candidate.access.isOrderedById() && isIdAscending(query));
+        if (ordered) {
+            candidate.sortStrategy = QueryPlan.SortStrategy.NONE;
+            // reading stops once LIMIT matches are found
+            candidate.cost = query.hasLimit() && selectivity > 0
+                    ? Math.min(rows, query.getLimit() / selectivity)
+                    : rows;
+        } else {
+            candidate.sortStrategy = query.hasLimit() ? QueryPlan.SortStrategy.TOP_N : QueryPlan.SortStrategy.FULL_SORT;
+            // every row is read, and the matches are sorted (a heap keeps that to log LIMIT per match)
+            candidate.cost = rows + matches * log2(candidate.estimatedResults) * 0.1;
+        }
+    }
+
+    private static boolean isIdRange(Condition condition) {
+        return condition instanceof Condition.Comparison comparison && comparison.field == QueryField.ID
+                && comparison.operator != Condition.Operator.EQ && comparison.operator != Condition.Operator.NE
+                && comparison.operator != Condition.Operator.CONTAINS;
+    }
+
+    private static boolean isIdAscending(Query query) {
+        Query.SortKey first = query.getOrder().get(0);
+        return first.getField() == QueryField.ID && !first.isDescending();
+    }
+
+    private double selectivity(Condition condition) {
+        if (condition instanceof Condition.Comparison comparison) {
+            return switch (comparison.operator) {
+                case EQ -> comparison.field == QueryField.ID ? 1.0 / Math.max(1, store.size()) : EQUALITY_SELECTIVITY;
+                case NE -> 1 - EQUALITY_SELECTIVITY;
+                case CONTAINS -> CONTAINS_SELECTIVITY;
+                default -> RANGE_SELECTIVITY;
+            };
+        }
+
+        if (condition instanceof Condition.AttributeMatch match) {
+            double fraction = ATTRIBUTE_SELECTIVITY;
+            if (facetIndex != null && store.size() > 0) {
+                fraction = (double) facetIndex.evaluate(FacetQuery.term(match.name, match.value)).cardinality() / store.size();
+            }
+            return match.equal ? fraction : 1 - fraction;
+        }
+
+        if (condition instanceof Condition.And and) {
+            double result = 1.0;
+            for (Condition operand : and.operands) {
+                result *= selectivity(operand);
+            }
+            return result;
+        }
+
+        if (condition instanceof Condition.Or or) {
+            double none = 1.0;
+            for (Condition operand : or.operands) {
+                none *= 1 - selectivity(operand);
+            }
+            return 1 - none;
+        }
+
+        if (condition instanceof Condition.Not not) {
+            return 1 - selectivity(not.operand);
+        }
+
+        return 1.0;
+    }
+
+    private static double log2(long value) {
+        return Math.log(Math.max(2, value)) / Math.log(2);
+    }
+    // ------------------------------------------------------
+
+    private static List<Condition> conjuncts(Condition condition) {
+        List<Condition> conjuncts = new ArrayList<>();
+        if (condition instanceof Condition.And and) {
+            conjuncts.addAll(and.operands);
+        } else if (condition != null) {
+            conjuncts.add(condition);
+        }
+        return conjuncts;
+    }
+
+    private static List<Condition> without(List<Condition> conjuncts, Condition removed) {
+        List<Condition> rest = new ArrayList<>(conjuncts);
+        rest.remove(removed);
+        return rest;
+    }
+
+    private static Condition combine(List<Condition> conjuncts) {
+        if (conjuncts.isEmpty()) {
+            return null;
+        }
+        return conjuncts.size() == 1 ? conjuncts.get(0) : new Condition.And(conjuncts);
+    }
+
+    private static final class Candidate {
+        private final AccessPath access;
+        private final List<Condition> residual;
+        private QueryPlan.SortStrategy sortStrategy;
+        private double cost;
+        private long estimatedResults;
+
+        Candidate(AccessPath access, List<Condition> residual) {
+            this.access = access;
+            this.residual = residual;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.chaoswanderer.inventory.reservation;
+
+// stock of one product held for a while (e.g. during checkout): counted out of the available quantity
+// until it is confirmed (taken out of stock for good), released, or it expires
+public class Reservation extends TimingWheel.Timer {
+    public enum State {
+        HELD, CONFIRMED, RELEASED, EXPIRED
+    }
+
+    private final long id;
+    private final String productId;
+    private final int quantity;
+    private final long createdMillis;
+    private final long expiresAtMillis;
+    final ReservationBook.Holds holds; // the product's counter, even if the product is removed meanwhile
+    private volatile State state = State.HELD;
+
+    Reservation(long id, String productId, int quantity, long createdMillis, long expiresAtMillis,
+                ReservationBook.Holds holds) {
+        this.id = id;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.createdMillis = createdMillis;
+        this.expiresAtMillis = expiresAtMillis;
+        this.holds = holds;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation " + id + ": " + quantity + " x " + productId + " (" + state + ")";
+    }
+}
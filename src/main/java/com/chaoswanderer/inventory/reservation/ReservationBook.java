@@ -0,0 +1,167 @@
+package com.chaoswanderer.inventory.reservation;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// outstanding stock reservations: per product the quantity held, so available = quantity - held is a lookup,
+// and a TimingWheel with every hold filed under its expiry, so expiring them never scans the outstanding ones
+//
+// guarded by the inventory's lock (changes under the write lock, see Inventory.reserve and friends).
+// Holds live in memory only - after a restart nothing is reserved.
+public class ReservationBook implements InventoryListener {
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    // quantity held of one product; a removed product's counter is dropped from the book but stays
+    // with its reservations until they end
+    static final class Holds {
+        private int reserved;
+        private int count;
+    }
+
+    private final LongSupplier clock;
+    private final TimingWheel<Reservation> wheel;
+    private final Map<Long, Reservation> reservations = new HashMap<>();
+    private final Map<String, Holds> holdsByProduct = new HashMap<>();
+    private long nextId = 1;
+    private volatile int outstanding; // read without the lock by the expiry thread
+
+    private long created;
+    private long confirmed;
+    private long released;
+    private long expired;
+
+    public ReservationBook() {
+        this(System::currentTimeMillis, DEFAULT_TICK_MILLIS);
+    }
+
+    public ReservationBook(LongSupplier clock, long tickMillis) {
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(tickMillis, clock.getAsLong());
+    }
+
+    // ------------------- Holds -------------------
+    // null if less than quantity is available
+    public Reservation hold(Product product, int quantity, long holdMillis) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Reserved quantity must be positive");
+        }
+        if (holdMillis <= 0) {
+            throw new IllegalArgumentException("Hold time must be positive");
+        }
+
+        long now = clock.getAsLong();
+        expire(now); // what has run out is available again
+        if (getAvailable(product) < quantity) {
+            return null;
+        }
+
+        Holds holds = holdsByProduct.computeIfAbsent(product.getId(), id -> new Holds());
+        Reservation reservation = new Reservation(nextId++, product.getId(), quantity, now, now + holdMillis, holds);
+        holds.reserved += quantity;
+        holds.count++;
+        reservations.put(reservation.getId(), reservation);
+        wheel.schedule(reservation, reservation.getExpiresAtMillis());
+        outstanding++;
+        created++;
+        return reservation;
+    }
+
+    // the reservation if it is still held, otherwise null
+    public Reservation get(long id) {
+        return reservations.get(id);
+    }
+
+    // ends a held reservation so it no longer counts against the product, touching no stock (confirming
+    // through Inventory.confirmReservation takes the quantity out too); null if it was not held
+    public Reservation end(long id, Reservation.State outcome) {
+        Reservation reservation = reservations.get(id);
+        if (reservation == null) {
+            return null;
+        }
+        wheel.cancel(reservation);
+        finish(reservation, outcome);
+        return reservation;
+    }
+
+    // true if its product was removed after it was made - it no longer holds anything of a product under that ID
+    public boolean isOrphaned(Reservation reservation) {
+        return holdsByProduct.get(reservation.getProductId()) != reservation.holds;
+    }
+
+    // ends every hold whose time has run out; returns how many
+    public int expire(long nowMillis) {
+        return wheel.advance(nowMillis, reservation -> finish(reservation, Reservation.State.EXPIRED));
+    }
+
+    public int expire() {
+        return expire(clock.getAsLong());
+    }
+
+    private void finish(Reservation reservation, Reservation.State outcome) {
+        reservations.remove(reservation.getId());
+        Holds holds = reservation.holds;
+        holds.reserved -= reservation.getQuantity();
+        if (--holds.count == 0 && holdsByProduct.get(reservation.getProductId()) == holds) {
+            holdsByProduct.remove(reservation.getProductId());
+        }
+        reservation.setState(outcome);
+        outstanding--;
+
+        switch (outcome) {
+            case CONFIRMED -> confirmed++;
+            case RELEASED -> released++;
+            case EXPIRED -> expired++;
+            default -> {
+            }
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Quantities -------------------
+    public int getReserved(String productId) {
+        Holds holds = holdsByProduct.get(productId);
+        return holds == null ? 0 : holds.reserved;
+    }
+
+    // never negative - stock taken out directly can leave less than is reserved
+    public int getAvailable(Product product) {
+        return Math.max(0, product.getQuantity() - getReserved(product.getId()));
+    }
+
+    public int getOutstandingCount() {
+        return outstanding;
+    }
+
+    public long getCreatedCount() {
+        return created;
+    }
+
+    public long getConfirmedCount() {
+        return confirmed;
+    }
+
+    public long getReleasedCount() {
+        return released;
+    }
+
+    public long getExpiredCount() {
+        return expired;
+    }
+
+    public long getTickMillis() {
+        return wheel.getTickMillis();
+    }
+    // ------------------------------------------------------
+
+    // ------------------- InventoryListener -------------------
+    // its reservations stay until they end, but no longer count against a product re-added under the same ID
+    @Override
+    public void productRemoved(Product product) {
+        holdsByProduct.remove(product.getId());
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,47 @@
+package com.chaoswanderer.inventory.reservation;
+
+import com.chaoswanderer.inventory.model.Inventory;
+
+// one thread per inventory that turns the timing wheel once a tick, so holds run out even when nobody
+// reserves anything; it only takes the write lock while some are outstanding
+public class ReservationExpirer implements AutoCloseable {
+    private final Inventory inventory;
+    private final ReservationBook book;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public ReservationExpirer(Inventory inventory, ReservationBook book) {
+        this.inventory = inventory;
+        this.book = book;
+        this.thread = new Thread(this::expireLoop, "reservation-expirer");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void expireLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(book.getTickMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (book.getOutstandingCount() > 0) {
+                try {
+                    inventory.expireReservations();
+                } catch (RuntimeException e) {
+                    System.out.println("Warning: Expiring reservations failed (" + e.getMessage() + ")");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,191 @@
+package com.chaoswanderer.inventory.reservation;
+
+import java.util.function.Consumer;
+
+// hierarchical timing wheel (Varghese & Lauck): LEVELS wheels of 64 slots, level n holding timers due
+// 64^n to 64^(n+1) ticks ahead. Scheduling and cancelling are O(1) (an intrusive doubly linked list per
+// slot, so no allocation per timer); each tick expires one level-0 slot, and every 64 ticks the next
+// level's slot is cascaded down one level, so each timer is moved at most LEVELS - 1 times.
+//
+// times are in milliseconds from the caller's clock; a timer never fires early and at most one tick late.
+// Timers more than 64^4 ticks ahead are parked in the top level and re-filed when that slot comes round.
+// Not thread-safe - the owner guards it.
+public class TimingWheel<T extends TimingWheel.Timer> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS); // ticks the wheels cover
+
+    // extended by whatever is scheduled, so the wheel needs no node of its own
+    public abstract static class Timer {
+        long deadlineTick;
+        int level;
+        Timer prev;
+        Timer next;
+
+        public boolean isScheduled() {
+            return next != null;
+        }
+    }
+
+    private static final class Sentinel extends Timer {
+        Sentinel() {
+            clear(this);
+        }
+    }
+
+    private final long tickMillis;
+    private final Sentinel[][] slots = new Sentinel[LEVELS][SLOTS];
+    private final int[] levelSizes = new int[LEVELS];
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("The tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        for (Sentinel[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Sentinel();
+            }
+        }
+    }
+
+    // files the timer to fire once the clock passes deadlineMillis; a scheduled timer is moved
+    public void schedule(T timer, long deadlineMillis) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            size--;
+        }
+        timer.deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis); // round up: never early
+        insert(timer);
+        size++;
+    }
+
+    // false if it was not scheduled (already fired or cancelled)
+    public boolean cancel(T timer) {
+        if (!timer.isScheduled()) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    // moves the wheel up to nowMillis, handing every timer that fell due to expired (oldest tick first);
+    // returns how many fired
+    @SuppressWarnings("unchecked")
+    public int advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        int fired = 0;
+
+        while (currentTick < target) {
+            if (size == 0) {
+                currentTick = target; // nothing to fire or cascade on the way
+                break;
+            }
+
+            // skip stretches where nothing can fire or cascade, so a clock jump costs at most 64 steps a level
+            currentTick = Math.min(target, nextBusyTick());
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(slots[level][(int) (currentTick >>> (SLOT_BITS * level)) & MASK]);
+            }
+
+            // one at a time, so the callback may cancel or reschedule any timer, including the ones still due
+            Sentinel slot = slots[0][(int) currentTick & MASK];
+            while (slot.next != slot) {
+                Timer timer = slot.next;
+                unlink(timer);
+                size--;
+                fired++;
+                expired.accept((T) timer);
+            }
+        }
+        return fired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    // ------------------- Slots -------------------
+    // the next tick that fires a level-0 slot or cascades a level that holds timers
+    private long nextBusyTick() {
+        int level = 0;
+        while (level < LEVELS && levelSizes[level] == 0) {
+            level++;
+        }
+        if (level == 0) {
+            return currentTick + 1;
+        }
+        long period = 1L << (SLOT_BITS * level); // the lowest non-empty level cascades every 64^level ticks
+        return (currentTick / period + 1) * period;
+    }
+
+    private void insert(Timer timer) {
+        long deadline = Math.max(timer.deadlineTick, currentTick + 1); // overdue: the next tick
+        long delta = deadline - currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        if (delta >= SPAN) {
+            deadline = currentTick + SPAN - 1; // parked; re-filed with its real deadline on the way down
+        }
+
+        Sentinel slot = slots[level][(int) (deadline >>> (SLOT_BITS * level)) & MASK];
+        timer.level = level;
+        levelSizes[level]++;
+        timer.prev = slot.prev;
+        timer.next = slot;
+        slot.prev.next = timer;
+        slot.prev = timer;
+    }
+
+    private void cascade(Sentinel slot) {
+        Timer timer = detach(slot);
+        while (timer != null) {
+            Timer following = timer.next;
+            levelSizes[timer.level]--;
+            insert(timer);
+            timer = following;
+        }
+    }
+
+    // empties the slot and returns its timers as a null-terminated chain (the timers' links are rewritten
+    // right after, before anything else can see them)
+    private static Timer detach(Sentinel slot) {
+        if (slot.next == slot) {
+            return null;
+        }
+        Timer first = slot.next;
+        slot.prev.next = null;
+        clear(slot);
+        return first;
+    }
+
+    private void unlink(Timer timer) {
+        levelSizes[timer.level]--;
+        timer.prev.next = timer.next;
+        timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+    }
+
+    private static void clear(Sentinel slot) {
+        slot.prev = slot;
+        slot.next = slot;
+    }
+    // ------------------------------------------------------
+}
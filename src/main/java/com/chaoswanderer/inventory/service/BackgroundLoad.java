@@ -0,0 +1,90 @@
+package com.chaoswanderer.inventory.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// progress of a data file being loaded on a background thread (see InventoryService.startBackgroundLoad);
+// products become visible one by one as they are read, so lookups work while the rest is still loading
+public class BackgroundLoad {
+    private final String filename;
+    private final long totalBytes;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final long startNanos = System.nanoTime();
+
+    private volatile long bytesRead;
+    private volatile long productsLoaded;
+    private volatile boolean succeeded;
+    private volatile long elapsedNanos = -1;
+
+    BackgroundLoad(String filename, long totalBytes) {
+        this.filename = filename;
+        this.totalBytes = totalBytes;
+    }
+
+    // only ever called from the loading thread
+    void progress(long bytes, long products) {
+        bytesRead = bytes;
+        productsLoaded = products;
+    }
+
+    void finish(boolean success) {
+        succeeded = success;
+        elapsedNanos = System.nanoTime() - startNanos;
+        finished.countDown();
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public long getProductsLoaded() {
+        return productsLoaded;
+    }
+
+    // 0.0 - 1.0, by bytes of the file read so far
+    public double getFraction() {
+        if (isComplete()) {
+            return 1.0;
+        }
+        return totalBytes <= 0 ? 0.0 : Math.min(1.0, (double) bytesRead / totalBytes);
+    }
+
+    public boolean isComplete() {
+        return finished.getCount() == 0;
+    }
+
+    // false if the file could not be read completely - the inventory then only holds part of it
+    public boolean isSucceeded() {
+        return isComplete() && succeeded;
+    }
+
+    // blocks until the load is done; returns true if it succeeded
+    public boolean awaitCompletion() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return succeeded;
+    }
+
+    // returns true once the load is done (successfully or not), false if it is still running after the timeout
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    public String describe() {
+        if (!isComplete()) {
+            return String.format("%.0f%% (%,d products)", getFraction() * 100, productsLoaded);
+        }
+        return String.format("%s%,d products in %.1f s", succeeded ? "" : "FAILED after ",
+                productsLoaded, elapsedNanos / 1e9);
+    }
+}
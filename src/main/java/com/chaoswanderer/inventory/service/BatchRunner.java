@@ -0,0 +1,256 @@
+package com.chaoswanderer.inventory.service;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.query.Condition;
+import com.chaoswanderer.inventory.query.Query;
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+// headless command processing for scripts and bulk jobs
+//
+// one command per line, comma separated like the data file ('#' lines and blank lines are skipped):
+//   add,<id>,<name>,<qty>,<price>[,<attributes>]
+//   remove,<id>
+//   set-qty,<id>,<qty>
+//   adjust,<id>,<delta>          (negative to take stock out)
+//   set-price,<id>,<price>
+//   query,<query>                (see Query - e.g. query,quantity < 5 ORDER BY id LIMIT 10)
+//   bulk-price,<percent>,<condition>     (e.g. bulk-price,5,name ~ "canned" for +5%, -10 for 10% off)
+//   bulk-set-qty,<qty>,<condition>
+//   bulk-adjust,<delta>,<condition>      (an empty condition matches every product)
+//   bulk-remove,<condition>
+//
+// commands are applied in batches: each batch runs as one atomic step under the inventory's write lock
+// and ends with a single store flush; with a durability hook (InventoryService::awaitDurable - batch mode
+// always runs with the journal) a batch's results are only written once its changes are durable. Without
+// one, an OK only means the change was applied in memory. Every command answers with tab-separated lines:
+//   <line>  OK     <id> <quantity> <price>      (mutations: the product afterwards; remove: just the id)
+//   <line>  ROW    <id> <name> <quantity> <price>   (one per query result, followed by OK <count>)
+//   <line>  OK     <count>                      (bulk commands: the products changed or removed)
+//   <line>  ERROR  <message>
+public class BatchRunner {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final Inventory inventory;
+    private final int batchSize;
+    private final BooleanSupplier awaitDurable;
+
+    private long commands;
+    private long failed;
+
+    public BatchRunner(Inventory inventory, int batchSize) {
+        this(inventory, batchSize, () -> true);
+    }
+
+    // awaitDurable returns once the changes so far are durable, false if they could not be made so
+    public BatchRunner(Inventory inventory, int batchSize, BooleanSupplier awaitDurable) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.inventory = inventory;
+        this.batchSize = batchSize;
+        this.awaitDurable = awaitDurable;
+    }
+
+    public long getCommandCount() {
+        return commands;
+    }
+
+    public long getFailedCount() {
+        return failed;
+    }
+
+    public void run(BufferedReader in, Writer out) throws IOException {
+        List<String> batch = new ArrayList<>(batchSize);
+        long firstLine = 1;
+        long lineNumber = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            batch.add(line);
+
+            if (batch.size() == batchSize) {
+                applyBatch(batch, firstLine, out);
+                batch.clear();
+                firstLine = lineNumber + 1;
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            applyBatch(batch, firstLine, out);
+        }
+        out.flush();
+    }
+
+    private void applyBatch(List<String> batch, long firstLine, Writer out) throws IOException {
+        StringBuilder results = new StringBuilder(batch.size() * 32);
+
+        inventory.runBatch(() -> {
+            for (int i = 0; i < batch.size(); i++) {
+                String line = batch.get(i);
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+
+                commands++;
+                long lineNumber = firstLine + i;
+                try {
+                    execute(line, lineNumber, results);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    // NumberFormatException included - one bad line must not stop the batch
+                    failed++;
+                    results.append(lineNumber).append("\tERROR\t").append(e.getMessage()).append('\n');
+                }
+            }
+            inventory.getStore().flush();
+        });
+
+        if (!awaitDurable.getAsBoolean()) {
+            throw new IOException("Changes from line " + firstLine + " on could not be made durable");
+        }
+        out.write(results.toString());
+        out.flush();
+    }
+
+    private void execute(String line, long lineNumber, StringBuilder results) {
+        int separator = line.indexOf(',');
+        String command = (separator < 0 ? line : line.substring(0, separator)).trim().toLowerCase();
+        String arguments = separator < 0 ? "" : line.substring(separator + 1);
+
+        if (command.equals("query")) {
+            List<Product> products = inventory.query(Query.parse(arguments));
+            for (Product product : products) {
+                results.append(lineNumber).append("\tROW\t").append(product.getId()).append('\t')
+                        .append(product.getName()).append('\t').append(product.getQuantity()).append('\t')
+                        .append(product.getPrice().toPlainString()).append('\n');
+            }
+            results.append(lineNumber).append("\tOK\t").append(products.size()).append('\n');
+            return;
+        }
+
+        if (command.startsWith("bulk-")) {
+            int changed = executeBulk(command, arguments);
+            results.append(lineNumber).append("\tOK\t").append(changed).append('\n');
+            return;
+        }
+
+        String[] parts = arguments.split(",");
+        String id = InventoryUtils.sanitizeString(parts[0]);
+        if (id.isEmpty()) {
+            throw new IllegalArgumentException("Missing product ID");
+        }
+
+        Product product;
+        switch (command) {
+            case "add" -> {
+                requireArguments(parts, 4, "add,<id>,<name>,<qty>,<price>[,<attributes>]");
+                product = new Product(id, InventoryUtils.sanitizeStringName(parts[1]),
+                        parseQuantity(parts[2]), InventoryUtils.toPrice(parts[3].trim()));
+                if (parts.length > 4) {
+                    product.setAttributes(InventoryUtils.parseAttributes(parts[4]));
+                }
+                if (!inventory.addProduct(product)) {
+                    throw new IllegalArgumentException("Product " + id + " already exists");
+                }
+            }
+            case "remove" -> {
+                requireProduct(id);
+                inventory.removeProduct(id);
+                results.append(lineNumber).append("\tOK\t").append(id).append('\n');
+                return;
+            }
+            case "set-qty" -> {
+                requireArguments(parts, 2, "set-qty,<id>,<qty>");
+                product = requireProduct(id);
+                inventory.updateProductQuantity(product, parseQuantity(parts[1]));
+            }
+            case "adjust" -> {
+                requireArguments(parts, 2, "adjust,<id>,<delta>");
+                product = requireProduct(id);
+                long quantity = (long) product.getQuantity() + Integer.parseInt(parts[1].trim());
+                if (quantity < 0) {
+                    throw new IllegalArgumentException("Not enough stock of " + id + " (" + product.getQuantity() + ")");
+                }
+                if (quantity > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Quantity of " + id + " would exceed " + Integer.MAX_VALUE);
+                }
+                inventory.updateProductQuantity(product, (int) quantity);
+            }
+            case "set-price" -> {
+                requireArguments(parts, 2, "set-price,<id>,<price>");
+                product = requireProduct(id);
+                BigDecimal price = InventoryUtils.toPrice(parts[1].trim());
+                if (price.signum() < 0) {
+                    throw new IllegalArgumentException("Price must not be negative");
+                }
+                inventory.updateProductPrice(product, price);
+            }
+            default -> throw new IllegalArgumentException("Unknown command '" + command + "'");
+        }
+
+        results.append(lineNumber).append("\tOK\t").append(product.getId()).append('\t')
+                .append(product.getQuantity()).append('\t').append(product.getPrice().toPlainString()).append('\n');
+    }
+
+    private int executeBulk(String command, String arguments) {
+        if (command.equals("bulk-remove")) {
+            Condition condition = parseCondition(arguments);
+            if (condition == null) {
+                throw new IllegalArgumentException("Usage: bulk-remove,<condition> (the condition must not be empty)");
+            }
+            return inventory.bulkRemove(condition::test);
+        }
+
+        String[] parts = arguments.split(",", 2);
+        requireArguments(parts, 2, command + ",<value>,<condition>");
+        Condition condition = parseCondition(parts[1]);
+        Predicate<Product> filter = condition == null ? product -> true : condition::test;
+        return switch (command) {
+            case "bulk-price" -> inventory.bulkAdjustPrice(filter, new BigDecimal(parts[0].trim()));
+            case "bulk-set-qty" -> inventory.bulkSetQuantity(filter, parseQuantity(parts[0]));
+            case "bulk-adjust" -> inventory.bulkAdjustQuantity(filter, Integer.parseInt(parts[0].trim()));
+            default -> throw new IllegalArgumentException("Unknown command '" + command + "'");
+        };
+    }
+
+    // the WHERE part of a query; null if empty
+    private static Condition parseCondition(String text) {
+        Query query = Query.parse(text);
+        if (!query.getOrder().isEmpty() || query.getLimit() != Query.NO_LIMIT) {
+            throw new IllegalArgumentException("Bulk commands take a condition without ORDER BY or LIMIT");
+        }
+        return query.getCondition();
+    }
+
+    private Product requireProduct(String id) {
+        Product product = inventory.searchProductById(id);
+        if (product == null) {
+            throw new IllegalArgumentException("Product " + id + " does not exist");
+        }
+        return product;
+    }
+
+    private static void requireArguments(String[] parts, int count, String usage) {
+        if (parts.length < count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    private static int parseQuantity(String text) {
+        int quantity = Integer.parseInt(text.trim());
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        return quantity;
+    }
+}
@@ -0,0 +1,292 @@
+package com.chaoswanderer.inventory.service;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// append-only log of the catalog changes made since the data file was last saved, so a change survives a
+// crash without rewriting the whole CSV: each change becomes a record holding the product's full state
+// ("U,<csv row>") or its removal ("D,<id>"), buffered as the inventory reports it and written and fsynced
+// by commit() - once per batch when a GroupCommitter drives it. Replaying the records in order on top of
+// the saved file restores the latest state, and replaying a record twice is harmless; that is what lets
+// a save rotate the journal without stopping writers (see InventoryService.saveProductsToFile). A bulk
+// operation's records are framed as a group that is replayed whole or not at all.
+public class ChangeJournal implements InventoryListener, Closeable {
+    public static final String DEFAULT_FILE = "data/products.journal";
+    private static final String ROTATED_SUFFIX = ".old";
+
+    private final Path path;
+    private final Path rotatedPath;
+    private final StringBuilder pending = new StringBuilder();
+    private FileChannel channel;
+
+    private long records;
+    private long syncs;
+    private long bytesWritten;
+
+    private ChangeJournal(Path path) throws IOException {
+        this.path = path;
+        this.rotatedPath = rotatedPath(path);
+        this.channel = openForAppend(path);
+    }
+
+    // opens (or creates) the journal for appending; a record torn by a crash mid-write is cut off
+    public static ChangeJournal open(Path path) throws IOException {
+        return new ChangeJournal(path);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // ------------------- Inventory events -------------------
+    @Override
+    public synchronized void productAdded(Product product) {
+        pending.append("U,").append(InventoryService.formatLine(product)).append('\n');
+        records++;
+    }
+
+    @Override
+    public synchronized void productUpdated(Product before, Product after) {
+        productAdded(after);
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        pending.append("D,").append(product.getId()).append('\n');
+        records++;
+    }
+
+    // a bulk operation's records go between "B,<count>" and "E": replay applies the group only if its end
+    // made it to disk, and opening the journal cuts off a group without one
+    @Override
+    public synchronized void bulkStarted(int changes) {
+        pending.append("B,").append(changes).append('\n');
+    }
+
+    @Override
+    public synchronized void bulkFinished() {
+        pending.append("E\n");
+    }
+    // ------------------------------------------------------
+
+    // writes the buffered records and fsyncs them; returns the bytes written (0 if nothing was pending)
+    public synchronized int commit() throws IOException {
+        if (pending.length() == 0) {
+            return 0;
+        }
+
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pending));
+        int length = bytes.remaining();
+        long start = channel.position();
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // cut off what made it out, so the retry does not land after a torn record
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException ignored) {
+                // replay skips a torn record anyway, only the one after it would be lost
+            }
+            throw e;
+        }
+
+        pending.setLength(0);
+        syncs++;
+        bytesWritten += length;
+        return length;
+    }
+
+    public synchronized boolean hasPending() {
+        return pending.length() > 0;
+    }
+
+    // ------------------- Rotation -------------------
+    // called by a save while it holds the inventory's read lock: every pending record then belongs to a
+    // change the save includes, so it is synced to the current file, which is set aside until the saved
+    // file is safely in place (discardRotated); records of later changes go to a fresh file
+    synchronized void rotate() throws IOException {
+        commit();
+        channel.close();
+        try {
+            if (Files.exists(rotatedPath)) {
+                // an earlier save did not finish - keep both generations until one does
+                appendTo(rotatedPath, path);
+                Files.delete(path);
+            } else {
+                Files.move(path, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            channel = openForAppend(path);
+        }
+    }
+
+    // the saved file now holds everything the rotated records describe
+    synchronized void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    private static void appendTo(Path target, Path source) throws IOException {
+        try (FileChannel out = openForAppend(target);
+             FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(false);
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Replay -------------------
+    // the records of the rotated file (if a save was interrupted) and then the current one, oldest first;
+    // a torn last record is skipped
+    static void forEachRecord(Path path, Consumer<String> action) throws IOException {
+        forEachRecordIn(rotatedPath(path), action);
+        forEachRecordIn(path, action);
+    }
+
+    private static void forEachRecordIn(Path path, Consumer<String> action) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        boolean torn;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            torn = completeLength(channel) < channel.size();
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            List<String> group = null;
+            String previous = reader.readLine();
+            String line;
+            while (previous != null) {
+                line = reader.readLine();
+                if (line == null && torn) {
+                    break;
+                }
+
+                if (previous.startsWith("B,")) {
+                    group = new ArrayList<>();
+                } else if (previous.equals("E")) {
+                    if (group != null) {
+                        group.forEach(action);
+                    }
+                    group = null;
+                } else if (group != null) {
+                    group.add(previous);
+                } else {
+                    action.accept(previous);
+                }
+                previous = line;
+            }
+            // a group without its end is a bulk operation cut short by a crash - none of it counts
+        }
+    }
+    // ------------------------------------------------------
+
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    public synchronized long getSyncCount() {
+        return syncs;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static Path rotatedPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ROTATED_SUFFIX);
+    }
+
+    private static FileChannel openForAppend(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = groupedLength(channel, completeLength(channel));
+        if (end < channel.size()) {
+            channel.truncate(end);
+        }
+        channel.position(end);
+        return channel;
+    }
+
+    // the complete records up to end, less a trailing bulk group that has no end marker
+    private static long groupedLength(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long groupStart = -1;
+        boolean lineStart = true;
+        long position = 0;
+
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (lineStart && b == 'B') {
+                    groupStart = position + i;
+                } else if (lineStart && b == 'E') {
+                    groupStart = -1;
+                }
+                lineStart = b == '\n';
+            }
+            position += read;
+        }
+        return groupStart >= 0 ? groupStart : end;
+    }
+
+    // bytes up to and including the last newline - anything after it is a record torn by a crash
+    private static long completeLength(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = channel.size();
+
+        while (position > 0) {
+            int length = (int) Math.min(buffer.capacity(), position);
+            position -= length;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+}
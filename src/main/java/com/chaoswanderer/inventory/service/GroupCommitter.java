@@ -0,0 +1,283 @@
+package com.chaoswanderer.inventory.service;
+
+import com.chaoswanderer.inventory.model.Inventory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// group commit for writes to an Inventory with a ChangeJournal: callers on any thread submit mutations,
+// and a single committer thread takes everything queued (up to maxBatch), applies it under one write
+// lock, writes and fsyncs the batch's journal records once, and only then completes the callers'
+// futures. While one batch is syncing the next one queues up, so under load a sync is shared by the
+// whole batch instead of paid by every write. With maxDelayMicros > 0 the committer also waits up to
+// that long for a batch to fill - fewer syncs at low concurrency, at the cost of latency.
+//
+// changes made directly on the inventory (the menu, batch mode, the file watcher) are journaled too, but
+// are only durable once the committer next commits - at most IDLE_SYNC_MILLIS later when nothing is
+// submitted. A writer that reports success to someone calls sync() first.
+public class GroupCommitter implements AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final int DEFAULT_MAX_DELAY_MICROS = 0;
+    private static final int QUEUE_CAPACITY = 16_384;
+    private static final long IDLE_SYNC_MILLIS = 50;
+
+    private final Inventory inventory;
+    private final ChangeJournal journal;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request<?>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread committer;
+    private final Object perWriteLock = new Object();
+
+    private volatile boolean closed;
+    private volatile boolean exited;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedSyncs = new AtomicLong();
+
+    public GroupCommitter(Inventory inventory, ChangeJournal journal, int maxBatch, int maxDelayMicros) {
+        if (maxBatch < 1 || maxDelayMicros < 0) {
+            throw new IllegalArgumentException("Batch size must be at least 1 and the delay not negative");
+        }
+        this.inventory = inventory;
+        this.journal = journal;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.committer = new Thread(this::runCommitter, "inventory-committer");
+        this.committer.setDaemon(true); // close() drains it explicitly
+    }
+
+    public void start() {
+        committer.start();
+    }
+
+    // queues a mutation; the future completes with its result once the change is durable, or
+    // exceptionally if the mutation threw or the journal could not be synced. Blocks while the queue
+    // is full. The mutation runs on the committer thread under the inventory's write lock - keep it quick.
+    public <T> CompletableFuture<T> submit(Function<Inventory, T> mutation) {
+        Request<T> request = new Request<>(mutation);
+        if (closed) {
+            request.future.completeExceptionally(new IllegalStateException("Group committer is closed"));
+            return request.future;
+        }
+
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(e);
+            return request.future;
+        }
+
+        // raced with close(): whoever removes it from the queue settles it
+        if (exited && queue.remove(request)) {
+            request.future.completeExceptionally(new IllegalStateException("Group committer is closed"));
+        }
+        return request.future;
+    }
+
+    // waits until every change made so far, submitted or direct, is durable; false if the journal could
+    // not be synced or the committer is closed. Never call it while holding the inventory's write lock.
+    public boolean sync() {
+        try {
+            submit(inventory -> null).join();
+            return true;
+        } catch (CompletionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    // the per-write path, for comparison: applies one mutation and syncs the journal before returning
+    public <T> T applyAndCommit(Function<Inventory, T> mutation) throws IOException {
+        synchronized (perWriteLock) {
+            Object[] result = new Object[1];
+            inventory.runBatch(() -> result[0] = mutation.apply(inventory));
+            journal.commit();
+            writes.incrementAndGet();
+            batches.incrementAndGet();
+            @SuppressWarnings("unchecked")
+            T value = (T) result[0];
+            return value;
+        }
+    }
+
+    // ------------------- Committer -------------------
+    private void runCommitter() {
+        List<Request<?>> batch = new ArrayList<>(maxBatch);
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Request<?> first = queue.poll(IDLE_SYNC_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    syncIdle();
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+                if (maxDelayNanos > 0) {
+                    fill(batch);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                // nothing interrupts the committer (that would close the journal's channel) - keep draining
+            } catch (RuntimeException e) {
+                System.out.println("Error committing changes: " + e.getMessage());
+                fail(batch, e);
+            }
+            batch.clear();
+        }
+
+        exited = true;
+        List<Request<?>> stranded = new ArrayList<>();
+        queue.drainTo(stranded);
+        fail(stranded, new IllegalStateException("Group committer is closed"));
+        syncIdle();
+    }
+
+    private void fill(List<Request<?>> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatch && !closed) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Request<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    private void commit(List<Request<?>> batch) {
+        // one write lock for the batch: readers see all of it or none of it
+        inventory.runBatch(() -> {
+            for (Request<?> request : batch) {
+                request.apply(inventory);
+            }
+        });
+
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            // the changes are applied but not durable; their records stay pending for the next sync
+            failedSyncs.incrementAndGet();
+            System.out.println("Error writing journal: " + e.getMessage());
+            fail(batch, new UncheckedIOException(e));
+            return;
+        }
+
+        batches.incrementAndGet();
+        writes.addAndGet(batch.size());
+        for (Request<?> request : batch) {
+            request.complete();
+        }
+    }
+
+    private void syncIdle() {
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            failedSyncs.incrementAndGet();
+            System.out.println("Error writing journal: " + e.getMessage());
+        }
+    }
+
+    private static void fail(List<Request<?>> requests, Throwable cause) {
+        for (Request<?> request : requests) {
+            request.future.completeExceptionally(cause);
+        }
+    }
+    // ------------------------------------------------------
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    public long getFailedSyncCount() {
+        return failedSyncs.get();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) writes.get() / count;
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    public long getMaxDelayMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxDelayNanos);
+    }
+
+    // commits everything already submitted, then stops the committer; later submissions fail.
+    // Waits at most one idle poll for the committer to notice.
+    @Override
+    public void close() {
+        closed = true;
+        if (!committer.isAlive()) {
+            exited = true; // never started
+            List<Request<?>> stranded = new ArrayList<>();
+            queue.drainTo(stranded);
+            fail(stranded, new IllegalStateException("Group committer is closed"));
+            return;
+        }
+
+        boolean interrupted = false;
+        while (committer.isAlive()) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Request<T> {
+        private final Function<Inventory, T> mutation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private RuntimeException error;
+
+        Request(Function<Inventory, T> mutation) {
+            this.mutation = mutation;
+        }
+
+        void apply(Inventory inventory) {
+            try {
+                result = mutation.apply(inventory);
+            } catch (RuntimeException e) {
+                error = e; // only this request fails, the rest of the batch still commits
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.chaoswanderer.inventory.service;
+
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// the rows of an import feed that differ from the live inventory
+// unchanged rows are only counted, so a mostly-identical feed stays cheap to hold
+public class ImportDiff {
+
+    public static class ProductUpdate {
+        private final Product existing;
+        private final String name;
+        private final int quantity;
+        private final BigDecimal price;
+        private final Map<String, Set<String>> attributes;
+        // the existing product is updated in place, so the report needs its own copy of the old values
+        private final String oldName;
+        private final int oldQuantity;
+        private final BigDecimal oldPrice;
+        private final String oldAttributes;
+
+        ProductUpdate(Product existing, String name, int quantity, BigDecimal price,
+                      Map<String, Set<String>> attributes) {
+            this.existing = existing;
+            this.oldName = existing.getName();
+            this.oldQuantity = existing.getQuantity();
+            this.oldPrice = existing.getPrice();
+            this.oldAttributes = InventoryUtils.formatAttributes(existing.getAttributes());
+            this.name = name;
+            this.quantity = quantity;
+            this.price = price;
+            this.attributes = attributes;
+        }
+
+        public Product getExisting() {
+            return existing;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public Map<String, Set<String>> getAttributes() {
+            return attributes;
+        }
+
+        private String describe() {
+            StringBuilder line = new StringBuilder("~ " + existing.getId());
+            if (!oldName.equals(name)) {
+                line.append(" | name '").append(oldName).append("' -> '").append(name).append("'");
+            }
+            if (oldQuantity != quantity) {
+                line.append(" | qty ").append(oldQuantity).append(" -> ").append(quantity);
+            }
+            if (oldPrice.compareTo(price) != 0) {
+                line.append(" | price ").append(oldPrice.toPlainString()).append(" -> ").append(price.toPlainString());
+            }
+            String newAttributes = InventoryUtils.formatAttributes(attributes);
+            if (!oldAttributes.equals(newAttributes)) {
+                line.append(" | attributes '").append(oldAttributes).append("' -> '").append(newAttributes).append("'");
+            }
+            return line.toString();
+        }
+    }
+
+    // keyed by ID so a feed that repeats an ID keeps only its last row
+    private final Map<String, Product> inserts = new LinkedHashMap<>();
+    private final Map<String, ProductUpdate> updates = new LinkedHashMap<>();
+    private final List<String> deletions = new ArrayList<>();
+    private final Set<String> duplicates = new LinkedHashSet<>();
+    private long unchanged;
+    private long skipped;
+
+    void addInsert(Product product) {
+        inserts.put(product.getId(), product);
+    }
+
+    void addUpdate(ProductUpdate update) {
+        updates.put(update.getExisting().getId(), update);
+    }
+
+    void addDeletion(String id) {
+        deletions.add(id);
+    }
+
+    // a later row for the same ID replaces the earlier one: whatever that row was counted as is taken back
+    void replaceEarlierRow(String id) {
+        duplicates.add(id);
+        if (inserts.remove(id) == null && updates.remove(id) == null) {
+            unchanged--;
+        }
+    }
+
+    void countUnchanged() {
+        unchanged++;
+    }
+
+    void countSkipped() {
+        skipped++;
+    }
+
+    public Collection<Product> getInserts() {
+        return inserts.values();
+    }
+
+    public Collection<ProductUpdate> getUpdates() {
+        return updates.values();
+    }
+
+    public List<String> getDeletions() {
+        return deletions;
+    }
+
+    public long getUnchangedCount() {
+        return unchanged;
+    }
+
+    public long getSkippedCount() {
+        return skipped;
+    }
+
+    // IDs the feed listed more than once
+    public Set<String> getDuplicates() {
+        return duplicates;
+    }
+
+    public boolean isEmpty() {
+        return inserts.isEmpty() && updates.isEmpty() && deletions.isEmpty();
+    }
+
+    public String summary() {
+        String summary = String.format("%d inserted, %d updated, %d deleted, %d unchanged, %d skipped",
+                inserts.size(), updates.size(), deletions.size(), unchanged, skipped);
+        return duplicates.isEmpty() ? summary : summary + ", " + duplicates.size() + " duplicate IDs";
+    }
+
+    // one line per change: "+" insert, "~" update (changed fields only), "-" deletion,
+    // then "!" for each ID the feed repeated
+    public List<String> getReport() {
+        List<String> report = new ArrayList<>(inserts.size() + updates.size() + deletions.size() + duplicates.size());
+
+        for (Product product : inserts.values()) {
+            report.add("+ " + product);
+        }
+        for (ProductUpdate update : updates.values()) {
+            report.add(update.describe());
+        }
+        for (String id : deletions) {
+            report.add("- " + id);
+        }
+        for (String id : duplicates) {
+            report.add("! " + id + " appears more than once - the last row was used");
+        }
+
+        return report;
+    }
+
+    public void writeReport(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# " + summary());
+            writer.newLine();
+            for (String line : getReport()) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.chaoswanderer.inventory.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+// reloads the data file when it is edited out of band
+// a burst of writes (editors often save in several steps) is debounced into a single reload,
+// and only the rows that differ are applied, as one batch, on the watcher's own thread
+public class InventoryFileWatcher implements AutoCloseable {
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private final InventoryService inventoryService;
+    private final Path file;
+    private final boolean deleteMissing;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    private volatile String lastReloadSummary = "none";
+    private volatile long reloadCount;
+
+    public InventoryFileWatcher(InventoryService inventoryService, String filename, boolean deleteMissing)
+            throws IOException {
+        this(inventoryService, filename, deleteMissing, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public InventoryFileWatcher(InventoryService inventoryService, String filename, boolean deleteMissing,
+                                long debounceMillis) throws IOException {
+        this.inventoryService = inventoryService;
+        this.file = Path.of(filename).toAbsolutePath();
+        this.deleteMissing = deleteMissing;
+        this.debounceMillis = debounceMillis;
+
+        // directories are watched, not files - editors commonly replace the file with a rename
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this::watchLoop, "inventory-file-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public String getLastReloadSummary() {
+        return lastReloadSummary;
+    }
+
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = drain(key);
+
+                if (!changed) {
+                    continue;
+                }
+
+                // keep waiting until the file has been quiet for a whole debounce window
+                long deadline = System.currentTimeMillis() + debounceMillis;
+                long remaining;
+                while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                    WatchKey next = watchService.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next != null && drain(next)) {
+                        deadline = System.currentTimeMillis() + debounceMillis;
+                    }
+                }
+
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher closed
+        }
+    }
+
+    // true if any of the key's events concern our data file
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        try {
+            // the diff only takes short read locks, so the UI keeps working while the file is compared
+            ImportDiff diff = inventoryService.diffProductsFromFile(file.toString(), deleteMissing);
+            if (diff == null || diff.isEmpty()) {
+                return;
+            }
+
+            inventoryService.applyDiff(diff);
+            reloadCount++;
+            lastReloadSummary = diff.summary();
+        } catch (RuntimeException e) {
+            // a half-written file must not kill the watcher - the next change triggers another attempt
+            lastReloadSummary = "failed: " + e.getMessage();
+        }
+    }
+}
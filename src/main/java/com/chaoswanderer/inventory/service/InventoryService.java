@@ -1,24 +1,61 @@
 package com.chaoswanderer.inventory.service;
 
+import com.chaoswanderer.inventory.export.ExportFormat;
+import com.chaoswanderer.inventory.export.ExportResult;
+import com.chaoswanderer.inventory.export.ProductExporter;
+import com.chaoswanderer.inventory.index.IndexFile;
+import com.chaoswanderer.inventory.index.SearchIndex;
+import com.chaoswanderer.inventory.location.LocationStock;
 import com.chaoswanderer.inventory.model.Inventory;
 import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.sync.SyncDelta;
+import com.chaoswanderer.inventory.sync.SyncNode;
 import com.chaoswanderer.inventory.util.InventoryUtils;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class InventoryService {
+    public static final String DATA_FILE = "data/products.csv";
+    public static final String LOCATIONS_FILE = "data/locations.csv";
+    public static final String INDEX_FILE = "data/products.idx";
+    public static final String SYNC_STATE_FILE = "data/sync.state";
 
     private final Inventory inventory;
+    private final String dataFile;
+    private volatile BackgroundLoad backgroundLoad;
+    private volatile ChangeJournal changeJournal;
+    private volatile GroupCommitter groupCommitter;
+    private volatile IndexFile.Generation loadedGeneration; // of the data file, if the catalog was loaded from it
+    private volatile Path searchIndexFile;
+    private volatile SyncNode syncNode;
+    private volatile Path syncStateFile;
 
     public InventoryService(Inventory inventory) {
+        this(inventory, DATA_FILE);
+    }
+
+    // dataFile is the file saveProductsToFile writes, e.g. one per tenant
+    public InventoryService(Inventory inventory, String dataFile) {
         this.inventory = inventory;
+        this.dataFile = dataFile;
+    }
+
+    public String getDataFile() {
+        return dataFile;
     }
 
     public boolean addProductsFromFile(String filename) {
@@ -29,23 +66,98 @@ public class InventoryService {
             return false;
         }
 
+        return loadProducts(path, null);
+    }
+
+    // ------------------- Background load -------------------
+    // reads the data file on its own thread so the UI can start right away; each product is added (under
+    // the write lock) as soon as it is parsed, so lookups of already-loaded products work immediately.
+    // onComplete runs on the loading thread once the whole file is in, before the load counts as complete, so
+    // isLoading() stays true until whatever it sets up is in place. Returns null if there is no file.
+    public BackgroundLoad startBackgroundLoad(String filename, Runnable onComplete) {
+        Path path = Paths.get(filename);
+
+        if (!Files.exists(path)) {
+            System.out.println("Error: File '" + filename + "' not found!");
+            return null;
+        }
+
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            size = 0; // progress then just stays at 0% until done
+        }
+
+        BackgroundLoad load = new BackgroundLoad(filename, size);
+        backgroundLoad = load;
+
+        Thread thread = new Thread(() -> {
+            boolean succeeded = false;
+            try {
+                succeeded = loadProducts(path, load);
+            } catch (RuntimeException e) {
+                System.out.println("Error loading '" + filename + "': " + e.getMessage());
+            }
+            try {
+                if (onComplete != null) {
+                    onComplete.run();
+                }
+            } finally {
+                load.finish(succeeded);
+            }
+        }, "inventory-loader");
+        thread.setDaemon(true); // saving waits for it explicitly, see saveProductsToFile
+        thread.start();
+        return load;
+    }
+
+    // the load started by startBackgroundLoad, or null if the data file was loaded up front
+    public BackgroundLoad getBackgroundLoad() {
+        return backgroundLoad;
+    }
+
+    public boolean isLoading() {
+        BackgroundLoad load = backgroundLoad;
+        return load != null && !load.isComplete();
+    }
+
+    private boolean loadProducts(Path path, BackgroundLoad progress) {
+        // remembered so a saved search index can be matched to exactly this version of the data file
+        if (inventory.getTotalProducts() == 0 && path.equals(Paths.get(dataFile))) {
+            try {
+                loadedGeneration = IndexFile.Generation.of(path);
+            } catch (IOException e) {
+                loadedGeneration = null;
+            }
+        }
+
         try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
             String line;
+            long bytes = 0;
+            long products = 0;
             while ((line = reader.readLine()) != null) {
-                if (line.isEmpty()) continue;
+                bytes += line.length() + 1; // close enough to bytes for a mostly-ASCII file
+                Product product = parseLine(line);
+                if (product == null) continue;
 
-                String[] parts = line.split(",");
-                if (parts.length < 4) continue;
+                try {
+                    if (inventory.addProduct(product)) {
+                        products++;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // e.g. a record that does not fit the paged storage layout
+                    System.out.println("Skipping product '" + product.getId() + "': " + e.getMessage());
+                }
 
-                String id = InventoryUtils.sanitizeString(parts[0]);
-                String name = InventoryUtils.sanitizeStringName(parts[1]);
-                int quantity = Integer.parseInt(InventoryUtils.sanitizeString(parts[2]));
-                BigDecimal price = InventoryUtils.toPrice(parts[3]);
-
-                Product product = new Product(id, name, quantity, price);
-                inventory.addProduct(product);
+                if (progress != null && (products & 1023) == 0) {
+                    progress.progress(bytes, products);
+                }
             }
 
+            if (progress != null) {
+                progress.progress(bytes, products);
+            }
             return true;
 
         } catch (IOException e) {
@@ -54,21 +166,504 @@ public class InventoryService {
         }
     }
 
+    // ------------------- Merge import -------------------
+    // streams a feed and applies only what differs from the live inventory;
+    // returns null if the file could not be read
+    public ImportDiff mergeProductsFromFile(String filename, boolean deleteMissing) {
+        ImportDiff diff = diffProductsFromFile(filename, deleteMissing);
+        if (diff != null) {
+            applyDiff(diff);
+        }
+        return diff;
+    }
+
+    // compares every row with the product of the same ID by content hash, without touching the inventory;
+    // when the feed repeats an ID its last row wins, and the ID is reported as a duplicate
+    public ImportDiff diffProductsFromFile(String filename, boolean deleteMissing) {
+        Path path = Paths.get(filename);
+
+        if (!Files.exists(path)) {
+            System.out.println("Error: File '" + filename + "' not found!");
+            return null;
+        }
+
+        ImportDiff diff = new ImportDiff();
+        Set<String> seenIds = new HashSet<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+
+                Product row;
+                try {
+                    row = parseLine(line);
+                } catch (NumberFormatException e) {
+                    row = null;
+                }
+
+                if (row == null) {
+                    diff.countSkipped();
+                    continue;
+                }
+
+                if (!seenIds.add(row.getId())) {
+                    diff.replaceEarlierRow(row.getId());
+                }
+
+                diffRow(diff, row);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            return null;
+        }
+
+        if (deleteMissing) {
+            inventory.forEachProduct(product -> {
+                if (!seenIds.contains(product.getId())) {
+                    diff.addDeletion(product.getId());
+                }
+            });
+        }
+
+        return diff;
+    }
+
+    // applied as one batch; rows that changed under us since the diff was taken are re-checked
+    public void applyDiff(ImportDiff diff) {
+        inventory.runBatch(() -> {
+            for (String id : diff.getDeletions()) {
+                if (inventory.productExists(id)) {
+                    inventory.removeProduct(id);
+                }
+            }
+
+            for (ImportDiff.ProductUpdate update : diff.getUpdates()) {
+                if (inventory.productExists(update.getExisting())) {
+                    inventory.updateProduct(update.getExisting(), update.getName(), update.getQuantity(), update.getPrice(),
+                            update.getAttributes());
+                }
+            }
+
+            for (Product product : diff.getInserts()) {
+                try {
+                    inventory.addProduct(product);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Skipping product '" + product.getId() + "': " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void diffRow(ImportDiff diff, Product row) {
+        Product existing = inventory.searchProductById(row.getId());
+
+        if (existing == null) {
+            diff.addInsert(row);
+        } else if (existing.contentHash() != row.contentHash()) {
+            diff.addUpdate(new ImportDiff.ProductUpdate(existing, row.getName(), row.getQuantity(), row.getPrice(),
+                    row.getAttributes()));
+        } else {
+            diff.countUnchanged();
+        }
+    }
+    // ------------------------------------------------------
+
+    // id,name,quantity,price[,attributes] - returns null for blank or short lines
+    // a row is the whole product, so a row without the attributes column has no attributes
+    private static Product parseLine(String line) {
+        if (line.isEmpty()) return null;
+
+        String[] parts = line.split(",");
+        if (parts.length < 4) return null;
+
+        String id = InventoryUtils.sanitizeString(parts[0]);
+        String name = InventoryUtils.sanitizeStringName(parts[1]);
+        int quantity = Integer.parseInt(InventoryUtils.sanitizeString(parts[2]));
+        BigDecimal price = InventoryUtils.toPrice(parts[3]);
+
+        Product product = new Product(id, name, quantity, price);
+        if (parts.length > 4) {
+            product.setAttributes(InventoryUtils.parseAttributes(parts[4]));
+        }
+        return product;
+    }
+
+    // id,name,quantity,price[,attributes] - the attributes column is only written when there are any,
+    // keeping plain rows unchanged
+    static String formatLine(Product product) {
+        String attributes = InventoryUtils.formatAttributes(product.getAttributes());
+        return product.getId() + "," + product.getName() + "," + product.getQuantity() + ","
+                + product.getPrice().toPlainString() + (attributes.isEmpty() ? "" : "," + attributes);
+    }
+
     public boolean saveProductsToFile() {
-        Path path = Paths.get("data/products.csv");
+        Path path = Paths.get(dataFile);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
 
-        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
-            for (Product product : inventory.getAllProducts()) {
-                writer.write(String.format("%s,%s,%d,%s%n",
-                        product.getId(),
-                        product.getName(),
-                        product.getQuantity(),
-                        product.getPrice().toPlainString()));
+        // never write back a half-loaded catalog - that would drop every product not read yet
+        BackgroundLoad load = backgroundLoad;
+        if (load != null && !load.awaitCompletion()) {
+            System.out.println("Error: Not saving - '" + load.getFilename() + "' did not load completely");
+            return false;
+        }
+
+        // streamed product by product so a paged catalog never has to fit in memory; written next to the data
+        // file and moved over it once complete, so a crash mid-save leaves the previous file intact
+        ChangeJournal journal = changeJournal;
+        Path[] indexTemp = new Path[1];
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                inventory.runReadBatch(() -> {
+                    try {
+                        inventory.forEachProduct(product -> {
+                            try {
+                                writer.write(formatLine(product));
+                                writer.newLine();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                        // the journal records up to this point describe changes this file includes
+                        if (journal != null) {
+                            journal.rotate();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    indexTemp[0] = writeSearchIndex();
+                });
+            }
+            if (journal != null) {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (journal != null) {
+                journal.discardRotated();
             }
+            if (indexTemp[0] != null) {
+                commitSearchIndex(indexTemp[0], path);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error saving file: " + e.getMessage());
+            return false;
+        }
+
+        boolean saved = inventory.getLocationStock() == null || saveLocationStockToFile(LOCATIONS_FILE);
+        return saveSyncState() && saved;
+    }
+
+    // ------------------- Search index -------------------
+    // reads the index saved with the data file if it matches the data file just loaded, otherwise builds it;
+    // from then on each save writes it next to the data file
+    public void enableSearchIndex(String filename) {
+        Path path = Paths.get(filename);
+        IndexFile.Generation generation = loadedGeneration;
+
+        long start = System.nanoTime();
+        SearchIndex saved = generation == null ? null : IndexFile.load(path, generation);
+        SearchIndex index = inventory.enableSearchIndex(saved);
+        searchIndexFile = path;
+
+        System.out.printf("%s search index for %d products in %d ms%n", index == saved ? "Loaded" : "Built",
+                index.getProductCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // under the read lock, with the data file rows; a failure only costs a rebuild on the next start
+    private Path writeSearchIndex() {
+        SearchIndex index = inventory.getSearchIndex();
+        Path path = searchIndexFile;
+        if (index == null || path == null) {
+            return null;
+        }
+
+        try {
+            return IndexFile.writeBody(path, index);
+        } catch (IOException e) {
+            System.out.println("Warning: Could not save search index (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    private void commitSearchIndex(Path temp, Path savedFile) {
+        try {
+            IndexFile.commit(temp, searchIndexFile, IndexFile.Generation.of(savedFile));
+        } catch (IOException e) {
+            System.out.println("Warning: Could not save search index (" + e.getMessage() + ")");
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Change journal -------------------
+    // replays the journal left by the last run onto the loaded catalog, then journals every change from here
+    // on; a GroupCommitter (maxBatch, maxDelayMicros) syncs it and takes queued writes from other threads.
+    // Each save starts the journal over. Returns false if the journal cannot be read or opened.
+    public boolean enableJournal(String filename, int maxBatch, int maxDelayMicros) {
+        Path path = Paths.get(filename);
+
+        int replayed = replayJournal(path);
+        if (replayed < 0) {
+            return false;
+        }
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " changes from '" + filename + "'");
+        }
+
+        try {
+            ChangeJournal journal = ChangeJournal.open(path);
+            GroupCommitter committer = new GroupCommitter(inventory, journal, maxBatch, maxDelayMicros);
+            inventory.addListener(journal);
+            changeJournal = journal;
+            groupCommitter = committer;
+            committer.start();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error opening journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // null unless enableJournal succeeded
+    public GroupCommitter getGroupCommitter() {
+        return groupCommitter;
+    }
+
+    // waits until the changes made so far are in the journal (see GroupCommitter.sync); true right away
+    // without a journal, false if the journal could not be synced
+    public boolean awaitDurable() {
+        GroupCommitter committer = groupCommitter;
+        return committer == null || committer.sync();
+    }
+
+    // commits the writes already queued and stops taking new ones (before the final save on exit)
+    public void stopGroupCommit() {
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            committer.close();
+        }
+    }
+
+    public ChangeJournal getChangeJournal() {
+        return changeJournal;
+    }
+
+    // returns the number of records applied, or -1 if the journal could not be read
+    private int replayJournal(Path path) {
+        int[] replayed = {0};
+        try {
+            inventory.runBatch(() -> {
+                try {
+                    ChangeJournal.forEachRecord(path, record -> {
+                        if (replayRecord(record)) {
+                            replayed[0]++;
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return replayed[0];
+        } catch (UncheckedIOException e) {
+            System.out.println("Error reading journal: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private boolean replayRecord(String record) {
+        if (record.startsWith("D,")) {
+            String id = record.substring(2);
+            if (inventory.productExists(id)) {
+                inventory.removeProduct(id);
+            }
+            return true;
+        }
+
+        Product row;
+        try {
+            row = record.startsWith("U,") ? parseLine(record.substring(2)) : null;
+        } catch (NumberFormatException e) {
+            row = null;
+        }
+        if (row == null) {
+            System.out.println("Skipping journal record '" + record + "'");
+            return false;
+        }
+
+        Product existing = inventory.searchProductById(row.getId());
+        if (existing == null) {
+            inventory.addProduct(row);
+        } else {
+            inventory.updateProduct(existing, row.getName(), row.getQuantity(), row.getPrice(), row.getAttributes());
+        }
+        return true;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Export -------------------
+    // writes the catalog to filename in the given format, gzipped if asked; null (with the error printed)
+    // if the export failed, in which case any earlier file at filename is left as it was
+    public ExportResult exportProducts(String filename, ExportFormat format, boolean gzip) {
+        BackgroundLoad load = backgroundLoad;
+        if (load != null && !load.awaitCompletion()) {
+            System.out.println("Error: Not exporting - '" + load.getFilename() + "' did not load completely");
+            return null;
+        }
+
+        try {
+            Path path = Paths.get(filename).toAbsolutePath();
+            Files.createDirectories(path.getParent());
+            return new ProductExporter(inventory).export(path, format, gzip);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error exporting to '" + filename + "': " + e.getMessage());
+            return null;
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Sync -------------------
+    // makes this inventory a sync node: its replicated state is read from stateFile (if there is one) and
+    // written there with every save. Returns false if the state file cannot be read or the name is invalid.
+    public boolean enableSync(String nodeId, String stateFile) {
+        Path path = Paths.get(stateFile);
+        try {
+            SyncNode node = new SyncNode(nodeId, inventory);
+            if (Files.exists(path)) {
+                node.load(path);
+            }
+            node.attach();
+            syncNode = node;
+            syncStateFile = path;
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error enabling sync: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // null unless enableSync succeeded
+    public SyncNode getSyncNode() {
+        return syncNode;
+    }
+
+    // merges a delta file written by another node; returns the number of products it changed, or -1
+    public int importSyncDelta(String filename) {
+        SyncNode node = requireSync();
+        if (node == null) {
+            return -1;
+        }
+
+        try {
+            return node.merge(SyncDelta.readFrom(Paths.get(filename)));
+        } catch (IOException e) {
+            System.out.println("Error reading sync delta '" + filename + "': " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // writes what changed after sinceVersion of this node (0 for everything); returns the number of
+    // products written, or -1
+    public int exportSyncDelta(String filename, long sinceVersion) {
+        SyncNode node = requireSync();
+        if (node == null) {
+            return -1;
+        }
+
+        try {
+            SyncDelta delta = node.deltaSince(sinceVersion);
+            delta.writeTo(Paths.get(filename).toAbsolutePath());
+            return delta.size();
+        } catch (IOException e) {
+            System.out.println("Error writing sync delta '" + filename + "': " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private SyncNode requireSync() {
+        SyncNode node = syncNode;
+        if (node == null) {
+            System.out.println("Error: Sync is not enabled");
+        }
+        return node;
+    }
+
+    private boolean saveSyncState() {
+        SyncNode node = syncNode;
+        if (node == null) {
+            return true;
+        }
+
+        try {
+            node.save(syncStateFile);
             return true;
         } catch (IOException e) {
+            System.out.println("Error saving sync state: " + e.getMessage());
+            return false;
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Location stock -------------------
+    // id,location,quantity - one row per product and location holding stock
+    public boolean loadLocationStockFromFile(String filename) {
+        LocationStock locationStock = inventory.getLocationStock();
+        Path path = Paths.get(filename);
+
+        if (locationStock == null || !Files.exists(path)) {
+            return false;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            inventory.runBatch(() -> {
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] parts = line.split(",");
+                        if (parts.length < 3) continue;
+
+                        String id = InventoryUtils.sanitizeString(parts[0]);
+                        if (!inventory.productExists(id)) continue;
+
+                        locationStock.restore(id, InventoryUtils.sanitizeString(parts[1]),
+                                Integer.parseInt(InventoryUtils.sanitizeString(parts[2])));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                // product quantities win if the two files disagree
+                inventory.forEachProduct(locationStock::reconcile);
+            });
+            return true;
+        } catch (IOException | UncheckedIOException | NumberFormatException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean saveLocationStockToFile(String filename) {
+        LocationStock locationStock = inventory.getLocationStock();
+        Path path = Paths.get(filename);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            inventory.forEachProduct(product -> {
+                try {
+                    for (Map.Entry<String, Integer> entry : locationStock.getStockByLocation(product.getId()).entrySet()) {
+                        if (entry.getValue() != 0) {
+                            writer.write(product.getId() + "," + entry.getKey() + "," + entry.getValue());
+                            writer.newLine();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return true;
+        } catch (IOException | UncheckedIOException e) {
             System.out.println("Error saving file: " + e.getMessage());
             return false;
         }
     }
+    // ------------------------------------------------------
 }
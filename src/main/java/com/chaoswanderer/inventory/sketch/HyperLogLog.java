@@ -0,0 +1,91 @@
+package com.chaoswanderer.inventory.sketch;
+
+import java.util.Arrays;
+
+// HyperLogLog distinct counter: each value's 64-bit hash picks one of 2^precision registers, which
+// keeps the longest run of leading zeros seen; the harmonic mean of the registers estimates the
+// number of distinct values. 16 KB at the default precision, standard error about 0.8%.
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the sentinel bit caps the run length when the remaining bits are all zero
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // small cardinalities: linear counting over the empty registers is more accurate
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    public long getMemoryBytes() {
+        return 16 + registers.length;
+    }
+
+    // FNV-1a over the characters, then the MurmurHash3 finalizer to spread the bits
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
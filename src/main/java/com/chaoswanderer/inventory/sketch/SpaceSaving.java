@@ -0,0 +1,132 @@
+package com.chaoswanderer.inventory.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// SpaceSaving heavy hitters (Metwally et al.): a fixed number of counters; an item without one takes
+// over the smallest counter and inherits its count as error. Every item heavier than total/capacity
+// is guaranteed a counter, and a counter never under-counts its item (by at most its error).
+public class SpaceSaving {
+    private static final Comparator<Entry> BY_COUNT =
+            Comparator.comparingLong(Entry::getCount).thenComparing(Entry::getItem);
+
+    private final int capacity;
+    private final Map<String, Entry> counters = new HashMap<>();
+    private final TreeSet<Entry> byCount = new TreeSet<>(BY_COUNT);
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(String item) {
+        add(item, 1);
+    }
+
+    public void add(String item, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+
+        Entry entry = counters.get(item);
+        if (entry != null) {
+            byCount.remove(entry);
+            entry.count += weight;
+            byCount.add(entry);
+            return;
+        }
+
+        if (counters.size() < capacity) {
+            entry = new Entry(item, weight, 0);
+        } else {
+            Entry smallest = byCount.pollFirst();
+            counters.remove(smallest.item);
+            entry = new Entry(item, smallest.count + weight, smallest.count);
+        }
+        counters.put(item, entry);
+        byCount.add(entry);
+    }
+
+    // combines two summaries; an item missing from a full summary may have had up to its smallest count
+    public void merge(SpaceSaving other) {
+        long ownFloor = counters.size() < capacity ? 0 : byCount.first().count;
+        long otherFloor = other.counters.size() < other.capacity ? 0 : other.byCount.first().count;
+
+        Map<String, Entry> merged = new HashMap<>();
+        for (Entry entry : counters.values()) {
+            Entry theirs = other.counters.get(entry.item);
+            merged.put(entry.item, theirs != null
+                    ? new Entry(entry.item, entry.count + theirs.count, entry.error + theirs.error)
+                    : new Entry(entry.item, entry.count + otherFloor, entry.error + otherFloor));
+        }
+        for (Entry theirs : other.counters.values()) {
+            if (!merged.containsKey(theirs.item)) {
+                merged.put(theirs.item, new Entry(theirs.item, theirs.count + ownFloor, theirs.error + ownFloor));
+            }
+        }
+
+        List<Entry> ranked = new ArrayList<>(merged.values());
+        ranked.sort(BY_COUNT.reversed());
+        counters.clear();
+        byCount.clear();
+        for (Entry entry : ranked.subList(0, Math.min(capacity, ranked.size()))) {
+            counters.put(entry.item, entry);
+            byCount.add(entry);
+        }
+        total += other.total;
+    }
+
+    // the heaviest items first
+    public List<Entry> top(int limit) {
+        List<Entry> top = new ArrayList<>(Math.min(limit, counters.size()));
+        for (Entry entry : byCount.descendingSet()) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.add(new Entry(entry.item, entry.count, entry.error));
+        }
+        return top;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMemoryBytes() {
+        return 64L + counters.size() * 160L; // entry, map node and tree node per counter
+    }
+
+    public static class Entry {
+        private final String item;
+        private long count;
+        private final long error;
+
+        Entry(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        // upper bound of the item's true weight
+        public long getCount() {
+            return count;
+        }
+
+        // the true weight is at least count - error
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.chaoswanderer.inventory.stats;
+
+// raw column totals from one kernel pass; prices in cents
+public final class Aggregate {
+    long count;
+    long quantitySum;
+    long minQuantity = Long.MAX_VALUE;
+    long maxQuantity = Long.MIN_VALUE;
+    long priceSum;
+    long minPrice = Long.MAX_VALUE;
+    long maxPrice = Long.MIN_VALUE;
+    long value; // sum of price x quantity
+    long lowStock;
+
+    Aggregate() {
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public boolean sameAs(Aggregate other) {
+        return count == other.count && quantitySum == other.quantitySum
+                && minQuantity == other.minQuantity && maxQuantity == other.maxQuantity
+                && priceSum == other.priceSum && minPrice == other.minPrice && maxPrice == other.maxPrice
+                && value == other.value && lowStock == other.lowStock;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chaoswanderer.inventory.stats;
+
+import com.chaoswanderer.inventory.sketch.SpaceSaving;
+
+import java.util.List;
+
+// what InventorySketches.summarize() reports; percentiles and the distinct count are estimates
+public class DistributionSummary {
+    private final long productCount;
+    private final double[] percentiles;
+    private final double[] pricePercentiles;
+    private final double[] quantityPercentiles;
+    private final long distinctNames;
+    private final List<TopStock.Entry> mostStocked;
+    private final List<SpaceSaving.Entry> mostChanged;
+    private final long changeCount;
+    private final long memoryBytes;
+    private final long rebuilds;
+
+    DistributionSummary(long productCount, double[] percentiles, double[] pricePercentiles, double[] quantityPercentiles,
+                        long distinctNames, List<TopStock.Entry> mostStocked, List<SpaceSaving.Entry> mostChanged,
+                        long changeCount, long memoryBytes, long rebuilds) {
+        this.productCount = productCount;
+        this.percentiles = percentiles;
+        this.pricePercentiles = pricePercentiles;
+        this.quantityPercentiles = quantityPercentiles;
+        this.distinctNames = distinctNames;
+        this.mostStocked = mostStocked;
+        this.mostChanged = mostChanged;
+        this.changeCount = changeCount;
+        this.memoryBytes = memoryBytes;
+        this.rebuilds = rebuilds;
+    }
+
+    public long getProductCount() {
+        return productCount;
+    }
+
+    // fractions (0.1 = 10th percentile) matching the price and quantity arrays
+    public double[] getPercentiles() {
+        return percentiles.clone();
+    }
+
+    public double[] getPricePercentiles() {
+        return pricePercentiles.clone();
+    }
+
+    public double[] getQuantityPercentiles() {
+        return quantityPercentiles.clone();
+    }
+
+    public long getDistinctNames() {
+        return distinctNames;
+    }
+
+    // exact quantities, highest first
+    public List<TopStock.Entry> getMostStocked() {
+        return mostStocked;
+    }
+
+    // updates per product since the sketches were enabled, most first
+    public List<SpaceSaving.Entry> getMostChanged() {
+        return mostChanged;
+    }
+
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public long getRebuilds() {
+        return rebuilds;
+    }
+}
@@ -0,0 +1,154 @@
+package com.chaoswanderer.inventory.stats;
+
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.sketch.HyperLogLog;
+import com.chaoswanderer.inventory.sketch.KllSketch;
+import com.chaoswanderer.inventory.sketch.SpaceSaving;
+
+import java.util.function.Consumer;
+
+// bounded-memory sketches of the catalog, kept current from inventory events:
+//   price / quantity percentiles - KLL sketches of the values added and of the values retracted
+//                                  (updated or removed); a value's rank is the difference of the two
+//   distinct names               - HyperLogLog (cannot forget names, see below)
+//   most stocked products        - TopStock, exact quantities for a fixed number of candidates
+//   most changed products        - SpaceSaving over update events
+//
+// retractions cost accuracy (and HyperLogLog cannot retract at all), so once they outweigh what is
+// still live - or names that may be gone reach 2% of the distinct count, keeping that estimate within
+// about 4% - summarize() rebuilds the catalog sketches from one scan. Rebuilds only happen when a summary
+// is asked for, so a busy catalog costs at most one scan per summary instead of a full sort every time
+public class InventorySketches implements InventoryListener {
+    public static final double[] PERCENTILES = {0.10, 0.25, 0.50, 0.75, 0.90, 0.99};
+    public static final int TOP_PRODUCTS = 10;
+    private static final int TOP_STOCK_CAPACITY = 256;
+    private static final int ACTIVITY_CAPACITY = 256;
+    private static final double MAX_NAME_CHURN = 0.02; // of the distinct name estimate
+
+    private KllSketch pricesAdded = new KllSketch();
+    private KllSketch pricesRetracted = new KllSketch();
+    private KllSketch quantitiesAdded = new KllSketch();
+    private KllSketch quantitiesRetracted = new KllSketch();
+    private HyperLogLog names = new HyperLogLog();
+    private final TopStock topStock = new TopStock(TOP_STOCK_CAPACITY);
+    // change activity is history, not catalog state - it survives rebuilds
+    private final SpaceSaving activity = new SpaceSaving(ACTIVITY_CAPACITY);
+
+    private long productCount;
+    private long nameChurn; // removals and renames since the last rebuild
+    private long rebuilds;
+
+    // ------------------- Inventory events -------------------
+    @Override
+    public synchronized void productAdded(Product product) {
+        add(product);
+        productCount++;
+    }
+
+    @Override
+    public synchronized void productUpdated(Product before, Product after) {
+        activity.add(after.getId());
+        if (before == null) {
+            return;
+        }
+
+        if (before.getQuantity() != after.getQuantity() || before.getPrice().compareTo(after.getPrice()) != 0) {
+            retract(before);
+            pricesAdded.add(after.getPrice().doubleValue());
+            quantitiesAdded.add(after.getQuantity());
+            topStock.update(after.getId(), after.getQuantity());
+        }
+        if (!before.getName().equals(after.getName())) {
+            names.add(after.getName());
+            nameChurn++;
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(Product product) {
+        retract(product);
+        topStock.remove(product.getId());
+        productCount--;
+        nameChurn++;
+    }
+    // ------------------------------------------------------
+
+    private void add(Product product) {
+        pricesAdded.add(product.getPrice().doubleValue());
+        quantitiesAdded.add(product.getQuantity());
+        names.add(product.getName());
+        topStock.update(product.getId(), product.getQuantity());
+    }
+
+    private void retract(Product product) {
+        pricesRetracted.add(product.getPrice().doubleValue());
+        quantitiesRetracted.add(product.getQuantity());
+    }
+
+    // true once retractions would make the figures too loose (see the class comment)
+    public synchronized boolean needsRebuild() {
+        return pricesRetracted.getCount() > productCount
+                || nameChurn > names.estimate() * MAX_NAME_CHURN
+                || !topStock.isExact(TOP_PRODUCTS, productCount);
+    }
+
+    // scan must visit every product once (e.g. ProductStore::forEach under the inventory's read lock)
+    public synchronized void rebuild(Consumer<Consumer<Product>> scan) {
+        pricesAdded = new KllSketch();
+        pricesRetracted = new KllSketch();
+        quantitiesAdded = new KllSketch();
+        quantitiesRetracted = new KllSketch();
+        names = new HyperLogLog();
+        topStock.clear();
+        productCount = 0;
+        nameChurn = 0;
+
+        scan.accept(product -> {
+            add(product);
+            productCount++;
+        });
+        rebuilds++;
+    }
+
+    // rebuilds first if needed; scan as for rebuild()
+    public synchronized DistributionSummary summarize(Consumer<Consumer<Product>> scan) {
+        if (needsRebuild()) {
+            rebuild(scan);
+        }
+
+        double[] prices = new double[PERCENTILES.length];
+        double[] quantities = new double[PERCENTILES.length];
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            prices[i] = quantile(pricesAdded, pricesRetracted, PERCENTILES[i]);
+            quantities[i] = quantile(quantitiesAdded, quantitiesRetracted, PERCENTILES[i]);
+        }
+
+        long memory = pricesAdded.getMemoryBytes() + pricesRetracted.getMemoryBytes()
+                + quantitiesAdded.getMemoryBytes() + quantitiesRetracted.getMemoryBytes()
+                + names.getMemoryBytes() + topStock.getMemoryBytes() + activity.getMemoryBytes();
+
+        return new DistributionSummary(productCount, PERCENTILES.clone(), prices, quantities,
+                Math.min(names.estimate(), productCount), topStock.top(TOP_PRODUCTS), activity.top(TOP_PRODUCTS),
+                activity.getTotal(), memory, rebuilds);
+    }
+
+    // the value whose net rank (added minus retracted at or below it) first reaches the fraction of live values
+    private double quantile(KllSketch added, KllSketch retracted, double fraction) {
+        if (productCount <= 0 || added.isEmpty()) {
+            return Double.NaN;
+        }
+
+        KllSketch.SortedView addedView = added.sortedView();
+        KllSketch.SortedView retractedView = retracted.sortedView();
+        long target = Math.max(1, (long) Math.ceil(fraction * productCount));
+
+        for (int i = 0; i < addedView.size(); i++) {
+            long netRank = addedView.rankAt(i) - retractedView.rank(addedView.value(i));
+            if (netRank >= target) {
+                return addedView.value(i);
+            }
+        }
+        return addedView.value(addedView.size() - 1);
+    }
+}
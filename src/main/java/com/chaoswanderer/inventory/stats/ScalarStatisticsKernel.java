@@ -0,0 +1,53 @@
+package com.chaoswanderer.inventory.stats;
+
+// plain loop - the fallback when the Vector API is not available
+final class ScalarStatisticsKernel implements StatisticsKernel {
+    static final ScalarStatisticsKernel INSTANCE = new ScalarStatisticsKernel();
+
+    private ScalarStatisticsKernel() {
+    }
+
+    @Override
+    public Aggregate aggregate(int[] quantities, long[] prices, int n, int lowStockThreshold) {
+        long quantitySum = 0;
+        long minQuantity = Long.MAX_VALUE;
+        long maxQuantity = Long.MIN_VALUE;
+        long priceSum = 0;
+        long minPrice = Long.MAX_VALUE;
+        long maxPrice = Long.MIN_VALUE;
+        long value = 0;
+        long lowStock = 0;
+
+        for (int i = 0; i < n; i++) {
+            long quantity = quantities[i];
+            long price = prices[i];
+            quantitySum += quantity;
+            minQuantity = Math.min(minQuantity, quantity);
+            maxQuantity = Math.max(maxQuantity, quantity);
+            priceSum += price;
+            minPrice = Math.min(minPrice, price);
+            maxPrice = Math.max(maxPrice, price);
+            value += price * quantity;
+            if (quantity < lowStockThreshold) {
+                lowStock++;
+            }
+        }
+
+        Aggregate result = new Aggregate();
+        result.count = n;
+        result.quantitySum = quantitySum;
+        result.minQuantity = minQuantity;
+        result.maxQuantity = maxQuantity;
+        result.priceSum = priceSum;
+        result.minPrice = minPrice;
+        result.maxPrice = maxPrice;
+        result.value = value;
+        result.lowStock = lowStock;
+        return result;
+    }
+
+    @Override
+    public String describe() {
+        return "scalar";
+    }
+}
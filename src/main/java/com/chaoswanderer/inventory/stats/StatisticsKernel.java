@@ -0,0 +1,32 @@
+package com.chaoswanderer.inventory.stats;
+
+// one fused pass over the quantity and price columns; implementations differ only in how they use the CPU.
+// Public for the benchmark in loadtest - the application reaches the kernels through StockColumns
+public interface StatisticsKernel {
+
+    // aggregates the first n rows; prices are in cents. The price x quantity sum wraps on overflow -
+    // callers check the bounds first (see StockColumns)
+    Aggregate aggregate(int[] quantities, long[] prices, int n, int lowStockThreshold);
+
+    String describe();
+
+    static StatisticsKernel scalar() {
+        return ScalarStatisticsKernel.INSTANCE;
+    }
+
+    // the SIMD kernel when the JVM runs with --add-modules jdk.incubator.vector (and the CPU has
+    // vectors of at least two longs), the scalar loop otherwise
+    static StatisticsKernel best() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                StatisticsKernel kernel = VectorStatisticsKernel.create();
+                if (kernel != null) {
+                    return kernel;
+                }
+            } catch (LinkageError e) {
+                // fall through to the scalar loop
+            }
+        }
+        return ScalarStatisticsKernel.INSTANCE;
+    }
+}
@@ -0,0 +1,138 @@
+package com.chaoswanderer.inventory.stats;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// catalog-wide stock and price figures for the summary screen and dashboards
+public class StockStatistics {
+    public static final int DEFAULT_LOW_STOCK_THRESHOLD = 10;
+
+    private final long productCount;
+    private final long totalQuantity;
+    private final long minQuantity;
+    private final long maxQuantity;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final BigDecimal priceSum;
+    private final BigDecimal totalValue;
+    private final long lowStockCount;
+    private final int lowStockThreshold;
+    private final String computedBy;
+
+    StockStatistics(long productCount, long totalQuantity, long minQuantity, long maxQuantity,
+                    BigDecimal minPrice, BigDecimal maxPrice, BigDecimal priceSum, BigDecimal totalValue,
+                    long lowStockCount, int lowStockThreshold, String computedBy) {
+        this.productCount = productCount;
+        this.totalQuantity = totalQuantity;
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.priceSum = priceSum;
+        this.totalValue = totalValue;
+        this.lowStockCount = lowStockCount;
+        this.lowStockThreshold = lowStockThreshold;
+        this.computedBy = computedBy;
+    }
+
+    public long getProductCount() {
+        return productCount;
+    }
+
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    public long getMinQuantity() {
+        return minQuantity;
+    }
+
+    public long getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    public double getAverageQuantity() {
+        return productCount == 0 ? 0 : (double) totalQuantity / productCount;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public BigDecimal getAveragePrice() {
+        return productCount == 0 ? BigDecimal.ZERO.setScale(2)
+                : priceSum.divide(BigDecimal.valueOf(productCount), 2, RoundingMode.HALF_UP);
+    }
+
+    // sum of price x quantity - the same figure as Inventory.getTotalInventoryValue()
+    public BigDecimal getTotalValue() {
+        return totalValue;
+    }
+
+    // products with a quantity below the threshold
+    public long getLowStockCount() {
+        return lowStockCount;
+    }
+
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    // which code path produced the figures (SIMD, scalar columns or a product scan)
+    public String getComputedBy() {
+        return computedBy;
+    }
+
+    // ------------------- Product scan -------------------
+    // the fallback when no columns are kept: works on the products themselves, any price scale included
+    public static class Builder {
+        private final int lowStockThreshold;
+        private long count;
+        private long totalQuantity;
+        private long minQuantity;
+        private long maxQuantity;
+        private BigDecimal minPrice = BigDecimal.ZERO.setScale(2);
+        private BigDecimal maxPrice = BigDecimal.ZERO.setScale(2);
+        private BigDecimal priceSum = BigDecimal.ZERO.setScale(2);
+        private BigDecimal totalValue = BigDecimal.ZERO.setScale(2);
+        private long lowStock;
+
+        public Builder(int lowStockThreshold) {
+            this.lowStockThreshold = lowStockThreshold;
+        }
+
+        public void add(Product product) {
+            int quantity = product.getQuantity();
+            BigDecimal price = product.getPrice();
+
+            if (count == 0) {
+                minQuantity = maxQuantity = quantity;
+                minPrice = maxPrice = price;
+            } else {
+                minQuantity = Math.min(minQuantity, quantity);
+                maxQuantity = Math.max(maxQuantity, quantity);
+                minPrice = minPrice.min(price);
+                maxPrice = maxPrice.max(price);
+            }
+            count++;
+            totalQuantity += quantity;
+            priceSum = priceSum.add(price);
+            totalValue = totalValue.add(product.totalPrice());
+            if (quantity < lowStockThreshold) {
+                lowStock++;
+            }
+        }
+
+        public StockStatistics build() {
+            return new StockStatistics(count, totalQuantity, minQuantity, maxQuantity, minPrice, maxPrice,
+                    priceSum, totalValue, lowStock, lowStockThreshold, "product scan");
+        }
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,114 @@
+package com.chaoswanderer.inventory.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// the most heavily stocked products, from a fixed-size table of exact quantities: a product enters
+// when it beats the smallest member, and everything outside the table is known to hold at most
+// outsideBound. The top k are exact while the k-th member still reaches that bound; members that
+// sink below it (stock sold, products removed) eventually call for a rebuild from the catalog.
+public class TopStock {
+    private static final Comparator<Entry> BY_QUANTITY =
+            Comparator.comparingLong(Entry::getQuantity).thenComparing(Entry::getId);
+
+    private final int capacity;
+    private final Map<String, Entry> members = new HashMap<>();
+    private final TreeSet<Entry> byQuantity = new TreeSet<>(BY_QUANTITY);
+    private long outsideBound = Long.MIN_VALUE;
+
+    TopStock(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void update(String id, long quantity) {
+        Entry entry = members.get(id);
+        if (entry != null) {
+            byQuantity.remove(entry);
+            entry.quantity = quantity;
+            byQuantity.add(entry);
+            return;
+        }
+
+        if (members.size() < capacity) {
+            add(new Entry(id, quantity));
+        } else if (quantity > byQuantity.first().quantity) {
+            Entry evicted = byQuantity.pollFirst();
+            members.remove(evicted.id);
+            outsideBound = Math.max(outsideBound, evicted.quantity);
+            add(new Entry(id, quantity));
+        } else {
+            outsideBound = Math.max(outsideBound, quantity);
+        }
+    }
+
+    void remove(String id) {
+        Entry entry = members.remove(id);
+        if (entry != null) {
+            byQuantity.remove(entry);
+        }
+    }
+
+    void clear() {
+        members.clear();
+        byQuantity.clear();
+        outsideBound = Long.MIN_VALUE;
+    }
+
+    // true if top(k) is exact: its k-th entry holds at least as much as anything outside the table
+    boolean isExact(int k, long productCount) {
+        if (members.size() >= Math.min(k, productCount)) {
+            Entry kth = null;
+            int seen = 0;
+            for (Entry entry : byQuantity.descendingSet()) {
+                kth = entry;
+                if (++seen == k) {
+                    break;
+                }
+            }
+            return kth == null || kth.quantity >= outsideBound || members.size() == productCount;
+        }
+        return false;
+    }
+
+    List<Entry> top(int k) {
+        List<Entry> top = new ArrayList<>(Math.min(k, members.size()));
+        for (Entry entry : byQuantity.descendingSet()) {
+            if (top.size() == k) {
+                break;
+            }
+            top.add(new Entry(entry.id, entry.quantity));
+        }
+        return top;
+    }
+
+    long getMemoryBytes() {
+        return 64L + members.size() * 140L;
+    }
+
+    private void add(Entry entry) {
+        members.put(entry.id, entry);
+        byQuantity.add(entry);
+    }
+
+    public static class Entry {
+        private final String id;
+        private long quantity;
+
+        Entry(String id, long quantity) {
+            this.id = id;
+            this.quantity = quantity;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+    }
+}
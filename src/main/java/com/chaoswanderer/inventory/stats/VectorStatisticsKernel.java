@@ -0,0 +1,93 @@
+package com.chaoswanderer.inventory.stats;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD version of the scalar loop: each step widens a vector of quantities to longs and updates
+// per-lane sums, minimums, maximums and the low-stock count; lanes are reduced once at the end.
+// Only loaded through StatisticsKernel.best(), so the rest of the app runs without the incubator module.
+final class VectorStatisticsKernel implements StatisticsKernel {
+    // static final, so the JIT sees constant shapes and compiles the loop to vector instructions
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // ints at half the width, so one int vector widens to exactly one long vector
+    private static final VectorSpecies<Integer> INTS = LONGS.length() < 2 ? null
+            : VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    private VectorStatisticsKernel() {
+    }
+
+    // null if the CPU's preferred vectors hold fewer than two longs
+    static VectorStatisticsKernel create() {
+        return INTS == null ? null : new VectorStatisticsKernel();
+    }
+
+    @Override
+    public Aggregate aggregate(int[] quantities, long[] prices, int n, int lowStockThreshold) {
+        LongVector quantitySum = LongVector.zero(LONGS);
+        LongVector minQuantity = LongVector.broadcast(LONGS, Long.MAX_VALUE);
+        LongVector maxQuantity = LongVector.broadcast(LONGS, Long.MIN_VALUE);
+        LongVector priceSum = LongVector.zero(LONGS);
+        LongVector minPrice = LongVector.broadcast(LONGS, Long.MAX_VALUE);
+        LongVector maxPrice = LongVector.broadcast(LONGS, Long.MIN_VALUE);
+        LongVector value = LongVector.zero(LONGS);
+        LongVector lowStock = LongVector.zero(LONGS);
+        LongVector threshold = LongVector.broadcast(LONGS, lowStockThreshold);
+        LongVector one = LongVector.broadcast(LONGS, 1);
+
+        int i = 0;
+        int upper = LONGS.loopBound(n);
+        for (; i < upper; i += LONGS.length()) {
+            LongVector quantity = (LongVector) IntVector.fromArray(INTS, quantities, i)
+                    .convertShape(VectorOperators.I2L, LONGS, 0);
+            LongVector price = LongVector.fromArray(LONGS, prices, i);
+
+            quantitySum = quantitySum.add(quantity);
+            minQuantity = minQuantity.min(quantity);
+            maxQuantity = maxQuantity.max(quantity);
+            priceSum = priceSum.add(price);
+            minPrice = minPrice.min(price);
+            maxPrice = maxPrice.max(price);
+            value = value.add(price.mul(quantity));
+
+            VectorMask<Long> low = quantity.compare(VectorOperators.LT, threshold);
+            lowStock = lowStock.add(one, low);
+        }
+
+        Aggregate result = new Aggregate();
+        result.count = n;
+        result.quantitySum = quantitySum.reduceLanes(VectorOperators.ADD);
+        result.minQuantity = minQuantity.reduceLanes(VectorOperators.MIN);
+        result.maxQuantity = maxQuantity.reduceLanes(VectorOperators.MAX);
+        result.priceSum = priceSum.reduceLanes(VectorOperators.ADD);
+        result.minPrice = minPrice.reduceLanes(VectorOperators.MIN);
+        result.maxPrice = maxPrice.reduceLanes(VectorOperators.MAX);
+        result.value = value.reduceLanes(VectorOperators.ADD);
+        result.lowStock = lowStock.reduceLanes(VectorOperators.ADD);
+
+        // the rows that do not fill a whole vector
+        for (; i < n; i++) {
+            long quantity = quantities[i];
+            long price = prices[i];
+            result.quantitySum += quantity;
+            result.minQuantity = Math.min(result.minQuantity, quantity);
+            result.maxQuantity = Math.max(result.maxQuantity, quantity);
+            result.priceSum += price;
+            result.minPrice = Math.min(result.minPrice, price);
+            result.maxPrice = Math.max(result.maxPrice, price);
+            result.value += price * quantity;
+            if (quantity < lowStockThreshold) {
+                result.lowStock++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String describe() {
+        return "SIMD (" + LONGS.vectorBitSize() + "-bit, " + LONGS.length() + " lanes)";
+    }
+}
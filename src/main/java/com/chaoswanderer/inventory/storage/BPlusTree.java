@@ -0,0 +1,395 @@
+package com.chaoswanderer.inventory.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// B+-tree of fixed-size records stored in cache pages
+// leaves hold the records themselves (clustered on the key) and are chained left to right;
+// a record's key is its first keySize bytes: [length:2][bytes], compared as unsigned bytes
+//
+// node layout: [type:1][unused:1][count:2][next leaf | leftmost child:4][entries...]
+//  leaf entry     = record
+//  internal entry = [key][right child:4]
+//
+// deletes simply remove the entry - nodes are never merged, which keeps the tree valid
+// at the cost of some slack after heavy deletion
+public class BPlusTree {
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int NODE_HEADER = 8;
+    private static final int NO_PAGE = 0; // page 0 is the file header, never a node
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        // return false to stop the scan; the buffer is only valid during the call
+        boolean visit(ByteBuffer page, int offset);
+    }
+
+    private final PageCache cache;
+    private final int recordSize;
+    private final int keySize;
+    private final int internalEntrySize;
+    private final int leafCapacity;
+    private final int internalCapacity;
+
+    private int rootPageId;
+    private final int firstLeafPageId;
+
+    private BPlusTree(PageCache cache, int recordSize, int keySize, int rootPageId, int firstLeafPageId) {
+        this.cache = cache;
+        this.recordSize = recordSize;
+        this.keySize = keySize;
+        this.internalEntrySize = keySize + 4;
+        this.leafCapacity = (PageFile.PAGE_SIZE - NODE_HEADER) / recordSize;
+        this.internalCapacity = (PageFile.PAGE_SIZE - NODE_HEADER) / internalEntrySize;
+        this.rootPageId = rootPageId;
+        this.firstLeafPageId = firstLeafPageId;
+    }
+
+    public static BPlusTree create(PageCache cache, int recordSize, int keySize) {
+        Page root = cache.allocate();
+        try {
+            root.buffer.put(0, LEAF);
+            return new BPlusTree(cache, recordSize, keySize, root.pageId, root.pageId);
+        } finally {
+            cache.release(root);
+        }
+    }
+
+    public static BPlusTree open(PageCache cache, int recordSize, int keySize, int rootPageId, int firstLeafPageId) {
+        return new BPlusTree(cache, recordSize, keySize, rootPageId, firstLeafPageId);
+    }
+
+    public int getRootPageId() {
+        return rootPageId;
+    }
+
+    // the leftmost leaf never moves: splits always move the upper half to a new right sibling
+    public int getFirstLeafPageId() {
+        return firstLeafPageId;
+    }
+
+    // copies the record into recordOut, returns false if the key is absent
+    public boolean get(byte[] key, byte[] recordOut) {
+        Page leaf = findLeaf(key, null);
+        try {
+            int index = searchLeaf(leaf.buffer, key);
+            if (index < 0) {
+                return false;
+            }
+
+            leaf.buffer.get(leafOffset(index), recordOut, 0, recordSize);
+            return true;
+        } finally {
+            cache.release(leaf);
+        }
+    }
+
+    // inserts or overwrites; returns true if the key was new
+    public boolean put(byte[] record) {
+        Deque<Integer> path = new ArrayDeque<>();
+        Page leaf = findLeaf(record, path);
+
+        try {
+            ByteBuffer buffer = leaf.buffer;
+            int index = searchLeaf(buffer, record);
+
+            if (index >= 0) {
+                buffer.put(leafOffset(index), record);
+                leaf.markDirty();
+                return false;
+            }
+
+            int position = -index - 1;
+            int count = count(buffer);
+
+            if (count < leafCapacity) {
+                shiftRight(buffer, leafOffset(position), (count - position) * recordSize, recordSize);
+                buffer.put(leafOffset(position), record);
+                setCount(buffer, count + 1);
+                leaf.markDirty();
+                return true;
+            }
+
+            splitLeaf(leaf, position, record, path);
+            return true;
+        } finally {
+            cache.release(leaf);
+        }
+    }
+
+    public boolean remove(byte[] key) {
+        Page leaf = findLeaf(key, null);
+        try {
+            ByteBuffer buffer = leaf.buffer;
+            int index = searchLeaf(buffer, key);
+            if (index < 0) {
+                return false;
+            }
+
+            int count = count(buffer);
+            int from = leafOffset(index + 1);
+            System.arraycopy(buffer.array(), from, buffer.array(), leafOffset(index), (count - index - 1) * recordSize);
+            setCount(buffer, count - 1);
+            leaf.markDirty();
+            return true;
+        } finally {
+            cache.release(leaf);
+        }
+    }
+
+    // visits records in key order, starting at the first key >= fromKey (or the very first record)
+    // the tree must not be modified during the scan
+    public void scan(byte[] fromKey, RecordVisitor visitor) {
+        Page leaf = fromKey == null ? cache.fetch(firstLeafPageId) : findLeaf(fromKey, null);
+        int index = 0;
+
+        if (fromKey != null) {
+            int found = searchLeaf(leaf.buffer, fromKey);
+            index = found >= 0 ? found : -found - 1;
+        }
+
+        try {
+            while (true) {
+                ByteBuffer buffer = leaf.buffer;
+                int count = count(buffer);
+
+                for (; index < count; index++) {
+                    if (!visitor.visit(buffer, leafOffset(index))) {
+                        return;
+                    }
+                }
+
+                int next = buffer.getInt(4);
+                if (next == NO_PAGE) {
+                    return;
+                }
+
+                Page nextLeaf = cache.fetch(next);
+                cache.release(leaf);
+                leaf = nextLeaf;
+                index = 0;
+            }
+        } finally {
+            cache.release(leaf);
+        }
+    }
+
+    // ------------------- Descent -------------------
+    // returns the pinned leaf that may contain the key, remembering the internal nodes on the way
+    private Page findLeaf(byte[] key, Deque<Integer> path) {
+        int pageId = rootPageId;
+
+        while (true) {
+            Page page = cache.fetch(pageId);
+            if (page.buffer.get(0) == LEAF) {
+                return page;
+            }
+
+            try {
+                if (path != null) {
+                    path.push(pageId);
+                }
+                pageId = childFor(page.buffer, key);
+            } finally {
+                cache.release(page);
+            }
+        }
+    }
+
+    // child c_j covers keys in [k_(j-1), k_j): j is the number of separator keys <= key
+    private int childFor(ByteBuffer buffer, byte[] key) {
+        int j = upperBound(buffer, key);
+        return j == 0 ? buffer.getInt(4) : buffer.getInt(internalOffset(j - 1) + keySize);
+    }
+
+    // binary search: index of the key, or -(insertion point) - 1
+    private int searchLeaf(ByteBuffer buffer, byte[] key) {
+        int low = 0;
+        int high = count(buffer) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(buffer, leafOffset(mid), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Splits -------------------
+    private void splitLeaf(Page leaf, int position, byte[] record, Deque<Integer> path) {
+        ByteBuffer buffer = leaf.buffer;
+        int total = leafCapacity + 1;
+
+        // lay out all entries, including the new one, then deal them out to both halves
+        byte[] merged = new byte[total * recordSize];
+        System.arraycopy(buffer.array(), leafOffset(0), merged, 0, position * recordSize);
+        System.arraycopy(record, 0, merged, position * recordSize, recordSize);
+        System.arraycopy(buffer.array(), leafOffset(position), merged, (position + 1) * recordSize,
+                (leafCapacity - position) * recordSize);
+
+        int leftCount = total / 2;
+        int rightCount = total - leftCount;
+
+        Page right = cache.allocate();
+        try {
+            ByteBuffer rightBuffer = right.buffer;
+            rightBuffer.put(0, LEAF);
+            rightBuffer.putInt(4, buffer.getInt(4));
+            System.arraycopy(merged, leftCount * recordSize, rightBuffer.array(), leafOffset(0), rightCount * recordSize);
+            setCount(rightBuffer, rightCount);
+
+            System.arraycopy(merged, 0, buffer.array(), leafOffset(0), leftCount * recordSize);
+            setCount(buffer, leftCount);
+            buffer.putInt(4, right.pageId);
+            leaf.markDirty();
+
+            byte[] separator = new byte[keySize];
+            System.arraycopy(merged, leftCount * recordSize, separator, 0, keySize);
+            insertIntoParent(path, leaf.pageId, separator, right.pageId);
+        } finally {
+            cache.release(right);
+        }
+    }
+
+    private void insertIntoParent(Deque<Integer> path, int leftId, byte[] separator, int rightId) {
+        if (path.isEmpty()) {
+            Page root = cache.allocate();
+            try {
+                ByteBuffer buffer = root.buffer;
+                buffer.put(0, INTERNAL);
+                buffer.putInt(4, leftId);
+                buffer.put(internalOffset(0), separator);
+                buffer.putInt(internalOffset(0) + keySize, rightId);
+                setCount(buffer, 1);
+                rootPageId = root.pageId;
+            } finally {
+                cache.release(root);
+            }
+            return;
+        }
+
+        Page parent = cache.fetch(path.pop());
+        try {
+            ByteBuffer buffer = parent.buffer;
+            int count = count(buffer);
+            int position = upperBound(buffer, separator);
+
+            byte[] entry = new byte[internalEntrySize];
+            System.arraycopy(separator, 0, entry, 0, keySize);
+            ByteBuffer.wrap(entry).putInt(keySize, rightId);
+
+            if (count < internalCapacity) {
+                shiftRight(buffer, internalOffset(position), (count - position) * internalEntrySize, internalEntrySize);
+                buffer.put(internalOffset(position), entry);
+                setCount(buffer, count + 1);
+                parent.markDirty();
+                return;
+            }
+
+            splitInternal(parent, position, entry, path);
+        } finally {
+            cache.release(parent);
+        }
+    }
+
+    private void splitInternal(Page node, int position, byte[] entry, Deque<Integer> path) {
+        ByteBuffer buffer = node.buffer;
+        int total = internalCapacity + 1;
+
+        byte[] merged = new byte[total * internalEntrySize];
+        System.arraycopy(buffer.array(), internalOffset(0), merged, 0, position * internalEntrySize);
+        System.arraycopy(entry, 0, merged, position * internalEntrySize, internalEntrySize);
+        System.arraycopy(buffer.array(), internalOffset(position), merged, (position + 1) * internalEntrySize,
+                (internalCapacity - position) * internalEntrySize);
+
+        // the middle key moves up; its child becomes the leftmost child of the new node
+        int middle = total / 2;
+        int rightCount = total - middle - 1;
+        ByteBuffer mergedBuffer = ByteBuffer.wrap(merged);
+
+        Page right = cache.allocate();
+        try {
+            ByteBuffer rightBuffer = right.buffer;
+            rightBuffer.put(0, INTERNAL);
+            rightBuffer.putInt(4, mergedBuffer.getInt(middle * internalEntrySize + keySize));
+            System.arraycopy(merged, (middle + 1) * internalEntrySize, rightBuffer.array(), internalOffset(0),
+                    rightCount * internalEntrySize);
+            setCount(rightBuffer, rightCount);
+
+            System.arraycopy(merged, 0, buffer.array(), internalOffset(0), middle * internalEntrySize);
+            setCount(buffer, middle);
+            node.markDirty();
+
+            byte[] separator = new byte[keySize];
+            System.arraycopy(merged, middle * internalEntrySize, separator, 0, keySize);
+            insertIntoParent(path, node.pageId, separator, right.pageId);
+        } finally {
+            cache.release(right);
+        }
+    }
+
+    private int upperBound(ByteBuffer buffer, byte[] key) {
+        int low = 0;
+        int high = count(buffer);
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(buffer, internalOffset(mid), key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Layout helpers -------------------
+    private int leafOffset(int index) {
+        return NODE_HEADER + index * recordSize;
+    }
+
+    private int internalOffset(int index) {
+        return NODE_HEADER + index * internalEntrySize;
+    }
+
+    private static int count(ByteBuffer buffer) {
+        return Short.toUnsignedInt(buffer.getShort(2));
+    }
+
+    private static void setCount(ByteBuffer buffer, int count) {
+        buffer.putShort(2, (short) count);
+    }
+
+    private static void shiftRight(ByteBuffer buffer, int from, int length, int by) {
+        System.arraycopy(buffer.array(), from, buffer.array(), from + by, length);
+    }
+
+    // compares the length-prefixed key stored at offset with the given key
+    private static int compare(ByteBuffer buffer, int offset, byte[] key) {
+        int storedLength = buffer.getShort(offset);
+        int keyLength = ((key[0] & 0xFF) << 8) | (key[1] & 0xFF);
+        int common = Math.min(storedLength, keyLength);
+
+        for (int i = 0; i < common; i++) {
+            int a = buffer.get(offset + 2 + i) & 0xFF;
+            int b = key[2 + i] & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+
+        return storedLength - keyLength;
+    }
+}
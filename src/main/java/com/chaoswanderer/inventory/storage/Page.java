@@ -0,0 +1,24 @@
+package com.chaoswanderer.inventory.storage;
+
+import java.nio.ByteBuffer;
+
+// a frame of the page cache holding one page of the data file
+public class Page {
+    final ByteBuffer buffer = ByteBuffer.allocate(PageFile.PAGE_SIZE);
+    int pageId = -1;
+    int pins;
+    boolean dirty;
+    boolean referenced;
+
+    public int getPageId() {
+        return pageId;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public void markDirty() {
+        dirty = true;
+    }
+}
@@ -0,0 +1,154 @@
+package com.chaoswanderer.inventory.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// bounded cache of data-file pages with CLOCK (second chance) replacement
+// callers pin a page with fetch() and must hand it back with release()
+public class PageCache {
+    private final PageFile file;
+    private final Page[] frames;
+    private final Map<Integer, Page> resident;
+    private int hand;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writeBacks;
+
+    public PageCache(PageFile file, int capacity) {
+        if (capacity < 16) {
+            throw new IllegalArgumentException("Page cache needs at least 16 pages, got " + capacity);
+        }
+
+        this.file = file;
+        this.frames = new Page[capacity];
+        this.resident = new HashMap<>(capacity * 2);
+
+        for (int i = 0; i < capacity; i++) {
+            frames[i] = new Page();
+        }
+    }
+
+    public Page fetch(int pageId) {
+        Page page = resident.get(pageId);
+
+        if (page != null) {
+            hits++;
+        } else {
+            misses++;
+            page = claimFrame(pageId);
+            file.read(pageId, page.buffer);
+        }
+
+        page.referenced = true;
+        page.pins++;
+        return page;
+    }
+
+    // a brand-new zeroed page at the end of the file
+    public Page allocate() {
+        int pageId = file.allocatePage();
+        Page page = claimFrame(pageId);
+
+        Arrays.fill(page.buffer.array(), (byte) 0);
+        page.dirty = true;
+        page.referenced = true;
+        page.pins++;
+        return page;
+    }
+
+    public void release(Page page) {
+        if (page.pins <= 0) {
+            throw new IllegalStateException("Page " + page.pageId + " released more often than fetched");
+        }
+        page.pins--;
+    }
+
+    public void flush() {
+        for (Page frame : frames) {
+            if (frame.pageId >= 0 && frame.dirty) {
+                writeBack(frame);
+            }
+        }
+        file.force();
+    }
+
+    // ------------------- Statistics -------------------
+    public int getCapacity() {
+        return frames.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getWriteBacks() {
+        return writeBacks;
+    }
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    // ------------------------------------------------------
+
+    private Page claimFrame(int pageId) {
+        Page victim = findVictim();
+
+        if (victim.pageId >= 0) {
+            if (victim.dirty) {
+                writeBack(victim);
+            }
+            resident.remove(victim.pageId);
+            evictions++;
+        }
+
+        victim.pageId = pageId;
+        victim.dirty = false;
+        victim.referenced = false;
+        victim.pins = 0;
+        resident.put(pageId, victim);
+        return victim;
+    }
+
+    // sweeps the clock hand, giving referenced pages a second chance and skipping pinned ones
+    private Page findVictim() {
+        for (int sweep = 0; sweep < frames.length * 2; sweep++) {
+            Page candidate = frames[hand];
+            hand = (hand + 1) % frames.length;
+
+            if (candidate.pageId < 0) {
+                return candidate;
+            }
+
+            if (candidate.pins > 0) {
+                continue;
+            }
+
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                continue;
+            }
+
+            return candidate;
+        }
+
+        throw new IllegalStateException("Every page in the cache is pinned");
+    }
+
+    private void writeBack(Page page) {
+        file.write(page.pageId, page.buffer);
+        page.dirty = false;
+        writeBacks++;
+    }
+}
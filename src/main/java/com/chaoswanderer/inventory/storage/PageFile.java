@@ -0,0 +1,76 @@
+package com.chaoswanderer.inventory.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// a data file made of fixed-size pages, addressed by page number
+public class PageFile implements AutoCloseable {
+    public static final int PAGE_SIZE = 4096;
+
+    private final FileChannel channel;
+    private int pageCount;
+
+    public PageFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageCount = (int) (channel.size() / PAGE_SIZE);
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    // reserves the next page number; the page reaches the disk on its first write
+    public int allocatePage() {
+        return pageCount++;
+    }
+
+    public void read(int pageId, ByteBuffer buffer) {
+        buffer.clear();
+        try {
+            long position = (long) pageId * PAGE_SIZE;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    // allocated but never written - reads back as zeros
+                    while (buffer.hasRemaining()) {
+                        buffer.put((byte) 0);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading page " + pageId, e);
+        }
+        buffer.clear();
+    }
+
+    public void write(int pageId, ByteBuffer buffer) {
+        buffer.clear();
+        try {
+            long position = (long) pageId * PAGE_SIZE;
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing page " + pageId, e);
+        }
+        buffer.clear();
+    }
+
+    public void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error syncing data file", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,177 @@
+package com.chaoswanderer.inventory.storage;
+
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.model.ProductStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// disk-resident product storage: records live in a paged data file, clustered in a B+-tree on ID,
+// and only the pages held by the bounded page cache are in memory
+//
+// header page layout: [magic:4][version:4][root page:4][first leaf page:4][record count:8]
+public class PagedProductStore implements ProductStore {
+    private static final int MAGIC = 0x494E5650; // "INVP"
+    private static final int VERSION = 2; // 2: product attributes
+
+    private final PageFile file;
+    private final PageCache cache;
+    private final BPlusTree tree;
+    private final boolean created;
+    private long recordCount;
+
+    private PagedProductStore(PageFile file, PageCache cache, BPlusTree tree, long recordCount, boolean created) {
+        this.file = file;
+        this.cache = cache;
+        this.tree = tree;
+        this.recordCount = recordCount;
+        this.created = created;
+    }
+
+    public static PagedProductStore open(Path path, int cachePages) throws IOException {
+        PageFile file = new PageFile(path);
+        PageCache cache = new PageCache(file, cachePages);
+
+        if (file.getPageCount() == 0) {
+            Page header = cache.allocate();
+            cache.release(header);
+
+            BPlusTree tree = BPlusTree.create(cache, ProductRecords.RECORD_SIZE, ProductRecords.KEY_SIZE);
+            PagedProductStore store = new PagedProductStore(file, cache, tree, 0, true);
+            store.writeHeader();
+            return store;
+        }
+
+        Page header = cache.fetch(0);
+        try {
+            ByteBuffer buffer = header.buffer();
+            if (buffer.getInt(0) != MAGIC) {
+                file.close();
+                throw new IOException("'" + path + "' is not an inventory data file");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                file.close();
+                throw new IOException("'" + path + "' uses record layout version " + buffer.getInt(4)
+                        + " (expected " + VERSION + ") - re-create it from the CSV");
+            }
+
+            BPlusTree tree = BPlusTree.open(cache, ProductRecords.RECORD_SIZE, ProductRecords.KEY_SIZE,
+                    buffer.getInt(8), buffer.getInt(12));
+            return new PagedProductStore(file, cache, tree, buffer.getLong(16), false);
+        } finally {
+            cache.release(header);
+        }
+    }
+
+    // true if open() had to create the data file, i.e. it still needs to be populated
+    public boolean isNewlyCreated() {
+        return created;
+    }
+
+    public PageCache getPageCache() {
+        return cache;
+    }
+
+    @Override
+    public synchronized Product get(String id) {
+        byte[] key = ProductRecords.key(id);
+        if (key == null) {
+            return null;
+        }
+
+        byte[] record = new byte[ProductRecords.RECORD_SIZE];
+        if (!tree.get(key, record)) {
+            return null;
+        }
+
+        return ProductRecords.decode(ByteBuffer.wrap(record), 0);
+    }
+
+    @Override
+    public synchronized void put(Product product) {
+        if (tree.put(ProductRecords.encode(product))) {
+            recordCount++;
+        }
+    }
+
+    @Override
+    public synchronized Product remove(String id) {
+        Product existing = get(id);
+        if (existing != null) {
+            tree.remove(ProductRecords.key(id));
+            recordCount--;
+        }
+
+        return existing;
+    }
+
+    @Override
+    public synchronized void forEach(Consumer<Product> action) {
+        tree.scan(null, (page, offset) -> {
+            action.accept(ProductRecords.decode(page, offset));
+            return true;
+        });
+    }
+
+    @Override
+    public synchronized void forEachWhile(Predicate<Product> visitor) {
+        tree.scan(null, (page, offset) -> visitor.test(ProductRecords.decode(page, offset)));
+    }
+
+    // the tree is clustered on the ID bytes, so a scan is already in ID order
+    @Override
+    public boolean isOrderedById() {
+        return true;
+    }
+
+    // every read decodes a fresh copy
+    @Override
+    public boolean sharesProducts() {
+        return false;
+    }
+
+    @Override
+    public synchronized void scanFrom(String fromId, Predicate<Product> visitor) {
+        tree.scan(ProductRecords.seekKey(fromId), (page, offset) -> visitor.test(ProductRecords.decode(page, offset)));
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int) recordCount;
+    }
+
+    @Override
+    public synchronized void flush() {
+        writeHeader();
+        cache.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error closing data file", e);
+        }
+    }
+
+    private void writeHeader() {
+        Page header = cache.fetch(0);
+        try {
+            ByteBuffer buffer = header.buffer();
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, tree.getRootPageId());
+            buffer.putInt(12, tree.getFirstLeafPageId());
+            buffer.putLong(16, recordCount);
+            header.markDirty();
+        } finally {
+            cache.release(header);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.chaoswanderer.inventory.storage;
+
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+// fixed-size on-disk layout of a product; the first KEY_SIZE bytes double as the B+-tree key
+//  [idLen:2][id:38][nameLen:2][name:150][qty:4][price unscaled:8][price scale:1][created:8][updated:8]
+//  [attributesLen:2][attributes:96]  (attributes in the "name=value|value;..." text form)
+final class ProductRecords {
+    static final int MAX_ID_BYTES = 38;
+    static final int MAX_NAME_BYTES = 150;
+    static final int MAX_ATTRIBUTES_BYTES = 96;
+
+    static final int KEY_SIZE = 2 + MAX_ID_BYTES;
+    static final int RECORD_SIZE = 320;
+
+    private static final int NAME_OFFSET = KEY_SIZE;
+    private static final int QUANTITY_OFFSET = NAME_OFFSET + 2 + MAX_NAME_BYTES;
+    private static final int PRICE_OFFSET = QUANTITY_OFFSET + 4;
+    private static final int SCALE_OFFSET = PRICE_OFFSET + 8;
+    private static final int CREATED_OFFSET = SCALE_OFFSET + 1;
+    private static final int UPDATED_OFFSET = CREATED_OFFSET + 8;
+    private static final int ATTRIBUTES_OFFSET = UPDATED_OFFSET + 8;
+
+    private ProductRecords() {
+    }
+
+    // null if the ID can never be stored (too long), so lookups can short-circuit
+    static byte[] key(String id) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > MAX_ID_BYTES) {
+            return null;
+        }
+
+        byte[] key = new byte[KEY_SIZE];
+        writeString(ByteBuffer.wrap(key), 0, idBytes);
+        return key;
+    }
+
+    // a key to start a scan at: IDs longer than any stored one are cut, which can only start the scan early
+    static byte[] seekKey(String id) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[KEY_SIZE];
+        writeString(ByteBuffer.wrap(key), 0, Arrays.copyOf(idBytes, Math.min(idBytes.length, MAX_ID_BYTES)));
+        return key;
+    }
+
+    static byte[] encode(Product product) {
+        byte[] idBytes = product.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = product.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] attributeBytes = InventoryUtils.formatAttributes(product.getAttributes()).getBytes(StandardCharsets.UTF_8);
+
+        if (idBytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Product ID is too long for paged storage: " + product.getId());
+        }
+        if (nameBytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Product name is too long for paged storage: " + product.getName());
+        }
+        if (attributeBytes.length > MAX_ATTRIBUTES_BYTES) {
+            throw new IllegalArgumentException("Product attributes are too long for paged storage: " + product.getId());
+        }
+
+        BigDecimal price = product.getPrice();
+        if (price.unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException("Product price is out of range for paged storage: " + price);
+        }
+
+        byte[] record = new byte[RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        writeString(buffer, 0, idBytes);
+        writeString(buffer, NAME_OFFSET, nameBytes);
+        buffer.putInt(QUANTITY_OFFSET, product.getQuantity());
+        buffer.putLong(PRICE_OFFSET, price.unscaledValue().longValue());
+        buffer.put(SCALE_OFFSET, (byte) price.scale());
+        buffer.putLong(CREATED_OFFSET, toEpochNanos(product.getCreatedAt()));
+        buffer.putLong(UPDATED_OFFSET, toEpochNanos(product.getUpdatedAt()));
+        writeString(buffer, ATTRIBUTES_OFFSET, attributeBytes);
+        return record;
+    }
+
+    static Product decode(ByteBuffer buffer, int offset) {
+        String id = readString(buffer, offset);
+        String name = readString(buffer, offset + NAME_OFFSET);
+        int quantity = buffer.getInt(offset + QUANTITY_OFFSET);
+        BigDecimal price = new BigDecimal(BigInteger.valueOf(buffer.getLong(offset + PRICE_OFFSET)),
+                buffer.get(offset + SCALE_OFFSET));
+        LocalDateTime createdAt = fromEpochNanos(buffer.getLong(offset + CREATED_OFFSET));
+        LocalDateTime updatedAt = fromEpochNanos(buffer.getLong(offset + UPDATED_OFFSET));
+
+        Product product = new Product(id, name, quantity, price, createdAt, updatedAt);
+
+        String attributes = readString(buffer, offset + ATTRIBUTES_OFFSET);
+        if (!attributes.isEmpty()) {
+            product.setAttributes(InventoryUtils.parseAttributes(attributes));
+        }
+        return product;
+    }
+
+    static String decodeId(ByteBuffer buffer, int offset) {
+        return readString(buffer, offset);
+    }
+
+    private static void writeString(ByteBuffer buffer, int offset, byte[] bytes) {
+        buffer.putShort(offset, (short) bytes.length);
+        buffer.put(offset + 2, bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        int length = buffer.getShort(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long toEpochNanos(LocalDateTime time) {
+        Instant instant = time.toInstant(ZoneOffset.UTC);
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static LocalDateTime fromEpochNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
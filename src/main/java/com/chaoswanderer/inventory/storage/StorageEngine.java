@@ -0,0 +1,73 @@
+package com.chaoswanderer.inventory.storage;
+
+import com.chaoswanderer.inventory.model.HashProductStore;
+import com.chaoswanderer.inventory.model.MemoryProductStore;
+import com.chaoswanderer.inventory.model.ProductStore;
+import com.chaoswanderer.inventory.model.SortedProductStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// the ProductStore implementations an Inventory can run on, selectable by name at start-up
+public enum StorageEngine {
+    MEMORY("memory", "hash table, primitive long keys while every ID is numeric (default)"),
+    HASH("hash", "HashMap keyed by ID string"),
+    SORTED("sorted", "red-black tree ordered by ID"),
+    PAGED("paged", "B+-tree in a paged data file, bounded page cache");
+
+    private final String name;
+    private final String description;
+
+    StorageEngine(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isPersistent() {
+        return this == PAGED;
+    }
+
+    // null if no engine has that name
+    public static StorageEngine fromName(String name) {
+        for (StorageEngine engine : values()) {
+            if (engine.name.equalsIgnoreCase(name.trim())) {
+                return engine;
+            }
+        }
+        return null;
+    }
+
+    public static String names() {
+        StringBuilder names = new StringBuilder();
+        for (StorageEngine engine : values()) {
+            if (names.length() > 0) {
+                names.append('|');
+            }
+            names.append(engine.name);
+        }
+        return names.toString();
+    }
+
+    // dataFile and cachePages only apply to the paged engine
+    public ProductStore open(Path dataFile, int cachePages) throws IOException {
+        switch (this) {
+            case HASH:
+                return new HashProductStore();
+            case SORTED:
+                return new SortedProductStore();
+            case PAGED:
+                return PagedProductStore.open(dataFile, cachePages);
+            case MEMORY:
+            default:
+                return new MemoryProductStore();
+        }
+    }
+}
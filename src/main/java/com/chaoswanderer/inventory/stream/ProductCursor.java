@@ -0,0 +1,17 @@
+package com.chaoswanderer.inventory.stream;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.List;
+
+// pulls results a chunk at a time for a ProductPublisher; a cursor takes whatever locks it needs
+// per call and holds none between calls
+public interface ProductCursor {
+
+    // adds up to max further products to out (possibly none); returns false once nothing is left
+    boolean next(int max, List<Product> out);
+
+    // called once when the stream completes, fails or is cancelled
+    default void close() {
+    }
+}
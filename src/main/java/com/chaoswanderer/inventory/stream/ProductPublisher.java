@@ -0,0 +1,193 @@
+package com.chaoswanderer.inventory.stream;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// publishes query results with demand-driven backpressure: products are read from a cursor only
+// as the subscriber requests them, at most one chunk ahead, and cancel() stops the read and closes
+// the cursor. Each subscription gets its own cursor, so the publisher can be subscribed to again.
+//
+// signals run on the executor (by default the thread calling subscribe/request); a request() made
+// from inside onNext only adds demand - the running delivery loop picks it up, so there is no recursion
+public class ProductPublisher implements Flow.Publisher<Product> {
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final Supplier<ProductCursor> cursors;
+    private final Executor executor;
+    private final int chunkSize;
+
+    public ProductPublisher(Supplier<ProductCursor> cursors) {
+        this(cursors, Runnable::run, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ProductPublisher(Supplier<ProductCursor> cursors, Executor executor, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.cursors = Objects.requireNonNull(cursors);
+        this.executor = Objects.requireNonNull(executor);
+        this.chunkSize = chunkSize;
+    }
+
+    // e.g. withExecutor(Executors.newVirtualThreadPerTaskExecutor()) to read on another thread than the subscriber's
+    public ProductPublisher withExecutor(Executor newExecutor) {
+        return new ProductPublisher(cursors, newExecutor, chunkSize);
+    }
+
+    public ProductPublisher withChunkSize(int newChunkSize) {
+        return new ProductPublisher(cursors, executor, newChunkSize);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Product> subscriber) {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new CursorSubscription(subscriber));
+    }
+
+    private final class CursorSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Product> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger(); // > 0 while the delivery loop is scheduled or running
+        private volatile boolean cancelled;
+        private volatile boolean invalidRequest;
+
+        // only touched by the delivery loop
+        private ProductCursor cursor;
+        private List<Product> chunk = new ArrayList<>();
+        private int position;
+        private boolean exhausted;
+        private boolean done;
+
+        CursorSubscription(Flow.Subscriber<? super Product> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = true;
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n); // Long.MAX_VALUE = unbounded
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    pending.set(0);
+                    cancelled = true;
+                    finish();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            while (!done) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (invalidRequest) {
+                    finish();
+                    subscriber.onError(new IllegalArgumentException("request(n) needs n > 0"));
+                    return;
+                }
+
+                long requested = demand.get();
+                if (position == chunk.size()) {
+                    if (exhausted) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (requested == 0) {
+                        return; // nothing is read ahead of demand
+                    }
+                    if (!readChunk((int) Math.min(requested, chunkSize))) {
+                        return;
+                    }
+                    continue;
+                }
+                if (requested == 0) {
+                    return;
+                }
+
+                Product product = chunk.get(position);
+                chunk.set(position++, null);
+                if (requested != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+
+                try {
+                    subscriber.onNext(product);
+                } catch (RuntimeException e) {
+                    // a failing subscriber counts as cancelled
+                    cancelled = true;
+                    finish();
+                    throw e;
+                }
+            }
+        }
+
+        // false if the cursor failed (the subscriber has then been told)
+        private boolean readChunk(int max) {
+            chunk.clear();
+            position = 0;
+            try {
+                if (cursor == null) {
+                    cursor = cursors.get();
+                }
+                exhausted = !cursor.next(max, chunk);
+                return true;
+            } catch (RuntimeException e) {
+                finish();
+                subscriber.onError(e);
+                return false;
+            }
+        }
+
+        private void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            chunk = List.of();
+            position = 0;
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (RuntimeException e) {
+                    // nothing left to report it to
+                }
+            }
+        }
+    }
+}
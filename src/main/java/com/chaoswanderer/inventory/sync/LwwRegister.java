@@ -0,0 +1,68 @@
+package com.chaoswanderer.inventory.sync;
+
+// last-writer-wins register: the write with the latest timestamp wins, ties broken by node and then by
+// value, so every replica picks the same winner. Local writes are stamped after the current one (see
+// SyncNode), so a node's own edit always supersedes what it has already seen.
+public final class LwwRegister<T extends Comparable<? super T>> {
+    private T value;
+    private long timestamp;
+    private String node;
+
+    // empty: any write wins
+    public LwwRegister() {
+        this.timestamp = Long.MIN_VALUE;
+        this.node = "";
+    }
+
+    public LwwRegister(T value, long timestamp, String node) {
+        this.value = value;
+        this.timestamp = timestamp;
+        this.node = node;
+    }
+
+    // true if the write won
+    public boolean merge(T value, long timestamp, String node) {
+        if (this.value != null && compare(timestamp, node, value) <= 0) {
+            return false;
+        }
+        this.value = value;
+        this.timestamp = timestamp;
+        this.node = node;
+        return true;
+    }
+
+    public boolean merge(LwwRegister<T> other) {
+        return other.value != null && merge(other.value, other.timestamp, other.node);
+    }
+
+    private int compare(long otherTimestamp, String otherNode, T otherValue) {
+        int order = Long.compare(otherTimestamp, timestamp);
+        if (order == 0) {
+            order = otherNode.compareTo(node);
+        }
+        if (order == 0) {
+            order = otherValue.compareTo(value);
+        }
+        return order;
+    }
+
+    public T get() {
+        return value;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public LwwRegister<T> copy() {
+        LwwRegister<T> copy = new LwwRegister<>();
+        copy.value = value;
+        copy.timestamp = timestamp;
+        copy.node = node;
+        return copy;
+    }
+}
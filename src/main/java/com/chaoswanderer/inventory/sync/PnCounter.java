@@ -0,0 +1,92 @@
+package com.chaoswanderer.inventory.sync;
+
+import java.util.Arrays;
+
+// increment/decrement counter replicated across nodes (PN-counter): each node only ever raises its own
+// two totals, and merging keeps the larger of each, so replicas that have seen the same updates agree on
+// the value whatever order they saw them in. A handful of nodes per product, so plain arrays.
+public final class PnCounter {
+    private String[] nodes = new String[0];
+    private long[] increments = new long[0];
+    private long[] decrements = new long[0];
+
+    public void add(String node, long delta) {
+        int slot = slot(node);
+        if (delta >= 0) {
+            increments[slot] += delta;
+        } else {
+            decrements[slot] -= delta;
+        }
+    }
+
+    // can go below zero when nodes took out the same stock while apart
+    public long value() {
+        long value = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            value += increments[i] - decrements[i];
+        }
+        return value;
+    }
+
+    // true if anything changed
+    public boolean merge(PnCounter other) {
+        boolean changed = false;
+        for (int i = 0; i < other.nodes.length; i++) {
+            changed |= merge(other.nodes[i], other.increments[i], other.decrements[i]);
+        }
+        return changed;
+    }
+
+    boolean merge(String node, long increment, long decrement) {
+        int slot = slot(node);
+        boolean changed = false;
+        if (increment > increments[slot]) {
+            increments[slot] = increment;
+            changed = true;
+        }
+        if (decrement > decrements[slot]) {
+            decrements[slot] = decrement;
+            changed = true;
+        }
+        return changed;
+    }
+
+    public PnCounter copy() {
+        PnCounter copy = new PnCounter();
+        copy.nodes = nodes.clone();
+        copy.increments = increments.clone();
+        copy.decrements = decrements.clone();
+        return copy;
+    }
+
+    int nodeCount() {
+        return nodes.length;
+    }
+
+    String nodeAt(int slot) {
+        return nodes[slot];
+    }
+
+    long incrementAt(int slot) {
+        return increments[slot];
+    }
+
+    long decrementAt(int slot) {
+        return decrements[slot];
+    }
+
+    private int slot(String node) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i].equals(node)) {
+                return i;
+            }
+        }
+
+        int slot = nodes.length;
+        nodes = Arrays.copyOf(nodes, slot + 1);
+        increments = Arrays.copyOf(increments, slot + 1);
+        decrements = Arrays.copyOf(decrements, slot + 1);
+        nodes[slot] = node;
+        return slot;
+    }
+}
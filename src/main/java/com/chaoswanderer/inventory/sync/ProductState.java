@@ -0,0 +1,67 @@
+package com.chaoswanderer.inventory.sync;
+
+import java.math.BigDecimal;
+
+// the replicated state of one product: quantity as a PN-counter; name, price and whether it is removed as
+// last-writer-wins registers. Attributes are not replicated.
+public final class ProductState {
+    private final String id;
+    final PnCounter quantity;
+    final LwwRegister<String> name;
+    final LwwRegister<BigDecimal> price;
+    final LwwRegister<Boolean> removed;
+    long version; // the owning node's version of its last change
+
+    ProductState(String id) {
+        this(id, new PnCounter(), new LwwRegister<>(), new LwwRegister<>(), new LwwRegister<>());
+    }
+
+    ProductState(String id, PnCounter quantity, LwwRegister<String> name, LwwRegister<BigDecimal> price,
+                 LwwRegister<Boolean> removed) {
+        this.id = id;
+        this.quantity = quantity;
+        this.name = name;
+        this.price = price;
+        this.removed = removed;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getQuantity() {
+        return quantity.value();
+    }
+
+    public String getName() {
+        return name.get();
+    }
+
+    public BigDecimal getPrice() {
+        return price.get();
+    }
+
+    public boolean isRemoved() {
+        return Boolean.TRUE.equals(removed.get());
+    }
+
+    // known well enough to exist as a product (every node writes name and price together with the first quantity)
+    boolean isComplete() {
+        return name.get() != null && price.get() != null;
+    }
+
+    // true if anything changed
+    boolean merge(ProductState other) {
+        boolean changed = quantity.merge(other.quantity);
+        changed |= name.merge(other.name);
+        changed |= price.merge(other.price);
+        changed |= removed.merge(other.removed);
+        return changed;
+    }
+
+    ProductState copy() {
+        ProductState copy = new ProductState(id, quantity.copy(), name.copy(), price.copy(), removed.copy());
+        copy.version = version;
+        return copy;
+    }
+}
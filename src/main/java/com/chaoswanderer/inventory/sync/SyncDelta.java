@@ -0,0 +1,243 @@
+package com.chaoswanderer.inventory.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// the states of the products a node changed between two of its versions (from, to]; merging it into any
+// replica is idempotent and order-independent, so deltas can be sent twice, late, or through a third node
+//
+// binary layout: "INVSYNC1", origin, from, to, the node names used (each written once), then per product:
+// id, the counter's (node, increments, decrements) triples, and the name, price and removed registers as
+// (timestamp, node, value); numbers as varints
+public class SyncDelta {
+    private static final byte[] MAGIC = {'I', 'N', 'V', 'S', 'Y', 'N', 'C', '1'};
+
+    private final String origin;
+    private final long fromVersion;
+    private final long toVersion;
+    private final List<ProductState> entries;
+
+    public SyncDelta(String origin, long fromVersion, long toVersion, List<ProductState> entries) {
+        this.origin = origin;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.entries = entries;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    public List<ProductState> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // ------------------- Files -------------------
+    // written next to the target and moved over it once complete
+    public void writeTo(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            write(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static SyncDelta readFrom(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            return read(new DataInputStream(in));
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Encoding -------------------
+    public void write(DataOutput out) throws IOException {
+        out.write(MAGIC);
+        out.writeUTF(origin);
+        writeVarLong(out, fromVersion);
+        writeVarLong(out, toVersion);
+
+        Map<String, Integer> nodes = new HashMap<>();
+        List<String> nodeNames = new ArrayList<>();
+        for (ProductState entry : entries) {
+            for (int i = 0; i < entry.quantity.nodeCount(); i++) {
+                nodeOrdinal(nodes, nodeNames, entry.quantity.nodeAt(i));
+            }
+            nodeOrdinal(nodes, nodeNames, entry.name.getNode());
+            nodeOrdinal(nodes, nodeNames, entry.price.getNode());
+            nodeOrdinal(nodes, nodeNames, entry.removed.getNode());
+        }
+        writeVarLong(out, nodeNames.size());
+        for (String node : nodeNames) {
+            out.writeUTF(node);
+        }
+
+        writeVarLong(out, entries.size());
+        for (ProductState entry : entries) {
+            out.writeUTF(entry.getId());
+            PnCounter quantity = entry.quantity;
+            writeVarLong(out, quantity.nodeCount());
+            for (int i = 0; i < quantity.nodeCount(); i++) {
+                writeVarLong(out, nodes.get(quantity.nodeAt(i)));
+                writeVarLong(out, quantity.incrementAt(i));
+                writeVarLong(out, quantity.decrementAt(i));
+            }
+
+            writeRegisterHeader(out, entry.name, nodes);
+            if (entry.name.get() != null) {
+                out.writeUTF(entry.name.get());
+            }
+            writeRegisterHeader(out, entry.price, nodes);
+            if (entry.price.get() != null) {
+                out.writeUTF(entry.price.get().toPlainString());
+            }
+            writeRegisterHeader(out, entry.removed, nodes);
+            if (entry.removed.get() != null) {
+                out.writeBoolean(entry.removed.get());
+            }
+        }
+    }
+
+    public static SyncDelta read(DataInput in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a sync delta");
+        }
+
+        String origin = in.readUTF();
+        long from = readVarLong(in);
+        long to = readVarLong(in);
+
+        String[] nodes = new String[readCount(in)];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = in.readUTF();
+        }
+
+        int count = readCount(in);
+        List<ProductState> entries = new ArrayList<>(count);
+        for (int e = 0; e < count; e++) {
+            ProductState entry = new ProductState(in.readUTF());
+            int counterNodes = readCount(in);
+            for (int i = 0; i < counterNodes; i++) {
+                entry.quantity.merge(node(nodes, readVarLong(in)), readVarLong(in), readVarLong(in));
+            }
+
+            long[] timestamp = new long[1];
+            String node = readRegisterHeader(in, nodes, timestamp);
+            if (node != null) {
+                entry.name.merge(in.readUTF(), timestamp[0], node);
+            }
+            node = readRegisterHeader(in, nodes, timestamp);
+            if (node != null) {
+                try {
+                    entry.price.merge(new BigDecimal(in.readUTF()), timestamp[0], node);
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Corrupt price in sync delta", ex);
+                }
+            }
+            node = readRegisterHeader(in, nodes, timestamp);
+            if (node != null) {
+                entry.removed.merge(in.readBoolean(), timestamp[0], node);
+            }
+            entries.add(entry);
+        }
+        return new SyncDelta(origin, from, to, entries);
+    }
+
+    private static void nodeOrdinal(Map<String, Integer> nodes, List<String> names, String node) {
+        if (nodes.putIfAbsent(node, names.size()) == null) {
+            names.add(node);
+        }
+    }
+
+    // present flag, then timestamp and node if there is a value
+    private static void writeRegisterHeader(DataOutput out, LwwRegister<?> register, Map<String, Integer> nodes)
+            throws IOException {
+        out.writeBoolean(register.get() != null);
+        if (register.get() != null) {
+            writeVarLong(out, zigZag(register.getTimestamp()));
+            writeVarLong(out, nodes.get(register.getNode()));
+        }
+    }
+
+    // the register's node, with its timestamp in timestamp[0]; null if the register is empty
+    private static String readRegisterHeader(DataInput in, String[] nodes, long[] timestamp) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        timestamp[0] = unZigZag(readVarLong(in));
+        return node(nodes, readVarLong(in));
+    }
+
+    private static String node(String[] nodes, long ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= nodes.length) {
+            throw new IOException("Corrupt node reference in sync delta");
+        }
+        return nodes[(int) ordinal];
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt count in sync delta");
+        }
+        return (int) count;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt number in sync delta");
+    }
+
+    // timestamps may be negative (Long.MIN_VALUE for an empty register is never written, 0 for the baseline)
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,359 @@
+package com.chaoswanderer.inventory.sync;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+// one replica of the catalog for shops that sync while disconnected (state-based CRDTs): every product's
+// quantity is a PN-counter and its name, price and removal last-writer-wins registers (see ProductState).
+// Local changes to the inventory are recorded as this node's updates - quantity as the difference, so two
+// shops selling the same stock both count; merged deltas are written back into the inventory. An oversold
+// product shows 0 in the inventory while its counter is below zero; a local change then moves the counter
+// to the new quantity, so every node ends up with what this shop set instead of that minus the oversell.
+//
+// each change gives the product the node's next version, and an index from version to product makes
+// deltaSince(v) and merge(delta) cost time in the number of changed products, not the catalog size. For
+// each peer the node remembers the highest version merged without a gap, so exchanges (SyncServer) only
+// send what the other side has not seen.
+//
+// a catalog seen for the first time is recorded under the shared BASELINE node at time 0, so shops
+// started from the same data file agree on it instead of each adding its stock on top of the others'.
+// Guarded by the inventory's lock.
+public class SyncNode implements InventoryListener {
+    public static final String BASELINE = "~base";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+    private static final byte[] STATE_MAGIC = {'I', 'N', 'V', 'S', 'Y', 'N', 'S', '1'};
+
+    private final String nodeId;
+    private final Inventory inventory;
+    private final LongSupplier clock;
+    private final Map<String, ProductState> states = new HashMap<>();
+    private final TreeMap<Long, String> changes = new TreeMap<>(); // version -> product, latest change only
+    private final Map<String, Long> received = new HashMap<>();
+    private long version;
+    private boolean applying; // merged changes written to the inventory are not this node's updates
+
+    private long mergedDeltas;
+    private long mergedEntries;
+
+    public SyncNode(String nodeId, Inventory inventory) {
+        this(nodeId, inventory, System::currentTimeMillis);
+    }
+
+    public SyncNode(String nodeId, Inventory inventory, LongSupplier clock) {
+        if (!isValidName(nodeId)) {
+            throw new IllegalArgumentException("Invalid node name '" + nodeId + "' (letters, digits, '-' and '_', up to 32)");
+        }
+        this.nodeId = nodeId;
+        this.inventory = inventory;
+        this.clock = clock;
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // ------------------- Attaching -------------------
+    // brings the saved state and the inventory together and starts recording changes: products the state
+    // does not know are taken as the baseline, differences to known ones (the data file edited while not
+    // running) as this node's updates, and products only the state still has are put back
+    public void attach() {
+        inventory.runBatch(() -> {
+            inventory.forEachProduct(this::reconcile);
+
+            applying = true;
+            try {
+                for (ProductState state : new ArrayList<>(states.values())) {
+                    if (!state.isRemoved() && state.isComplete() && !inventory.productExists(state.getId())) {
+                        apply(state);
+                    }
+                }
+            } finally {
+                applying = false;
+            }
+            inventory.addListener(this);
+        });
+    }
+
+    private void reconcile(Product product) {
+        ProductState state = states.get(product.getId());
+        if (state == null) {
+            state = new ProductState(product.getId());
+            state.quantity.add(BASELINE, product.getQuantity());
+            state.name.merge(product.getName(), 0, BASELINE);
+            state.price.merge(product.getPrice(), 0, BASELINE);
+            state.removed.merge(false, 0, BASELINE);
+            states.put(product.getId(), state);
+            touch(state);
+            return;
+        }
+
+        if (recordLocal(state, product, quantityChange(state, product.getQuantity()))) {
+            touch(state);
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Local changes -------------------
+    @Override
+    public void productAdded(Product product) {
+        if (applying) {
+            return;
+        }
+        ProductState state = states.computeIfAbsent(product.getId(), ProductState::new);
+        recordLocal(state, product, quantityChange(state, product.getQuantity()));
+        touch(state);
+    }
+
+    @Override
+    public void productUpdated(Product before, Product after) {
+        if (applying) {
+            return;
+        }
+        ProductState state = states.computeIfAbsent(after.getId(), ProductState::new);
+        if (recordLocal(state, after, quantityChange(state, after.getQuantity()))) {
+            touch(state);
+        }
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        if (applying) {
+            return;
+        }
+        ProductState state = states.computeIfAbsent(product.getId(), ProductState::new);
+        state.removed.merge(true, stamp(state.removed), nodeId);
+        touch(state);
+    }
+
+    // the counter change that makes it read the inventory's quantity - none while the inventory still shows
+    // the counter's clamped value. Measured from the counter, not the inventory: from an oversold 0 (counter
+    // -3) a restock to 10 adds 13
+    private static long quantityChange(ProductState state, int quantity) {
+        long counter = state.getQuantity();
+        return quantity == clamp(counter) ? 0 : quantity - counter;
+    }
+
+    // records the product's current name, price and presence, and the quantity change; true if anything changed
+    private boolean recordLocal(ProductState state, Product product, long quantityDelta) {
+        boolean changed = false;
+        if (quantityDelta != 0) {
+            state.quantity.add(nodeId, quantityDelta);
+            changed = true;
+        }
+        if (!product.getName().equals(state.getName())) {
+            changed |= state.name.merge(product.getName(), stamp(state.name), nodeId);
+        }
+        BigDecimal price = state.getPrice();
+        if (price == null || product.getPrice().compareTo(price) != 0) {
+            changed |= state.price.merge(product.getPrice(), stamp(state.price), nodeId);
+        }
+        if (state.removed.get() == null || state.isRemoved()) {
+            changed |= state.removed.merge(false, stamp(state.removed), nodeId);
+        }
+        return changed;
+    }
+
+    // now, but after the register's current write even if that came from a clock running ahead
+    private long stamp(LwwRegister<?> register) {
+        long now = clock.getAsLong();
+        return register.get() == null || register.getTimestamp() < now ? now : register.getTimestamp() + 1;
+    }
+
+    private void touch(ProductState state) {
+        if (state.version != 0) {
+            changes.remove(state.version);
+        }
+        state.version = ++version;
+        changes.put(state.version, state.getId());
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Deltas -------------------
+    // the products changed after the given version of this node (0 for everything), as a snapshot
+    public SyncDelta deltaSince(long sinceVersion) {
+        List<ProductState> entries = new ArrayList<>();
+        long[] to = new long[1];
+        inventory.runReadBatch(() -> {
+            for (String id : changes.tailMap(sinceVersion, false).values()) {
+                entries.add(states.get(id).copy());
+            }
+            to[0] = version;
+        });
+        return new SyncDelta(nodeId, sinceVersion, to[0], entries);
+    }
+
+    // merges a delta from another node and writes the products it changed into the inventory; returns how
+    // many products changed. Safe to repeat and in any order.
+    public int merge(SyncDelta delta) {
+        int[] changed = {0};
+        inventory.runBatch(() -> {
+            applying = true;
+            try {
+                for (ProductState incoming : delta.getEntries()) {
+                    ProductState state = states.get(incoming.getId());
+                    if (state == null) {
+                        state = incoming.copy();
+                        state.version = 0; // the sender's numbering
+                        states.put(state.getId(), state);
+                    } else if (!state.merge(incoming)) {
+                        continue;
+                    }
+
+                    touch(state);
+                    apply(state);
+                    changed[0]++;
+                }
+            } finally {
+                applying = false;
+            }
+
+            // only a delta that starts where the last one from there ended moves the mark - after a gap the
+            // peer has to send from the old mark again
+            if (!delta.getOrigin().equals(nodeId)
+                    && delta.getFromVersion() <= received.getOrDefault(delta.getOrigin(), 0L)) {
+                received.merge(delta.getOrigin(), delta.getToVersion(), Math::max);
+            }
+            mergedDeltas++;
+            mergedEntries += delta.size();
+        });
+        return changed[0];
+    }
+
+    private void apply(ProductState state) {
+        Product product = inventory.searchProductById(state.getId());
+        if (state.isRemoved() || !state.isComplete()) {
+            if (product != null && state.isRemoved()) {
+                inventory.removeProduct(state.getId());
+            }
+            return;
+        }
+
+        int quantity = clamp(state.getQuantity());
+        if (product == null) {
+            inventory.addProduct(new Product(state.getId(), state.getName(), quantity, state.getPrice()));
+        } else if (product.getQuantity() != quantity || !product.getName().equals(state.getName())
+                || product.getPrice().compareTo(state.getPrice()) != 0) {
+            inventory.updateProduct(product, state.getName(), quantity, state.getPrice());
+        }
+    }
+
+    // the inventory cannot hold negative stock; the counter keeps the oversold amount
+    private static int clamp(long quantity) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, quantity));
+    }
+    // ------------------------------------------------------
+
+    // ------------------- State file -------------------
+    // everything this node knows plus its version and peer marks, so the counters survive a restart
+    public void save(Path path) throws IOException {
+        SyncDelta all = deltaSince(0);
+        Map<String, Long> marks = getReceived();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.write(STATE_MAGIC);
+            out.writeUTF(nodeId);
+            SyncDelta.writeVarLong(out, marks.size());
+            for (Map.Entry<String, Long> mark : marks.entrySet()) {
+                out.writeUTF(mark.getKey());
+                SyncDelta.writeVarLong(out, mark.getValue());
+            }
+            all.write(out);
+            for (ProductState state : all.getEntries()) {
+                SyncDelta.writeVarLong(out, state.version);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // before attach(); the file must belong to this node
+    public void load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            byte[] magic = new byte[STATE_MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, STATE_MAGIC)) {
+                throw new IOException("Not a sync state file");
+            }
+            String owner = in.readUTF();
+            if (!owner.equals(nodeId)) {
+                throw new IOException("State file belongs to node '" + owner + "', not '" + nodeId + "'");
+            }
+
+            long marks = SyncDelta.readVarLong(in);
+            for (long i = 0; i < marks; i++) {
+                received.put(in.readUTF(), SyncDelta.readVarLong(in));
+            }
+
+            SyncDelta all = SyncDelta.read(in);
+            version = all.getToVersion();
+            for (ProductState state : all.getEntries()) {
+                state.version = SyncDelta.readVarLong(in);
+                states.put(state.getId(), state);
+                changes.put(state.version, state.getId());
+            }
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Statistics -------------------
+    public long getVersion() {
+        long[] current = new long[1];
+        inventory.runReadBatch(() -> current[0] = version);
+        return current[0];
+    }
+
+    // the highest version of each peer merged so far
+    public Map<String, Long> getReceived() {
+        Map<String, Long> copy = new HashMap<>();
+        inventory.runReadBatch(() -> copy.putAll(received));
+        return copy;
+    }
+
+    public long getReceivedFrom(String peer) {
+        long[] mark = new long[1];
+        inventory.runReadBatch(() -> mark[0] = received.getOrDefault(peer, 0L));
+        return mark[0];
+    }
+
+    // the replicated state of one product, or null if this node has never seen it
+    public ProductState getState(String id) {
+        ProductState[] state = new ProductState[1];
+        inventory.runReadBatch(() -> {
+            ProductState current = states.get(id);
+            state[0] = current == null ? null : current.copy();
+        });
+        return state[0];
+    }
+
+    public long getMergedDeltaCount() {
+        return mergedDeltas;
+    }
+
+    public long getMergedEntryCount() {
+        return mergedEntries;
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,116 @@
+package com.chaoswanderer.inventory.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+// delta exchange between two nodes over a socket (loopback unless another address is given). One round:
+//
+//   client -> server   client node id
+//   server -> client   server node id, highest client version the server has merged
+//   client -> server   client delta from there, highest server version the client has merged
+//   server -> client   server delta from there
+//
+// after which both sides have merged each other's changes. Connections are handled one at a time.
+public class SyncServer implements AutoCloseable {
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    private final SyncNode node;
+    private final ServerSocket socket;
+    private final Thread thread;
+
+    private volatile long exchanges;
+
+    public SyncServer(SyncNode node, int port) throws IOException {
+        this(node, InetAddress.getLoopbackAddress(), port);
+    }
+
+    public SyncServer(SyncNode node, InetAddress address, int port) throws IOException {
+        this.node = node;
+        this.socket = new ServerSocket();
+        this.socket.bind(new InetSocketAddress(address, port));
+        this.thread = new Thread(this::acceptLoop, "sync-server");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // the bound port (useful with port 0)
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    public long getExchangeCount() {
+        return exchanges;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        thread.interrupt();
+    }
+
+    private void acceptLoop() {
+        while (!socket.isClosed()) {
+            try (Socket connection = socket.accept()) {
+                connection.setSoTimeout(TIMEOUT_MILLIS);
+                serve(connection);
+                exchanges++;
+            } catch (SocketException e) {
+                if (!socket.isClosed()) {
+                    System.out.println("Warning: Sync exchange failed (" + e.getMessage() + ")");
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Warning: Sync exchange failed (" + e.getMessage() + ")");
+            }
+        }
+    }
+
+    private void serve(Socket connection) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+
+        String peer = in.readUTF();
+        out.writeUTF(node.getNodeId());
+        out.writeLong(node.getReceivedFrom(peer));
+        out.flush();
+
+        SyncDelta theirs = SyncDelta.read(in);
+        long peerHas = in.readLong();
+        SyncDelta ours = node.deltaSince(Math.min(peerHas, node.getVersion())); // before merging, not to echo theirs
+        node.merge(theirs);
+
+        ours.write(out);
+        out.flush();
+    }
+
+    // one round with the node listening at host:port; returns how many products changed here
+    public static int exchange(SyncNode node, String host, int port) throws IOException {
+        try (Socket connection = new Socket()) {
+            connection.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+            connection.setSoTimeout(TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+
+            out.writeUTF(node.getNodeId());
+            out.flush();
+            String peer = in.readUTF();
+            long peerHas = in.readLong();
+
+            node.deltaSince(Math.min(peerHas, node.getVersion())).write(out);
+            out.writeLong(node.getReceivedFrom(peer));
+            out.flush();
+
+            return node.merge(SyncDelta.read(in));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.chaoswanderer.inventory.tenant;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.util.Map;
+import java.util.Set;
+
+// rough retained-heap size of a product held in a MemoryProductStore, for a 64-bit JVM with compressed
+// references: close enough to budget a thousand tenants by, without walking the heap
+final class ProductFootprint {
+    // an otherwise empty Inventory with its store, lock and service
+    static final long TENANT_OVERHEAD = 2_048;
+
+    private static final long PRODUCT = 48;
+    private static final long STORE_SLOT = 24; // long key + reference, table kept at most half full
+    private static final long PRICE = 40;
+    private static final long TIMESTAMP = 72; // LocalDateTime with its LocalDate and LocalTime
+    private static final long STRING = 24 + 16; // String plus its byte[] header
+    private static final long TREE_MAP = 48;
+    private static final long TREE_SET = 16 + TREE_MAP;
+    private static final long TREE_ENTRY = 40;
+
+    private ProductFootprint() {
+    }
+
+    static long estimate(Product product) {
+        long bytes = PRODUCT + STORE_SLOT + PRICE + 2 * TIMESTAMP
+                + string(product.getId()) + string(product.getName());
+
+        Map<String, Set<String>> attributes = product.getAttributes();
+        if (!attributes.isEmpty()) {
+            bytes += TREE_MAP;
+            for (Map.Entry<String, Set<String>> entry : attributes.entrySet()) {
+                bytes += TREE_ENTRY + string(entry.getKey()) + TREE_SET;
+                for (String value : entry.getValue()) {
+                    bytes += TREE_ENTRY + string(value);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    // Latin-1 strings take a byte per char, anything else two
+    private static long string(String value) {
+        long chars = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xff) {
+                chars = 2L * value.length();
+                break;
+            }
+        }
+        return STRING + ((chars + 7) & ~7L);
+    }
+}
@@ -0,0 +1,137 @@
+package com.chaoswanderer.inventory.tenant;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.InventoryListener;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.service.InventoryService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// one named inventory and its data file; loading and spilling happen while holding its monitor.
+// While resident it listens to its inventory to keep its footprint (and the registry's total) current
+// and to know whether it has to be written back.
+final class Tenant implements InventoryListener {
+    final String name;
+    final Path dataFile;
+    final AtomicInteger pins = new AtomicInteger();
+
+    private final AtomicLong residentBytes; // the registry's total
+    private final AtomicLong bytes = new AtomicLong();
+    private Inventory inventory;
+    private InventoryService service;
+    private volatile boolean dirty;
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong loads = new AtomicLong();
+    final AtomicLong evictions = new AtomicLong();
+    volatile long lastAccessMillis;
+
+    Tenant(String name, Path dataFile, AtomicLong residentBytes) {
+        this.name = name;
+        this.dataFile = dataFile;
+        this.residentBytes = residentBytes;
+    }
+
+    // reads the data file if the tenant is not in memory (a tenant without one starts empty);
+    // returns true if it had to be read
+    synchronized boolean ensureLoaded() {
+        if (inventory != null) {
+            return false;
+        }
+
+        Inventory loaded = new Inventory();
+        InventoryService loadedService = new InventoryService(loaded, dataFile.toString());
+        if (Files.exists(dataFile) && !loadedService.addProductsFromFile(dataFile.toString())) {
+            throw new IllegalStateException("Could not load tenant '" + name + "' from '" + dataFile + "'");
+        }
+
+        long[] total = {ProductFootprint.TENANT_OVERHEAD};
+        loaded.forEachProduct(product -> total[0] += ProductFootprint.estimate(product));
+        bytes.set(total[0]);
+        residentBytes.addAndGet(total[0]);
+
+        loaded.addListener(this);
+        inventory = loaded;
+        service = loadedService;
+        dirty = false;
+        return true;
+    }
+
+    synchronized boolean isResident() {
+        return inventory != null;
+    }
+
+    synchronized Inventory getInventory() {
+        return inventory;
+    }
+
+    synchronized InventoryService getService() {
+        return service;
+    }
+
+    // writes the inventory back if it changed since it was loaded or last saved
+    synchronized boolean save() {
+        if (inventory == null || !dirty) {
+            return true;
+        }
+
+        dirty = false; // a change made while saving sets it again
+        if (!service.saveProductsToFile()) {
+            dirty = true;
+            return false;
+        }
+        return true;
+    }
+
+    // saves and drops the inventory from memory; false (still resident) if it is pinned or could not be saved
+    synchronized boolean spill() {
+        if (inventory == null) {
+            return true;
+        }
+        if (pins.get() > 0 || !save()) {
+            return false;
+        }
+
+        inventory.removeListener(this);
+        residentBytes.addAndGet(-bytes.getAndSet(0));
+        inventory = null;
+        service = null;
+        evictions.incrementAndGet();
+        return true;
+    }
+
+    long getBytes() {
+        return bytes.get();
+    }
+
+    synchronized TenantStats stats() {
+        return new TenantStats(name, inventory != null, inventory == null ? 0 : inventory.getTotalProducts(),
+                bytes.get(), hits.get(), loads.get(), evictions.get(), lastAccessMillis);
+    }
+
+    // ------------------- InventoryListener -------------------
+    @Override
+    public void productAdded(Product product) {
+        adjust(ProductFootprint.estimate(product));
+    }
+
+    @Override
+    public void productUpdated(Product before, Product after) {
+        adjust(ProductFootprint.estimate(after) - ProductFootprint.estimate(before));
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        adjust(-ProductFootprint.estimate(product));
+    }
+
+    private void adjust(long delta) {
+        dirty = true;
+        bytes.addAndGet(delta);
+        residentBytes.addAndGet(delta);
+    }
+    // ------------------------------------------------------
+}
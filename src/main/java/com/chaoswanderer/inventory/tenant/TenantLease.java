@@ -0,0 +1,42 @@
+package com.chaoswanderer.inventory.tenant;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.service.InventoryService;
+
+// a tenant held open: it stays in memory until the lease is closed, so use it in try-with-resources and
+// do not keep the inventory (or products from it) around afterwards - once spilled, changes to them are lost
+public class TenantLease implements AutoCloseable {
+    private final TenantRegistry registry;
+    private final Tenant tenant;
+    private final Inventory inventory;
+    private final InventoryService service;
+    private boolean closed;
+
+    TenantLease(TenantRegistry registry, Tenant tenant, Inventory inventory, InventoryService service) {
+        this.registry = registry;
+        this.tenant = tenant;
+        this.inventory = inventory;
+        this.service = service;
+    }
+
+    public String getName() {
+        return tenant.name;
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    // saves to the tenant's own data file
+    public InventoryService getService() {
+        return service;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            registry.release(tenant);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.chaoswanderer.inventory.tenant;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+// many named inventories in one process, each with its own data file (<directory>/<name>.csv):
+//
+//   try (TenantLease store = registry.open("store-0042")) {
+//       store.getInventory().searchProductById("1234");
+//   }
+//
+// a tenant is read from its file the first time it is opened and then stays in memory. When the estimated
+// footprint of everything in memory exceeds the budget, the least recently used tenants that are not open
+// are written back (if changed) and dropped, to be read again on their next open. Open tenants are never
+// spilled, so the budget can be exceeded while many are in use at once.
+public class TenantRegistry implements AutoCloseable {
+    public static final String DEFAULT_DIRECTORY = "data/tenants";
+    public static final long DEFAULT_BUDGET_BYTES = 256L * 1024 * 1024;
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String EXTENSION = ".csv";
+
+    private final Path directory;
+    private final long budgetBytes;
+    private final AtomicLong residentBytes = new AtomicLong();
+
+    // guarded by this; resident is in access order, least recently used first
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private final LinkedHashMap<String, Tenant> resident = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong failedSpills = new AtomicLong();
+
+    public TenantRegistry(Path directory, long budgetBytes) throws IOException {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("The memory budget must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    public static Path dataFileFor(Path directory, String name) {
+        return directory.resolve(name + EXTENSION);
+    }
+
+    // ------------------- Leases -------------------
+    // opens a tenant, reading it from its data file if it is not in memory; a tenant without a data file
+    // starts empty and gets one when it is first spilled or saved
+    public TenantLease open(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid tenant name '" + name + "' (letters, digits, '-' and '_', up to 64)");
+        }
+
+        Tenant tenant;
+        synchronized (this) {
+            tenant = tenants.computeIfAbsent(name, key -> new Tenant(key, dataFileFor(directory, key), residentBytes));
+            tenant.pins.incrementAndGet(); // from here on it cannot be spilled
+        }
+
+        boolean loaded;
+        try {
+            loaded = tenant.ensureLoaded();
+        } catch (RuntimeException e) {
+            tenant.pins.decrementAndGet();
+            throw e;
+        }
+
+        (loaded ? tenant.loads : tenant.hits).incrementAndGet();
+        (loaded ? loads : hits).incrementAndGet();
+        tenant.lastAccessMillis = System.currentTimeMillis();
+        synchronized (this) {
+            resident.put(name, tenant); // (re)inserted or moved to most recently used
+        }
+
+        enforceBudget();
+        return new TenantLease(this, tenant, tenant.getInventory(), tenant.getService());
+    }
+
+    void release(Tenant tenant) {
+        tenant.lastAccessMillis = System.currentTimeMillis();
+        tenant.pins.decrementAndGet();
+        enforceBudget();
+    }
+
+    // spills least recently used tenants that are not open until the resident footprint fits the budget
+    private void enforceBudget() {
+        while (residentBytes.get() > budgetBytes) {
+            Tenant victim = null;
+            synchronized (this) {
+                for (Tenant candidate : resident.values()) {
+                    if (candidate.pins.get() == 0) {
+                        victim = candidate;
+                        break;
+                    }
+                }
+                if (victim == null) {
+                    return; // everything in memory is open - over budget until some are closed
+                }
+                resident.remove(victim.name);
+            }
+
+            if (victim.spill()) {
+                evictions.incrementAndGet();
+                continue;
+            }
+
+            synchronized (this) {
+                resident.put(victim.name, victim);
+            }
+            if (victim.pins.get() == 0) {
+                failedSpills.incrementAndGet();
+                System.out.println("Warning: Could not spill tenant '" + victim.name + "' - keeping it in memory");
+                return;
+            }
+            // opened again while being picked - try the next one
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Persistence -------------------
+    // writes every changed tenant back to its data file; false if any could not be saved
+    public boolean saveAll() {
+        boolean saved = true;
+        for (Tenant tenant : residentTenants()) {
+            saved &= tenant.save();
+        }
+        return saved;
+    }
+
+    // saves everything and drops it from memory; tenants still open stay as they are
+    @Override
+    public void close() {
+        for (Tenant tenant : residentTenants()) {
+            if (tenant.spill()) {
+                synchronized (this) {
+                    resident.remove(tenant.name);
+                }
+            } else {
+                tenant.save();
+            }
+        }
+    }
+
+    private synchronized List<Tenant> residentTenants() {
+        return new ArrayList<>(resident.values());
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Statistics -------------------
+    // every tenant with a data file or opened since start-up, by name
+    public List<String> listTenants() {
+        TreeSet<String> names = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - EXTENSION.length());
+                if (isValidName(name)) {
+                    names.add(name);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: Could not list '" + directory + "' (" + e.getMessage() + ")");
+        }
+        synchronized (this) {
+            names.addAll(tenants.keySet());
+        }
+        return new ArrayList<>(names);
+    }
+
+    // every tenant opened since start-up, by name
+    public List<TenantStats> getStats() {
+        List<Tenant> known;
+        synchronized (this) {
+            known = new ArrayList<>(tenants.values());
+        }
+        List<TenantStats> stats = new ArrayList<>(known.size());
+        for (Tenant tenant : known) {
+            stats.add(tenant.stats());
+        }
+        stats.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return stats;
+    }
+
+    public synchronized int getResidentCount() {
+        return resident.size();
+    }
+
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getFailedSpillCount() {
+        return failedSpills.get();
+    }
+
+    public double getHitRatio() {
+        long opens = hits.get() + loads.get();
+        return opens == 0 ? 0 : (double) hits.get() / opens;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+    // ------------------------------------------------------
+}
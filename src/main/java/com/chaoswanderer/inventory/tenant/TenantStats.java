@@ -0,0 +1,73 @@
+package com.chaoswanderer.inventory.tenant;
+
+// one tenant's figures at the moment they were taken
+public class TenantStats {
+    private final String name;
+    private final boolean resident;
+    private final int products;
+    private final long estimatedBytes;
+    private final long hits;
+    private final long loads;
+    private final long evictions;
+    private final long lastAccessMillis;
+
+    TenantStats(String name, boolean resident, int products, long estimatedBytes, long hits, long loads,
+                long evictions, long lastAccessMillis) {
+        this.name = name;
+        this.resident = resident;
+        this.products = products;
+        this.estimatedBytes = estimatedBytes;
+        this.hits = hits;
+        this.loads = loads;
+        this.evictions = evictions;
+        this.lastAccessMillis = lastAccessMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // in memory right now; otherwise only in its data file
+    public boolean isResident() {
+        return resident;
+    }
+
+    // while resident; 0 otherwise
+    public int getProducts() {
+        return products;
+    }
+
+    // while resident; 0 otherwise
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    // opened while already in memory
+    public long getHits() {
+        return hits;
+    }
+
+    // opened while not in memory, so read from its data file
+    public long getLoads() {
+        return loads;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRatio() {
+        long opens = hits + loads;
+        return opens == 0 ? 0 : (double) hits / opens;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-20s %-8s %8d %10.1f KB %8d hits %6d loads %6d evictions", name,
+                resident ? "resident" : "spilled", products, estimatedBytes / 1024.0, hits, loads, evictions);
+    }
+}
@@ -1,15 +1,34 @@
 package com.chaoswanderer.inventory.ui;
 
+import com.chaoswanderer.inventory.cache.ResultCache;
+import com.chaoswanderer.inventory.cache.ResultKey;
+import com.chaoswanderer.inventory.index.FacetIndex;
+import com.chaoswanderer.inventory.index.FacetQuery;
+import com.chaoswanderer.inventory.ledger.StockLedger;
+import com.chaoswanderer.inventory.location.LocationStock;
 import com.chaoswanderer.inventory.model.Inventory;
 import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.query.Condition;
+import com.chaoswanderer.inventory.query.Query;
+import com.chaoswanderer.inventory.service.BackgroundLoad;
+import com.chaoswanderer.inventory.service.ImportDiff;
 import com.chaoswanderer.inventory.service.InventoryService;
+import com.chaoswanderer.inventory.sketch.SpaceSaving;
+import com.chaoswanderer.inventory.stats.DistributionSummary;
+import com.chaoswanderer.inventory.stats.StockStatistics;
+import com.chaoswanderer.inventory.stats.TopStock;
+import com.chaoswanderer.inventory.storage.PageCache;
+import com.chaoswanderer.inventory.storage.PagedProductStore;
 import com.chaoswanderer.inventory.util.InventoryUtils;
 import com.chaoswanderer.inventory.util.MenuState;
 import com.chaoswanderer.inventory.util.SortField;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class InventoryUI {
     private final Inventory inventory;
@@ -25,6 +44,11 @@ public class InventoryUI {
 
     public void start() {
         while (true) {
+            // with --fast-start the catalog may still be loading - screens that need all of it wait for it
+            if (needsFullCatalog(state) && !awaitFullCatalog()) {
+                state = MenuState.MAIN_MENU;
+            }
+
             switch (state) {
                 case MAIN_MENU -> displayMainMenu();
                 case VIEW_PRODUCTS -> listAllProducts(inventory.getAllProducts());
@@ -33,6 +57,9 @@ public class InventoryUI {
                 case REMOVE_PRODUCT -> removeProduct();
                 case SEARCH_PRODUCT -> searchProduct();
                 case DISPLAY_SUMMARY -> displaySummary();
+                case MERGE_IMPORT -> mergeImport();
+                case LOCATION_STOCK -> locationStock();
+                case FACET_FILTER -> facetFilter();
                 case EXIT_PROGRAM -> {
                     exitProgram();
                     return;
@@ -62,12 +89,20 @@ public class InventoryUI {
         System.out.println(printSeparator('='));
         printCenteredHeader("INVENTORY MANAGEMENT SYSTEM");
         System.out.println(printSeparator('='));
+        if (inventoryService.isLoading()) {
+            System.out.println("Loading catalog in the background: " + inventoryService.getBackgroundLoad().describe()
+                    + " - lookups of loaded products work now");
+            System.out.println(printSeparator('-'));
+        }
         System.out.println("[1] View Products");
         System.out.println("[2] Add Product");
         System.out.println("[3] Update Product");
         System.out.println("[4] Remove Product");
         System.out.println("[5] Search Product");
         System.out.println("[6] View Summary");
+        System.out.println("[7] Merge Import from File");
+        System.out.println("[8] Stock by Location");
+        System.out.println("[9] Filter by Category / Brand / Tag");
         System.out.println("[0] Exit");
         System.out.println(printSeparator('-'));
         System.out.print("Select an option: ");
@@ -89,6 +124,9 @@ public class InventoryUI {
             case "4" -> state = MenuState.REMOVE_PRODUCT;
             case "5" -> state = MenuState.SEARCH_PRODUCT;
             case "6" -> state = MenuState.DISPLAY_SUMMARY;
+            case "7" -> state = MenuState.MERGE_IMPORT;
+            case "8" -> state = MenuState.LOCATION_STOCK;
+            case "9" -> state = MenuState.FACET_FILTER;
             default -> {
                 System.out.println("\nInvalid input - Returning...");
                 pause();
@@ -253,6 +291,7 @@ public class InventoryUI {
             System.out.println(printSeparator('-'));
 
             if (inventory.addProduct(product)) {
+                awaitJournal();
                 System.out.println("Product '" + product.getName() + "' added successfully!");
             } else {
                 System.out.println("Product already exists!");
@@ -372,8 +411,14 @@ public class InventoryUI {
 
             printHeader("UPDATE PRODUCT");
 
-            System.out.print("Enter Product ID to update (press Enter to return): ");
-            String id = InventoryUtils.sanitizeString(scanner.nextLine());
+            System.out.print("Enter Product ID to update ('*' for a bulk update, press Enter to return): ");
+            String input = scanner.nextLine();
+            if (input.trim().equals("*")) {
+                bulkUpdate();
+                continue;
+            }
+
+            String id = InventoryUtils.sanitizeString(input);
             if (id.isEmpty()) {
                 System.out.println("Returning to Main Menu...");
                 state = MenuState.MAIN_MENU;
@@ -426,6 +471,88 @@ public class InventoryUI {
         }
     }
 
+    // one change for every product matching a query condition, confirmed once
+    private void bulkUpdate() {
+        clearConsole();
+        printHeader("BULK UPDATE");
+        System.out.print("Enter condition, e.g. name ~ \"canned\" AND quantity < 10 (press Enter to return): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return;
+        }
+
+        Condition condition;
+        try {
+            condition = Query.parse(input).getCondition();
+        } catch (IllegalArgumentException e) {
+            condition = null;
+            System.out.println("Invalid condition: " + e.getMessage());
+        }
+        if (condition == null) {
+            pause();
+            return;
+        }
+
+        int matches = inventory.query(Query.all().where(condition)).size();
+        System.out.println(printSeparator('-'));
+        System.out.println(matches + " products match.");
+        if (matches == 0) {
+            pause();
+            return;
+        }
+
+        System.out.println("[1] Mark prices up or down by a percentage");
+        System.out.println("[2] Set quantity");
+        System.out.println("[3] Adjust quantity");
+        System.out.println("[4] Remove products");
+        System.out.println("[5] Return");
+        System.out.println(printSeparator('-'));
+        System.out.print("Select an option: ");
+        String choice = InventoryUtils.sanitizeString(scanner.nextLine());
+
+        BigDecimal value = null;
+        switch (choice) {
+            case "1" -> value = readSignedNumber("Enter percentage (e.g. 5 for +5%, -10 for 10% off): ");
+            case "2" -> value = readSignedNumber("Enter new quantity: ");
+            case "3" -> value = readSignedNumber("Enter quantity to add (negative to take out): ");
+            case "4" -> value = BigDecimal.ZERO;
+            default -> {
+                return;
+            }
+        }
+        if (value == null || !getConfirmation()) {
+            return;
+        }
+
+        Condition filter = condition;
+        try {
+            int changed = switch (choice) {
+                case "1" -> inventory.bulkAdjustPrice(filter::test, value);
+                case "2" -> inventory.bulkSetQuantity(filter::test, value.intValueExact());
+                case "3" -> inventory.bulkAdjustQuantity(filter::test, value.intValueExact());
+                default -> inventory.bulkRemove(filter::test);
+            };
+            awaitJournal();
+            System.out.println("\n" + changed + (choice.equals("4") ? " products removed." : " products updated."));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            System.out.println("\nNothing changed: " + e.getMessage());
+        }
+        pause();
+    }
+
+    // null if left empty or not a number
+    private BigDecimal readSignedNumber(String prompt) {
+        System.out.print(prompt);
+        String input = scanner.nextLine().trim();
+        try {
+            return input.isEmpty() ? null : new BigDecimal(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            pause();
+            return null;
+        }
+    }
+
     private void printCurrentInformation(Product product) {
         System.out.println(printSeparator('-'));
         System.out.println("Current Information:");
@@ -436,10 +563,29 @@ public class InventoryUI {
         System.out.println("Price: " + "$" + product.getPrice());
         System.out.println("Created At: " + product.getFormattedCreatedAt());
         System.out.println("Updated At: " + product.getFormattedUpdatedAt());
+        for (Map.Entry<String, Set<String>> entry : product.getAttributes().entrySet()) {
+            System.out.println(entry.getKey() + ": " + String.join(", ", entry.getValue()));
+        }
+
+        StockLedger ledger = inventory.getStockLedger();
+        if (ledger != null) {
+            System.out.println("Sold (hour / day / week): "
+                    + ledger.getUnitsSold(product.getId(), StockLedger.Window.HOUR) + " / "
+                    + ledger.getUnitsSold(product.getId(), StockLedger.Window.DAY) + " / "
+                    + ledger.getUnitsSold(product.getId(), StockLedger.Window.WEEK));
+            System.out.printf("Velocity: %.2f units/day | Days of Cover: %s%n",
+                    ledger.getVelocityPerDay(product.getId()),
+                    formatDaysOfCover(ledger.getDaysOfCover(product.getId())));
+        }
+
         System.out.println(printSeparator('-'));
         pause();
     }
 
+    private static String formatDaysOfCover(double days) {
+        return Double.isInfinite(days) ? "n/a (no sales)" : String.format("%.1f", days);
+    }
+
     private boolean displayUpdateOptions(Product product) {
         // store the new details
         printHeader("SELECT FIELD TO UPDATE");
@@ -495,9 +641,12 @@ public class InventoryUI {
 
         System.out.println();
 
-        product.setName(newName);
+        if (!inventory.updateProductName(product, newName)) {
+            printProductGone(product);
+            return;
+        }
+        awaitJournal();
         System.out.println("Product [" + product.getId() + "] name updated to '" + product.getName() + "'.");
-        product.updateUpdatedAt();
     }
 
     private void updateProductPrice(Product product) {
@@ -513,9 +662,12 @@ public class InventoryUI {
 
         System.out.println();
 
-        product.setPrice(newPrice);
+        if (!inventory.updateProductPrice(product, newPrice)) {
+            printProductGone(product);
+            return;
+        }
+        awaitJournal();
         System.out.println("Product [" + product.getId() + "] price updated to '$" + product.getPrice() + "'.");
-        product.updateUpdatedAt();
     }
 
     private void updateProductQuantity(Product product) {
@@ -531,9 +683,17 @@ public class InventoryUI {
 
         System.out.println();
 
-        product.setQuantity(newQuantity);
+        try {
+            if (!inventory.updateProductQuantity(product, newQuantity)) {
+                printProductGone(product);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Nothing changed: " + e.getMessage());
+            return;
+        }
+        awaitJournal();
         System.out.println("Product [" + product.getId() + "] quantity updated to '" + product.getQuantity() + "'.");
-        product.updateUpdatedAt();
     }
 
     private void increaseProductQuantity(Product product) {
@@ -549,9 +709,12 @@ public class InventoryUI {
 
         System.out.println();
 
-        product.increaseQuantity(amount);
+        if (!inventory.increaseProductQuantity(product, amount)) {
+            printProductGone(product);
+            return;
+        }
+        awaitJournal();
         System.out.println("Product [" + product.getId() + "] quantity updated to '" + product.getQuantity() + "'.");
-        product.updateUpdatedAt();
     }
 
     private void decreaseProductQuantity(Product product) {
@@ -567,9 +730,17 @@ public class InventoryUI {
 
         System.out.println();
 
-        product.decreaseQuantity(amount);
+        try {
+            if (!inventory.decreaseProductQuantity(product, amount)) {
+                printProductGone(product);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Nothing changed: " + e.getMessage());
+            return;
+        }
+        awaitJournal();
         System.out.println("Product [" + product.getId() + "] quantity updated to '" + product.getQuantity() + "'.");
-        product.updateUpdatedAt();
     }
     // endregion
 
@@ -641,6 +812,7 @@ public class InventoryUI {
 
         if (choice.equals("y")) {
             this.inventory.removeProduct(product.getId());
+            awaitJournal();
             return true;
         } else {
             System.out.println(printSeparator('-'));
@@ -716,7 +888,7 @@ public class InventoryUI {
     }
 
     private boolean isInventoryEmpty() {
-        if (inventory.getInventory().isEmpty() || inventory.getInventory() == null) {
+        if (inventory.getTotalProducts() == 0) {
             System.out.println("The inventory is empty.");
             System.out.println("Returning...");
             System.out.println(printSeparator('-'));
@@ -729,8 +901,10 @@ public class InventoryUI {
     private String displaySearchMenu() {
         System.out.println("[1] Search by ID");
         System.out.println("[2] Search by Name");
-        System.out.println("[3] Return to Main Menu");
-        System.out.println("[4] Exit Program");
+        System.out.println("[3] Query (e.g. name ~ milk AND quantity < 10 ORDER BY price DESC LIMIT 20)");
+        System.out.println("[4] Explain Query");
+        System.out.println("[5] Return to Main Menu");
+        System.out.println("[6] Exit Program");
         System.out.println(printSeparator('-'));
         System.out.print("Select an option: ");
         String choice = InventoryUtils.sanitizeString(scanner.nextLine());
@@ -745,10 +919,12 @@ public class InventoryUI {
         switch (displaySearchMenu()) {
             case "1" -> repeatSearchMenu = searchProductsById();
             case "2" -> repeatSearchMenu = searchProductsByName();
-            case "3" -> {
+            case "3" -> repeatSearchMenu = runQuery(false);
+            case "4" -> repeatSearchMenu = runQuery(true);
+            case "5" -> {
                 return MenuState.MAIN_MENU;
             }
-            case "4" -> {
+            case "6" -> {
                 return MenuState.EXIT_PROGRAM;
             }
             default -> {
@@ -793,6 +969,35 @@ public class InventoryUI {
         return false;
     }
 
+    private boolean runQuery(boolean explainOnly) {
+        System.out.print("Enter query (press Enter to return): ");
+        String input = scanner.nextLine().trim();
+
+        if (input.isEmpty()) {
+            return true;
+        }
+
+        Query query;
+        try {
+            query = Query.parse(input);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid query: " + e.getMessage());
+            pause();
+            return true;
+        }
+
+        if (explainOnly) {
+            System.out.println(printSeparator('-'));
+            System.out.print(inventory.explain(query));
+            System.out.println(printSeparator('-'));
+            pause();
+            return false;
+        }
+
+        displaySearchResults(inventory.query(query));
+        return false;
+    }
+
     private void displaySearchResults(List<Product> products) {
         if (products.isEmpty()) {
             System.out.println("\nNo products found");
@@ -803,6 +1008,10 @@ public class InventoryUI {
         }
 
         displayProductListTableFormat(products, "RESULTS");
+        if (inventoryService.isLoading()) {
+            System.out.println("Catalog still loading (" + inventoryService.getBackgroundLoad().describe()
+                    + ") - results may be incomplete");
+        }
         pause();
     }
 
@@ -824,21 +1033,56 @@ public class InventoryUI {
     private void displaySummary() {
         clearConsole();
         printHeader("INVENTORY SUMMARY");
-        System.out.println("Total Products: " + inventory.getTotalProducts());
-        System.out.println("Total Stock Quantity: " + inventory.getTotalStockQuantity());
-        System.out.println("Total Inventory Value: " + "$" + inventory.getTotalInventoryValue());
+        StockStatistics stats = inventory.getStatistics(StockStatistics.DEFAULT_LOW_STOCK_THRESHOLD);
+        System.out.println("Total Products: " + stats.getProductCount());
+        System.out.println("Total Stock Quantity: " + stats.getTotalQuantity());
+        System.out.println("Total Inventory Value: " + "$" + stats.getTotalValue());
+
+        if (stats.getProductCount() > 0) {
+            System.out.println(printSeparator('-'));
+            System.out.printf("Quantity: min %d | avg %.1f | max %d%n",
+                    stats.getMinQuantity(), stats.getAverageQuantity(), stats.getMaxQuantity());
+            System.out.println("Price: min $" + stats.getMinPrice() + " | avg $" + stats.getAveragePrice()
+                    + " | max $" + stats.getMaxPrice());
+            System.out.println("Low Stock (below " + stats.getLowStockThreshold() + "): " + stats.getLowStockCount() + " products");
+            System.out.println("Computed by: " + stats.getComputedBy());
+        }
+
+        if (inventory.getStore() instanceof PagedProductStore pagedStore) {
+            PageCache cache = pagedStore.getPageCache();
+            System.out.println(printSeparator('-'));
+            System.out.println("Page Cache: " + cache.getCapacity() + " pages");
+            System.out.printf("Hit Ratio: %.2f%% (%d hits / %d misses)%n", cache.getHitRatio() * 100, cache.getHits(), cache.getMisses());
+            System.out.println("Evictions: " + cache.getEvictions() + " | Write-backs: " + cache.getWriteBacks());
+        }
+
+        ResultCache<ResultKey, List<Product>> resultCache = inventory.getResultCache();
+        if (resultCache != null) {
+            System.out.println(printSeparator('-'));
+            System.out.println("Result Cache: " + resultCache.size() + " results (" + resultCache.getWeight() + " / "
+                    + resultCache.getMaxWeight() + " products)");
+            System.out.printf("Hit Ratio: %.2f%% (%d hits / %d misses)%n", resultCache.getHitRatio() * 100,
+                    resultCache.getHits(), resultCache.getMisses());
+            System.out.println("Invalidated: " + resultCache.getInvalidations() + " | Evictions: " + resultCache.getEvictions());
+        }
+
         System.out.println(printSeparator('-'));
-        System.out.println("[1] Return to Main Menu");
-        System.out.println("[2] Exit Program");
+        System.out.println("[1] Distribution Details");
+        System.out.println("[2] Return to Main Menu");
+        System.out.println("[3] Exit Program");
         System.out.println(printSeparator('-'));
         System.out.print("Select an option: ");
         String choice = InventoryUtils.sanitizeString(scanner.nextLine());
 
         switch (choice) {
             case "1" -> {
-                state = MenuState.MAIN_MENU;
+                displayDistribution();
+                state = MenuState.DISPLAY_SUMMARY;
             }
             case "2" -> {
+                state = MenuState.MAIN_MENU;
+            }
+            case "3" -> {
                 state = MenuState.EXIT_PROGRAM;
             }
             default -> {
@@ -848,11 +1092,432 @@ public class InventoryUI {
             }
         }
     }
+
+    // percentiles, distinct names and top products from the sketches (--stats)
+    private void displayDistribution() {
+        clearConsole();
+        printHeader("DISTRIBUTION DETAILS");
+
+        DistributionSummary summary = inventory.getDistributionSummary();
+        if (summary == null) {
+            System.out.println("Distribution sketches are not enabled (start with --stats).");
+            System.out.println(printSeparator('-'));
+            pause();
+            return;
+        }
+        if (summary.getProductCount() == 0) {
+            System.out.println("The inventory is empty.");
+            System.out.println(printSeparator('-'));
+            pause();
+            return;
+        }
+
+        double[] percentiles = summary.getPercentiles();
+        double[] prices = summary.getPricePercentiles();
+        double[] quantities = summary.getQuantityPercentiles();
+        System.out.printf("%-12s %14s %12s%n", "Percentile", "Price", "Quantity");
+        for (int i = 0; i < percentiles.length; i++) {
+            System.out.printf("%-12s %14s %12.0f%n", "p" + Math.round(percentiles[i] * 100),
+                    String.format("$%.2f", prices[i]), quantities[i]);
+        }
+
+        System.out.println(printSeparator('-'));
+        System.out.println("Distinct Product Names: ~" + summary.getDistinctNames());
+
+        System.out.println(printSeparator('-'));
+        System.out.println("Most Stocked Products:");
+        for (TopStock.Entry entry : summary.getMostStocked()) {
+            System.out.printf("  %-20s %,12d%n", entry.getId(), entry.getQuantity());
+        }
+
+        if (!summary.getMostChanged().isEmpty()) {
+            System.out.println(printSeparator('-'));
+            System.out.println("Most Frequently Updated (of " + summary.getChangeCount() + " updates):");
+            for (SpaceSaving.Entry entry : summary.getMostChanged()) {
+                System.out.printf("  %-20s %,12d%s%n", entry.getItem(), entry.getCount(),
+                        entry.getError() == 0 ? "" : " (+/- " + entry.getError() + ")");
+            }
+        }
+
+        System.out.println(printSeparator('-'));
+        System.out.printf("Sketch memory: %.1f KB | rebuilds: %d%n", summary.getMemoryBytes() / 1024.0, summary.getRebuilds());
+        System.out.println(printSeparator('-'));
+        pause();
+    }
+    // endregion
+
+    // region Merge Import
+    /* ------------------------------------- Merge Import ---------------------------------------- */
+    private void mergeImport() {
+        clearConsole();
+        printHeader("MERGE IMPORT");
+
+        System.out.print("Enter file path to merge (press Enter to return): ");
+        String filename = scanner.nextLine().trim();
+        if (filename.isEmpty()) {
+            state = MenuState.MAIN_MENU;
+            return;
+        }
+
+        System.out.print("Remove products that are missing from the file? (y/n): ");
+        boolean deleteMissing = InventoryUtils.sanitizeString(scanner.nextLine()).equals("y");
+
+        ImportDiff diff = inventoryService.diffProductsFromFile(filename, deleteMissing);
+        if (diff == null) {
+            pause();
+            state = MenuState.MAIN_MENU;
+            return;
+        }
+
+        System.out.println(printSeparator('-'));
+        System.out.println("Changes: " + diff.summary());
+
+        if (diff.isEmpty()) {
+            System.out.println("Inventory is already up to date.");
+            pause();
+            state = MenuState.MAIN_MENU;
+            return;
+        }
+
+        List<String> report = diff.getReport();
+        report.stream().limit(20).forEach(System.out::println);
+        if (report.size() > 20) {
+            System.out.println("... and " + (report.size() - 20) + " more");
+        }
+        System.out.println(printSeparator('-'));
+
+        if (getConfirmation()) {
+            inventoryService.applyDiff(diff);
+            awaitJournal();
+            System.out.println("\nMerge applied successfully!");
+        } else {
+            System.out.println("\nMerge cancelled.");
+        }
+
+        pause();
+        state = MenuState.MAIN_MENU;
+    }
+    // endregion
+
+    // region Stock by Location
+    /* ------------------------------------- Stock by Location ----------------------------------- */
+    private void locationStock() {
+        clearConsole();
+        printHeader("STOCK BY LOCATION");
+
+        LocationStock locations = inventory.getLocationStock();
+        if (locations == null) {
+            System.out.println("Multi-location stock is not enabled (start the program with --locations).");
+            System.out.println(printSeparator('-'));
+            pause();
+            state = MenuState.MAIN_MENU;
+            return;
+        }
+
+        System.out.printf("%-30s | %-12s | %-15s%n", "Location", "Units", "Value");
+        System.out.println(printSeparator('-'));
+        for (String location : locations.getLocations()) {
+            System.out.printf("%-30s | %-12d | $%-14s%n", location,
+                    locations.getLocationUnits(location), locations.getLocationValue(location).toPlainString());
+        }
+        System.out.println(printSeparator('-'));
+        System.out.printf("%-30s | %-12d | $%-14s%n", "TOTAL",
+                locations.getTotalUnits(), locations.getTotalValue().toPlainString());
+        System.out.println(printSeparator('-'));
+
+        System.out.println("[1] View Product Stock by Location");
+        System.out.println("[2] Transfer Stock");
+        System.out.println("[3] Receive / Remove Stock at Location");
+        System.out.println("[4] Add Location");
+        System.out.println("[5] Return to Main Menu");
+        System.out.println("[6] Exit Program");
+        System.out.println(printSeparator('-'));
+        System.out.print("Select an option: ");
+        String choice = InventoryUtils.sanitizeString(scanner.nextLine());
+        System.out.println(printSeparator('-'));
+
+        switch (choice) {
+            case "1" -> viewProductLocations(locations);
+            case "2" -> transferStock(locations);
+            case "3" -> adjustStockAtLocation(locations);
+            case "4" -> addLocation(locations);
+            case "5" -> state = MenuState.MAIN_MENU;
+            case "6" -> state = MenuState.EXIT_PROGRAM;
+            default -> {
+                System.out.println("\nInvalid option - Returning to Main Menu...");
+                state = MenuState.MAIN_MENU;
+                pause();
+            }
+        }
+    }
+
+    private Product promptForExistingProduct() {
+        System.out.print("Enter Product ID (press Enter to return): ");
+        String id = InventoryUtils.sanitizeString(scanner.nextLine());
+        if (id.isEmpty()) {
+            return null;
+        }
+
+        Product product = inventory.searchProductById(id);
+        if (product == null) {
+            System.out.println("Product not found!");
+            pause();
+        }
+        return product;
+    }
+
+    private String promptForLocation(LocationStock locations, String prompt) {
+        System.out.print(prompt);
+        String location = InventoryUtils.sanitizeString(scanner.nextLine());
+        if (location.isEmpty()) {
+            return null;
+        }
+
+        if (!locations.hasLocation(location)) {
+            System.out.println("Location '" + location + "' does not exist!");
+            pause();
+            return null;
+        }
+        return location;
+    }
+
+    private void viewProductLocations(LocationStock locations) {
+        Product product = promptForExistingProduct();
+        if (product == null) {
+            return;
+        }
+
+        printHeader("[" + product.getId() + "] " + product.getName() + " - Total Qty: " + product.getQuantity());
+        for (Map.Entry<String, Integer> entry : locations.getStockByLocation(product.getId()).entrySet()) {
+            System.out.printf("%-30s | %-12d%n", entry.getKey(), entry.getValue());
+        }
+        System.out.println(printSeparator('-'));
+        pause();
+    }
+
+    private void transferStock(LocationStock locations) {
+        Product product = promptForExistingProduct();
+        if (product == null) {
+            return;
+        }
+
+        String from = promptForLocation(locations, "Transfer from location (press Enter to return): ");
+        if (from == null) {
+            return;
+        }
+
+        String to = promptForLocation(locations, "Transfer to location (press Enter to return): ");
+        if (to == null) {
+            return;
+        }
+
+        System.out.print("Enter quantity to transfer (press Enter to return): ");
+        int quantity = readIntInput("quantity");
+        if (quantity == -1 || !getConfirmation()) {
+            return;
+        }
+
+        if (inventory.transferStock(product.getId(), from, to, quantity)) {
+            awaitJournal();
+            System.out.println("\nTransferred " + quantity + " of [" + product.getId() + "] from '" + from + "' to '" + to + "'.");
+        } else {
+            System.out.println("\nTransfer failed - '" + from + "' only has " + locations.getStock(product.getId(), from) + " in stock.");
+        }
+        pause();
+    }
+
+    private void adjustStockAtLocation(LocationStock locations) {
+        Product product = promptForExistingProduct();
+        if (product == null) {
+            return;
+        }
+
+        String location = promptForLocation(locations, "Enter location (press Enter to return): ");
+        if (location == null) {
+            return;
+        }
+
+        System.out.print("Enter quantity change, e.g. 10 or -5 (press Enter to return): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return;
+        }
+
+        int delta;
+        try {
+            delta = Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid quantity!");
+            pause();
+            return;
+        }
+
+        if (!getConfirmation()) {
+            return;
+        }
+
+        try {
+            if (inventory.adjustStockAt(product, location, delta)) {
+                awaitJournal();
+                System.out.println("\n'" + location + "' now holds " + locations.getStock(product.getId(), location)
+                        + " of [" + product.getId() + "] (total " + product.getQuantity() + ").");
+            } else {
+                System.out.println("\nNot enough stock at '" + location + "'.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("\nNothing changed: " + e.getMessage());
+        }
+        pause();
+    }
+
+    private void addLocation(LocationStock locations) {
+        System.out.print("Enter new location name (press Enter to return): ");
+        String location = InventoryUtils.sanitizeString(scanner.nextLine());
+        if (location.isEmpty()) {
+            return;
+        }
+
+        if (locations.hasLocation(location)) {
+            System.out.println("Location '" + location + "' already exists!");
+        } else {
+            locations.addLocation(location);
+            System.out.println("Location '" + location + "' added.");
+        }
+        pause();
+    }
+    // endregion
+
+    // region Facet Filter
+    /* ------------------------------------- Facet Filter ---------------------------------------- */
+    private void facetFilter() {
+        clearConsole();
+        printHeader("FILTER BY CATEGORY / BRAND / TAG");
+
+        // built on first use, then kept current by the inventory
+        FacetIndex facets = inventory.enableFacets();
+        printFacetCounts(facets, FacetQuery.all());
+
+        System.out.println("[1] Filter Products");
+        System.out.println("[2] Edit Product Attributes");
+        System.out.println("[3] Return to Main Menu");
+        System.out.println("[4] Exit Program");
+        System.out.println(printSeparator('-'));
+        System.out.print("Select an option: ");
+        String choice = InventoryUtils.sanitizeString(scanner.nextLine());
+        System.out.println(printSeparator('-'));
+
+        switch (choice) {
+            case "1" -> filterProducts(facets);
+            case "2" -> editProductAttributes();
+            case "3" -> state = MenuState.MAIN_MENU;
+            case "4" -> state = MenuState.EXIT_PROGRAM;
+            default -> {
+                System.out.println("\nInvalid option - Returning to Main Menu...");
+                state = MenuState.MAIN_MENU;
+                pause();
+            }
+        }
+    }
+
+    private void printFacetCounts(FacetIndex facets, FacetQuery query) {
+        for (String attribute : facets.getAttributeNames()) {
+            Map<String, Long> counts = inventory.getFacetCounts(query, attribute);
+            StringBuilder line = new StringBuilder();
+            counts.entrySet().stream().limit(10).forEach(entry ->
+                    line.append(line.length() == 0 ? "" : ", ").append(entry.getKey()).append(" (").append(entry.getValue()).append(")"));
+            if (counts.size() > 10) {
+                line.append(", ...");
+            }
+            System.out.println(attribute + ": " + line);
+        }
+
+        if (!facets.getAttributeNames().isEmpty()) {
+            System.out.println(printSeparator('-'));
+        }
+    }
+
+    private void filterProducts(FacetIndex facets) {
+        System.out.println("e.g.  dairy AND brand=acme AND NOT tag=discontinued");
+        System.out.print("Enter filter (press Enter to return): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return;
+        }
+
+        FacetQuery query;
+        try {
+            query = FacetQuery.parse(input);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid filter: " + e.getMessage());
+            pause();
+            return;
+        }
+
+        List<Product> matches = inventory.facetSearch(query);
+        displayProductListTableFormat(matches.stream().limit(50).toList(), matches.size() + " product(s) match " + query);
+        if (matches.size() > 50) {
+            System.out.println("... and " + (matches.size() - 50) + " more");
+            System.out.println(printSeparator('-'));
+        }
+        printFacetCounts(facets, query);
+        pause();
+    }
+
+    private void editProductAttributes() {
+        Product product = promptForExistingProduct();
+        if (product == null) {
+            return;
+        }
+
+        System.out.println("Current attributes: " + InventoryUtils.formatAttributes(product.getAttributes()));
+        System.out.print("Add (+name=value) or remove (-name=value) an attribute (press Enter to return): ");
+        String input = scanner.nextLine().trim();
+        int separator = input.indexOf('=');
+        if (input.length() < 2 || separator < 0 || (input.charAt(0) != '+' && input.charAt(0) != '-')) {
+            if (!input.isEmpty()) {
+                System.out.println("Invalid input - expected e.g. +category=dairy");
+                pause();
+            }
+            return;
+        }
+
+        String name = InventoryUtils.sanitizeString(input.substring(1, separator));
+        String value = InventoryUtils.sanitizeString(input.substring(separator + 1));
+        if (name.isEmpty() || value.isEmpty()) {
+            System.out.println("Attribute name and value must not be empty!");
+            pause();
+            return;
+        }
+
+        boolean saved = input.charAt(0) == '+'
+                ? inventory.addProductAttribute(product, name, value)
+                : inventory.removeProductAttribute(product, name, value);
+        if (!saved) {
+            printProductGone(product);
+            pause();
+            return;
+        }
+        awaitJournal();
+        System.out.println("Product [" + product.getId() + "] attributes: " + InventoryUtils.formatAttributes(product.getAttributes()));
+        pause();
+    }
     // endregion
 
     //region Utility Methods
     /* ------------------------------------- Utility Methods ------------------------------------- */
 
+    // the product was removed (e.g. by a reload) while it was being edited
+    private void printProductGone(Product product) {
+        System.out.println("Product [" + product.getId() + "] no longer exists - nothing was changed.");
+    }
+
+    // with --journal, waits until the change is durable before it is reported as done
+    private void awaitJournal() {
+        if (!inventoryService.awaitDurable()) {
+            System.out.println("Warning: The change was made but could not be written to the journal - save before exiting.");
+        }
+    }
+
     private boolean getConfirmation() {
         System.out.print("Are you sure (y/n): ");
         return InventoryUtils.sanitizeString(scanner.nextLine()).equals("y");
@@ -881,7 +1546,53 @@ public class InventoryUI {
         }
     }
 
+    // screens that list, count, sort or bulk-change the whole catalog, or could clash with a product not read yet
+    private static boolean needsFullCatalog(MenuState state) {
+        return state == MenuState.VIEW_PRODUCTS || state == MenuState.ADD_PRODUCT || state == MenuState.DISPLAY_SUMMARY
+                || state == MenuState.MERGE_IMPORT || state == MenuState.LOCATION_STOCK || state == MenuState.FACET_FILTER;
+    }
+
+    // returns true once the whole catalog is loaded, false if the user would rather not wait
+    private boolean awaitFullCatalog() {
+        if (!inventoryService.isLoading()) {
+            return true;
+        }
+
+        clearConsole();
+        printHeader("CATALOG STILL LOADING");
+        System.out.println("This needs the full catalog - loaded so far: " + inventoryService.getBackgroundLoad().describe());
+        System.out.print("Wait for the load to finish (y/n): ");
+        if (!InventoryUtils.sanitizeString(scanner.nextLine()).equals("y")) {
+            return false;
+        }
+
+        waitForLoad();
+        return true;
+    }
+
+    // shows progress on one line until the background load is done
+    private void waitForLoad() {
+        BackgroundLoad load = inventoryService.getBackgroundLoad();
+        if (load == null) {
+            return;
+        }
+
+        try {
+            while (!load.awaitCompletion(250, TimeUnit.MILLISECONDS)) {
+                System.out.print("\rLoading: " + load.describe() + "   ");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("\rLoaded: " + load.describe() + "   ");
+    }
+
     private void exitProgram() {
+        if (inventoryService.isLoading()) {
+            System.out.println("\nWaiting for the catalog to finish loading before saving...");
+            waitForLoad();
+        }
+
         System.out.println("\nSaving data...");
         boolean success = inventoryService.saveProductsToFile();
 
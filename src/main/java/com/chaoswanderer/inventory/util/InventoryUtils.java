@@ -2,6 +2,10 @@ package com.chaoswanderer.inventory.util;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class InventoryUtils {
     private InventoryUtils() {
@@ -17,6 +21,10 @@ public class InventoryUtils {
             return "";
         }
 
+        if (isAlreadySanitized(string)) {
+            return string.toLowerCase();
+        }
+
         return string
                 .trim()
                 .replaceAll("\\s+", " ")
@@ -30,9 +38,127 @@ public class InventoryUtils {
             return "";
         }
 
+        if (isAlreadySanitized(string)) {
+            return string;
+        }
+
         return string
                 .trim()
                 .replaceAll("\\s+", " ")
                 .replaceAll("[^a-zA-Z0-9\\s\\-\\[\\]()]", "");
     }
+
+    // returns the ID as a long if it is a canonical number (digits only, no leading zeros), otherwise -1
+    // "007" and "7" are different IDs, so only the canonical spelling can be stored as a number
+    public static long parseNumericId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 18) {
+            return -1;
+        }
+
+        if (id.length() > 1 && id.charAt(0) == '0') {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    // 64-bit FNV-1a over the mutable fields, used to spot changed rows without comparing field by field
+    public static long contentHash(String name, int quantity, BigDecimal price, String attributes) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+        }
+
+        hash = (hash ^ quantity) * 0x100000001b3L;
+        // 42.2 and 42.20 are the same price
+        BigDecimal normalized = price.stripTrailingZeros();
+        hash = (hash ^ normalized.unscaledValue().hashCode()) * 0x100000001b3L;
+        hash = (hash ^ normalized.scale()) * 0x100000001b3L;
+
+        for (int i = 0; i < attributes.length(); i++) {
+            hash = (hash ^ attributes.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // attributes as one field: "brand=acme;tag=local|organic" (names and values are sanitized,
+    // so the separators can never appear inside them); sorted, so equal attributes give equal text
+    public static String formatAttributes(Map<String, Set<String>> attributes) {
+        if (attributes.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Set<String>> entry : new TreeMap<>(attributes).entrySet()) {
+            if (text.length() > 0) {
+                text.append(';');
+            }
+            text.append(entry.getKey()).append('=').append(String.join("|", new TreeSet<>(entry.getValue())));
+        }
+        return text.toString();
+    }
+
+    public static Map<String, Set<String>> parseAttributes(String text) {
+        Map<String, Set<String>> attributes = new TreeMap<>();
+        if (text == null || text.isBlank()) {
+            return attributes;
+        }
+
+        for (String pair : text.split(";")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+
+            String name = sanitizeString(pair.substring(0, separator));
+            for (String value : pair.substring(separator + 1).split("\\|")) {
+                String sanitized = sanitizeString(value);
+                if (!name.isEmpty() && !sanitized.isEmpty()) {
+                    attributes.computeIfAbsent(name, key -> new TreeSet<>()).add(sanitized);
+                }
+            }
+        }
+        return attributes;
+    }
+
+    // fast path for the sanitizers: most input (e.g. our own CSV files) is already clean,
+    // and the regex passes dominate load time on big files
+    private static boolean isAlreadySanitized(String string) {
+        int length = string.length();
+        if (length == 0) {
+            return true;
+        }
+
+        if (string.charAt(0) == ' ' || string.charAt(length - 1) == ' ') {
+            return false;
+        }
+
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+
+            if (c == ' ') {
+                if (previous == ' ') {
+                    return false;
+                }
+            } else if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '[' || c == ']' || c == '(' || c == ')')) {
+                return false;
+            }
+
+            previous = c;
+        }
+
+        return true;
+    }
 }
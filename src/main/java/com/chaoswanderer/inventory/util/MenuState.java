@@ -8,5 +8,8 @@ public enum MenuState {
     REMOVE_PRODUCT,
     SEARCH_PRODUCT,
     DISPLAY_SUMMARY,
+    MERGE_IMPORT,
+    LOCATION_STOCK,
+    FACET_FILTER,
     EXIT_PROGRAM;
 }
@@ -0,0 +1,101 @@
+package com.chaoswanderer.inventory.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ResultCacheTest {
+
+    // the way Inventory uses it: look up, and compute and put on a miss
+    private static String lookup(ResultCache<String, String> cache, String key, long generation) {
+        String value = cache.get(key, generation);
+        if (value == null) {
+            value = "value of " + key;
+            cache.put(key, value, 1, generation);
+        }
+        return value;
+    }
+
+    @Test
+    public void entriesAreServedOnlyAtTheirGeneration() {
+        ResultCache<String, String> cache = new ResultCache<>(100, 100);
+        cache.put("a", "A", 1, 5);
+
+        assertEquals("A", cache.get("a", 5));
+        assertNull(cache.get("a", 6));
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(0, cache.size()); // a stale entry is dropped, not kept for an older generation
+        assertNull(cache.get("a", 5));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void weightStaysWithinTheLimit() {
+        ResultCache<String, String> cache = new ResultCache<>(50, 100);
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            String key = "k" + random.nextInt(500);
+            if (cache.get(key, 0) == null) {
+                cache.put(key, key, 1 + random.nextInt(5), 0);
+            }
+            assertTrue(cache.getWeight() <= 50, "weight " + cache.getWeight());
+        }
+        assertTrue(cache.getEvictions() > 0);
+
+        cache.put("huge", "x", 51, 0);
+        assertEquals(1, cache.getRejections());
+        assertNull(cache.get("huge", 0));
+
+        // re-putting a key replaces its value and weight
+        cache.put("k1", "new", 3, 0);
+        assertEquals("new", cache.get("k1", 0));
+        assertTrue(cache.getWeight() <= 50);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    // entries hit again are protected, and one-off keys are not admitted over more frequent ones
+    @Test
+    public void frequentEntriesSurviveAScan() {
+        ResultCache<String, String> cache = new ResultCache<>(200, 1_000);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                lookup(cache, "hot" + i, 0);
+            }
+        }
+        for (int i = 0; i < 20_000; i++) {
+            lookup(cache, "scan" + i, 0);
+        }
+
+        int kept = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("hot" + i, 0) != null) {
+                kept++;
+            }
+        }
+        assertTrue(kept >= 95, kept + " of 100 hot entries kept");
+    }
+
+    // a newly put entry sits in the window and is found right away, even in a full cache
+    @Test
+    public void newEntriesAreFoundRightAway() {
+        ResultCache<String, String> cache = new ResultCache<>(100, 100);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("k" + i, "v" + i, 1, 0);
+            assertEquals("v" + i, cache.get("k" + i, 0));
+        }
+    }
+
+    @Test
+    public void rejectsNonPositiveWeightLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new ResultCache<String, String>(0, 10));
+    }
+}
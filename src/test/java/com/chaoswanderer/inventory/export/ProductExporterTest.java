@@ -0,0 +1,437 @@
+package com.chaoswanderer.inventory.export;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.service.InventoryService;
+import com.chaoswanderer.inventory.util.InventoryUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ProductExporterTest {
+
+    @TempDir
+    Path directory;
+
+    // n products with a mix of prices, timestamps and attributes; names the data file accepts
+    private static Inventory inventory(int count) {
+        Random random = new Random(5);
+        Inventory inventory = new Inventory();
+        LocalDateTime created = LocalDateTime.of(2026, 1, 2, 3, 4, 0);
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = new BigDecimal(BigInteger.valueOf(random.nextInt(100_000)), i % 4);
+            Product product = new Product("p" + i, "Product (" + i + ") - large", random.nextInt(500), price,
+                    created.plusSeconds(i).plusNanos(i % 3 == 0 ? 0 : 1_000L * i), created.plusDays(i));
+            if (i % 3 == 0) {
+                product.addAttribute("brand", "acme");
+                product.addAttribute("tag", "organic");
+                product.addAttribute("tag", "local");
+            }
+            inventory.addProduct(product);
+        }
+        return inventory;
+    }
+
+    private static List<Product> inOrder(Inventory inventory) {
+        List<Product> products = new ArrayList<>();
+        inventory.forEachProduct(products::add);
+        return products;
+    }
+
+    private Path export(Inventory inventory, String name, ExportFormat format, boolean gzip, int threads, int rows)
+            throws Exception {
+        Path path = directory.resolve(name);
+        ExportResult result = new ProductExporter(inventory).withThreads(threads).withPartitionRows(rows)
+                .export(path, format, gzip);
+        assertEquals(inventory.getTotalProducts(), result.getRows());
+        assertFalse(Files.exists(directory.resolve(name + ".tmp")));
+        return path;
+    }
+
+    private static String plain(BigDecimal price) {
+        ChunkedBuffer out = new ChunkedBuffer(new ChunkedBuffer.Pool());
+        PartitionEncoder.putPlain(out, price);
+        return new String(bytes(out.finish()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(List<ByteBuffer> chunks) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : chunks) {
+            byte[] array = new byte[chunk.remaining()];
+            chunk.duplicate().get(array);
+            bytes.write(array, 0, array.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    // ------------------- CSV and JSON Lines -------------------
+    // the CSV export is the data file's format, so it loads back into an equal catalog
+    @Test
+    public void csvLoadsBackAsTheSameCatalog() throws Exception {
+        Inventory inventory = inventory(50);
+        Path path = export(inventory, "products.csv", ExportFormat.CSV, false, 3, 7);
+
+        Inventory loaded = new Inventory();
+        assertTrue(new InventoryService(loaded, path.toString()).addProductsFromFile(path.toString()));
+        assertEquals(50, loaded.getTotalProducts());
+        for (Product product : inventory.getAllProducts()) {
+            Product copy = loaded.searchProductById(product.getId());
+            assertEquals(product.getName(), copy.getName());
+            assertEquals(product.getQuantity(), copy.getQuantity());
+            // the data file keeps prices in cents, so they load as a data file row would
+            assertEquals(InventoryUtils.toPrice(product.getPrice().toPlainString()), copy.getPrice(), product.getId());
+            assertEquals(product.getAttributes(), copy.getAttributes());
+        }
+
+        // attributes in the data file's own sorted k=v|v;k2=v form
+        List<String> lines = Files.readAllLines(path);
+        assertTrue(lines.contains("p0,Product (0) - large," + inventory.searchProductById("p0").getQuantity() + ","
+                + inventory.searchProductById("p0").getPrice().toPlainString() + ",brand=acme;tag=local|organic"));
+        String p3 = lines.stream().filter(line -> line.startsWith("p3,")).findFirst().orElseThrow();
+        assertEquals(InventoryUtils.formatAttributes(inventory.searchProductById("p3").getAttributes()), p3.split(",")[4]);
+    }
+
+    // JSON strings escape quotes, backslashes and control characters and keep everything else as UTF-8
+    @Test
+    public void jsonLinesReadBackWithEscapes() throws Exception {
+        Inventory inventory = inventory(20);
+        Product tricky = new Product("q1", "Say \"hi\" \\ to\nthe\tcrème \u0001 🍞", 3,
+                new BigDecimal("-0.050"), LocalDateTime.of(2026, 5, 6, 7, 8, 9, 123_000_000), null);
+        tricky.addAttribute("note", "a \"quoted\" value");
+        tricky.addAttribute("k\\ey", "line\r\nbreak");
+        inventory.addProduct(tricky);
+        Path path = export(inventory, "products.jsonl", ExportFormat.JSON_LINES, false, 2, 4);
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        List<Product> products = inOrder(inventory);
+        assertEquals(products.size(), lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Product product = products.get(i);
+            Map<?, ?> row = (Map<?, ?>) new Json(lines.get(i)).read();
+            assertEquals(product.getId(), row.get("id"));
+            assertEquals(product.getName(), row.get("name"));
+            assertEquals(new BigDecimal(product.getQuantity()), row.get("quantity"));
+            assertEquals(product.getPrice(), row.get("price")); // same digits and scale
+            assertEquals(product.getCreatedAt(), LocalDateTime.parse((String) row.get("createdAt")));
+            if (product.getUpdatedAt() == null) {
+                assertNull(row.get("updatedAt"));
+            } else {
+                assertEquals(product.getUpdatedAt(), LocalDateTime.parse((String) row.get("updatedAt")));
+            }
+
+            Map<String, Set<String>> attributes = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) row.get("attributes")).entrySet()) {
+                Set<String> values = new TreeSet<>();
+                for (Object value : (List<?>) entry.getValue()) {
+                    values.add((String) value);
+                }
+                attributes.put((String) entry.getKey(), values);
+            }
+            assertEquals(product.getAttributes(), attributes);
+        }
+
+        String line = lines.get(products.indexOf(tricky));
+        assertTrue(line.contains("\"name\":\"Say \\\"hi\\\" \\\\ to\\nthe\\tcrème \\u0001 🍞\""), line);
+        assertTrue(line.contains("\"createdAt\":\"2026-05-06T07:08:09.123\""), line);
+    }
+
+    // just enough JSON to read an export line back: objects, arrays, strings, numbers and null
+    private static final class Json {
+        private final String text;
+        private int at;
+
+        Json(String text) {
+            this.text = text;
+        }
+
+        Object read() {
+            char c = text.charAt(at);
+            if (c == '{') {
+                Map<String, Object> object = new LinkedHashMap<>();
+                at++;
+                if (text.charAt(at) != '}') {
+                    do {
+                        String key = string();
+                        expect(':');
+                        object.put(key, read());
+                    } while (accept(','));
+                }
+                expect('}');
+                return object;
+            }
+            if (c == '[') {
+                List<Object> array = new ArrayList<>();
+                at++;
+                if (text.charAt(at) != ']') {
+                    do {
+                        array.add(read());
+                    } while (accept(','));
+                }
+                expect(']');
+                return array;
+            }
+            if (c == '"') {
+                return string();
+            }
+            if (text.startsWith("null", at)) {
+                at += 4;
+                return null;
+            }
+            int start = at;
+            while (at < text.length() && "-0123456789.".indexOf(text.charAt(at)) >= 0) {
+                at++;
+            }
+            return new BigDecimal(text.substring(start, at));
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            char c;
+            while ((c = text.charAt(at++)) != '"') {
+                assertTrue(c >= 0x20, "unescaped control character in " + text);
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escape = text.charAt(at++);
+                switch (escape) {
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        value.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                        at += 4;
+                    }
+                    default -> value.append(escape);
+                }
+            }
+            return value.toString();
+        }
+
+        private boolean accept(char c) {
+            if (text.charAt(at) == c) {
+                at++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            assertEquals(c, text.charAt(at++), text);
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Prices -------------------
+    @Test
+    public void plainPricesMatchToPlainString() {
+        String[] cases = {"0", "0.00", "-0.05", "12.50", "-12.50", "1.005", "-3.14159", "0.000000001",
+                "1E+3", "-1E+3", "0E+3", "5E-20", "123456789012345678", "-999999999999999999.99",
+                "1234567890123456789", "0.1234567890123456789", "1E+20"};
+        for (String text : cases) {
+            BigDecimal price = new BigDecimal(text);
+            assertEquals(price.toPlainString(), plain(price), text);
+        }
+
+        Random random = new Random(9);
+        for (int i = 0; i < 5_000; i++) {
+            long unscaled = random.nextLong() % (long) Math.pow(10, 1 + random.nextInt(18));
+            BigDecimal price = new BigDecimal(BigInteger.valueOf(unscaled), random.nextInt(25) - 5);
+            assertEquals(price.toPlainString(), plain(price), price.toString());
+        }
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Columnar -------------------
+    @Test
+    public void columnarLayoutReadsBack() throws Exception {
+        Inventory inventory = inventory(10);
+        Product undated = new Product("u1", "No dates", 1, new BigDecimal("7"), null, null);
+        inventory.addProduct(undated);
+        Path path = export(inventory, "products.col", ExportFormat.COLUMNAR, false, 2, 4);
+        List<Product> products = inOrder(inventory);
+
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        assertMagic(in);
+        assertEquals(ColumnarEncoder.VERSION, in.getInt());
+        assertEquals(7, in.getInt());
+        for (int c = 0; c < 7; c++) {
+            assertEquals(ColumnarEncoder.COLUMN_TYPES[c], in.get());
+            byte[] name = new byte[in.get()];
+            in.get(name);
+            assertEquals(ColumnarEncoder.COLUMN_NAMES[c], new String(name, StandardCharsets.US_ASCII));
+        }
+
+        List<Integer> groups = new ArrayList<>();
+        int row = 0;
+        int count;
+        while ((count = in.getInt()) != 0) {
+            groups.add(count);
+            List<Product> group = products.subList(row, row + count);
+            row += count;
+
+            List<String> ids = strings(in, count);
+            List<String> names = strings(in, count);
+            assertEquals(4L * count, in.getLong());
+            int[] quantities = new int[count];
+            for (int i = 0; i < count; i++) {
+                quantities[i] = in.getInt();
+            }
+            assertEquals(4 + 8L * count, in.getLong());
+            int scale = in.getInt();
+            for (int i = 0; i < count; i++) {
+                Product product = group.get(i);
+                assertEquals(product.getId(), ids.get(i));
+                assertEquals(product.getName(), names.get(i));
+                assertEquals(product.getQuantity(), quantities[i]);
+                // the group's widest scale, so every price is exact
+                assertEquals(0, product.getPrice().compareTo(BigDecimal.valueOf(in.getLong(), scale)), product.getId());
+            }
+            List<String> attributes = strings(in, count);
+            for (int c = 0; c < 2; c++) {
+                assertEquals(8L * count, in.getLong());
+                for (int i = 0; i < count; i++) {
+                    LocalDateTime time = c == 0 ? group.get(i).getCreatedAt() : group.get(i).getUpdatedAt();
+                    long micros = in.getLong();
+                    assertEquals(time == null ? Long.MIN_VALUE
+                            : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000, micros);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                assertEquals(InventoryUtils.formatAttributes(group.get(i).getAttributes()), attributes.get(i));
+            }
+        }
+
+        assertEquals(List.of(4, 4, 3), groups);
+        assertEquals(11, in.getLong());
+        assertEquals(3, in.getInt());
+        assertMagic(in);
+        assertFalse(in.hasRemaining());
+    }
+
+    // a STRING column: its byte length, the row lengths, then the bytes
+    private static List<String> strings(ByteBuffer in, int count) {
+        long length = in.getLong();
+        int start = in.position();
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = in.getInt();
+        }
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] value = new byte[lengths[i]];
+            in.get(value);
+            values.add(new String(value, StandardCharsets.UTF_8));
+        }
+        assertEquals(length, in.position() - start);
+        return values;
+    }
+
+    private static void assertMagic(ByteBuffer in) {
+        byte[] magic = new byte[8];
+        in.get(magic);
+        assertArrayEquals(ColumnarEncoder.MAGIC, magic);
+    }
+    // ------------------------------------------------------
+
+    // ------------------- Gzip and ordering -------------------
+    // one gzip member per partition (and for the header and footer), read back as one stream
+    @Test
+    public void gzipMembersReadBackAsOneStream() throws Exception {
+        Inventory inventory = inventory(23);
+        Path plain = export(inventory, "products.csv", ExportFormat.CSV, false, 2, 5);
+        Path gzip = export(inventory, "products.csv.gz", ExportFormat.CSV, true, 2, 5);
+
+        byte[] unzipped;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzip))) {
+            unzipped = in.readAllBytes();
+        }
+        assertArrayEquals(Files.readAllBytes(plain), unzipped);
+        assertEquals(1 + 5 + 1, countMembers(Files.readAllBytes(gzip)));
+
+        Path columnar = export(inventory, "products.col", ExportFormat.COLUMNAR, false, 3, 4);
+        Path columnarGzip = export(inventory, "products.col.gz", ExportFormat.COLUMNAR, true, 3, 4);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(columnarGzip))) {
+            assertArrayEquals(Files.readAllBytes(columnar), in.readAllBytes());
+        }
+    }
+
+    private static int countMembers(byte[] file) throws Exception {
+        int members = 0;
+        int offset = 0;
+        byte[] scratch = new byte[1 << 16];
+        while (offset < file.length) {
+            assertEquals(0x1f, file[offset] & 0xff);
+            assertEquals(0x8b, file[offset + 1] & 0xff);
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(file, offset + 10, file.length - offset - 10);
+                while (!inflater.finished()) {
+                    inflater.inflate(scratch);
+                }
+                offset = file.length - inflater.getRemaining() + 8; // past the CRC and length trailer
+            } finally {
+                inflater.end();
+            }
+            members++;
+        }
+        assertEquals(file.length, offset);
+        return members;
+    }
+
+    // far more partitions than the 2 x threads allowed in flight still come out in catalog order
+    @Test
+    public void partitionsAreWrittenInOrder() throws Exception {
+        Inventory inventory = inventory(500);
+        List<String> expected = new ArrayList<>();
+        for (Product product : inOrder(inventory)) {
+            expected.add(product.getId());
+        }
+
+        for (boolean gzip : new boolean[]{false, true}) {
+            Path path = export(inventory, "ordered.csv" + (gzip ? ".gz" : ""), ExportFormat.CSV, gzip, 3, gzip ? 7 : 1);
+            byte[] bytes = Files.readAllBytes(path);
+            if (gzip) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+                    bytes = in.readAllBytes();
+                }
+            }
+
+            List<String> ids = new ArrayList<>();
+            for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+                ids.add(line.substring(0, line.indexOf(',')));
+            }
+            assertEquals(expected, ids);
+        }
+    }
+    // ------------------------------------------------------
+}
@@ -0,0 +1,149 @@
+package com.chaoswanderer.inventory.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ProductHistoryTest {
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static Product product(String name, int quantity, String price) {
+        return new Product("p1", name, quantity, new BigDecimal(price));
+    }
+
+    private static void assertSameState(Product expected, Product actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(expected.getPrice(), actual.getPrice()); // scale included
+    }
+
+    // many versions (several keyframe intervals) with every kind of field change, each decoded back exactly
+    @Test
+    public void everyVersionRoundTrips() {
+        Random random = new Random(1);
+        ProductHistory history = new ProductHistory("p1", CREATED);
+        List<Product> versions = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        long time = 1_000;
+
+        Product current = product("Milk", 10, "1.99");
+        for (int i = 0; i < 200; i++) {
+            switch (random.nextInt(4)) {
+                case 0 -> current = product("Milk " + random.nextInt(1000), current.getQuantity(), current.getPrice().toPlainString());
+                case 1 -> current = product(current.getName(), random.nextInt(100_000) - 50_000, current.getPrice().toPlainString());
+                case 2 -> current = product(current.getName(), current.getQuantity(), random.nextInt(10_000) + "." + random.nextInt(10));
+                default -> current = product(current.getName(), current.getQuantity(), random.nextInt(10_000) + ".0" + random.nextInt(10) + "5");
+            }
+            time += 1 + random.nextInt(5_000);
+            history.record(current, time);
+            versions.add(current);
+            times.add(time);
+        }
+
+        assertEquals(200, history.getVersionCount());
+        for (int i = 0; i < versions.size(); i++) {
+            assertSameState(versions.get(i), history.stateAt(times.get(i)));
+            // between two versions the earlier one is in force
+            if (i + 1 < versions.size() && times.get(i + 1) > times.get(i) + 1) {
+                assertSameState(versions.get(i), history.stateAt(times.get(i) + 1));
+            }
+        }
+        assertNull(history.stateAt(times.get(0) - 1));
+        assertEquals(CREATED, history.stateAt(times.get(0)).getCreatedAt());
+    }
+
+    @Test
+    public void removalAndReAddAreVisibleAsOf() {
+        ProductHistory history = new ProductHistory("p1", CREATED);
+        history.record(product("Milk", 10, "1.99"), 100);
+        history.recordRemoval(200);
+        history.record(product("Oat milk", 4, "2.49"), 300);
+
+        assertEquals(10, history.stateAt(150).getQuantity());
+        assertNull(history.stateAt(250));
+        assertEquals("Oat milk", history.stateAt(300).getName());
+        assertFalse(history.isRemoved());
+
+        history.recordRemoval(400);
+        assertTrue(history.isRemoved());
+        assertNull(history.stateAt(Long.MAX_VALUE));
+    }
+
+    // times never run backwards, even if the clock does
+    @Test
+    public void earlierTimesAreClampedToTheLastVersion() {
+        ProductHistory history = new ProductHistory("p1", CREATED);
+        history.record(product("Milk", 10, "1.99"), 500);
+        history.record(product("Milk", 8, "1.99"), 400);
+
+        assertEquals(8, history.stateAt(500).getQuantity());
+    }
+
+    @Test
+    public void compactionKeepsTheStateInForceAtTheHorizon() {
+        ProductHistory history = new ProductHistory("p1", CREATED);
+        for (int i = 0; i < 50; i++) {
+            history.record(product("Milk", i, "1.99"), 100L * (i + 1));
+        }
+
+        assertTrue(history.compact(2_050, 1_000));
+        assertEquals(19, history.stateAt(2_050).getQuantity());
+        assertEquals(35, history.stateAt(3_600).getQuantity());
+        assertEquals(31, history.getVersionCount());
+
+        // the cap keeps the newest versions; the oldest kept stands in for everything before it
+        assertTrue(history.compact(0, 5));
+        assertEquals(5, history.getVersionCount());
+        assertEquals(45, history.stateAt(2_050).getQuantity());
+        assertEquals(49, history.stateAt(5_000).getQuantity());
+
+        // a lone version older than the horizon adds nothing to the live inventory
+        ProductHistory old = new ProductHistory("p2", CREATED);
+        old.record(product("Milk", 1, "1.99"), 100);
+        assertFalse(old.compact(1_000, 10));
+    }
+
+    @Test
+    public void inventoryAsOfSeesEarlierStates() throws Exception {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(new Product("a1", "Apple", 5, new BigDecimal("1.00")));
+        inventory.addProduct(new Product("b2", "Banana", 7, new BigDecimal("0.50")));
+        inventory.enableHistory(new HistoryRetention(Duration.ofDays(1), 16));
+
+        Thread.sleep(5);
+        LocalDateTime before = LocalDateTime.now();
+        Thread.sleep(5);
+        inventory.updateProductQuantity(inventory.searchProductById("a1"), 2);
+        inventory.removeProduct("b2");
+        inventory.addProduct(new Product("c3", "Cherry", 9, new BigDecimal("3.00")));
+
+        assertEquals(5, inventory.getProductAsOf("a1", before).getQuantity());
+        assertEquals(7, inventory.getProductAsOf("b2", before).getQuantity());
+        assertNull(inventory.getProductAsOf("c3", before));
+        assertEquals(2, inventory.getProductAsOf("a1", LocalDateTime.now()).getQuantity());
+
+        List<String> ids = new ArrayList<>();
+        for (Product product : inventory.getInventoryAsOf(before)) {
+            ids.add(product.getId());
+        }
+        ids.sort(null);
+        assertEquals(List.of("a1", "b2"), ids);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> inventory.getProductAsOf("a1", before.minusDays(2)));
+    }
+}
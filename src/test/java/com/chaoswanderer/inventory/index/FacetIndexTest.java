@@ -0,0 +1,97 @@
+package com.chaoswanderer.inventory.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+public class FacetIndexTest {
+    private static final String[] CATEGORIES = {"dairy", "bakery", "produce"};
+    private static final String[] BRANDS = {"acme", "globex", "initech", "umbrella"};
+    private static final String[] TAGS = {"local", "organic", "discontinued"};
+
+    private final FacetIndex index = new FacetIndex();
+    private final Map<String, Product> products = new HashMap<>();
+
+    private Product randomProduct(Random random, String id) {
+        Product product = new Product(id, "Product " + id, 1, BigDecimal.ONE);
+        product.addAttribute("category", CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        if (random.nextInt(4) != 0) {
+            product.addAttribute("brand", BRANDS[random.nextInt(BRANDS.length)]);
+        }
+        for (String tag : TAGS) {
+            if (random.nextInt(3) == 0) {
+                product.addAttribute("tag", tag);
+            }
+        }
+        return product;
+    }
+
+    private void assertQuery(String query, Predicate<Product> expected) {
+        TreeSet<String> reference = new TreeSet<>();
+        for (Product product : products.values()) {
+            if (expected.test(product)) {
+                reference.add(product.getId());
+            }
+        }
+        assertEquals(reference, new TreeSet<>(index.getIds(index.evaluate(FacetQuery.parse(query)))), query);
+    }
+
+    // enough products for dense postings, then churn so removed ordinals are reused
+    @Test
+    public void queriesMatchBruteForceThroughChurn() {
+        Random random = new Random(8);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String id = "p" + i;
+            Product product = randomProduct(random, id);
+            products.put(id, product);
+            ids.add(id);
+            index.productAdded(product);
+        }
+
+        for (int i = 0; i < 8_000; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            Product current = products.get(id);
+            if (current == null) {
+                Product product = randomProduct(random, id);
+                products.put(id, product);
+                index.productAdded(product);
+            } else if (random.nextBoolean()) {
+                index.productRemoved(products.remove(id));
+            } else {
+                Product updated = randomProduct(random, id);
+                products.put(id, updated);
+                index.productUpdated(current, updated);
+            }
+        }
+
+        assertEquals(products.size(), index.getProductCount());
+        assertQuery("dairy", p -> p.hasAttribute("category", "dairy"));
+        assertQuery("dairy AND brand=acme AND NOT tag=discontinued", p -> p.hasAttribute("category", "dairy")
+                && p.hasAttribute("brand", "acme") && !p.hasAttribute("tag", "discontinued"));
+        assertQuery("tag=local OR tag=organic", p -> p.hasAttribute("tag", "local") || p.hasAttribute("tag", "organic"));
+        assertQuery("NOT brand=globex", p -> !p.hasAttribute("brand", "globex"));
+        assertQuery("(bakery OR produce) AND NOT (tag=organic OR brand=initech)",
+                p -> (p.hasAttribute("category", "bakery") || p.hasAttribute("category", "produce"))
+                        && !(p.hasAttribute("tag", "organic") || p.hasAttribute("brand", "initech")));
+
+        RoaringBitmap dairy = index.evaluate(FacetQuery.parse("dairy"));
+        Map<String, Long> counts = index.getFacetCounts(dairy, "brand");
+        for (String brand : BRANDS) {
+            long expected = products.values().stream()
+                    .filter(p -> p.hasAttribute("category", "dairy") && p.hasAttribute("brand", brand)).count();
+            assertEquals(expected, counts.getOrDefault(brand, 0L).longValue(), brand);
+        }
+    }
+}
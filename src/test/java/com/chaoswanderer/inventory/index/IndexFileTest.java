@@ -0,0 +1,166 @@
+package com.chaoswanderer.inventory.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.util.SortField;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IndexFileTest {
+    private static final String[] WORDS = {"milk", "bread", "cheese", "crème", "tea"};
+
+    @TempDir
+    Path directory;
+
+    private static List<Product> products(int count) {
+        Random random = new Random(3);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            products.add(new Product("sku-" + i, WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(100),
+                    random.nextInt(50), new BigDecimal(random.nextInt(10_000)).movePointLeft(2)));
+        }
+        return products;
+    }
+
+    // writes the index the way a save does, stamped with the data file's generation
+    private Path save(SearchIndex index, Path dataFile) throws Exception {
+        Path path = directory.resolve("products.idx");
+        Path temp = IndexFile.writeBody(path, index);
+        IndexFile.commit(temp, path, IndexFile.Generation.of(dataFile));
+        assertFalse(Files.exists(temp));
+        return path;
+    }
+
+    private Path dataFile() throws Exception {
+        Path dataFile = directory.resolve("products.csv");
+        Files.writeString(dataFile, "sku-0,milk,1,1.00\n");
+        return dataFile;
+    }
+
+    private static void assertSameAnswers(SearchIndex expected, SearchIndex actual) {
+        assertEquals(expected.getProductCount(), actual.getProductCount());
+        for (String text : new String[]{"sku-1", "-2", "mil", "crè", "ème 4", "tea 9", "zzz", "ea"}) {
+            assertEquals(expected.searchIds(text), actual.searchIds(text), text);
+            assertEquals(expected.searchNames(text), actual.searchNames(text), text);
+        }
+        for (SortField field : SortField.values()) {
+            if (SearchIndex.isOrdered(field)) {
+                assertEquals(expected.sortedIds(field, true), actual.sortedIds(field, true), field.name());
+                assertEquals(expected.sortedIds(field, false), actual.sortedIds(field, false), field.name());
+            }
+        }
+    }
+
+    // a saved index loads back answering every search and sort as the one it was saved from,
+    // including the changes made to it after it was built
+    @Test
+    public void saveAndLoadRoundTrip() throws Exception {
+        List<Product> products = products(2_000);
+        SearchIndex index = SearchIndex.build(products);
+        for (int i = 0; i < 300; i++) {
+            index.productRemoved(products.get(i * 5));
+        }
+        Product renamed = products.get(7);
+        Product copy = new Product(renamed.getId(), "renamed crème", renamed.getQuantity(), new BigDecimal("0.01"));
+        index.productUpdated(renamed, copy);
+        index.productAdded(new Product("new-1", "tea 900", 1, new BigDecimal("3.00")));
+
+        Path dataFile = dataFile();
+        Path path = save(index, dataFile);
+        SearchIndex loaded = IndexFile.load(path, IndexFile.Generation.of(dataFile));
+        assertNotNull(loaded);
+        assertSameAnswers(index, loaded);
+        assertEquals(List.of("new-1"), loaded.searchIds("new-"));
+
+        // the loaded index keeps taking changes
+        loaded.productAdded(new Product("new-2", "milk 1000", 1, BigDecimal.ONE));
+        index.productAdded(new Product("new-2", "milk 1000", 1, BigDecimal.ONE));
+        assertSameAnswers(index, loaded);
+    }
+
+    @Test
+    public void emptyIndexRoundTrip() throws Exception {
+        Path dataFile = dataFile();
+        Path path = save(SearchIndex.build(new ArrayList<>()), dataFile);
+        SearchIndex loaded = IndexFile.load(path, IndexFile.Generation.of(dataFile));
+        assertNotNull(loaded);
+        assertEquals(0, loaded.getProductCount());
+        assertEquals(List.of(), loaded.searchNames("milk"));
+    }
+
+    // saved alongside another version of the data file: not used
+    @Test
+    public void staleGenerationIsRejected() throws Exception {
+        Path dataFile = dataFile();
+        Path path = save(SearchIndex.build(products(50)), dataFile);
+
+        Files.writeString(dataFile, "sku-0,milk,2,1.00\nsku-1,tea,1,1.00\n");
+        assertNull(IndexFile.load(path, IndexFile.Generation.of(dataFile)));
+        assertNull(IndexFile.load(directory.resolve("missing.idx"), IndexFile.Generation.of(dataFile)));
+    }
+
+    @Test
+    public void damagedBodyIsRejected() throws Exception {
+        Path dataFile = dataFile();
+        Path path = save(SearchIndex.build(products(50)), dataFile);
+        IndexFile.Generation generation = IndexFile.Generation.of(dataFile);
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long at = file.length() / 2;
+            file.seek(at);
+            int b = file.read();
+            file.seek(at);
+            file.write(b ^ 0x40);
+        }
+        assertNull(IndexFile.load(path, generation));
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws Exception {
+        Path dataFile = dataFile();
+        IndexFile.Generation generation = IndexFile.Generation.of(dataFile);
+
+        // empty, cut inside the header, and one byte short of the body
+        for (int cut = 0; cut < 3; cut++) {
+            Path path = save(SearchIndex.build(products(50)), dataFile);
+            long[] lengths = {0, 10, Files.size(path) - 1};
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(lengths[cut]);
+            }
+            assertNull(IndexFile.load(path, generation));
+        }
+    }
+
+    // a body that passes the checksum but does not decode (or another file type) is not used either
+    @Test
+    public void badHeaderIsRejected() throws Exception {
+        Path dataFile = dataFile();
+        Path path = save(SearchIndex.build(products(50)), dataFile);
+        IndexFile.Generation generation = IndexFile.Generation.of(dataFile);
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(12);
+            file.writeInt(49); // product count
+        }
+        assertNull(IndexFile.load(path, generation));
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(0);
+            file.writeLong(42);
+        }
+        assertNull(IndexFile.load(path, generation));
+    }
+}
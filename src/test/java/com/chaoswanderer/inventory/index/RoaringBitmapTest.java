@@ -0,0 +1,120 @@
+package com.chaoswanderer.inventory.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+public class RoaringBitmapTest {
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void assertMatches(TreeSet<Integer> expected, RoaringBitmap actual) {
+        assertEquals(expected.size(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertArrayEquals(toArray(expected), actual.toArray());
+    }
+
+    // per 65536-value chunk a random density: empty, sparse (array container) or dense (bitmap container)
+    private static void fill(Random random, RoaringBitmap bitmap, TreeSet<Integer> reference) {
+        for (int chunk = 0; chunk < 6; chunk++) {
+            int count = switch (random.nextInt(4)) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(100);
+                case 2 -> 4_000 + random.nextInt(200); // either side of the 4096 switch
+                default -> 20_000 + random.nextInt(40_000);
+            };
+            for (int i = 0; i < count; i++) {
+                int value = chunk * 65_536 + random.nextInt(65_536);
+                bitmap.add(value);
+                reference.add(value);
+            }
+        }
+    }
+
+    // growing a chunk past 4096 values switches it to a bitmap, shrinking it back switches it to an array
+    @Test
+    public void containersConvertBothWays() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> reference = new TreeSet<>();
+        Random random = new Random(2);
+
+        for (int i = 0; i < 10_000; i++) {
+            int value = 65_536 + random.nextInt(20_000);
+            bitmap.add(value);
+            reference.add(value);
+        }
+        assertMatches(reference, bitmap);
+
+        for (Integer value : reference.toArray(new Integer[0])) {
+            if (random.nextInt(10) != 0) {
+                bitmap.remove(value);
+                reference.remove(value);
+            }
+            if (reference.size() % 1_000 == 0) {
+                assertMatches(reference, bitmap);
+            }
+        }
+        assertMatches(reference, bitmap);
+        for (int value = 65_536; value < 65_536 + 20_000; value++) {
+            assertEquals(reference.contains(value), bitmap.contains(value));
+        }
+
+        // removing the last value drops the chunk altogether
+        for (Integer value : reference) {
+            bitmap.remove(value);
+        }
+        assertTrue(bitmap.isEmpty());
+        bitmap.remove(42); // absent chunk: no-op
+        assertFalse(bitmap.contains(65_536));
+    }
+
+    @Test
+    public void setOperationsMatchTreeSet() {
+        Random random = new Random(4);
+        for (int round = 0; round < 12; round++) {
+            RoaringBitmap a = new RoaringBitmap();
+            RoaringBitmap b = new RoaringBitmap();
+            TreeSet<Integer> setA = new TreeSet<>();
+            TreeSet<Integer> setB = new TreeSet<>();
+            fill(random, a, setA);
+            fill(random, b, setB);
+
+            TreeSet<Integer> and = new TreeSet<>(setA);
+            and.retainAll(setB);
+            TreeSet<Integer> or = new TreeSet<>(setA);
+            or.addAll(setB);
+            TreeSet<Integer> andNot = new TreeSet<>(setA);
+            andNot.removeAll(setB);
+
+            assertMatches(and, RoaringBitmap.and(a, b));
+            assertMatches(or, RoaringBitmap.or(a, b));
+            assertMatches(andNot, RoaringBitmap.andNot(a, b));
+            assertEquals(and.size(), RoaringBitmap.andCardinality(a, b));
+
+            // the operands are left alone
+            assertMatches(setA, a);
+            assertMatches(setB, b);
+        }
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        RoaringBitmap original = RoaringBitmap.range(70_000);
+        RoaringBitmap copy = original.copy();
+        copy.remove(5);
+        copy.add(200_000);
+
+        assertTrue(original.contains(5));
+        assertFalse(original.contains(200_000));
+        assertEquals(70_000, original.cardinality());
+        assertEquals(70_000, copy.cardinality());
+    }
+}
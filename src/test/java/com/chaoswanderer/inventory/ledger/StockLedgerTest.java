@@ -0,0 +1,137 @@
+package com.chaoswanderer.inventory.ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class StockLedgerTest {
+    private static final long TIME_CONSTANT = 3 * StockLedger.DAY;
+
+    private final long[] now = {1_000_000_000L};
+    private final StockLedger ledger = new StockLedger(() -> now[0], TIME_CONSTANT);
+
+    private static Product product(String id, int quantity) {
+        return new Product(id, "Product " + id, quantity, BigDecimal.ONE);
+    }
+
+    // moves the product's stock from one quantity to the next, as Inventory would report it
+    private void move(String id, int from, int to) {
+        ledger.productUpdated(product(id, from), product(id, to));
+    }
+
+    @Test
+    public void windowSumsExpireMovementsOnTime() {
+        ledger.seed(product("a1", 1_000));
+        move("a1", 1_000, 990);                       // sold 10 at t0
+        now[0] += 30 * 60_000L;
+        move("a1", 990, 985);                         // sold 5 at t0 + 30 min
+        move("a1", 985, 1_085);                       // received 100
+
+        assertEquals(15, ledger.getUnitsSold("a1", StockLedger.Window.HOUR));
+        assertEquals(100, ledger.getUnitsReceived("a1", StockLedger.Window.HOUR));
+
+        now[0] += 30 * 60_000L;                       // t0 + 1 h: the first sale is exactly at the cutoff
+        assertEquals(5, ledger.getUnitsSold("a1", StockLedger.Window.HOUR));
+        assertEquals(15, ledger.getUnitsSold("a1", StockLedger.Window.DAY));
+
+        now[0] += StockLedger.DAY;
+        assertEquals(0, ledger.getUnitsSold("a1", StockLedger.Window.HOUR));
+        assertEquals(0, ledger.getUnitsReceived("a1", StockLedger.Window.DAY));
+        assertEquals(15, ledger.getUnitsSold("a1", StockLedger.Window.WEEK));
+
+        now[0] += StockLedger.WEEK;
+        assertEquals(0, ledger.getUnitsSold("a1", StockLedger.Window.WEEK));
+        assertEquals(0, ledger.getUnitsReceived("a1", StockLedger.Window.WEEK));
+        assertEquals(3, ledger.getMovementCount());
+    }
+
+    // expiry must also be right across chunk boundaries and for more SKUs than the initial arrays hold
+    @Test
+    public void windowSumsMatchABruteForceCount() {
+        int skus = 3_000;
+        int[] stock = new int[skus];
+        List<long[]> sales = new ArrayList<>(); // time, sku, units
+        Random random = new Random(9);
+
+        for (int i = 0; i < 150_000; i++) {
+            now[0] += random.nextInt(20_000);
+            int sku = random.nextInt(skus);
+            int units = 1 + random.nextInt(5);
+            move("s" + sku, stock[sku], stock[sku] - units);
+            stock[sku] -= units;
+            sales.add(new long[]{now[0], sku, units});
+        }
+
+        for (StockLedger.Window window : StockLedger.Window.values()) {
+            long length = switch (window) {
+                case HOUR -> StockLedger.HOUR;
+                case DAY -> StockLedger.DAY;
+                case WEEK -> StockLedger.WEEK;
+            };
+            long[] expected = new long[skus];
+            for (long[] sale : sales) {
+                if (sale[0] > now[0] - length) {
+                    expected[(int) sale[1]] += sale[2];
+                }
+            }
+            for (int sku = 0; sku < skus; sku += 97) {
+                assertEquals(expected[sku], ledger.getUnitsSold("s" + sku, window), window + " s" + sku);
+            }
+        }
+    }
+
+    @Test
+    public void velocityDecaysWithTheTimeConstant() {
+        ledger.seed(product("a1", 500));
+        move("a1", 500, 470); // 30 units at once
+
+        double initial = 30.0 * StockLedger.DAY / TIME_CONSTANT;
+        assertEquals(initial, ledger.getVelocityPerDay("a1"), 1e-9);
+
+        now[0] += TIME_CONSTANT;
+        assertEquals(initial / Math.E, ledger.getVelocityPerDay("a1"), 1e-9);
+
+        // only sales count: receiving stock leaves the velocity alone
+        move("a1", 470, 600);
+        assertEquals(initial / Math.E, ledger.getVelocityPerDay("a1"), 1e-9);
+    }
+
+    // a steady 4 units an hour settles at about 96 a day, and days of cover follows the stock
+    @Test
+    public void steadySalesConvergeToTheirRate() {
+        int quantity = 100_000;
+        ledger.seed(product("a1", quantity));
+        for (int hour = 0; hour < 24 * 60; hour++) {
+            move("a1", quantity, quantity - 4);
+            quantity -= 4;
+            now[0] += StockLedger.HOUR;
+        }
+
+        double velocity = ledger.getVelocityPerDay("a1");
+        assertEquals(96.0, velocity, 96.0 * 0.02);
+        assertEquals(quantity / velocity, ledger.getDaysOfCover("a1"), 1e-9);
+        assertTrue(Double.isInfinite(ledger.getDaysOfCover("unknown")));
+    }
+
+    @Test
+    public void replaysMovementsInARange() {
+        move("a1", 10, 7);
+        long start = now[0];
+        now[0] += 1_000;
+        move("b2", 5, 9);
+        now[0] += 1_000;
+        move("a1", 7, 6);
+
+        List<String> seen = new ArrayList<>();
+        ledger.forEachMovement(start + 1, now[0] + 1, (id, delta, time) -> seen.add(id + delta));
+        assertEquals(List.of("b24", "a1-1"), seen);
+    }
+}
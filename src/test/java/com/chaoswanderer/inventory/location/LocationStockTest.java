@@ -0,0 +1,172 @@
+package com.chaoswanderer.inventory.location;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LocationStockTest {
+
+    private static Product product(String id, int quantity, String price) {
+        return new Product(id, "Product " + id, quantity, new BigDecimal(price));
+    }
+
+    // every product's quantity is the sum over its locations, and the rollups match the matrix
+    private static void assertConsistent(Inventory inventory, LocationStock locations) {
+        long units = 0;
+        BigDecimal value = BigDecimal.ZERO.setScale(2);
+        for (String location : locations.getLocations()) {
+            long atLocation = 0;
+            BigDecimal valueAt = BigDecimal.ZERO.setScale(2);
+            for (Product product : inventory.getAllProducts()) {
+                int stock = locations.getStock(product.getId(), location);
+                atLocation += stock;
+                valueAt = valueAt.add(product.getPrice().multiply(BigDecimal.valueOf(stock)));
+            }
+            assertEquals(atLocation, locations.getLocationUnits(location), location);
+            assertEquals(0, valueAt.compareTo(locations.getLocationValue(location)), location);
+            units += atLocation;
+            value = value.add(valueAt);
+        }
+        assertEquals(units, locations.getTotalUnits());
+        assertEquals(0, value.compareTo(locations.getTotalValue()));
+
+        for (Product product : inventory.getAllProducts()) {
+            int sum = 0;
+            for (int stock : locations.getStockByLocation(product.getId()).values()) {
+                sum += stock;
+            }
+            assertEquals(product.getQuantity(), sum, product.getId());
+        }
+    }
+
+    @Test
+    public void adjustAndTransferKeepTotalsInLine() {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(product("a1", 10, "2.50"));
+        inventory.addProduct(product("b2", 4, "1.00"));
+        LocationStock locations = inventory.enableLocations("store");
+        locations.addLocation("warehouse");
+
+        Product a1 = inventory.searchProductById("a1");
+        assertTrue(inventory.adjustStockAt(a1, "warehouse", 6));
+        assertEquals(16, a1.getQuantity());
+        assertEquals(6, locations.getStock("a1", "warehouse"));
+
+        assertTrue(inventory.transferStock("a1", "store", "warehouse", 7));
+        assertEquals(3, locations.getStock("a1", "store"));
+        assertEquals(13, locations.getStock("a1", "warehouse"));
+        assertEquals(16, a1.getQuantity());
+
+        // no location may go negative, and a failed transfer changes nothing
+        assertFalse(inventory.adjustStockAt(a1, "store", -4));
+        assertFalse(inventory.transferStock("a1", "store", "warehouse", 4));
+        assertFalse(inventory.transferStock("a1", "store", "store", 1));
+        assertFalse(inventory.adjustStockAt(a1, "nowhere", 1));
+        assertEquals(16, a1.getQuantity());
+        assertConsistent(inventory, locations);
+
+        assertEquals(new BigDecimal("44.00"), locations.getTotalValue()); // 16 x 2.50 + 4 x 1.00
+    }
+
+    // quantity changes made without a location go to the default first and come out of it first
+    @Test
+    public void reconcileFollowsQuantityChanges() {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(product("a1", 5, "3.00"));
+        LocationStock locations = inventory.enableLocations("store");
+        locations.addLocation("warehouse");
+        Product a1 = inventory.searchProductById("a1");
+        inventory.transferStock("a1", "store", "warehouse", 3);
+
+        inventory.increaseProductQuantity(a1, 4);
+        assertEquals(6, locations.getStock("a1", "store"));
+        inventory.decreaseProductQuantity(a1, 7);
+        assertEquals(0, locations.getStock("a1", "store"));
+        assertEquals(2, locations.getStock("a1", "warehouse"));
+
+        inventory.updateProductPrice(a1, new BigDecimal("5.00"));
+        assertEquals(new BigDecimal("10.00"), locations.getLocationValue("warehouse"));
+
+        inventory.removeProduct("a1");
+        assertEquals(0, locations.getTotalUnits());
+        assertEquals(0, locations.getTotalValue().signum());
+        assertTrue(locations.getProductsAt("warehouse").isEmpty());
+    }
+
+    // a product removed and re-added since the caller looked it up must not move the matrix
+    @Test
+    public void staleInstanceDoesNotMoveLocations() {
+        Inventory inventory = new Inventory();
+        Product held = product("a1", 10, "1.00");
+        inventory.addProduct(held);
+        LocationStock locations = inventory.enableLocations("store");
+        inventory.removeProduct("a1");
+        inventory.addProduct(product("a1", 3, "1.00"));
+
+        assertFalse(inventory.adjustStockAt(held, "store", 5));
+        assertEquals(3, locations.getStock("a1", "store"));
+        assertEquals(3, inventory.searchProductById("a1").getQuantity());
+        assertConsistent(inventory, locations);
+
+        inventory.removeProduct("a1");
+        assertFalse(inventory.adjustStockAt(held, "store", 1));
+        assertEquals(0, locations.getTotalUnits());
+    }
+
+    @Test
+    public void randomChangesStayConsistent() {
+        Random random = new Random(11);
+        Inventory inventory = new Inventory();
+        for (int i = 0; i < 50; i++) {
+            inventory.addProduct(product("p" + i, random.nextInt(20), "1.25"));
+        }
+        LocationStock locations = inventory.enableLocations("store");
+        List<String> names = new ArrayList<>(List.of("store", "back", "van"));
+        locations.addLocation("back");
+        locations.addLocation("van");
+
+        for (int step = 0; step < 5_000; step++) {
+            String id = "p" + random.nextInt(60);
+            Product product = inventory.searchProductById(id);
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    if (product != null) {
+                        inventory.adjustStockAt(product, names.get(random.nextInt(3)), random.nextInt(11) - 5);
+                    }
+                }
+                case 1 -> inventory.transferStock(id, names.get(random.nextInt(3)), names.get(random.nextInt(3)), random.nextInt(6));
+                case 2 -> {
+                    if (product != null) {
+                        inventory.updateProductQuantity(product, random.nextInt(30));
+                    }
+                }
+                case 3 -> {
+                    if (product != null) {
+                        inventory.updateProductPrice(product, new BigDecimal(random.nextInt(500)).movePointLeft(2));
+                    }
+                }
+                case 4 -> {
+                    if (product != null) {
+                        inventory.removeProduct(id);
+                    }
+                }
+                default -> {
+                    if (product == null) {
+                        inventory.addProduct(product(id, random.nextInt(10), "0.99"));
+                    }
+                }
+            }
+        }
+        assertConsistent(inventory, locations);
+    }
+}
@@ -0,0 +1,175 @@
+package com.chaoswanderer.inventory.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.query.Query;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class InventoryQueryTest {
+    private static final String[] WORDS = {"Milk", "Bread", "Cheese", "Tea", "Coffee", "Butter"};
+    private static final String[] CATEGORIES = {"dairy", "bakery", "drinks"};
+    private static final String[] OPERATORS = {"=", "!=", "<", "<=", ">", ">="};
+
+    private final Random random = new Random(23);
+
+    private String id() {
+        return String.format("p%03d", random.nextInt(200));
+    }
+
+    private Product product(String id) {
+        Product product = new Product(id, WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(30),
+                random.nextInt(40), new BigDecimal(random.nextInt(1000)).movePointLeft(2));
+        product.addAttribute("category", CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        return product;
+    }
+
+    // ------------------- Random queries -------------------
+    private String condition(int depth) {
+        int kind = random.nextInt(depth > 2 ? 8 : 11);
+        return switch (kind) {
+            case 0 -> "id = " + id();
+            case 1 -> "id " + OPERATORS[2 + random.nextInt(4)] + " " + id();
+            case 2 -> "id ~ " + id().substring(0, 1 + random.nextInt(3));
+            case 3 -> {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                yield "name ~ \"" + word.substring(random.nextInt(2), Math.min(word.length(), 2 + random.nextInt(4))) + "\"";
+            }
+            case 4 -> "name " + OPERATORS[random.nextInt(6)] + " \"" + WORDS[random.nextInt(WORDS.length)] + " 1\"";
+            case 5 -> "quantity " + OPERATORS[random.nextInt(6)] + " " + random.nextInt(40);
+            case 6 -> "price " + OPERATORS[random.nextInt(6)] + " " + random.nextInt(10) + ".5";
+            case 7 -> "category " + (random.nextBoolean() ? "= " : "!= ") + CATEGORIES[random.nextInt(CATEGORIES.length)];
+            case 8 -> "NOT " + condition(depth + 1);
+            case 9 -> "(" + condition(depth + 1) + " OR " + condition(depth + 1) + ")";
+            default -> condition(depth + 1) + " AND " + condition(depth + 1);
+        };
+    }
+
+    private String query() {
+        StringBuilder text = new StringBuilder();
+        if (random.nextInt(5) > 0) {
+            text.append(condition(0));
+        }
+        int keys = random.nextInt(3);
+        for (int i = 0; i < keys; i++) {
+            text.append(i == 0 ? " ORDER BY " : ", ")
+                    .append(new String[]{"id", "name", "quantity", "price"}[random.nextInt(4)])
+                    .append(random.nextBoolean() ? " DESC" : "");
+        }
+        if (random.nextBoolean()) {
+            text.append(" LIMIT ").append(random.nextInt(15));
+        }
+        return text.toString();
+    }
+    // ------------------------------------------------------
+
+    // what the query must return, worked out by testing every product
+    private static List<Product> fullScan(Inventory inventory, Query query) {
+        List<Product> matches = new ArrayList<>();
+        for (Product product : inventory.getAllProducts()) {
+            if (query.getCondition() == null || query.getCondition().test(product)) {
+                matches.add(product);
+            }
+        }
+        matches.sort(order(query));
+        return matches;
+    }
+
+    private static Comparator<Product> order(Query query) {
+        Comparator<Product> order = (a, b) -> 0;
+        for (Query.SortKey key : query.getOrder()) {
+            Comparator<Product> next = switch (key.getField()) {
+                case NAME -> Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER);
+                case QUANTITY -> Comparator.comparingInt(Product::getQuantity);
+                case PRICE -> Comparator.comparing(Product::getPrice);
+                default -> Comparator.comparing(Product::getId);
+            };
+            order = order.thenComparing(key.isDescending() ? next.reversed() : next);
+        }
+        return order.thenComparing(Product::getId);
+    }
+
+    private static List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    private static void assertSameResults(Inventory inventory, String text) {
+        Query query = Query.parse(text);
+        List<Product> expected = fullScan(inventory, query);
+        List<Product> actual = inventory.query(query);
+        int size = query.hasLimit() ? Math.min(query.getLimit(), expected.size()) : expected.size();
+        assertEquals(size, actual.size(), text);
+
+        if (!query.getOrder().isEmpty()) {
+            assertEquals(ids(expected.subList(0, size)), ids(actual), text);
+            return;
+        }
+        // unordered: any matches will do, as long as they are distinct and all of them without a limit
+        Set<String> matching = new HashSet<>(ids(expected));
+        Set<String> returned = new HashSet<>(ids(actual));
+        assertEquals(actual.size(), returned.size(), text);
+        assertTrue(matching.containsAll(returned), text);
+    }
+
+    private void runQueries(Inventory inventory) {
+        for (int round = 0; round < 6; round++) {
+            // a few changes between rounds, so the indexes have to keep up
+            for (int i = 0; i < 40; i++) {
+                String id = id();
+                Product product = inventory.searchProductById(id);
+                if (product == null) {
+                    inventory.addProduct(product(id));
+                } else if (random.nextInt(3) == 0) {
+                    inventory.removeProduct(id);
+                } else if (random.nextBoolean()) {
+                    inventory.updateProductQuantity(product, random.nextInt(40));
+                } else {
+                    inventory.updateProductName(product, WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(30));
+                }
+            }
+
+            if (round == 2) {
+                inventory.enableFacets();
+            } else if (round == 4) {
+                inventory.enableSearchIndex(null);
+            }
+            for (int i = 0; i < 150; i++) {
+                assertSameResults(inventory, query());
+            }
+        }
+    }
+
+    @Test
+    public void queriesMatchFullScanOnMemoryStore() {
+        Inventory inventory = new Inventory(new MemoryProductStore());
+        for (int i = 0; i < 150; i++) {
+            inventory.addProduct(product(id()));
+        }
+        runQueries(inventory);
+    }
+
+    // the sorted store adds id range scans and id order straight from the store
+    @Test
+    public void queriesMatchFullScanOnSortedStore() {
+        Inventory inventory = new Inventory(new SortedProductStore());
+        for (int i = 0; i < 150; i++) {
+            inventory.addProduct(product(id()));
+        }
+        runQueries(inventory);
+        assertSameResults(inventory, "id >= p050 AND id < p100 ORDER BY id LIMIT 10");
+        assertSameResults(inventory, "id > p150 OR id <= p010 ORDER BY id DESC");
+    }
+}
@@ -0,0 +1,226 @@
+package com.chaoswanderer.inventory.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.cache.ResultCache;
+import com.chaoswanderer.inventory.cache.ResultKey;
+import com.chaoswanderer.inventory.util.SortField;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+public class InventoryResultCacheTest {
+    private static final String[] NAMES = {"Milk", "Oat Milk", "Bread", "Rye Bread", "Cheese", "Butter"};
+
+    private final Inventory inventory = new Inventory();
+    private final ResultCache<ResultKey, List<Product>> cache = inventory.enableResultCache(100_000);
+
+    private void add(String id, String name, int quantity, String price) {
+        inventory.addProduct(new Product(id, name, quantity, new BigDecimal(price)));
+    }
+
+    private long hits() {
+        return cache.getHits();
+    }
+
+    private static List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void renameInvalidatesNameResultsOnly() {
+        add("a1", "Milk", 5, "1.00");
+        add("b2", "Bread", 3, "2.00");
+        inventory.searchProductsbyName("milk");
+        inventory.sortBy(SortField.ID, true);
+        inventory.sortBy(SortField.NAME, true);
+
+        inventory.updateProductName(inventory.searchProductById("a1"), "Yoghurt");
+
+        long before = hits();
+        assertTrue(inventory.searchProductsbyName("milk").isEmpty());
+        assertEquals(List.of("b2", "a1"), ids(inventory.sortBy(SortField.NAME, true)));
+        assertEquals(before, hits());
+        assertEquals(List.of("a1", "b2"), ids(inventory.sortBy(SortField.ID, true)));
+        assertEquals(before + 1, hits());
+    }
+
+    @Test
+    public void stockChangeKeepsSearchesAndSorts() {
+        add("a1", "Milk", 5, "1.00");
+        add("b2", "Oat Milk", 3, "2.00");
+        inventory.searchProductsbyName("milk");
+        inventory.searchProductsById("a");
+        inventory.sortBy(SortField.PRICE, true);
+        inventory.sortBy(SortField.UPDATED_AT, false);
+
+        inventory.updateProductQuantity(inventory.searchProductById("b2"), 40);
+
+        long before = hits();
+        List<Product> milk = inventory.searchProductsbyName("milk");
+        assertEquals(2, milk.size());
+        assertEquals(40, milk.get(milk.get(0).getId().equals("b2") ? 0 : 1).getQuantity()); // the live product
+        inventory.searchProductsById("a");
+        inventory.sortBy(SortField.PRICE, true);
+        assertEquals(before + 3, hits());
+        assertEquals("b2", inventory.sortBy(SortField.UPDATED_AT, false).get(0).getId()); // recomputed
+        assertEquals(before + 3, hits());
+    }
+
+    @Test
+    public void priceChangeReordersPriceSort() {
+        add("a1", "Milk", 5, "1.00");
+        add("b2", "Bread", 3, "2.00");
+        assertEquals(List.of("a1", "b2"), ids(inventory.sortBy(SortField.PRICE, true)));
+
+        inventory.updateProductPrice(inventory.searchProductById("a1"), new BigDecimal("3.00"));
+        assertEquals(List.of("b2", "a1"), ids(inventory.sortBy(SortField.PRICE, true)));
+    }
+
+    @Test
+    public void addAndRemoveInvalidateEverything() {
+        add("a1", "Milk", 5, "1.00");
+        assertEquals(1, inventory.searchProductsbyName("milk").size());
+        assertEquals(1, inventory.sortBy(SortField.ID, true).size());
+
+        add("b2", "Oat Milk", 3, "2.00");
+        assertEquals(2, inventory.searchProductsbyName("milk").size());
+        assertEquals(2, inventory.sortBy(SortField.ID, true).size());
+
+        inventory.removeProduct("a1");
+        assertEquals(List.of("b2"), ids(inventory.searchProductsbyName("milk")));
+        assertEquals(List.of("b2"), ids(inventory.sortBy(SortField.ID, true)));
+    }
+
+    // whatever the sequence of changes, a cached result equals one computed from scratch
+    @Test
+    public void cachedResultsAreNeverStale() {
+        Random random = new Random(5);
+        for (int step = 0; step < 3_000; step++) {
+            String id = "p" + random.nextInt(40);
+            Product product = inventory.searchProductById(id);
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    if (product == null) {
+                        add(id, NAMES[random.nextInt(NAMES.length)], random.nextInt(20), random.nextInt(900) + ".99");
+                    } else {
+                        inventory.removeProduct(id);
+                    }
+                }
+                case 1 -> {
+                    if (product != null) {
+                        inventory.updateProductName(product, NAMES[random.nextInt(NAMES.length)]);
+                    }
+                }
+                case 2 -> {
+                    if (product != null) {
+                        inventory.updateProductPrice(product, new BigDecimal(random.nextInt(90_000)).movePointLeft(2));
+                    }
+                }
+                case 3 -> {
+                    if (product != null) {
+                        inventory.updateProductQuantity(product, random.nextInt(50));
+                    }
+                }
+                case 4 -> inventory.bulkAdjustPrice(p -> p.getQuantity() < 5, new BigDecimal(random.nextInt(20) - 10));
+                default -> {
+                }
+            }
+
+            String text = NAMES[random.nextInt(NAMES.length)].toLowerCase().substring(0, 3);
+            assertEquals(expectedNames(text), new TreeSet<>(ids(inventory.searchProductsbyName(text))), "name " + text);
+            String idText = "p" + random.nextInt(4);
+            assertEquals(expectedIds(idText), new TreeSet<>(ids(inventory.searchProductsById(idText))), "id " + idText);
+            SortField field = SortField.values()[random.nextInt(3)];
+            assertSortedSnapshot(inventory.sortBy(field, random.nextBoolean()), field);
+        }
+        assertTrue(cache.getHits() > 0 && cache.getInvalidations() > 0);
+    }
+
+    private Set<String> expectedNames(String text) {
+        Set<String> expected = new TreeSet<>();
+        inventory.forEachProduct(product -> {
+            if (product.getName().toLowerCase().contains(text)) {
+                expected.add(product.getId());
+            }
+        });
+        return expected;
+    }
+
+    private Set<String> expectedIds(String text) {
+        Set<String> expected = new TreeSet<>();
+        inventory.forEachProduct(product -> {
+            if (product.getId().contains(text)) {
+                expected.add(product.getId());
+            }
+        });
+        return expected;
+    }
+
+    // every current product exactly once, in order by the field either way round
+    private void assertSortedSnapshot(List<Product> sorted, SortField field) {
+        assertEquals(inventory.getTotalProducts(), sorted.size());
+        assertEquals(expectedIds(""), new TreeSet<>(ids(sorted)));
+        Comparator<Product> comparator = switch (field) {
+            case ID -> Comparator.comparing(Product::getId);
+            case NAME -> Comparator.comparing(Product::getName);
+            default -> Comparator.comparing(Product::getPrice);
+        };
+        boolean ascending = true;
+        boolean descending = true;
+        for (int i = 1; i < sorted.size(); i++) {
+            int order = comparator.compare(sorted.get(i - 1), sorted.get(i));
+            ascending &= order <= 0;
+            descending &= order >= 0;
+        }
+        assertTrue(ascending || descending, field + " order");
+    }
+
+    @Test
+    public void streamedSearchesIgnoreCase() {
+        add("abc1", "Milk", 5, "1.00");
+        add("xyz2", "Oat MILK", 3, "2.00");
+
+        assertEquals(ids(inventory.searchProductsById("ABC")), collect(inventory.streamSearchById("ABC")));
+        assertEquals(List.of("abc1"), collect(inventory.streamSearchById("ABC")));
+        assertEquals(2, collect(inventory.streamSearchByName("mIlK")).size());
+    }
+
+    private static List<String> collect(Flow.Publisher<Product> publisher) {
+        List<String> ids = new ArrayList<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Product product) {
+                ids.add(product.getId());
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                throw new AssertionError(error);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return ids;
+    }
+}
@@ -0,0 +1,149 @@
+package com.chaoswanderer.inventory.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class InventoryTest {
+
+    private static Product product(String id, int quantity) {
+        return new Product(id, "Product " + id, quantity, new BigDecimal("2.50"));
+    }
+
+    // a product held by the UI and then removed (e.g. by a reload) must not come back on the next edit
+    @Test
+    public void editsOfRemovedProductsAreRejected() {
+        Inventory inventory = new Inventory();
+        Product held = product("a1", 5);
+        inventory.addProduct(held);
+        List<String> updated = new ArrayList<>();
+        inventory.addListener(new InventoryListener() {
+            @Override
+            public void productUpdated(Product before, Product after) {
+                updated.add(after.getId());
+            }
+        });
+
+        inventory.removeProduct("a1");
+
+        assertFalse(inventory.updateProductQuantity(held, 9));
+        assertFalse(inventory.addProductAttribute(held, "colour", "red"));
+        assertNull(inventory.searchProductById("a1"));
+        assertEquals(5, held.getQuantity());
+        assertTrue(updated.isEmpty());
+    }
+
+    @Test
+    public void editsOfReplacedProductsAreRejected() {
+        Inventory inventory = new Inventory();
+        Product held = product("a1", 5);
+        inventory.addProduct(held);
+        inventory.removeProduct("a1");
+        inventory.addProduct(product("a1", 7));
+
+        assertFalse(inventory.updateProductName(held, "Stale"));
+        assertEquals("Product a1", inventory.searchProductById("a1").getName());
+        assertTrue(inventory.updateProductName(inventory.searchProductById("a1"), "Fresh"));
+        assertEquals("Fresh", inventory.searchProductById("a1").getName());
+    }
+
+    // a filter that fails part-way must leave every product as it was, with nothing reported to listeners
+    @Test
+    public void failedBulkUpdateChangesNothing() {
+        Inventory inventory = new Inventory();
+        for (int i = 0; i < 50_000; i++) {
+            inventory.addProduct(product("p" + i, 10));
+        }
+        List<String> events = new ArrayList<>();
+        inventory.addListener(new InventoryListener() {
+            @Override
+            public void productUpdated(Product before, Product after) {
+                events.add(after.getId());
+            }
+
+            @Override
+            public void bulkStarted(int count) {
+                events.add("started");
+            }
+        });
+
+        assertThrows(IllegalStateException.class, () -> inventory.bulkSetQuantity(product -> {
+            if (product.getId().equals("p49999")) {
+                throw new IllegalStateException("bad row");
+            }
+            return true;
+        }, 3));
+
+        assertTrue(events.isEmpty());
+        inventory.forEachProduct(product -> assertEquals(10, product.getQuantity(), product.getId()));
+    }
+
+    // matching reads the store a window at a time; every match in every window is changed once
+    @Test
+    public void bulkUpdateCoversEveryWindow() {
+        Inventory inventory = new Inventory();
+        for (int i = 0; i < 100_000; i++) {
+            inventory.addProduct(product("p" + i, i % 7));
+        }
+        int[] started = new int[1];
+        int[] updates = new int[1];
+        inventory.addListener(new InventoryListener() {
+            @Override
+            public void productUpdated(Product before, Product after) {
+                assertEquals(before.getQuantity() + 5, after.getQuantity());
+                updates[0]++;
+            }
+
+            @Override
+            public void bulkStarted(int count) {
+                started[0] = count;
+            }
+        });
+
+        int changed = inventory.bulkAdjustQuantity(product -> product.getQuantity() == 0, 5);
+
+        int expected = (100_000 + 6) / 7;
+        assertEquals(expected, changed);
+        assertEquals(expected, started[0]);
+        assertEquals(expected, updates[0]);
+        inventory.forEachProduct(product -> assertTrue(product.getQuantity() > 0, product.getId()));
+    }
+
+    // reserved stock only leaves through confirmReservation, whichever path tries to take it
+    @Test
+    public void reservedStockIsKeptOutOfDecrements() {
+        Inventory inventory = new Inventory();
+        inventory.enableReservations();
+        Product product = product("a1", 10);
+        inventory.addProduct(product);
+        long reservationId = inventory.reserve("a1", 6, Duration.ofHours(1)).getId();
+
+        assertThrows(IllegalArgumentException.class, () -> inventory.decreaseProductQuantity(product, 5));
+        assertThrows(IllegalArgumentException.class, () -> inventory.updateProductQuantity(product, 3));
+        assertEquals(10, product.getQuantity());
+        assertTrue(inventory.decreaseProductQuantity(product, 4));
+        assertEquals(6, product.getQuantity());
+
+        assertEquals(1, inventory.bulkAdjustQuantity(p -> true, -100));
+        assertEquals(6, product.getQuantity());
+        assertEquals(1, inventory.bulkSetQuantity(p -> true, 0));
+        assertEquals(6, product.getQuantity());
+        assertTrue(inventory.increaseProductQuantity(product, 2));
+        assertEquals(1, inventory.bulkSetQuantity(p -> true, 7));
+        assertEquals(7, product.getQuantity());
+
+        assertTrue(inventory.confirmReservation(reservationId));
+        assertEquals(1, product.getQuantity());
+        assertTrue(inventory.updateProductQuantity(product, 0));
+        assertEquals(0, product.getQuantity());
+    }
+}
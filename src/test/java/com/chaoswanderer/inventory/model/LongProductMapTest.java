@@ -0,0 +1,97 @@
+package com.chaoswanderer.inventory.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class LongProductMapTest {
+
+    private static Product product(long id) {
+        return new Product(String.valueOf(id), "Product " + id, 1, BigDecimal.ONE);
+    }
+
+    // random puts and removes over a small key range (long probe chains, many deletions inside them),
+    // checked against a HashMap after every step
+    @Test
+    public void matchesHashMapUnderRandomPutsAndRemoves() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            LongProductMap map = new LongProductMap(random.nextInt(64));
+            Map<Long, Product> reference = new HashMap<>();
+            long range = 16 + random.nextInt(2_000);
+
+            for (int step = 0; step < 20_000; step++) {
+                long key = random.nextBoolean() ? random.nextLong(range) : random.nextLong(range) * 1024; // clustered too
+                if (random.nextInt(3) == 0) {
+                    assertSame(reference.remove(key), map.remove(key), "remove " + key);
+                } else {
+                    Product product = product(key);
+                    assertSame(reference.put(key, product), map.put(key, product), "put " + key);
+                }
+                assertEquals(reference.size(), map.size());
+            }
+
+            for (long key = 0; key < range; key++) {
+                assertSame(reference.get(key), map.get(key), "get " + key);
+                assertEquals(reference.containsKey(key), map.containsKey(key));
+            }
+            Set<Product> visited = new HashSet<>();
+            map.forEach(visited::add);
+            assertEquals(new HashSet<>(reference.values()), visited);
+        }
+    }
+
+    // removing every key in random order must leave nothing reachable and nothing stranded
+    @Test
+    public void removesEverythingInAnyOrder() {
+        Random random = new Random(11);
+        LongProductMap map = new LongProductMap();
+        long[] keys = random.longs(5_000).toArray();
+        for (long key : keys) {
+            map.put(key, product(key));
+        }
+
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(String.valueOf(keys[i]), map.remove(keys[i]).getId());
+            for (int k = i + 1; k < Math.min(keys.length, i + 50); k++) {
+                assertTrue(map.containsKey(keys[k]), "lost " + keys[k] + " after removing " + keys[i]);
+            }
+        }
+        assertTrue(map.isEmpty());
+        assertNull(map.get(keys[0]));
+    }
+
+    @Test
+    public void acceptsEveryLongAsKey() {
+        LongProductMap map = new LongProductMap();
+        long[] keys = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long key : keys) {
+            map.put(key, product(key));
+        }
+        for (long key : keys) {
+            assertEquals(String.valueOf(key), map.get(key).getId());
+        }
+        map.remove(0);
+        assertFalse(map.containsKey(0));
+        assertEquals(3, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+}
@@ -0,0 +1,117 @@
+package com.chaoswanderer.inventory.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+public class InventoryServerTest {
+
+    private static Inventory inventory(int products, int quantity) {
+        Inventory inventory = new Inventory();
+        for (int i = 0; i < products; i++) {
+            inventory.addProduct(new Product("p" + i, "Product " + i, quantity, new BigDecimal("1.25")));
+        }
+        inventory.enableReservations();
+        return inventory;
+    }
+
+    // pipelined changes and lookups come back in request order, each lookup seeing the changes before it
+    @Test
+    public void pipelinedRequestsAreAnsweredInOrder() throws Exception {
+        Inventory inventory = inventory(4, 100);
+        try (InventoryServer server = new InventoryServer(inventory, 0)) {
+            server.start();
+            try (InventoryClient client = InventoryClient.connect("localhost", server.getPort())) {
+                List<Integer> sent = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    sent.add(client.sendAdjust("p1", -1));
+                    sent.add(client.sendLookup("p1"));
+                }
+                sent.add(client.sendReserve("p1", 10, 60_000));
+                sent.add(client.sendAdjust("p1", -45)); // only 40 of the 50 left are not reserved
+
+                for (int i = 0; i < 50; i++) {
+                    InventoryClient.Response adjusted = client.receive();
+                    assertEquals((int) sent.get(2 * i), adjusted.getRequestId());
+                    assertTrue(adjusted.isOk());
+                    assertEquals(99 - i, adjusted.getQuantity());
+                    InventoryClient.Response lookup = client.receive();
+                    assertEquals((int) sent.get(2 * i + 1), lookup.getRequestId());
+                    assertEquals(99 - i, lookup.getProduct().getQuantity());
+                }
+                assertTrue(client.receive().isOk());
+                assertEquals(WireProtocol.STATUS_INSUFFICIENT, client.receive().getStatus());
+                assertEquals(50, inventory.searchProductById("p1").getQuantity());
+            }
+        }
+    }
+
+    // a change waiting on its runner holds back only its own connection
+    @Test
+    public void lookupsAreNotHeldBackByPendingChanges() throws Exception {
+        Inventory inventory = inventory(2, 10);
+        List<CompletableFuture<byte[]>> held = new CopyOnWriteArrayList<>();
+        List<Function<Inventory, byte[]>> changes = new CopyOnWriteArrayList<>();
+        InventoryServer.ChangeRunner runner = change -> {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            changes.add(change);
+            held.add(future);
+            return future;
+        };
+
+        try (InventoryServer server = new InventoryServer(inventory, InetAddress.getLoopbackAddress(), 0, runner)) {
+            server.start();
+            try (InventoryClient seller = InventoryClient.connect("localhost", server.getPort());
+                 InventoryClient browser = InventoryClient.connect("localhost", server.getPort())) {
+                seller.sendAdjust("p0", -3);
+                seller.sendLookup("p0");
+                seller.flush();
+                while (held.isEmpty()) {
+                    Thread.sleep(1);
+                }
+
+                InventoryClient.ProductInfo product = browser.lookup("p0");
+                assertNotNull(product);
+                assertEquals(10, product.getQuantity());
+
+                held.get(0).complete(changes.get(0).apply(inventory));
+                InventoryClient.Response adjusted = seller.receive();
+                assertTrue(adjusted.isOk());
+                assertEquals(7, adjusted.getQuantity());
+                assertEquals(7, seller.receive().getProduct().getQuantity());
+            }
+        }
+    }
+
+    // a change the runner could not make durable is reported as failed and the connection carries on
+    @Test
+    public void failedChangesAreReported() throws Exception {
+        Inventory inventory = inventory(1, 10);
+        InventoryServer.ChangeRunner runner =
+                change -> CompletableFuture.failedFuture(new IllegalStateException("journal closed"));
+
+        try (InventoryServer server = new InventoryServer(inventory, InetAddress.getLoopbackAddress(), 0, runner)) {
+            server.start();
+            try (InventoryClient client = InventoryClient.connect("localhost", server.getPort())) {
+                InventoryClient.Response response = client.adjust("p0", -1);
+                assertFalse(response.isOk());
+                assertEquals(WireProtocol.STATUS_FAILED, response.getStatus());
+                assertEquals(10, client.lookup("p0").getQuantity());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.chaoswanderer.inventory.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryParserTest {
+
+    private static String condition(String text) {
+        return Query.parse(text).getCondition().toString();
+    }
+
+    private static String error(String text) {
+        return assertThrows(IllegalArgumentException.class, () -> Query.parse(text)).getMessage();
+    }
+
+    // AND binds tighter than OR, NOT binds tightest, and parentheses override both
+    @Test
+    public void precedence() {
+        assertEquals("(quantity = 1 OR (quantity = 2 AND quantity = 3))", condition("qty = 1 OR qty = 2 AND qty = 3"));
+        assertEquals("((quantity = 1 OR quantity = 2) AND quantity = 3)",
+                condition("(quantity = 1 OR quantity = 2) AND quantity = 3"));
+        assertEquals("(NOT quantity = 1 AND quantity = 2)", condition("NOT quantity = 1 AND quantity = 2"));
+        assertEquals("NOT (quantity = 1 OR quantity = 2)", condition("not (quantity = 1 or quantity = 2)"));
+        assertEquals("(quantity = 1 OR quantity = 2 OR quantity = 3)",
+                condition("quantity = 1 OR quantity = 2 OR quantity = 3"));
+
+        Condition condition = Query.parse("price > 5 OR quantity = 0 AND name ~ tea").getCondition();
+        assertTrue(condition.test(new Product("a1", "Coffee", 3, new BigDecimal("9.99"))));
+        assertTrue(condition.test(new Product("a2", "Green Tea", 0, new BigDecimal("1.00"))));
+        assertFalse(condition.test(new Product("a3", "Green Tea", 1, new BigDecimal("1.00"))));
+    }
+
+    // quoted values keep their spaces and are never read as keywords or symbols
+    @Test
+    public void quoting() {
+        assertEquals("name = \"whole milk\"", condition("name = \"whole milk\""));
+        assertEquals("(name = \"and\" AND name != \"or (x)\")", condition("name = \"and\" AND name != \"or (x)\""));
+        assertEquals("category = \"dairy\"", condition("category = \"Dairy\""));
+        assertEquals("Unterminated quote in query", error("name = \"whole milk"));
+        assertEquals("Unexpected '\"name' in query", error("\"name\" = milk"));
+    }
+
+    // '~' is a case-insensitive contains on id and name only
+    @Test
+    public void containsOperator() {
+        Condition condition = Query.parse("name ~ MILK").getCondition();
+        assertTrue(condition.test(new Product("a1", "Whole milk", 1, BigDecimal.ONE)));
+        assertFalse(condition.test(new Product("a2", "Cream", 1, BigDecimal.ONE)));
+        assertTrue(Query.parse("id ~ b").getCondition().test(new Product("ab1", "Cream", 1, BigDecimal.ONE)));
+
+        assertEquals("'~' only applies to id and name", error("price ~ 1"));
+        assertEquals("Attributes like 'brand' only support = and !=", error("brand ~ acme"));
+    }
+
+    // comparisons use each field's own order: names ignore case, prices ignore trailing zeros
+    @Test
+    public void comparisons() {
+        Product product = new Product("b2", "Butter", 10, new BigDecimal("4.20"));
+        assertTrue(Query.parse("name = butter").getCondition().test(product));
+        assertTrue(Query.parse("price = 4.2").getCondition().test(product));
+        assertTrue(Query.parse("quantity >= 10 AND quantity <= 10 AND quantity != 9").getCondition().test(product));
+        assertFalse(Query.parse("quantity < 10 OR quantity > 10").getCondition().test(product));
+        assertTrue(Query.parse("created >= 2000-01-01").getCondition().test(product));
+    }
+
+    @Test
+    public void orderByAndLimit() {
+        Query query = Query.parse("quantity < 10 ORDER BY price DESC, name, qty asc LIMIT 20");
+        assertEquals("quantity < 10", query.getCondition().toString());
+        assertEquals(3, query.getOrder().size());
+        assertEquals(QueryField.PRICE, query.getOrder().get(0).getField());
+        assertTrue(query.getOrder().get(0).isDescending());
+        assertEquals(QueryField.NAME, query.getOrder().get(1).getField());
+        assertFalse(query.getOrder().get(1).isDescending());
+        assertEquals(QueryField.QUANTITY, query.getOrder().get(2).getField());
+        assertFalse(query.getOrder().get(2).isDescending());
+        assertEquals(20, query.getLimit());
+        assertEquals("quantity < 10 ORDER BY price DESC, name ASC, quantity ASC LIMIT 20", query.toString());
+
+        // both parts work without a condition, and a query may be empty
+        Query ordered = Query.parse("order by id limit 0");
+        assertNull(ordered.getCondition());
+        assertEquals(0, ordered.getLimit());
+        assertEquals("ALL LIMIT 3", Query.parse("LIMIT 3").toString());
+        assertEquals("ALL", Query.parse("  ").toString());
+        assertFalse(Query.parse("").hasLimit());
+    }
+
+    @Test
+    public void errorMessages() {
+        assertEquals("Missing ')' in query", error("(quantity = 1 OR quantity = 2"));
+        assertEquals("Expected an operator after 'quantity'", error("quantity 5"));
+        assertEquals("Expected an operator after 'quantity'", error("quantity"));
+        assertEquals("Query ends too early", error("quantity ="));
+        assertEquals("Query ends too early", error("quantity = 1 AND"));
+        assertEquals("Unexpected ')' in query", error("quantity = 1)"));
+        assertEquals("Unexpected 'foo' in query", error("quantity = 1 foo"));
+        assertEquals("Expected 'BY' in query", error("ORDER price"));
+        assertEquals("Can only ORDER BY id, name, quantity, price, created or updated", error("ORDER BY color"));
+        assertEquals("LIMIT needs a number", error("LIMIT ten"));
+        assertEquals("LIMIT must not be negative", error("LIMIT -1"));
+        assertEquals("Unexpected 'LIMIT' in query", error("LIMIT 1 LIMIT 2"));
+        assertEquals("Invalid quantity value 'many'", error("quantity > many"));
+        assertEquals("Invalid price value '1,5'", error("price = \"1,5\""));
+        assertEquals("Invalid created value 'yesterday'", error("created < yesterday"));
+    }
+}
@@ -0,0 +1,169 @@
+package com.chaoswanderer.inventory.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.index.FacetIndex;
+import com.chaoswanderer.inventory.index.SearchIndex;
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.MemoryProductStore;
+import com.chaoswanderer.inventory.model.Product;
+import com.chaoswanderer.inventory.model.ProductStore;
+import com.chaoswanderer.inventory.model.SortedProductStore;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryPlannerTest {
+    private static final int PRODUCTS = 1000;
+
+    // counts the products the store hands out, to see where a scan stopped
+    private static final class CountingStore extends SortedProductStore {
+        private int visited;
+
+        @Override
+        public void forEachWhile(Predicate<Product> visitor) {
+            super.forEachWhile(product -> {
+                visited++;
+                return visitor.test(product);
+            });
+        }
+
+        @Override
+        public void scanFrom(String fromId, Predicate<Product> visitor) {
+            super.scanFrom(fromId, product -> {
+                visited++;
+                return visitor.test(product);
+            });
+        }
+    }
+
+    // p0000 .. p0999; one product in a hundred is dairy, the rest bakery
+    private static Inventory inventory(ProductStore store) {
+        Inventory inventory = new Inventory(store);
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product(String.format("p%04d", i), (i % 2 == 0 ? "Milk " : "Bread ") + i,
+                    i % 50, new BigDecimal(i % 20 + ".25"));
+            product.addAttribute("category", i % 100 == 0 ? "dairy" : "bakery");
+            inventory.addProduct(product);
+        }
+        return inventory;
+    }
+
+    private static QueryPlan plan(Inventory inventory, String query) {
+        return new QueryPlanner(inventory.getStore(), inventory.getFacetIndex(), null).plan(Query.parse(query));
+    }
+
+    private static QueryPlan plan(Inventory inventory, SearchIndex searchIndex, String query) {
+        return new QueryPlanner(inventory.getStore(), inventory.getFacetIndex(), searchIndex).plan(Query.parse(query));
+    }
+
+    @Test
+    public void idEqualityUsesPrimaryKey() {
+        Inventory inventory = inventory(new MemoryProductStore());
+
+        QueryPlan single = plan(inventory, "id = p0005 AND quantity > 0");
+        assertEquals("Primary key lookup of 1 id(s) [p0005]", single.getAccessDescription());
+        assertEquals(1, single.execute().size());
+
+        QueryPlan several = plan(inventory, "id = p0003 OR id = p0001 OR id = p0003");
+        assertEquals("Primary key lookup of 2 id(s) [p0001, p0003]", several.getAccessDescription());
+        assertEquals(2, several.execute().size());
+        assertTrue(several.getCost() < plan(inventory, "quantity = 3").getCost());
+
+        // one branch of the OR is not an id, so every product has to be looked at
+        assertTrue(plan(inventory, "id = p0003 OR quantity = 3").isFullScan());
+        assertTrue(plan(inventory, "NOT id = p0003").isFullScan());
+    }
+
+    // an id range only narrows the scan on a store kept in id order
+    @Test
+    public void idRangeNeedsAnOrderedStore() {
+        String query = "id >= p0100 AND id < p0200 AND id < p0300";
+        assertTrue(plan(inventory(new MemoryProductStore()), query).isFullScan());
+
+        CountingStore store = new CountingStore();
+        QueryPlan plan = plan(inventory(store), query);
+        assertEquals("Id range scan [\"p0100\" .. \"p0200\")", plan.getAccessDescription());
+        List<Product> results = plan.execute();
+        assertEquals(100, results.size());
+        assertEquals("p0100", results.get(0).getId());
+        assertEquals(101, store.visited); // the range and the first product past it
+    }
+
+    @Test
+    public void attributeIndexAnswersSelectiveAttributes() {
+        Inventory inventory = inventory(new MemoryProductStore());
+        assertTrue(plan(inventory, "category = dairy AND quantity = 0").isFullScan());
+
+        FacetIndex facets = inventory.enableFacets();
+        QueryPlan plan = plan(inventory, "category = dairy AND quantity = 0");
+        assertTrue(plan.getAccessDescription().startsWith("Attribute bitmap index"), plan.getAccessDescription());
+        assertEquals(10, plan.execute().size());
+        assertTrue(plan.getCost() <= 10, plan.explain());
+        assertSame(facets, inventory.getFacetIndex());
+    }
+
+    // the trigram index needs at least one whole trigram, and takes the longest text
+    @Test
+    public void substringIndexNeedsATrigram() {
+        Inventory inventory = inventory(new MemoryProductStore());
+        SearchIndex index = inventory.enableSearchIndex(null);
+
+        assertTrue(plan(inventory, index, "name ~ mi").isFullScan());
+        QueryPlan plan = plan(inventory, index, "name ~ mil AND name ~ \"milk 12\"");
+        assertTrue(plan.getAccessDescription().startsWith("Trigram index name ~ \"milk 12\""), plan.getAccessDescription());
+        assertEquals(List.of("p0012", "p0120", "p0122", "p0124", "p0126", "p0128"),
+                plan.execute().stream().map(Product::getId).sorted().limit(6).toList());
+    }
+
+    // without a sort step reading stops at the LIMIT-th match, and the cost says so
+    @Test
+    public void limitIsPushedIntoUnsortedScans() {
+        CountingStore store = new CountingStore();
+        Inventory inventory = inventory(store);
+
+        QueryPlan pushed = plan(inventory, "quantity >= 0 LIMIT 10");
+        assertEquals(QueryPlan.SortStrategy.NONE, pushed.getSortStrategy());
+        assertEquals(10 / 0.33, pushed.getCost(), 0.01);
+        assertTrue(pushed.explain().contains("pushed into the scan"));
+        assertEquals(10, pushed.execute().size());
+        assertEquals(10, store.visited);
+
+        // id order comes from the store itself, so an ORDER BY id still stops early
+        store.visited = 0;
+        QueryPlan byId = plan(inventory, "ORDER BY id LIMIT 5");
+        assertEquals(QueryPlan.SortStrategy.NONE, byId.getSortStrategy());
+        assertEquals("p0004", byId.execute().get(4).getId());
+        assertEquals(5, store.visited);
+
+        // any other order reads everything into a top-n heap, or sorts it all without a limit
+        store.visited = 0;
+        QueryPlan topN = plan(inventory, "quantity >= 0 ORDER BY price DESC, id LIMIT 3");
+        assertEquals(QueryPlan.SortStrategy.TOP_N, topN.getSortStrategy());
+        assertTrue(topN.getCost() > PRODUCTS);
+        List<Product> top = topN.execute();
+        assertEquals(List.of("p0019", "p0039", "p0059"), top.stream().map(Product::getId).toList());
+        assertEquals(PRODUCTS, store.visited);
+
+        QueryPlan sorted = plan(inventory, "ORDER BY id DESC");
+        assertEquals(QueryPlan.SortStrategy.FULL_SORT, sorted.getSortStrategy());
+        assertEquals("p0999", sorted.execute().get(0).getId());
+        assertEquals(0, plan(inventory, "LIMIT 0").execute().size());
+    }
+
+    @Test
+    public void costFollowsEstimatedRows() {
+        Inventory inventory = inventory(new MemoryProductStore());
+        assertEquals(PRODUCTS, plan(inventory, "quantity = 3").getCost(), 0.01);
+        assertEquals(PRODUCTS, plan(inventory, "").getCost(), 0.01);
+        assertEquals(1, plan(inventory, "id = p0001").getCost(), 0.01);
+
+        String explain = plan(inventory, "id = p0001").explain();
+        assertTrue(explain.contains("Rejected: Full scan of 1000 products (cost 1000)"), explain);
+    }
+}
@@ -0,0 +1,165 @@
+package com.chaoswanderer.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchRunnerTest {
+
+    @TempDir
+    Path directory;
+
+    private static Inventory inventory() {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(new Product("a1", "Apple", 10, new BigDecimal("0.50")));
+        inventory.addProduct(new Product("b2", "Canned beans", 4, new BigDecimal("1.20")));
+        return inventory;
+    }
+
+    private static List<String> run(BatchRunner runner, String... lines) throws IOException {
+        StringWriter out = new StringWriter();
+        runner.run(new BufferedReader(new StringReader(String.join("\n", lines))), out);
+        return out.toString().isEmpty() ? List.of() : List.of(out.toString().split("\n"));
+    }
+
+    @Test
+    public void commandsAnswerWithTheProductAfterwards() throws IOException {
+        Inventory inventory = inventory();
+        BatchRunner runner = new BatchRunner(inventory, 100);
+
+        List<String> results = run(runner,
+                "# restock",
+                "add,c3,Cherries,7,3.5,colour=red",
+                "",
+                "ADJUST,a1,-3",
+                "set-qty,b2,9",
+                "set-price,b2,1.35",
+                "query,quantity > 5 ORDER BY quantity DESC",
+                "remove,c3",
+                "bulk-price,10,name ~ \"canned\"",
+                "bulk-adjust,2,");
+
+        assertEquals(List.of(
+                "2\tOK\tc3\t7\t3.50",
+                "4\tOK\ta1\t7\t0.50",
+                "5\tOK\tb2\t9\t1.20",
+                "6\tOK\tb2\t9\t1.35",
+                "7\tROW\tb2\tCanned beans\t9\t1.35",
+                "7\tROW\ta1\tApple\t7\t0.50",
+                "7\tROW\tc3\tCherries\t7\t3.50",
+                "7\tOK\t3",
+                "8\tOK\tc3",
+                "9\tOK\t1",
+                "10\tOK\t2"), results);
+        assertEquals(8, runner.getCommandCount());
+        assertEquals(0, runner.getFailedCount());
+        assertEquals(new BigDecimal("1.49"), inventory.searchProductById("b2").getPrice());
+        assertEquals(11, inventory.searchProductById("b2").getQuantity());
+        assertEquals(9, inventory.searchProductById("a1").getQuantity());
+    }
+
+    // a bad line answers with an error and the rest of its batch still runs
+    @Test
+    public void badLinesFailOnTheirOwn() throws IOException {
+        Inventory inventory = inventory();
+        BatchRunner runner = new BatchRunner(inventory, 3);
+
+        List<String> results = run(runner,
+                "restock,a1",
+                "adjust,a1,-11",
+                "adjust,a1,2147483640",
+                "set-qty,a1,lots",
+                "set-qty,zz,1",
+                "add,a1,Apple,1,1.00",
+                "add,d4,Dates",
+                "set-price,a1,-1",
+                "query,quantity >",
+                "bulk-remove,",
+                "bulk-set-qty,1,quantity > 0 LIMIT 1",
+                "adjust,a1,-10");
+
+        assertEquals(List.of(
+                "1\tERROR\tUnknown command 'restock'",
+                "2\tERROR\tNot enough stock of a1 (10)",
+                "3\tERROR\tQuantity of a1 would exceed 2147483647",
+                "4\tERROR\tFor input string: \"lots\"",
+                "5\tERROR\tProduct zz does not exist",
+                "6\tERROR\tProduct a1 already exists",
+                "7\tERROR\tUsage: add,<id>,<name>,<qty>,<price>[,<attributes>]",
+                "8\tERROR\tPrice must not be negative",
+                "9\tERROR\tQuery ends too early",
+                "10\tERROR\tUsage: bulk-remove,<condition> (the condition must not be empty)",
+                "11\tERROR\tBulk commands take a condition without ORDER BY or LIMIT",
+                "12\tOK\ta1\t0\t0.50"), results);
+        assertEquals(12, runner.getCommandCount());
+        assertEquals(11, runner.getFailedCount());
+        assertEquals(2, inventory.getTotalProducts());
+    }
+
+    // a batch's results are written only once the durability hook says its changes are safe
+    @Test
+    public void resultsWaitForDurability() throws IOException {
+        Inventory inventory = inventory();
+        StringWriter out = new StringWriter();
+        List<String> writtenBeforeSync = new ArrayList<>();
+        List<Integer> quantityAtSync = new ArrayList<>();
+        BatchRunner runner = new BatchRunner(inventory, 2, () -> {
+            writtenBeforeSync.add(out.toString());
+            quantityAtSync.add(inventory.searchProductById("a1").getQuantity());
+            return true;
+        });
+
+        runner.run(new BufferedReader(new StringReader("adjust,a1,1\nadjust,a1,1\nadjust,a1,1\n")), out);
+        assertEquals(List.of("", "1\tOK\ta1\t11\t0.50\n2\tOK\ta1\t12\t0.50\n"), writtenBeforeSync);
+        assertEquals(List.of(12, 13), quantityAtSync);
+        assertTrue(out.toString().endsWith("3\tOK\ta1\t13\t0.50\n"));
+
+        // a batch that could not be made durable is not reported at all
+        StringWriter failedOut = new StringWriter();
+        BatchRunner failing = new BatchRunner(inventory, 2, () -> false);
+        IOException e = assertThrows(IOException.class,
+                () -> failing.run(new BufferedReader(new StringReader("adjust,a1,1\nadjust,a1,1\n")), failedOut));
+        assertEquals("Changes from line 1 on could not be made durable", e.getMessage());
+        assertEquals("", failedOut.toString());
+    }
+
+    // the journal's sync is the hook batch mode uses: the OK lines are on disk when they are written
+    @Test
+    public void journaledBatchIsDurableWhenReported() throws Exception {
+        Inventory inventory = inventory();
+        InventoryService service = new InventoryService(inventory, directory.resolve("products.csv").toString());
+        assertTrue(service.enableJournal(directory.resolve("products.journal").toString(), 16, 0));
+        try {
+            List<String> journaled = new ArrayList<>();
+            BatchRunner runner = new BatchRunner(inventory, 10, () -> {
+                boolean durable = service.awaitDurable();
+                try {
+                    ChangeJournal.forEachRecord(directory.resolve("products.journal"), journaled::add);
+                } catch (IOException e) {
+                    return false;
+                }
+                return durable;
+            });
+            run(runner, "adjust,a1,5", "remove,b2");
+            assertEquals(List.of("U,a1,Apple,15,0.50", "D,b2"), journaled);
+        } finally {
+            service.stopGroupCommit();
+            service.getChangeJournal().close();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.chaoswanderer.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ChangeJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<String> records(Path path) throws Exception {
+        List<String> records = new ArrayList<>();
+        ChangeJournal.forEachRecord(path, records::add);
+        return records;
+    }
+
+    private static void write(Path path, String text) throws Exception {
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path path) throws Exception {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    private static Product product(String id, int quantity) {
+        return new Product(id, "Product " + id, quantity, new BigDecimal("1.50"));
+    }
+
+    // a record without its newline was torn by a crash: replay skips it and opening cuts it off
+    @Test
+    public void tornTailIsSkippedAndCutOff() throws Exception {
+        Path path = directory.resolve("products.journal");
+        write(path, "U,a1,Apple,5,1.00\nD,b2\nU,c3,Che");
+
+        assertEquals(List.of("U,a1,Apple,5,1.00", "D,b2"), records(path));
+
+        try (ChangeJournal journal = ChangeJournal.open(path)) {
+            assertEquals("U,a1,Apple,5,1.00\nD,b2\n", read(path));
+            journal.productRemoved(product("d4", 1));
+            journal.commit();
+        }
+        assertEquals(List.of("U,a1,Apple,5,1.00", "D,b2", "D,d4"), records(path));
+    }
+
+    // a file that is nothing but a torn record replays nothing and opens empty
+    @Test
+    public void fileWithoutNewlineIsAllTorn() throws Exception {
+        Path path = directory.resolve("products.journal");
+        write(path, "U,a1,Apple,5");
+
+        assertTrue(records(path).isEmpty());
+        ChangeJournal.open(path).close();
+        assertEquals(0, Files.size(path));
+    }
+
+    // a group counts only with its end marker, and a torn "E" is no end marker
+    @Test
+    public void groupsReplayWholeOrNotAtAll() throws Exception {
+        Path path = directory.resolve("products.journal");
+        write(path, "D,a1\nB,2\nU,b2,B,1,1.00\nU,c3,C,1,1.00\nE\nD,d4\n");
+        assertEquals(List.of("D,a1", "U,b2,B,1,1.00", "U,c3,C,1,1.00", "D,d4"), records(path));
+
+        write(path, "D,a1\nB,2\nU,b2,B,1,1.00\nU,c3,C,1,1.00\n");
+        assertEquals(List.of("D,a1"), records(path));
+
+        write(path, "D,a1\nB,1\nU,b2,B,1,1.00\nE");
+        assertEquals(List.of("D,a1"), records(path));
+    }
+
+    // opening cuts off an unfinished group, so records appended later are not swallowed by it
+    @Test
+    public void unterminatedGroupIsCutOffOnOpen() throws Exception {
+        Path path = directory.resolve("products.journal");
+        write(path, "D,a1\nB,3\nU,b2,B,1,1.00\nU,c3,C,1,1.00\n");
+
+        try (ChangeJournal journal = ChangeJournal.open(path)) {
+            assertEquals("D,a1\n", read(path));
+            journal.productRemoved(product("e5", 1));
+            journal.commit();
+        }
+        assertEquals(List.of("D,a1", "D,e5"), records(path));
+    }
+
+    // a bulk operation on a journaled inventory is written as one group and replayed as it
+    @Test
+    public void bulkChangesAreFramed() throws Exception {
+        Path path = directory.resolve("products.journal");
+        Inventory inventory = new Inventory();
+        try (ChangeJournal journal = ChangeJournal.open(path)) {
+            inventory.addListener(journal);
+            inventory.addProduct(product("a1", 5));
+            inventory.addProduct(product("b2", 7));
+            assertEquals(2, inventory.bulkSetQuantity(p -> true, 1));
+            journal.commit();
+            assertFalse(journal.hasPending());
+        }
+
+        List<String> lines = Files.readAllLines(path);
+        assertEquals("B,2", lines.get(2));
+        assertEquals("E", lines.get(lines.size() - 1));
+        List<String> records = records(path);
+        assertEquals(4, records.size());
+        assertTrue(records.get(2).startsWith("U,a1,") || records.get(2).startsWith("U,b2,"));
+    }
+
+    // after a save was interrupted the rotated file holds the older records and replays first
+    @Test
+    public void rotatedFileReplaysFirst() throws Exception {
+        Path path = directory.resolve("products.journal");
+        write(directory.resolve("products.journal.old"), "U,a1,Apple,1,1.00\nU,a1,Apple,2,1.00\n");
+        write(path, "U,a1,Apple,3,1.00\n");
+
+        assertEquals(List.of("U,a1,Apple,1,1.00", "U,a1,Apple,2,1.00", "U,a1,Apple,3,1.00"), records(path));
+    }
+
+    // rotating while an earlier rotated file is still there appends to it instead of replacing it
+    @Test
+    public void rotateAppendsToExistingRotatedFile() throws Exception {
+        Path path = directory.resolve("products.journal");
+        Path rotated = directory.resolve("products.journal.old");
+        write(rotated, "D,a1\nD,b");
+        write(path, "D,c3\n");
+
+        try (ChangeJournal journal = ChangeJournal.open(path)) {
+            journal.productRemoved(product("d4", 1));
+            journal.rotate();
+            assertEquals("D,a1\nD,c3\nD,d4\n", read(rotated));
+            assertEquals(0, Files.size(path));
+
+            journal.productRemoved(product("e5", 1));
+            journal.commit();
+            assertEquals(List.of("D,a1", "D,c3", "D,d4", "D,e5"), records(path));
+
+            journal.discardRotated();
+            assertFalse(Files.exists(rotated));
+            assertEquals(List.of("D,e5"), records(path));
+        }
+    }
+
+    // the first rotation just moves the file aside
+    @Test
+    public void rotateMovesCurrentFileAside() throws Exception {
+        Path path = directory.resolve("products.journal");
+        try (ChangeJournal journal = ChangeJournal.open(path)) {
+            journal.productRemoved(product("a1", 1));
+            journal.rotate();
+            journal.productRemoved(product("b2", 1));
+            journal.commit();
+        }
+        assertEquals("D,a1\n", read(directory.resolve("products.journal.old")));
+        assertEquals("D,b2\n", read(path));
+    }
+}
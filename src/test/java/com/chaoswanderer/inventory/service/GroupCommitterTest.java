@@ -0,0 +1,170 @@
+package com.chaoswanderer.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class GroupCommitterTest {
+
+    @TempDir
+    Path directory;
+
+    private static Inventory inventory(int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(new Product("p1", "Milk", quantity, new BigDecimal("1.50")));
+        return inventory;
+    }
+
+    private static List<String> records(Path path) throws Exception {
+        List<String> records = new ArrayList<>();
+        ChangeJournal.forEachRecord(path, records::add);
+        return records;
+    }
+
+    private static int count(List<String> records, String record) {
+        int count = 0;
+        for (String r : records) {
+            if (r.equals(record)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+        fail("Expected the future to fail");
+        return null;
+    }
+
+    // a future completes only once its change is on disk: by then the record is there to replay
+    @Test
+    public void futuresCompleteAfterTheSync() throws Exception {
+        Path path = directory.resolve("products.journal");
+        Inventory inventory = inventory(100);
+        try (ChangeJournal journal = ChangeJournal.open(path);
+             GroupCommitter committer = new GroupCommitter(inventory, journal, 8, 0)) {
+            inventory.addListener(journal);
+            committer.start();
+
+            List<CompletableFuture<Integer>> seen = new ArrayList<>();
+            for (int i = 1; i <= 40; i++) {
+                int quantity = 100 - i;
+                CompletableFuture<Boolean> future = committer.submit(
+                        inv -> inv.decreaseProductQuantity(inv.searchProductById("p1"), 1));
+                // runs on the committer thread as the future completes, before the next batch starts
+                seen.add(future.thenApply(changed -> {
+                    assertTrue(changed);
+                    try {
+                        return count(records(path), "U,p1,Milk," + quantity + ",1.50");
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for (CompletableFuture<Integer> future : seen) {
+                assertEquals(1, (int) future.join());
+            }
+
+            assertEquals(40, committer.getWriteCount());
+            assertTrue(committer.getBatchCount() <= 40);
+            assertEquals(0, committer.getFailedSyncCount());
+        }
+        assertEquals(60, inventory.searchProductById("p1").getQuantity());
+    }
+
+    // a mutation that throws fails only its own future
+    @Test
+    public void failingMutationDoesNotFailTheBatch() throws Exception {
+        Inventory inventory = inventory(10);
+        try (ChangeJournal journal = ChangeJournal.open(directory.resolve("products.journal"));
+             GroupCommitter committer = new GroupCommitter(inventory, journal, 64, 1_000)) {
+            inventory.addListener(journal);
+            committer.start();
+
+            CompletableFuture<Boolean> before = committer.submit(inv -> inv.increaseProductQuantity(inv.searchProductById("p1"), 1));
+            CompletableFuture<Object> broken = committer.submit(inv -> {
+                throw new IllegalArgumentException("bad change");
+            });
+            CompletableFuture<Boolean> after = committer.submit(inv -> inv.increaseProductQuantity(inv.searchProductById("p1"), 1));
+
+            assertTrue(before.join());
+            assertTrue(failure(broken) instanceof IllegalArgumentException);
+            assertTrue(after.join());
+            assertEquals(12, inventory.searchProductById("p1").getQuantity());
+        }
+    }
+
+    // when the journal cannot be synced the batch's futures fail, and so does sync()
+    @Test
+    public void failedSyncFailsTheFutures() throws Exception {
+        Inventory inventory = inventory(10);
+        ChangeJournal journal = ChangeJournal.open(directory.resolve("products.journal"));
+        inventory.addListener(journal);
+        journal.close(); // every commit() with records pending now throws
+
+        try (GroupCommitter committer = new GroupCommitter(inventory, journal, 8, 0)) {
+            committer.start();
+            CompletableFuture<Boolean> future = committer.submit(
+                    inv -> inv.decreaseProductQuantity(inv.searchProductById("p1"), 4));
+
+            assertTrue(failure(future) instanceof UncheckedIOException);
+            assertTrue(committer.getFailedSyncCount() >= 1);
+            assertEquals(0, committer.getBatchCount());
+            // the change is applied, only not durable - its record is still waiting for a sync
+            assertEquals(6, inventory.searchProductById("p1").getQuantity());
+            assertTrue(journal.hasPending());
+            assertFalse(committer.sync());
+        }
+    }
+
+    // close() commits what was submitted before it; requests nobody will commit fail instead of hanging
+    @Test
+    public void closeSettlesEveryRequest() throws Exception {
+        Inventory inventory = inventory(10);
+        try (ChangeJournal journal = ChangeJournal.open(directory.resolve("products.journal"))) {
+            inventory.addListener(journal);
+
+            GroupCommitter running = new GroupCommitter(inventory, journal, 4, 0);
+            running.start();
+            List<CompletableFuture<Boolean>> submitted = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                submitted.add(running.submit(inv -> inv.productExists("p1")));
+            }
+            running.close();
+            for (CompletableFuture<Boolean> future : submitted) {
+                assertTrue(future.isDone());
+                assertTrue(future.join());
+            }
+            assertTrue(failure(running.submit(inv -> true)) instanceof IllegalStateException);
+            assertFalse(running.sync());
+
+            // never started: what was queued is stranded and close() fails it
+            GroupCommitter idle = new GroupCommitter(inventory, journal, 4, 0);
+            CompletableFuture<Boolean> stranded = idle.submit(inv -> inv.decreaseProductQuantity(inv.searchProductById("p1"), 1));
+            assertFalse(stranded.isDone());
+            idle.close();
+            assertTrue(failure(stranded) instanceof IllegalStateException);
+            assertEquals(10, inventory.searchProductById("p1").getQuantity());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.chaoswanderer.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ImportDiffTest {
+
+    @TempDir
+    Path directory;
+
+    private ImportDiff merge(Inventory inventory, String... lines) throws Exception {
+        Path feed = directory.resolve("feed.csv");
+        Files.write(feed, List.of(lines));
+        return new InventoryService(inventory, directory.resolve("products.csv").toString())
+                .mergeProductsFromFile(feed.toString(), false);
+    }
+
+    // the stale first row must not be applied when a later row for the same ID matches the live product
+    @Test
+    public void lastRowWinsOverEarlierUpdate() throws Exception {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(new Product("a1", "Apple", 5, new BigDecimal("1.00")));
+
+        ImportDiff diff = merge(inventory, "a1,Apple,9,1.00", "a1,Apple,5,1.00");
+
+        assertEquals(5, inventory.searchProductById("a1").getQuantity());
+        assertTrue(diff.getUpdates().isEmpty());
+        assertEquals(1, diff.getUnchangedCount());
+        assertEquals(Set.of("a1"), diff.getDuplicates());
+    }
+
+    @Test
+    public void lastRowWinsOverEarlierUnchangedRow() throws Exception {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(new Product("a1", "Apple", 5, new BigDecimal("1.00")));
+
+        ImportDiff diff = merge(inventory, "a1,Apple,5,1.00", "a1,Apple,7,1.00");
+
+        assertEquals(7, inventory.searchProductById("a1").getQuantity());
+        assertEquals(0, diff.getUnchangedCount());
+        assertEquals(1, diff.getUpdates().size());
+    }
+
+    @Test
+    public void duplicateInsertsKeepTheLastRowAndAreReported() throws Exception {
+        Inventory inventory = new Inventory();
+
+        ImportDiff diff = merge(inventory, "b2,Banana,1,0.50", "c3,Cherry,2,3.00", "b2,Banana,4,0.60");
+
+        assertEquals(2, inventory.getAllProducts().size());
+        assertEquals(4, inventory.searchProductById("b2").getQuantity());
+        assertEquals(new BigDecimal("0.60"), inventory.searchProductById("b2").getPrice());
+        assertTrue(diff.summary().endsWith("1 duplicate IDs"), diff.summary());
+        assertTrue(diff.getReport().contains("! b2 appears more than once - the last row was used"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.chaoswanderer.inventory.sketch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class HyperLogLogTest {
+    private static final double MAX_ERROR = 0.04;
+
+    private static void assertEstimate(long actual, long estimate) {
+        double error = Math.abs(estimate - actual) / (double) actual;
+        assertTrue(error <= MAX_ERROR, estimate + " estimated for " + actual + " distinct values");
+    }
+
+    @Test
+    public void estimatesStayWithinFourPercent() {
+        HyperLogLog sketch = new HyperLogLog();
+        long added = 0;
+        for (long target : new long[]{100, 1_000, 10_000, 100_000, 1_000_000}) {
+            for (; added < target; added++) {
+                sketch.add("Product " + added);
+                sketch.add("Product " + (added / 2)); // repeats must not count
+            }
+            assertEstimate(target, sketch.estimate());
+        }
+    }
+
+    @Test
+    public void mergeCountsTheUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 300_000; i++) {
+            a.add("name " + i);
+            b.add("name " + (i + 100_000));
+        }
+        a.merge(b);
+        assertEstimate(400_000, a.estimate());
+
+        a.clear();
+        assertEquals(0, a.estimate());
+    }
+}
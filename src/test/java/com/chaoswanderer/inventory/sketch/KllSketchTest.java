@@ -0,0 +1,81 @@
+package com.chaoswanderer.inventory.sketch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class KllSketchTest {
+    // the bound the class comment gives for k = 200
+    private static final double MAX_RANK_ERROR = 0.0165;
+
+    private static void assertRanks(KllSketch sketch, double[] sorted) {
+        for (int step = 1; step < 100; step++) {
+            double value = sorted[(int) ((long) sorted.length * step / 100)];
+            long exact = upperBound(sorted, value);
+            double error = Math.abs(sketch.rank(value) - exact) / (double) sorted.length;
+            assertTrue(error <= MAX_RANK_ERROR, "rank error " + error + " at " + value);
+        }
+    }
+
+    private static int upperBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Test
+    public void ranksStayWithinTheErrorBound() {
+        Random random = new Random(21);
+        double[] values = new double[1_000_000];
+        KllSketch sketch = new KllSketch(KllSketch.DEFAULT_K, 7);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian()); // skewed, like prices
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.getCount());
+        assertEquals(values[0], sketch.getMin(), 0.0);
+        assertEquals(values[values.length - 1], sketch.getMax(), 0.0);
+        assertRanks(sketch, values);
+        assertTrue(sketch.getMemoryBytes() < 64 * 1024, sketch.getMemoryBytes() + " bytes retained");
+
+        double median = sketch.quantile(0.5);
+        double medianRank = upperBound(values, median) / (double) values.length;
+        assertEquals(0.5, medianRank, MAX_RANK_ERROR);
+    }
+
+    // a merge is as accurate as one sketch fed everything
+    @Test
+    public void mergedSketchesKeepTheBound() {
+        Random random = new Random(22);
+        double[] values = new double[400_000];
+        KllSketch[] parts = new KllSketch[4];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = new KllSketch(KllSketch.DEFAULT_K, p);
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(10_000) + (i % 4) * 2_500; // the parts see shifted ranges
+            parts[i % 4].add(values[i]);
+        }
+        for (int p = 1; p < parts.length; p++) {
+            parts[0].merge(parts[p]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, parts[0].getCount());
+        assertRanks(parts[0], values);
+    }
+}
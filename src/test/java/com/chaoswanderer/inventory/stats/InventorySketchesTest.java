@@ -0,0 +1,126 @@
+package com.chaoswanderer.inventory.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class InventorySketchesTest {
+    private static final double MAX_RANK_ERROR = 0.01;
+    private static final double MAX_DISTINCT_ERROR = 0.04;
+
+    // does the value sit at the fraction of the sorted values, give or take the allowed rank error?
+    // values <= it must reach fraction - error, and values < it must not pass fraction + error (ties count either way)
+    private static void assertRank(double[] sorted, double fraction, double value, String what) {
+        int below = lowerBound(sorted, value);
+        int atOrBelow = lowerBound(sorted, Math.nextUp(value));
+        double low = (double) below / sorted.length;
+        double high = (double) atOrBelow / sorted.length;
+        assertTrue(high >= fraction - MAX_RANK_ERROR && low <= fraction + MAX_RANK_ERROR,
+                what + " p" + Math.round(fraction * 100) + " = " + value + " sits at rank " + low + " - " + high);
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // 300k random adds, updates and removes against an exact copy of the catalog
+    @Test
+    public void summaryStaysWithinItsErrorBounds() {
+        Random random = new Random(12);
+        InventorySketches sketches = new InventorySketches();
+        Map<String, Product> live = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+
+        for (int op = 0; op < 300_000; op++) {
+            int kind = random.nextInt(10);
+            if (kind < 5 || ids.isEmpty()) {
+                String id = "p" + op;
+                Product product = new Product(id, "Name " + random.nextInt(60_000), random.nextInt(1_000),
+                        BigDecimal.valueOf(100 + (long) (random.nextGaussian() * 20 + 50) * 100 + random.nextInt(100), 2));
+                live.put(id, product);
+                ids.add(id);
+                sketches.productAdded(product);
+            } else if (kind < 9) {
+                String id = ids.get(random.nextInt(ids.size()));
+                Product before = live.get(id);
+                Product after = before.copy();
+                if (random.nextBoolean()) {
+                    after.setQuantity(random.nextInt(1_000));
+                } else if (random.nextBoolean()) {
+                    after.setPrice(BigDecimal.valueOf(1 + random.nextInt(20_000), 2));
+                } else {
+                    after.setName("Name " + random.nextInt(60_000));
+                }
+                live.put(id, after);
+                sketches.productUpdated(before, after);
+            } else {
+                int index = random.nextInt(ids.size());
+                String id = ids.get(index);
+                ids.set(index, ids.get(ids.size() - 1));
+                ids.remove(ids.size() - 1);
+                sketches.productRemoved(live.remove(id));
+            }
+
+            if (op % 60_000 == 59_999) {
+                check(sketches, live);
+            }
+        }
+    }
+
+    private static void check(InventorySketches sketches, Map<String, Product> live) {
+        DistributionSummary summary = sketches.summarize(scan -> live.values().forEach(scan));
+        assertEquals(live.size(), summary.getProductCount());
+
+        double[] prices = new double[live.size()];
+        double[] quantities = new double[live.size()];
+        Set<String> names = new HashSet<>();
+        int i = 0;
+        for (Product product : live.values()) {
+            prices[i] = product.getPrice().doubleValue();
+            quantities[i++] = product.getQuantity();
+            names.add(product.getName());
+        }
+        Arrays.sort(prices);
+        Arrays.sort(quantities);
+
+        double[] fractions = summary.getPercentiles();
+        for (int p = 0; p < fractions.length; p++) {
+            assertRank(prices, fractions[p], summary.getPricePercentiles()[p], "price");
+            assertRank(quantities, fractions[p], summary.getQuantityPercentiles()[p], "quantity");
+        }
+
+        double distinctError = Math.abs(summary.getDistinctNames() - names.size()) / (double) names.size();
+        assertTrue(distinctError <= MAX_DISTINCT_ERROR,
+                summary.getDistinctNames() + " distinct names estimated, " + names.size() + " actual");
+
+        // the most stocked list is exact
+        List<Long> top = live.values().stream().map(p -> (long) p.getQuantity())
+                .sorted((a, b) -> Long.compare(b, a)).limit(InventorySketches.TOP_PRODUCTS).toList();
+        for (int t = 0; t < top.size(); t++) {
+            assertEquals(top.get(t).longValue(), summary.getMostStocked().get(t).getQuantity());
+        }
+    }
+}
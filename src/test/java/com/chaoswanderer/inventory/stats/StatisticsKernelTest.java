@@ -0,0 +1,170 @@
+package com.chaoswanderer.inventory.stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// needs --add-modules jdk.incubator.vector, as the surefire argLine sets it
+public class StatisticsKernelTest {
+    private final Random random = new Random(17);
+
+    private static StatisticsKernel vector() {
+        StatisticsKernel kernel = VectorStatisticsKernel.create();
+        assertNotNull(kernel, "no vectors of two longs on this CPU");
+        return kernel;
+    }
+
+    private static String describe(Aggregate a) {
+        return "count=" + a.count + " quantitySum=" + a.quantitySum + " minQuantity=" + a.minQuantity
+                + " maxQuantity=" + a.maxQuantity + " priceSum=" + a.priceSum + " minPrice=" + a.minPrice
+                + " maxPrice=" + a.maxPrice + " value=" + a.value + " lowStock=" + a.lowStock;
+    }
+
+    private static void assertSameAggregate(int[] quantities, long[] prices, int n, int threshold) {
+        Aggregate expected = StatisticsKernel.scalar().aggregate(quantities, prices, n, threshold);
+        Aggregate actual = vector().aggregate(quantities, prices, n, threshold);
+        assertEquals(describe(expected), describe(actual), "n=" + n + " threshold=" + threshold);
+        assertTrue(expected.sameAs(actual));
+    }
+
+    // columns longer than n, filled past it with rows the kernels must not read
+    private void assertSameAggregate(int n, int quantityRange, boolean negative) {
+        int[] quantities = new int[n + 9];
+        long[] prices = new long[n + 9];
+        for (int i = 0; i < quantities.length; i++) {
+            boolean past = i >= n;
+            quantities[i] = past ? Integer.MIN_VALUE
+                    : random.nextInt(quantityRange) - (negative ? quantityRange / 2 : 0);
+            prices[i] = past ? Long.MAX_VALUE : random.nextInt(100_000);
+        }
+        assertSameAggregate(quantities, prices, n, random.nextInt(quantityRange));
+    }
+
+    // every length up to a few vectors, so each tail length is covered for any lane count
+    @Test
+    public void vectorMatchesScalarForEveryTail() {
+        for (int n = 0; n <= 70; n++) {
+            assertSameAggregate(n, 50, false);
+            assertSameAggregate(n, 50, true);
+        }
+        for (int round = 0; round < 50; round++) {
+            assertSameAggregate(100 + random.nextInt(5_000), 1 + random.nextInt(10_000), random.nextBoolean());
+        }
+    }
+
+    @Test
+    public void emptyColumnsHaveNoBounds() {
+        Aggregate aggregate = vector().aggregate(new int[16], new long[16], 0, 10);
+        assertEquals("count=0 quantitySum=0 minQuantity=" + Long.MAX_VALUE + " maxQuantity=" + Long.MIN_VALUE
+                + " priceSum=0 minPrice=" + Long.MAX_VALUE + " maxPrice=" + Long.MIN_VALUE + " value=0 lowStock=0",
+                describe(aggregate));
+        assertSameAggregate(new int[0], new long[0], 0, 10);
+    }
+
+    // extremes in the vector part and in the tail: all-negative quantities, and the int limits
+    @Test
+    public void negativeQuantitiesKeepTheirBounds() {
+        for (int n = 1; n <= 40; n++) {
+            int[] quantities = new int[n];
+            long[] prices = new long[n];
+            for (int i = 0; i < n; i++) {
+                quantities[i] = -1 - random.nextInt(1_000);
+                prices[i] = random.nextInt(500);
+            }
+            assertSameAggregate(quantities, prices, n, 0);
+
+            Aggregate aggregate = vector().aggregate(quantities, prices, n, 0);
+            assertEquals(Arrays.stream(quantities).min().getAsInt(), aggregate.minQuantity);
+            assertEquals(Arrays.stream(quantities).max().getAsInt(), aggregate.maxQuantity);
+            assertEquals(n, aggregate.lowStock);
+
+            quantities[random.nextInt(n)] = Integer.MIN_VALUE;
+            quantities[n - 1] = Integer.MAX_VALUE;
+            assertSameAggregate(quantities, prices, n, -500);
+        }
+    }
+
+    // ------------------- StockColumns -------------------
+    private static StockColumns columns(StatisticsKernel kernel, Product[] products) {
+        StockColumns columns = new StockColumns(kernel);
+        for (Product product : products) {
+            columns.productAdded(product);
+        }
+        return columns;
+    }
+
+    private static void assertStatistics(Product[] products, StockStatistics statistics) {
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal priceSum = BigDecimal.ZERO;
+        long quantitySum = 0;
+        for (Product product : products) {
+            value = value.add(product.getPrice().multiply(BigDecimal.valueOf(product.getQuantity())));
+            priceSum = priceSum.add(product.getPrice());
+            quantitySum += product.getQuantity();
+        }
+        assertEquals(products.length, statistics.getProductCount());
+        assertEquals(quantitySum, statistics.getTotalQuantity());
+        assertEquals(0, value.compareTo(statistics.getTotalValue()), value + " != " + statistics.getTotalValue());
+        assertEquals(priceSum.divide(BigDecimal.valueOf(products.length), 2, RoundingMode.HALF_UP),
+                statistics.getAveragePrice());
+    }
+
+    // prices and quantities big enough that the long sums would wrap: both kernels' results are
+    // thrown away for the exact BigInteger sums, and the totals still come out right
+    @Test
+    public void overflowingSumsFallBackToExactArithmetic() {
+        Product[] products = new Product[37];
+        for (int i = 0; i < products.length; i++) {
+            long cents = Long.MAX_VALUE / 4 - random.nextInt(1_000_000);
+            int quantity = Integer.MAX_VALUE - random.nextInt(1_000) - (i % 3 == 0 ? Integer.MAX_VALUE : 0);
+            products[i] = new Product("p" + i, "Gold " + i, quantity, BigDecimal.valueOf(cents, 2));
+        }
+
+        for (StatisticsKernel kernel : new StatisticsKernel[]{StatisticsKernel.scalar(), vector()}) {
+            StockColumns columns = columns(kernel, products);
+            assertTrue(columns.isExact());
+            StockStatistics statistics = columns.computeStatistics(10);
+            assertStatistics(products, statistics);
+            assertEquals(kernel.describe(), statistics.getComputedBy());
+        }
+
+        // the wrapped long sum really was wrong, so the fallback is what made it right
+        long price = Long.MAX_VALUE / 4;
+        Aggregate aggregate = vector().aggregate(new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE},
+                new long[]{price, price}, 2, 0);
+        assertNotEquals(BigInteger.valueOf(price).multiply(BigInteger.valueOf(2L * Integer.MAX_VALUE)),
+                BigInteger.valueOf(aggregate.getValue()));
+    }
+
+    // small values stay on the long sums, and both kernels agree on every statistic
+    @Test
+    public void columnsMatchOnBothKernels() {
+        Product[] products = new Product[1_003];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = new Product("p" + i, "Tea " + i, random.nextInt(200) - 20,
+                    BigDecimal.valueOf(random.nextInt(100_000), 2));
+        }
+        StockStatistics scalar = columns(StatisticsKernel.scalar(), products).computeStatistics(15);
+        StockStatistics vector = columns(vector(), products).computeStatistics(15);
+        assertStatistics(products, vector);
+        assertEquals(scalar.getMinQuantity(), vector.getMinQuantity());
+        assertEquals(scalar.getMaxQuantity(), vector.getMaxQuantity());
+        assertEquals(scalar.getMinPrice(), vector.getMinPrice());
+        assertEquals(scalar.getMaxPrice(), vector.getMaxPrice());
+        assertEquals(scalar.getTotalValue(), vector.getTotalValue());
+        assertEquals(scalar.getAveragePrice(), vector.getAveragePrice());
+        assertEquals(scalar.getLowStockCount(), vector.getLowStockCount());
+    }
+    // ------------------------------------------------------
+}
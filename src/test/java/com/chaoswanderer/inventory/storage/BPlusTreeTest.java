@@ -0,0 +1,139 @@
+package com.chaoswanderer.inventory.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BPlusTreeTest {
+    // key = [length:2][big-endian long:8], so byte order is numeric order for non-negative keys
+    private static final int KEY_SIZE = 10;
+    private static final int RECORD_SIZE = KEY_SIZE + 8;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] key(long key) {
+        return ByteBuffer.allocate(KEY_SIZE).putShort((short) 8).putLong(key).array();
+    }
+
+    private static byte[] record(long key, long value) {
+        return ByteBuffer.allocate(RECORD_SIZE).putShort((short) 8).putLong(key).putLong(value).array();
+    }
+
+    private static long valueOf(byte[] record) {
+        return ByteBuffer.wrap(record).getLong(KEY_SIZE);
+    }
+
+    private static List<Long> scanKeys(BPlusTree tree, byte[] fromKey) {
+        List<Long> keys = new ArrayList<>();
+        tree.scan(fromKey, (page, offset) -> {
+            keys.add(page.getLong(offset + 2));
+            return true;
+        });
+        return keys;
+    }
+
+    // enough records for a three-level tree, inserted in random order through a small cache
+    @Test
+    public void matchesTreeMapUnderInsertsOverwritesAndDeletes() throws Exception {
+        try (PageFile file = new PageFile(directory.resolve("tree.dat"))) {
+            PageCache cache = new PageCache(file, 16);
+            BPlusTree tree = BPlusTree.create(cache, RECORD_SIZE, KEY_SIZE);
+            TreeMap<Long, Long> reference = new TreeMap<>();
+            Random random = new Random(3);
+
+            for (int i = 0; i < 150_000; i++) {
+                long key = random.nextInt(100_000);
+                long value = random.nextLong();
+                assertEquals(!reference.containsKey(key), tree.put(record(key, value)), "put " + key);
+                reference.put(key, value);
+            }
+            for (int i = 0; i < 60_000; i++) {
+                long key = random.nextInt(100_000);
+                assertEquals(reference.remove(key) != null, tree.remove(key(key)), "remove " + key);
+            }
+
+            byte[] out = new byte[RECORD_SIZE];
+            for (long key = 0; key < 100_000; key++) {
+                Long expected = reference.get(key);
+                assertEquals(expected != null, tree.get(key(key), out), "get " + key);
+                if (expected != null) {
+                    assertEquals(expected.longValue(), valueOf(out));
+                }
+            }
+            assertEquals(new ArrayList<>(reference.keySet()), scanKeys(tree, null));
+            assertTrue(cache.getEvictions() > 0, "the working set should not fit in 16 pages");
+        }
+    }
+
+    @Test
+    public void scanFromStartsAtFirstKeyNotBelow() throws Exception {
+        try (PageFile file = new PageFile(directory.resolve("scan.dat"))) {
+            PageCache cache = new PageCache(file, 64);
+            BPlusTree tree = BPlusTree.create(cache, RECORD_SIZE, KEY_SIZE);
+            for (long key = 0; key < 20_000; key += 2) {
+                tree.put(record(key, key));
+            }
+
+            assertEquals(List.of(1000L, 1002L, 1004L), scanKeys(tree, key(999)).subList(0, 3));
+            assertEquals(1000L, scanKeys(tree, key(1000)).get(0).longValue());
+            assertEquals(9_500, scanKeys(tree, key(1000)).size());
+            assertTrue(scanKeys(tree, key(50_000)).isEmpty());
+
+            // the visitor can stop early
+            List<Long> firstThree = new ArrayList<>();
+            tree.scan(null, (page, offset) -> {
+                firstThree.add(page.getLong(offset + 2));
+                return firstThree.size() < 3;
+            });
+            assertEquals(List.of(0L, 2L, 4L), firstThree);
+        }
+    }
+
+    @Test
+    public void reopensFromRootAndFirstLeaf() throws Exception {
+        Path path = directory.resolve("reopen.dat");
+        Map<Long, Long> written = new TreeMap<>();
+        int root;
+        int firstLeaf;
+
+        try (PageFile file = new PageFile(path)) {
+            PageCache cache = new PageCache(file, 16);
+            cache.release(cache.allocate()); // page 0 is reserved for a header, as in PagedProductStore
+            BPlusTree tree = BPlusTree.create(cache, RECORD_SIZE, KEY_SIZE);
+            Random random = new Random(5);
+            for (int i = 0; i < 30_000; i++) {
+                long key = random.nextInt(1_000_000);
+                written.put(key, (long) i);
+                tree.put(record(key, i));
+            }
+            tree.remove(key(written.keySet().iterator().next()));
+            written.remove(written.keySet().iterator().next());
+            root = tree.getRootPageId();
+            firstLeaf = tree.getFirstLeafPageId();
+            cache.flush();
+        }
+
+        try (PageFile file = new PageFile(path)) {
+            BPlusTree tree = BPlusTree.open(new PageCache(file, 16), RECORD_SIZE, KEY_SIZE, root, firstLeaf);
+            assertEquals(new ArrayList<>(written.keySet()), scanKeys(tree, null));
+            byte[] out = new byte[RECORD_SIZE];
+            for (Map.Entry<Long, Long> entry : written.entrySet()) {
+                assertTrue(tree.get(key(entry.getKey()), out));
+                assertEquals(entry.getValue().longValue(), valueOf(out));
+            }
+            assertFalse(tree.get(key(1_000_001), out));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.chaoswanderer.inventory.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PageCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void evictedDirtyPagesAreWrittenBack() throws Exception {
+        try (PageFile file = new PageFile(directory.resolve("pages.dat"))) {
+            PageCache cache = new PageCache(file, 16);
+            for (int i = 0; i < 100; i++) {
+                Page page = cache.allocate();
+                page.buffer().putInt(0, i * 7);
+                cache.release(page);
+            }
+            assertEquals(84, cache.getEvictions());
+            assertTrue(cache.getWriteBacks() >= 84);
+
+            for (int i = 0; i < 100; i++) {
+                Page page = cache.fetch(i);
+                assertEquals(i * 7, page.buffer().getInt(0), "page " + i);
+                cache.release(page);
+            }
+        }
+    }
+
+    @Test
+    public void residentPagesAreHits() throws Exception {
+        try (PageFile file = new PageFile(directory.resolve("hits.dat"))) {
+            PageCache cache = new PageCache(file, 16);
+            Page page = cache.allocate();
+            cache.release(page);
+
+            for (int i = 0; i < 10; i++) {
+                Page again = cache.fetch(page.getPageId());
+                assertSame(page, again);
+                cache.release(again);
+            }
+            assertEquals(10, cache.getHits());
+            assertEquals(0, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void pinnedPagesAreNeverEvicted() throws Exception {
+        try (PageFile file = new PageFile(directory.resolve("pinned.dat"))) {
+            PageCache cache = new PageCache(file, 16);
+            List<Page> pinned = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                Page page = cache.allocate();
+                page.buffer().putInt(0, i);
+                pinned.add(page);
+            }
+            assertThrows(IllegalStateException.class, cache::allocate);
+
+            // with one frame free, churn goes through that frame and leaves the pinned ones alone
+            cache.release(pinned.remove(15));
+            for (int i = 0; i < 50; i++) {
+                cache.release(cache.allocate());
+            }
+            for (int i = 0; i < 15; i++) {
+                assertEquals(i, pinned.get(i).getPageId());
+                assertEquals(i, pinned.get(i).buffer().getInt(0));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsMisuse() throws Exception {
+        try (PageFile file = new PageFile(directory.resolve("misuse.dat"))) {
+            assertThrows(IllegalArgumentException.class, () -> new PageCache(file, 8));
+            PageCache cache = new PageCache(file, 16);
+            Page page = cache.allocate();
+            cache.release(page);
+            assertThrows(IllegalStateException.class, () -> cache.release(page));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.chaoswanderer.inventory.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Product;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PagedProductStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static String id(int i) {
+        return String.format("p%06d", i);
+    }
+
+    private static Product product(int i) {
+        return new Product(id(i), "Product " + i, i % 100, new BigDecimal(i).movePointLeft(2));
+    }
+
+    @Test
+    public void putGetRemoveAndReopen() throws Exception {
+        Path path = directory.resolve("products.dat");
+        PagedProductStore store = PagedProductStore.open(path, 16);
+        assertTrue(store.isNewlyCreated());
+        for (int i = 0; i < 20_000; i++) {
+            store.put(product(i));
+        }
+        for (int i = 0; i < 20_000; i += 3) {
+            assertEquals(id(i), store.remove(id(i)).getId());
+        }
+        assertNull(store.remove(id(0)));
+        store.put(product(1)); // overwrite, not a new record
+        int expected = 20_000 - 6_667;
+        assertEquals(expected, store.size());
+        assertTrue(store.getPageCache().getEvictions() > 0);
+        store.close();
+
+        store = PagedProductStore.open(path, 16);
+        try {
+            assertFalse(store.isNewlyCreated());
+            assertEquals(expected, store.size());
+            for (int i = 0; i < 20_000; i++) {
+                Product found = store.get(id(i));
+                if (i % 3 == 0) {
+                    assertNull(found);
+                } else {
+                    assertEquals("Product " + i, found.getName());
+                    assertEquals(i % 100, found.getQuantity());
+                    assertEquals(new BigDecimal(i).movePointLeft(2), found.getPrice());
+                }
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void scanFromVisitsInIdOrder() throws Exception {
+        PagedProductStore store = PagedProductStore.open(directory.resolve("scan.dat"), 32);
+        try {
+            for (int i = 999; i >= 0; i--) {
+                store.put(product(i));
+            }
+
+            List<String> ids = new ArrayList<>();
+            store.scanFrom("p000500x", product -> {
+                ids.add(product.getId());
+                return ids.size() < 3;
+            });
+            assertEquals(List.of(id(501), id(502), id(503)), ids);
+
+            List<String> all = new ArrayList<>();
+            store.forEach(product -> all.add(product.getId()));
+            assertEquals(1000, all.size());
+            for (int i = 0; i < all.size(); i++) {
+                assertEquals(id(i), all.get(i));
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void returnsCopiesAndRejectsOversizedRecords() throws Exception {
+        PagedProductStore store = PagedProductStore.open(directory.resolve("copies.dat"), 16);
+        try {
+            store.put(product(1));
+            assertNotSame(store.get(id(1)), store.get(id(1)));
+            assertFalse(store.sharesProducts());
+            assertNull(store.get("x".repeat(100)));
+            assertThrows(IllegalArgumentException.class,
+                    () -> store.put(new Product("x".repeat(100), "Too long", 1, BigDecimal.ONE)));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void refusesForeignFiles() throws Exception {
+        Path path = directory.resolve("foreign.dat");
+        Files.write(path, new byte[PageFile.PAGE_SIZE]);
+        assertThrows(IOException.class, () -> PagedProductStore.open(path, 16));
+    }
+}
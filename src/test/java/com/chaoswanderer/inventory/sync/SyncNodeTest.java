@@ -0,0 +1,141 @@
+package com.chaoswanderer.inventory.sync;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.chaoswanderer.inventory.model.Inventory;
+import com.chaoswanderer.inventory.model.Product;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SyncNodeTest {
+    @TempDir
+    Path directory;
+
+    private final long[] now = {1_000L};
+
+    private static Inventory shop(int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.addProduct(new Product("p1", "Milk", quantity, new BigDecimal("1.50")));
+        return inventory;
+    }
+
+    private SyncNode attach(String name, Inventory inventory) {
+        SyncNode node = new SyncNode(name, inventory, () -> now[0]);
+        node.attach();
+        return node;
+    }
+
+    private static void exchange(SyncNode a, SyncNode b) {
+        a.merge(b.deltaSince(0));
+        b.merge(a.deltaSince(0));
+    }
+
+    private static int quantity(Inventory inventory) {
+        return inventory.searchProductById("p1").getQuantity();
+    }
+
+    @Test
+    public void restockAfterOversellConverges() {
+        Inventory shopA = shop(1);
+        Inventory shopB = shop(1);
+        SyncNode a = attach("a", shopA);
+        SyncNode b = attach("b", shopB);
+
+        // both shops sell the last unit while apart
+        assertTrue(shopA.decreaseProductQuantity(shopA.searchProductById("p1"), 1));
+        assertTrue(shopB.decreaseProductQuantity(shopB.searchProductById("p1"), 1));
+        exchange(a, b);
+        assertEquals(-1, a.getState("p1").getQuantity());
+        assertEquals(0, quantity(shopA));
+        assertEquals(0, quantity(shopB));
+
+        // a restock to 10 means 10 on the shelf, not 10 minus the oversold unit
+        now[0]++;
+        assertTrue(shopA.updateProductQuantity(shopA.searchProductById("p1"), 10));
+        assertEquals(10, a.getState("p1").getQuantity());
+        exchange(a, b);
+        assertEquals(10, quantity(shopA));
+        assertEquals(10, quantity(shopB));
+        assertEquals(10, b.getState("p1").getQuantity());
+
+        // and later sales on either side still add up
+        assertTrue(shopB.decreaseProductQuantity(shopB.searchProductById("p1"), 3));
+        assertTrue(shopA.decreaseProductQuantity(shopA.searchProductById("p1"), 2));
+        exchange(a, b);
+        assertEquals(5, quantity(shopA));
+        assertEquals(5, quantity(shopB));
+    }
+
+    @Test
+    public void dataFileEditedWhileOversoldConverges() throws Exception {
+        Inventory shopA = shop(1);
+        Inventory shopB = shop(1);
+        SyncNode a = attach("a", shopA);
+        SyncNode b = attach("b", shopB);
+        shopA.decreaseProductQuantity(shopA.searchProductById("p1"), 1);
+        shopB.decreaseProductQuantity(shopB.searchProductById("p1"), 1);
+        exchange(a, b);
+
+        // shop a restarts with the data file edited to 7 while it was down
+        Path state = directory.resolve("a.state");
+        a.save(state);
+        Inventory restarted = shop(7);
+        SyncNode reopened = new SyncNode("a", restarted, () -> now[0]);
+        reopened.load(state);
+        reopened.attach();
+        assertEquals(7, reopened.getState("p1").getQuantity());
+
+        exchange(reopened, b);
+        assertEquals(7, quantity(restarted));
+        assertEquals(7, quantity(shopB));
+    }
+
+    @Test
+    public void randomSalesAndRestocksConverge() {
+        Random random = new Random(7);
+        List<Inventory> shops = new ArrayList<>();
+        List<SyncNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Inventory inventory = shop(5);
+            shops.add(inventory);
+            nodes.add(attach("n" + i, inventory));
+        }
+
+        for (int round = 0; round < 200; round++) {
+            now[0]++;
+            int i = random.nextInt(shops.size());
+            Inventory inventory = shops.get(i);
+            Product product = inventory.searchProductById("p1");
+            if (random.nextInt(4) == 0) {
+                inventory.updateProductQuantity(product, random.nextInt(20));
+            } else if (product.getQuantity() > 0) {
+                inventory.decreaseProductQuantity(product, 1 + random.nextInt(product.getQuantity()));
+            }
+            // partial exchanges between random pairs, so oversells happen
+            if (random.nextInt(3) == 0) {
+                exchange(nodes.get(i), nodes.get(random.nextInt(nodes.size())));
+            }
+        }
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (SyncNode a : nodes) {
+                for (SyncNode b : nodes) {
+                    exchange(a, b);
+                }
+            }
+        }
+        long counter = nodes.get(0).getState("p1").getQuantity();
+        for (int i = 0; i < shops.size(); i++) {
+            assertEquals(counter, nodes.get(i).getState("p1").getQuantity());
+            assertEquals(Math.max(0, counter), quantity(shops.get(i)));
+        }
+    }
+}